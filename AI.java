@@ -2,6 +2,12 @@ package jump61;
 
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 import static jump61.Side.*;
@@ -17,6 +23,19 @@ class AI extends Player {
     AI(Game game, Side color, long seed) {
         super(game, color);
         _random = new Random(seed);
+        _eval = _defaultEvaluation;
+        _selective = _defaultSelective;
+    }
+
+    /** Have AIs created from now on evaluate positions with EVAL. */
+    static void setDefaultEvaluation(Evaluation eval) {
+        _defaultEvaluation = eval;
+    }
+
+    /** Have AIs created from now on search selectively iff SELECTIVE
+     *  (see setSelective). */
+    static void setDefaultSelective(boolean selective) {
+        _defaultSelective = selective;
     }
 
     /** Red winning value. */
@@ -35,20 +54,329 @@ class AI extends Player {
         return String.format("%d %d", board.row(choice), board.col(choice));
     }
 
-    /** Return a move after searching the game tree to DEPTH>0 moves
-     *  from the current position. Assumes the game is not over. */
-    private int searchForMove() {
-        Board work = new Board(getBoard());
+    /** Depth of the game tree searched for each move when there is no
+     *  time limit. */
+    static final int SEARCH_DEPTH = 3;
+
+    /** Maximum depth of the game tree searched when there is a time
+     *  limit. */
+    static final int MAX_SEARCH_DEPTH = 32;
+
+    /** Minimum depth of the searches whose results are stored in an
+     *  AnalysisCache. */
+    static final int MIN_CACHED_DEPTH = 2;
+
+    /** Number of boards in ARENA. */
+    static final int ARENA_BOARDS = 256;
+
+    /** Boards used by searches, each of which makes and undoes up to
+     *  MAX_SEARCH_DEPTH moves.  A search that finds them all in use, or
+     *  that goes deeper, uses an ordinary Board. */
+    private static final BoardArena ARENA =
+        new BoardArena(ARENA_BOARDS, MAX_SEARCH_DEPTH);
+
+    /** Minimum remaining depth at which late moves are searched to
+     *  reduced depth. */
+    static final int LMR_DEPTH = 3;
+    /** Number of moves at each node searched to full depth before
+     *  reductions begin. */
+    static final int LMR_MOVES = 3;
+    /** Rank of the first move at each node reduced by two plies, if it
+     *  touches no critical square. */
+    static final int LMR_LATE_MOVES = 8;
+
+    /** Number of nodes searched between checks of the time limit. */
+    static final int TIME_CHECK_INTERVAL = 64;
+
+    /** Return a move after searching the game tree to SEARCH_DEPTH moves
+     *  from the current position, or as deep as my time limit allows.
+     *  Assumes the game is not over. */
+    int searchForMove() {
+        return searchForMove(getBoard(), SEARCH_DEPTH);
+    }
+
+    /** Stop subsequent searches, and the one in progress, if any, once
+     *  they have visited about NODES nodes, or remove the limit if NODES
+     *  is 0.  May be called from any thread. */
+    void setNodeLimit(long nodes) {
+        _nodeLimit = nodes;
+    }
+
+    /** Limit subsequent searches with a time or node limit to DEPTH
+     *  moves (at most MAX_SEARCH_DEPTH, the default). */
+    void setMaxDepth(int depth) {
+        _maxDepth = Math.min(depth, MAX_SEARCH_DEPTH);
+    }
+
+    /** Report the progress of subsequent searches to LISTENER, or to no
+     *  one if LISTENER is null.  Searches with a listener search to
+     *  increasing depths, reporting each. */
+    void setListener(SearchListener listener) {
+        _listener = listener;
+    }
+
+    /** Search selectively in subsequent searches iff SELECTIVE (by
+     *  default, as set by setDefaultSelective: initially not).
+     *  Selective searches reduce the depth of late moves at each node
+     *  (those after the first LMR_MOVES, in order of promise), searching
+     *  them again to full depth if they turn out better than the best
+     *  found so far, and skip quiet moves one move from the search
+     *  horizon that cannot bring the static evaluation up to the best
+     *  found so far.  Moves onto critical squares are never reduced or
+     *  skipped, and moves next to them are reduced less and not
+     *  skipped.  Selective searches reach greater depths in a given
+     *  time; they have scored better than full-width searches on 8x8
+     *  boards, but not on 6x6. */
+    void setSelective(boolean selective) {
+        _selective = selective;
+    }
+
+    /** Return true iff my searches are selective. */
+    boolean isSelective() {
+        return _selective;
+    }
+
+    /** Evaluate positions with EVAL in subsequent searches. */
+    void setEvaluation(Evaluation eval) {
+        _eval = eval;
+    }
+
+    /** Return the Evaluation I use. */
+    Evaluation evaluation() {
+        return _eval;
+    }
+
+    /** Use TABLE (if not null) in subsequent searches to recall the
+     *  results of searching positions reached before.  TABLE may be
+     *  shared with other AIs. */
+    void setTranspositionTable(TranspositionTable table) {
+        _table = table;
+    }
+
+    /** Search the moves from the current position in parallel on POOL in
+     *  subsequent searches, or search sequentially if POOL is null.
+     *  POOL remains owned by the caller. */
+    void setPool(ForkJoinPool pool) {
+        _pool = pool;
+    }
+
+    /** Before each subsequent search, try to prove a win for the side
+     *  to move with SOLVER (if not null), expanding at most NODES
+     *  positions, and if one is proven, return the winning move without
+     *  searching.  SOLVER must not be used by others during searches. */
+    void setSolver(ProofSolver solver, long nodes) {
+        _solver = solver;
+        _solverNodes = nodes;
+    }
+
+    /** Consult and update CACHE (if not null) in subsequent searches. */
+    void setCache(AnalysisCache cache) {
+        _cache = cache;
+    }
+
+    /** Return a future for the result of searchForMove(), run on
+     *  EXECUTOR, and clear any previous request to stop. */
+    Future<Integer> startSearch(ExecutorService executor) {
+        return startSearch(executor, getBoard(), SEARCH_DEPTH);
+    }
+
+    /** Return a future for the result of searchForMove(START, DEPTH), run
+     *  on EXECUTOR, and clear any previous request to stop.  START must
+     *  not change during the search. */
+    Future<Integer> startSearch(ExecutorService executor, Board start,
+                                int depth) {
+        _stopRequested = false;
+        return executor.submit(() -> searchForMove(start, depth));
+    }
+
+    /** Request that the search in progress, if any, end as soon as
+     *  possible, returning the best move it has found so far.  May be
+     *  called from any thread.  Searches return at once until the next
+     *  startSearch. */
+    void stop() {
+        _stopRequested = true;
+    }
+
+    /** Limit subsequent searches, and the one in progress, if any, to
+     *  MILLIS milliseconds from their start, or remove the limit if
+     *  MILLIS is 0.  May be called from any thread. */
+    void setTimeLimit(long millis) {
+        _timeLimit = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /** Return a move for the side to move on START after searching the
+     *  game tree to DEPTH>0 moves, or if I have a time or node limit, to
+     *  increasing depths (up to my maximum depth) until it is reached.
+     *  If stopped early, returns the move found by the deepest search
+     *  completed, if any, or else the best found so far.  Assumes the
+     *  game is not over and that I am playing the side to move. */
+    int searchForMove(Board start, int depth) {
+        if (!Events.enabled()) {
+            return search(start, depth);
+        }
+        Events.SearchEvent event = new Events.SearchEvent();
+        event.player = getSide().toString();
+        event.size = start.size();
+        event.begin();
+        try {
+            int move = search(start, depth);
+            event.move = start.moveString(move);
+            event.value = _foundValue;
+            return move;
+        } catch (RuntimeException | Error excp) {
+            event.failure = excp.toString();
+            throw excp;
+        } finally {
+            event.depth = _depthReached;
+            event.nodes = _nodes.get();
+            event.stopped = _stopped;
+            event.commit();
+        }
+    }
+
+    /** Perform searchForMove(START, DEPTH). */
+    private int search(Board start, int depth) {
+        boolean limited = _timeLimit != 0 || _nodeLimit != 0;
+        Board work = scratchCopy(start, limited ? _maxDepth : depth);
+        try {
+            return searchFrom(work, depth);
+        } finally {
+            ARENA.release(work);
+        }
+    }
+
+    /** Return a copy of BOARD (without undo history) on which to search
+     *  up to DEPTH moves ahead: one of ARENA's boards, if they can undo
+     *  that many moves, and otherwise an ordinary Board.  Return it with
+     *  ARENA.release. */
+    private static Board scratchCopy(Board board, int depth) {
+        if (depth > ARENA.undoDepth()) {
+            return new Board(board);
+        }
+        return ARENA.copy(board);
+    }
+
+    /** Perform searchForMove(WORK, DEPTH), using WORK as a scratch board
+     *  that is restored to its original contents on return. */
+    private int searchFrom(Board work, int depth) {
         assert getSide() == work.whoseMove();
-        _foundMove = -1;
-        if (getSide() == RED) {
-            minMax(work, 3, true, 1, BW, RW);
-        } else {
-            minMax(work, 3, true, -1, BW, RW);
+        int sense = getSide() == RED ? 1 : -1;
+        _searchStart = System.nanoTime();
+        _stopped = false;
+        _nodes.set(0);
+        _depthReached = 0;
+        boolean limited = _timeLimit != 0 || _nodeLimit != 0;
+        int bestMove, bestValue, first, last;
+        bestMove = -1;
+        bestValue = 0;
+        first = limited || _listener != null ? 1 : depth;
+        last = limited ? _maxDepth : depth;
+        long cached = probeCache(work);
+        if (cached != AnalysisCache.NONE) {
+            int cachedDepth = AnalysisCache.depth(cached);
+            int value = AnalysisCache.score(cached);
+            if (cachedDepth >= last || value == RW || value == BW) {
+                _depthReached = cachedDepth;
+                _foundValue = value;
+                return AnalysisCache.move(cached);
+            } else if (first < last) {
+                bestMove = AnalysisCache.move(cached);
+                bestValue = value;
+                _depthReached = cachedDepth;
+                first = cachedDepth + 1;
+            }
+        }
+        if (_solver != null
+            && _solver.solve(work, _solverNodes) == ProofSolver.PROVEN) {
+            _depthReached = _solver.line().length;
+            _foundValue = sense == 1 ? RW : BW;
+            return _solver.move();
+        }
+        for (int d = first; d <= last; d += 1) {
+            _foundMove = -1;
+            int value = minMax(work, d, true, sense, BW, RW);
+            if (_stopped) {
+                if (bestMove == -1) {
+                    bestMove = _foundMove;
+                    bestValue = value;
+                }
+                break;
+            }
+            bestMove = _foundMove;
+            bestValue = value;
+            _depthReached = d;
+            if (_listener != null) {
+                _listener.iterationDone(d, bestMove, bestValue,
+                                        _nodes.get(),
+                                        System.nanoTime() - _searchStart);
+            }
+            if (value == RW || value == BW) {
+                break;
+            }
+        }
+        if (bestMove == -1) {
+            bestMove = movesList(work, getSide()).get(0);
+        }
+        _foundValue = bestValue;
+        if (_cache != null && _depthReached >= MIN_CACHED_DEPTH
+            && (cached == AnalysisCache.NONE
+                || _depthReached > AnalysisCache.depth(cached))) {
+            _cache.store(work.positionHash(), _depthReached,
+                         AnalysisCache.EXACT, bestValue, bestMove);
+        }
+        return bestMove;
+    }
+
+    /** Return the exact entry in my cache for BOARD, or
+     *  AnalysisCache.NONE if I have no cache or it has no usable entry
+     *  for BOARD. */
+    private long probeCache(Board board) {
+        if (_cache == null) {
+            return AnalysisCache.NONE;
         }
-        return _foundMove;
+        long entry = _cache.probe(board.positionHash());
+        int move = AnalysisCache.move(entry);
+        if (entry == AnalysisCache.NONE
+            || AnalysisCache.bound(entry) != AnalysisCache.EXACT
+            || move >= board.size() * board.size()
+            || !board.isLegal(getSide(), move)) {
+            return AnalysisCache.NONE;
+        }
+        return entry;
+    }
+
+    /** Return the value (positive favoring Red) that the last call of
+     *  searchForMove found for the move it returned. */
+    int foundValue() {
+        return _foundValue;
+    }
+
+    /** Return the depth of the deepest search completed by the last
+     *  call of searchForMove. */
+    int depthReached() {
+        return _depthReached;
+    }
+
+    /** Return the number of nodes visited by the last call of
+     *  searchForMove. */
+    long nodes() {
+        return _nodes.get();
     }
 
+    /** Return true iff the current search is to stop, counting a node
+     *  and checking the time limit periodically. */
+    private boolean stopping() {
+        long nodes = _nodes.incrementAndGet();
+        if (_stopRequested) {
+            _stopped = true;
+        } else if (_nodeLimit != 0 && nodes >= _nodeLimit) {
+            _stopped = true;
+        } else if (_timeLimit != 0 && nodes % TIME_CHECK_INTERVAL == 0
+            && System.nanoTime() - _searchStart > _timeLimit) {
+            _stopped = true;
+        }
+        return _stopped;
+    }
 
     /** Find a move from position BOARD and return its value, recording
      *  the move found in _foundMove iff SAVEMOVE. The move
@@ -56,77 +384,239 @@ class AI extends Player {
      *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
      *  DEPTH levels.  Searching at level 0 simply returns a static estimate
      *  of the board value and does not set _foundMove. If the game is over
-     *  on BOARD, does not set _foundMove. */
+     *  on BOARD, does not set _foundMove.  If the search is stopped,
+     *  returns at once, with a meaningless value if no move was fully
+     *  searched. */
     private int minMax(Board board, int depth, boolean saveMove,
                        int sense, int alpha, int beta) {
-        Board work = new Board(board);
-        if (depth == 0 || work.getWinner() != null) {
+        if (stopping()) {
+            return 0;
+        }
+        if (depth == 0 || board.getWinner() != null) {
             return staticEval(board, RW);
-        } else if (sense == 1) {
-            int bestSoFar = BW;
-            ArrayList<Integer> possMoves = movesList(work, work.whoseMove());
-            for (int move : possMoves) {
-                work.addSpot(work.whoseMove(), move);
-                int response = minMax(work, depth - 1, false, -1, alpha, beta);
-                if (response > bestSoFar) {
-                    bestSoFar = response;
-                    alpha = Math.max(alpha, bestSoFar);
-                    if (saveMove) {
-                        _foundMove = move;
-                    }
-                    if (alpha >= beta) {
-                        return bestSoFar;
+        }
+        int hint = -1;
+        if (_table != null) {
+            long entry = _table.probe(board.positionHash());
+            if (entry != AnalysisCache.NONE) {
+                hint = AnalysisCache.move(entry);
+                if (!saveMove && AnalysisCache.depth(entry) >= depth) {
+                    int value = AnalysisCache.score(entry);
+                    switch (AnalysisCache.bound(entry)) {
+                    case AnalysisCache.EXACT:
+                        return value;
+                    case AnalysisCache.LOWER:
+                        if (value >= beta) {
+                            return value;
+                        }
+                        break;
+                    default:
+                        if (value <= alpha) {
+                            return value;
+                        }
+                        break;
                     }
                 }
-                work.undo();
             }
-            if (_foundMove == -1) {
-                _foundMove = possMoves.get(0);
+        }
+        if (saveMove && _pool != null) {
+            return parallelMinMax(board, depth, sense);
+        }
+        ArrayList<Integer> possMoves = movesList(board, board.whoseMove());
+        if (!saveMove) {
+            orderMoves(board, possMoves);
+        }
+        if (hint >= 0 && possMoves.remove((Integer) hint)) {
+            possMoves.add(0, hint);
+        }
+        int alpha0 = alpha, beta0 = beta;
+        int bestSoFar = sense == 1 ? BW : RW;
+        int bestMove = possMoves.get(0);
+        boolean frontier = _selective && depth == 1 && !saveMove;
+        int futile =
+            frontier ? staticEval(board, RW) + sense * _eval.quietMargin()
+            : 0;
+        Side opponent = board.whoseMove().opposite();
+        boolean quietWins = board.numOfSide(opponent) == 0;
+        for (int rank = 0; rank < possMoves.size(); rank += 1) {
+            int move = possMoves.get(rank);
+            int reduction = 0;
+            if (rank > 0 && !quietWins && _selective && !saveMove) {
+                int touching = criticalTouched(board, move);
+                if (frontier && touching == NONE
+                    && (sense == 1 ? futile <= alpha : futile >= beta)) {
+                    bestSoFar = sense == 1 ? Math.max(bestSoFar, futile)
+                        : Math.min(bestSoFar, futile);
+                    continue;
+                }
+                if (depth >= LMR_DEPTH && rank >= LMR_MOVES
+                    && touching != TARGET) {
+                    reduction = touching == NONE && rank >= LMR_LATE_MOVES
+                        ? 2 : 1;
+                    reduction = Math.min(reduction, depth - 1);
+                }
+            }
+            board.addSpot(board.whoseMove(), move);
+            int response;
+            if (reduction > 0) {
+                int bound = sense == 1 ? alpha : beta;
+                response = minMax(board, depth - 1 - reduction, false,
+                                  -sense, bound - (sense == 1 ? 0 : 1),
+                                  bound + (sense == 1 ? 1 : 0));
+                if (!_stopped
+                    && (sense == 1 ? response > alpha : response < beta)) {
+                    response = minMax(board, depth - 1, false, -sense,
+                                      alpha, beta);
+                }
+            } else {
+                response =
+                    minMax(board, depth - 1, false, -sense, alpha, beta);
             }
-            return bestSoFar;
-        } else {
-            ArrayList<Integer> possMoves = movesList(work, work.whoseMove());
-            int bestSoFar = RW;
-            for (int move : possMoves) {
-                work.addSpot(work.whoseMove(), move);
-                int response = minMax(work, depth - 1, false, 1, alpha, beta);
-                if (response < bestSoFar) {
-                    bestSoFar = response;
+            board.undo();
+            if (_stopped) {
+                return bestSoFar;
+            }
+            if (sense == 1 ? response > bestSoFar : response < bestSoFar) {
+                bestSoFar = response;
+                bestMove = move;
+                if (sense == 1) {
+                    alpha = Math.max(alpha, bestSoFar);
+                } else {
                     beta = Math.min(beta, bestSoFar);
-                    if (saveMove) {
-                        _foundMove = move;
-                    }
-                    if (alpha >= beta) {
-                        return bestSoFar;
-                    }
                 }
-                work.undo();
+                if (saveMove) {
+                    _foundMove = move;
+                }
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        if (saveMove && _foundMove == -1) {
+            _foundMove = possMoves.get(0);
+        }
+        if (_table != null) {
+            int bound = bestSoFar <= alpha0 ? AnalysisCache.UPPER
+                : bestSoFar >= beta0 ? AnalysisCache.LOWER
+                : AnalysisCache.EXACT;
+            _table.store(board.positionHash(), depth, bound, bestSoFar,
+                         bestMove);
+        }
+        return bestSoFar;
+    }
+
+    /** Value of criticalTouched for a move touching no critical square. */
+    private static final int NONE = 0;
+    /** Value of criticalTouched for a move next to a critical square. */
+    private static final int NEIGHBOR = 1;
+    /** Value of criticalTouched for a move onto a critical square. */
+    private static final int TARGET = 2;
+
+    /** Return TARGET if square #N of BOARD is critical (so that a spot
+     *  added there explodes), NEIGHBOR if one of its neighbors is, and
+     *  otherwise NONE. */
+    private static int criticalTouched(Board board, int n) {
+        if (critical(board, n)) {
+            return TARGET;
+        }
+        int size = board.size(), r = board.row(n), c = board.col(n);
+        if (r > 1 && critical(board, n - size)
+            || r < size && critical(board, n + size)
+            || c > 1 && critical(board, n - 1)
+            || c < size && critical(board, n + 1)) {
+            return NEIGHBOR;
+        }
+        return NONE;
+    }
+
+    /** Return true iff square #N of BOARD is critical. */
+    private static boolean critical(Board board, int n) {
+        return board.contents().spots(n) == board.neighbors(n);
+    }
+
+    /** Reorder MOVES, legal moves on BOARD, to put moves onto critical
+     *  squares first, those that take more of the opponent's squares (as
+     *  estimated by ClusterIndex.flips) before others, keeping the order
+     *  of moves that are not distinguished. */
+    private static void orderMoves(Board board, ArrayList<Integer> moves) {
+        int critical;
+        critical = 0;
+        for (int k = 0; k < moves.size(); k += 1) {
+            if (critical(board, moves.get(k))) {
+                critical += 1;
             }
-            if (_foundMove == -1) {
-                _foundMove = possMoves.get(0);
+        }
+        if (critical == 0) {
+            return;
+        }
+        ClusterIndex clusters = critical > 1 ? board.clusters() : null;
+        Side player = board.whoseMove();
+        int[] flips = new int[critical];
+        int front;
+        front = 0;
+        for (int k = 0; front < critical; k += 1) {
+            int move = moves.get(k);
+            if (critical(board, move)) {
+                int f = clusters == null ? 0 : clusters.flips(move, player), j;
+                moves.remove(k);
+                for (j = front; j > 0 && flips[j - 1] < f; j -= 1) {
+                    flips[j] = flips[j - 1];
+                }
+                flips[j] = f;
+                moves.add(j, move);
+                front += 1;
             }
+        }
+    }
+
+    /** Perform minMax(BOARD, DEPTH, true, SENSE, BW, RW), searching below
+     *  each move in parallel on _pool.  Each move's value is found with
+     *  a full window, and the first of those with the best value is
+     *  chosen, so the result does not depend on the order in which the
+     *  moves' searches finish. */
+    private int parallelMinMax(Board board, int depth, int sense) {
+        ArrayList<Integer> possMoves = movesList(board, board.whoseMove());
+        int[] values = new int[possMoves.size()];
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (int k = 0; k < values.length; k += 1) {
+            int i = k;
+            tasks.add(() -> {
+                Board work = scratchCopy(board, depth);
+                try {
+                    work.addSpot(work.whoseMove(), possMoves.get(i));
+                    values[i] =
+                        minMax(work, depth - 1, false, -sense, BW, RW);
+                } finally {
+                    ARENA.release(work);
+                }
+                return null;
+            });
+        }
+        _pool.invokeAll(tasks);
+        int bestSoFar = sense == 1 ? BW : RW;
+        if (_stopped) {
             return bestSoFar;
         }
+        _foundMove = possMoves.get(0);
+        for (int k = 0; k < values.length; k += 1) {
+            if (sense == 1 ? values[k] > bestSoFar : values[k] < bestSoFar) {
+                bestSoFar = values[k];
+                _foundMove = possMoves.get(k);
+            }
+        }
+        return bestSoFar;
     }
 
-    /** Return a heuristic estimate of the value of board position B.
-     *  Use WINNINGVALUE to indicate a win for Red and -WINNINGVALUE to
-     *  indicate a win for Blue. */
-    private int staticEval(Board b, int winningValue) {
-        ArrayList<Square> contents = b.getBoard();
-        int heuristic = 0;
+    /** Return a heuristic estimate of the value of board position B,
+     *  according to my Evaluation.  Use WINNINGVALUE to indicate a win
+     *  for Red and -WINNINGVALUE to indicate a win for Blue. */
+    int staticEval(Board b, int winningValue) {
         if (b.getWinner() != null && b.getWinner().equals(RED)) {
             return winningValue;
         } else if (b.getWinner() != null && b.getWinner().equals(BLUE)) {
             return -1 * winningValue;
         } else {
-            for (int k = 0; k < b.size(); k++) {
-                if (contents.get(k).getSpots() == b.neighbors(k)
-                        && b.isLegal(contents.get(k).getSide(), k)) {
-                    heuristic++;
-                }
-            }
-            return heuristic;
+            return _eval.value(b);
         }
     }
 
@@ -136,17 +626,66 @@ class AI extends Player {
      * @return arraylist of moves */
     public ArrayList<Integer> movesList(Board b, Side player) {
         ArrayList<Integer> possMoves = new ArrayList<>();
-        for (int k = 0; k < b.getBoard().size(); k++) {
+        for (int k = 0; k < b.size() * b.size(); k++) {
             if (b.isLegal(player, k)) {
                 possMoves.add(k);
             }
         } return possMoves;
     }
 
+    /** Persistent store of search results, or null. */
+    private AnalysisCache _cache;
+
+    /** Evaluation given to AIs when they are created. */
+    private static volatile Evaluation _defaultEvaluation =
+        Evaluation.DEFAULT;
+
+    /** Whether AIs created from now on search selectively. */
+    private static volatile boolean _defaultSelective;
+
+    /** Static evaluation of positions. */
+    private Evaluation _eval;
+
+    /** True iff searches are selective. */
+    private boolean _selective;
+
+    /** Solver tried before each search, or null. */
+    private ProofSolver _solver;
+    /** Node budget of each use of _solver. */
+    private long _solverNodes;
+
     /** A random-number generator used for move selection. */
     private Random _random;
 
     /** Used to convey moves discovered by minMax. */
     private int _foundMove;
 
+    /** Value of the position found by the last search. */
+    private int _foundValue;
+
+    /** True iff the current search is to stop, because it has reached a
+     *  limit or been asked to stop.  Cleared as each search starts. */
+    private volatile boolean _stopped;
+    /** True iff stop has been called since the last startSearch. */
+    private volatile boolean _stopRequested;
+    /** Time limit for searches in nanoseconds, or 0 if none. */
+    private volatile long _timeLimit;
+    /** Starting time of the current search, from System.nanoTime. */
+    private long _searchStart;
+    /** Number of nodes visited by the current search. */
+    private final AtomicLong _nodes = new AtomicLong();
+    /** Node limit for searches, or 0 if none. */
+    private volatile long _nodeLimit;
+    /** Maximum depth of searches with a time or node limit. */
+    private int _maxDepth = MAX_SEARCH_DEPTH;
+    /** Receiver of reports of search progress, or null. */
+    private SearchListener _listener;
+    /** Table of positions searched, or null. */
+    private TranspositionTable _table;
+    /** Pool on which to search below the root moves in parallel, or null
+     *  to search sequentially. */
+    private ForkJoinPool _pool;
+    /** Depth of the deepest iteration completed by the current search. */
+    private int _depthReached;
+
 }
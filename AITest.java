@@ -1,6 +1,12 @@
 package jump61;
 import static jump61.Side.*;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -12,4 +18,127 @@ public class AITest {
         Board B = new Board(3);
 
     }
+
+    @Test
+    public void testTimeLimit() {
+        Board B = new Board(6);
+        AI ai = new AI(null, RED, 0);
+        ai.setTimeLimit(200);
+        long start = System.nanoTime();
+        int move = ai.searchForMove(B, AI.SEARCH_DEPTH);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(B.isLegal(RED, move));
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2));
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testRepeatedTimeLimit() {
+        Board B = new Board(6);
+        AI ai = new AI(null, RED, 0);
+        ai.setTimeLimit(100);
+        for (int k = 0; k < 2; k += 1) {
+            assertTrue(B.isLegal(RED, ai.searchForMove(B, AI.SEARCH_DEPTH)));
+            assertTrue(ai.depthReached() >= 1);
+            assertTrue(ai.nodes() > 1);
+        }
+        ai.setTimeLimit(0);
+        assertTrue(B.isLegal(RED, ai.searchForMove(B, 2)));
+        assertEquals(2, ai.depthReached());
+    }
+
+    @Test
+    public void testDeepSearch() {
+        Board B = new Board(3);
+        B.addSpot(RED, 4);
+        Board before = new Board(B);
+        AI ai = new AI(null, BLUE, 0);
+        int move = ai.searchForMove(B, AI.MAX_SEARCH_DEPTH + 8);
+        assertTrue(B.isLegal(BLUE, move));
+        assertEquals(before.toString(), B.toString());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        Board B = new Board(6);
+        AI ai = new AI(null, RED, 0);
+        ai.setTimeLimit(60000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> search = executor.submit(
+                () -> ai.searchForMove(B, AI.SEARCH_DEPTH));
+            Thread.sleep(100);
+            ai.stop();
+            assertTrue(B.isLegal(RED, search.get(2, TimeUnit.SECONDS)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSelective() {
+        for (boolean selective : new boolean[] { true, false }) {
+            Board B = new Board(4);
+            for (int r = 1; r <= 4; r += 1) {
+                for (int c = 1; c <= 4; c += 1) {
+                    B.set(r, c, 1, RED);
+                }
+            }
+            B.set(1, 2, 1, BLUE);
+            B.set(1, 1, 2, RED);
+            B.set(4, 4, 2, RED);
+            AI ai = new AI(null, RED, 0);
+            ai.setSelective(selective);
+            int move = ai.searchForMove(B, 4);
+            assertEquals(AI.RW, ai.foundValue());
+            B.addSpot(RED, move);
+            assertEquals(RED, B.getWinner());
+
+            B = new Board(6);
+            for (int k = 0; k < 12; k += 1) {
+                B.addSpot(B.whoseMove(), (k * 7) % 36);
+            }
+            ai = new AI(null, B.whoseMove(), 0);
+            ai.setSelective(selective);
+            assertTrue(B.isLegal(B.whoseMove(),
+                                 ai.searchForMove(B, AI.SEARCH_DEPTH)));
+        }
+    }
+
+    @Test
+    public void testForceDuringGame() {
+        LinkedBlockingQueue<String> commands = new LinkedBlockingQueue<>();
+        CommandSource source = new CommandSource() {
+            @Override
+            public String getCommand(String prompt) {
+                try {
+                    return commands.take();
+                } catch (InterruptedException excp) {
+                    return null;
+                }
+            }
+
+            @Override
+            public String pollCommand() {
+                return commands.poll();
+            }
+        };
+        StringBuilder moves = new StringBuilder();
+        Reporter reporter = new TextReporter() {
+            @Override
+            public void announceMove(int row, int col) {
+                moves.append(row).append(' ').append(col).append('\n');
+                commands.add("quit");
+            }
+        };
+        Game game = new Game(source, (b) -> { }, reporter, false);
+        commands.add("time 60");
+        commands.add("1 1");
+        commands.add("board");
+        commands.add("force");
+        long start = System.nanoTime();
+        assertEquals(0, game.play());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertEquals(1, moves.toString().split("\n").length);
+    }
 }
@@ -0,0 +1,191 @@
+package jump61;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/** A persistent store of the results of AI searches, shared by all runs
+ *  of the program that use the same cache file.
+ *
+ *  The file is a header (the magic number MAGIC, the format VERSION,
+ *  and the number of slots, ints, padded to HEADER_SIZE bytes) followed
+ *  by a power-of-two number of SLOT_SIZE-byte slots.  A position whose
+ *  Board.positionHash() is KEY has its entry, if any, in slot
+ *  KEY & (slots - 1), which holds two longs: KEY ^ DATA, and DATA, which
+ *  packs the search depth, bound, score (positive favoring Red), and
+ *  best move.  The file is memory-mapped, so probes and stores are
+ *  memory accesses.
+ *
+ *  Any number of processes may read a cache file while one writes it:
+ *  the first to open it holds an exclusive lock on it and is the only
+ *  writer; the others open it read-only.  Slots are written without
+ *  locking, so a reader may see a slot half written; the first long then
+ *  fails to match the key, and the slot is treated as empty.
+ *  @author Will Harvey
+ */
+class AnalysisCache implements Closeable {
+
+    /** Magic number identifying cache files. */
+    static final int MAGIC = 0x4a363143;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Size of the file header. */
+    static final int HEADER_SIZE = 16;
+    /** Size of one slot. */
+    static final int SLOT_SIZE = 16;
+    /** Default number of slots in a new cache file (16 MB). */
+    static final int DEFAULT_SLOTS = 1 << 20;
+
+    /** Result of probe for a position that has no entry. */
+    static final long NONE = 0;
+
+    /** Bound of an entry whose score is exact. */
+    static final int EXACT = 1;
+    /** Bound of an entry whose score is a lower bound. */
+    static final int LOWER = 2;
+    /** Bound of an entry whose score is an upper bound. */
+    static final int UPPER = 3;
+
+    /** A cache kept in FILE, which is created with SLOTS slots (a power
+     *  of 2) if it does not exist.  The cache is writable iff no other
+     *  process is writing FILE. */
+    AnalysisCache(Path file, int slots) throws IOException {
+        assert slots > 0 && (slots & (slots - 1)) == 0;
+        _channel = FileChannel.open(file, CREATE, READ, WRITE);
+        try {
+            _lock = _channel.tryLock();
+        } catch (OverlappingFileLockException excp) {
+            _lock = null;
+        }
+        if (_lock != null && _channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(slots).clear();
+            _channel.write(header, 0);
+            _channel.write(ByteBuffer.allocate(1),
+                           HEADER_SIZE + (long) slots * SLOT_SIZE - 1);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        _channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            close();
+            throw new IOException("not an analysis cache: " + file);
+        }
+        if (header.getInt() != VERSION) {
+            close();
+            throw new IOException("unsupported analysis cache version: "
+                                  + file);
+        }
+        _slots = header.getInt();
+        long size = HEADER_SIZE + (long) _slots * SLOT_SIZE;
+        if (_slots <= 0 || (_slots & (_slots - 1)) != 0
+            || size > Integer.MAX_VALUE || _channel.size() < size) {
+            close();
+            throw new IOException("damaged analysis cache: " + file);
+        }
+        _map = _channel.map(writable() ? FileChannel.MapMode.READ_WRITE
+                            : FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /** Return true iff I may store entries. */
+    boolean writable() {
+        return _lock != null;
+    }
+
+    /** Return the number of slots. */
+    int slots() {
+        return _slots;
+    }
+
+    /** Return the entry for the position whose hash is KEY, or NONE if
+     *  there is none.  The fields of the entry are extracted by depth,
+     *  bound, score, and move. */
+    long probe(long key) {
+        int p = slot(key);
+        long check = _map.getLong(p), data = _map.getLong(p + 8);
+        if (data == NONE || (check ^ data) != key) {
+            return NONE;
+        }
+        return data;
+    }
+
+    /** Record that a search of the position whose hash is KEY to DEPTH
+     *  (1 <= DEPTH <= 255) gave SCORE with the given BOUND, and chose
+     *  MOVE (a square number), unless I am read-only or already hold as
+     *  deep a result for KEY. */
+    void store(long key, int depth, int bound, int score, int move) {
+        assert 1 <= depth && depth <= 0xff;
+        if (!writable()) {
+            return;
+        }
+        long old = probe(key);
+        if (old != NONE && depth(old) >= depth) {
+            return;
+        }
+        long data = entry(depth, bound, score, move);
+        int p = slot(key);
+        _map.putLong(p + 8, data);
+        _map.putLong(p, key ^ data);
+    }
+
+    /** Return the entry for a search to DEPTH (1 <= DEPTH <= 255) that
+     *  gave SCORE with the given BOUND, and chose MOVE. */
+    static long entry(int depth, int bound, int score, int move) {
+        return (long) score << 32 | (long) (move & 0xffff) << 16
+            | (bound & 0xff) << 8 | depth;
+    }
+
+    /** Return the search depth of ENTRY. */
+    static int depth(long entry) {
+        return (int) entry & 0xff;
+    }
+
+    /** Return the bound of ENTRY: EXACT, LOWER, or UPPER. */
+    static int bound(long entry) {
+        return (int) entry >> 8 & 0xff;
+    }
+
+    /** Return the score of ENTRY, positive favoring Red. */
+    static int score(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    /** Return the best move of ENTRY, as a square number. */
+    static int move(long entry) {
+        return (int) entry >> 16 & 0xffff;
+    }
+
+    /** Return the file position of the slot for KEY. */
+    private int slot(long key) {
+        return HEADER_SIZE + (int) (key & (_slots - 1)) * SLOT_SIZE;
+    }
+
+    /** Write my entries to the file and close it. */
+    @Override
+    public void close() throws IOException {
+        if (!_channel.isOpen()) {
+            return;
+        }
+        if (_map != null && writable()) {
+            _map.force();
+        }
+        _channel.close();
+    }
+
+    /** The cache file. */
+    private final FileChannel _channel;
+    /** The exclusive lock on _channel, if I am the writer; else null. */
+    private FileLock _lock;
+    /** The mapped contents of _channel. */
+    private MappedByteBuffer _map;
+    /** Number of slots. */
+    private final int _slots;
+
+}
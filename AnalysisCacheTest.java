@@ -0,0 +1,68 @@
+package jump61;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of analysis caches.
+ *  @author Will Harvey
+ */
+public class AnalysisCacheTest {
+
+    @Test
+    public void testStoreProbe() throws IOException {
+        Path file = Files.createTempFile("jump61", ".cache");
+        Files.delete(file);
+        try (AnalysisCache cache = new AnalysisCache(file, 1 << 10)) {
+            assertTrue(cache.writable());
+            cache.store(12345, 3, AnalysisCache.UPPER, -17, 35);
+            long entry = cache.probe(12345);
+            assertEquals(3, AnalysisCache.depth(entry));
+            assertEquals(AnalysisCache.UPPER, AnalysisCache.bound(entry));
+            assertEquals(-17, AnalysisCache.score(entry));
+            assertEquals(35, AnalysisCache.move(entry));
+            assertEquals(AnalysisCache.NONE, cache.probe(12345 + (1 << 10)));
+            cache.store(12345, 2, AnalysisCache.EXACT, 4, 1);
+            assertEquals(entry, cache.probe(12345));
+            try (AnalysisCache reader = new AnalysisCache(file, 1 << 12)) {
+                assertFalse(reader.writable());
+                assertEquals(1 << 10, reader.slots());
+                assertEquals(entry, reader.probe(12345));
+                reader.store(999, 5, AnalysisCache.EXACT, 0, 0);
+                assertEquals(AnalysisCache.NONE, reader.probe(999));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testSearchUsesCache() throws IOException {
+        Path file = Files.createTempFile("jump61", ".cache");
+        Files.delete(file);
+        Board board = new Board(4);
+        board.addSpot(RED, 0);
+        try (AnalysisCache cache = new AnalysisCache(file, 1 << 10)) {
+            AI ai = new AI(null, BLUE, 0);
+            ai.setCache(cache);
+            int move = ai.searchForMove(board, AI.SEARCH_DEPTH);
+            long entry = cache.probe(board.positionHash());
+            assertEquals(AI.SEARCH_DEPTH, AnalysisCache.depth(entry));
+            assertEquals(move, AnalysisCache.move(entry));
+            assertEquals(ai.foundValue(), AnalysisCache.score(entry));
+
+            cache.store(board.positionHash(), AI.SEARCH_DEPTH + 1,
+                        AnalysisCache.EXACT, 42, 15);
+            assertEquals(15, ai.searchForMove(board, AI.SEARCH_DEPTH));
+            assertEquals(42, ai.foundValue());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
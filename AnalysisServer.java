@@ -0,0 +1,348 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static jump61.GameException.error;
+
+/** A local socket endpoint (TCP or Unix-domain) through which other
+ *  programs submit requests to an AnalysisService.  Each connection
+ *  carries lines of commands:
+ *      analyze ID DEPTH MILLIS    Analyze the board (in dump format)
+ *                                 on the lines that follow to DEPTH
+ *                                 moves within MILLIS milliseconds,
+ *                                 replying with ID (any word).
+ *                                 The board is read even if the
+ *                                 command is malformed.
+ *      stats                      Report the service's statistics.
+ *      quit                       Close the connection.
+ *  and receives one line per reply:
+ *      ID move ROW COL value VALUE depth DEPTH nodes NODES
+ *      ID over WINNER             (for a position in which the game is
+ *                                 over)
+ *      ID expired
+ *      ID error MESSAGE
+ *      stats STATISTICS           (see AnalysisService.stats)
+ *  Any number of requests may be outstanding on a connection; their
+ *  replies are sent as they are answered, which need not be in the
+ *  order of the requests.  Values are positive when favorable to Red.
+ *  A connection is closed (on quit or end of input) once the replies to
+ *  its outstanding requests have been sent.
+ *  Each connection is read by its own thread, and written by another,
+ *  so that the service's threads never wait for a client to read its
+ *  replies.  A connection with more than MAX_QUEUED_REPLIES replies
+ *  unsent is closed.
+ *  @author Will Harvey
+ */
+class AnalysisServer {
+
+    /** Largest number of unsent replies a connection may have. */
+    static final int MAX_QUEUED_REPLIES = 1024;
+    /** Time allowed to send a connection's last replies before closing
+     *  it, in milliseconds. */
+    static final long DRAIN_MILLIS = 10000;
+
+    /** A server listening on ADDRESS (as for GameServer.parseAddress)
+     *  that submits requests to SERVICE, which remains owned by the
+     *  caller. */
+    AnalysisServer(SocketAddress address, AnalysisService service)
+        throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            _server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            _server = ServerSocketChannel.open();
+            _server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        }
+        _server.bind(address);
+        _service = service;
+    }
+
+    /** Return the address on which I am listening. */
+    SocketAddress localAddress() throws IOException {
+        return _server.getLocalAddress();
+    }
+
+    /** Serve connections until stop() is called, then close them. */
+    void serve() throws IOException {
+        SocketAddress address = _server.getLocalAddress();
+        try {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = _server.accept();
+                } catch (IOException excp) {
+                    if (!_server.isOpen()) {
+                        break;
+                    }
+                    throw excp;
+                }
+                synchronized (_connections) {
+                    _connections.add(channel);
+                }
+                Thread reader =
+                    new Thread(() -> converse(channel), "jump61-analysis-io");
+                reader.setDaemon(true);
+                reader.start();
+            }
+        } finally {
+            synchronized (_connections) {
+                for (SocketChannel channel : _connections) {
+                    channel.close();
+                }
+                _connections.clear();
+            }
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address)
+                                     .getPath());
+            }
+        }
+    }
+
+    /** Cause serve() to return.  May be called from any thread. */
+    void stop() throws IOException {
+        _server.close();
+    }
+
+    /** Execute the commands arriving on CHANNEL until it is closed or
+     *  the client quits. */
+    private void converse(SocketChannel channel) {
+        ReplyWriter out = new ReplyWriter(channel);
+        ArrayList<CompletableFuture<?>> replies = new ArrayList<>();
+        BufferedReader inp =
+            new BufferedReader(new InputStreamReader(
+                Channels.newInputStream(channel), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = inp.readLine()) != null) {
+                String[] words = Utils.words(line);
+                switch (words[0]) {
+                case "":
+                    break;
+                case "analyze":
+                    replies.removeIf(CompletableFuture::isDone);
+                    replies.add(analyze(words, inp, out));
+                    break;
+                case "stats":
+                    out.send("stats " + _service.stats());
+                    break;
+                case "quit":
+                    awaitAll(replies);
+                    return;
+                default:
+                    out.send("error unknown command: " + words[0]);
+                    break;
+                }
+            }
+            awaitAll(replies);
+        } catch (IOException excp) {
+            Utils.debug(1, "analysis connection failed: %s",
+                        excp.getMessage());
+        } finally {
+            out.finish();
+            synchronized (_connections) {
+                _connections.remove(channel);
+            }
+            try {
+                channel.close();
+            } catch (IOException excp) {
+                Utils.debug(1, "close failed: %s", excp.getMessage());
+            }
+        }
+    }
+
+    /** Wait for all of FUTURES to complete, normally or not. */
+    private static void awaitAll(ArrayList<CompletableFuture<?>> futures) {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+            .exceptionally((excp) -> null).join();
+    }
+
+    /** Submit the analysis requested by the command WORDS, whose board
+     *  is read from INP, arranging for its reply to be sent to OUT.
+     *  Return a future completed when the reply has been sent. */
+    private CompletableFuture<?> analyze(String[] words, BufferedReader inp,
+                                         ReplyWriter out)
+        throws IOException {
+        String id = words.length > 1 ? words[1] : "?";
+        Board position;
+        int depth;
+        long timeout;
+        try {
+            position = readBoard(inp);
+            if (words.length != 4) {
+                throw error("usage: analyze ID DEPTH MILLIS");
+            }
+            depth = Utils.toInt(words[2]);
+            timeout = Utils.toLong(words[3]);
+            if (depth <= 0 || timeout <= 0) {
+                throw error("depth and time must be positive");
+            }
+        } catch (GameException | NumberFormatException excp) {
+            out.send(id + " error " + excp.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        return _service.submit(position, depth, timeout)
+            .whenComplete((analysis, excp) -> {
+                if (excp instanceof CompletionException) {
+                    excp = excp.getCause();
+                }
+                if (excp instanceof TimeoutException) {
+                    out.send(id + " expired");
+                } else if (excp != null) {
+                    out.send(id + " error " + excp.getMessage());
+                } else if (analysis.move < 0) {
+                    out.send(id + " over " + position.getWinner());
+                } else {
+                    out.send(String.format("%s move %s value %d depth %d"
+                                             + " nodes %d", id,
+                                             position.moveString(
+                                                 analysis.move),
+                                             analysis.value, analysis.depth,
+                                             analysis.nodes));
+                }
+            });
+    }
+
+    /** Return the board in dump format on the next lines of INP.  Throws
+     *  a GameException if it is malformed or missing. */
+    private static Board readBoard(BufferedReader inp) throws IOException {
+        StringBuilder text = new StringBuilder();
+        int delimiters;
+        delimiters = 0;
+        while (delimiters < 2) {
+            String line = inp.readLine();
+            if (line == null) {
+                throw error("incomplete board");
+            }
+            if (line.trim().equals(BoardCodec.DELIMITER)) {
+                delimiters += 1;
+            }
+            text.append(line).append('\n');
+        }
+        return BoardCodec.parse(text);
+    }
+
+    /** Sends the replies on one connection from a thread of its own.
+     *  Lines are queued by send, from any thread, without waiting. */
+    private static class ReplyWriter {
+
+        /** A writer of replies to CHANNEL. */
+        ReplyWriter(SocketChannel channel) {
+            _channel = channel;
+            _out = Channels.newOutputStream(channel);
+            _thread = new Thread(this::write, "jump61-analysis-out");
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+
+        /** Queue LINE to be sent, unless my connection has failed.  If
+         *  MAX_QUEUED_REPLIES lines are already waiting, close my
+         *  connection instead. */
+        synchronized void send(String line) {
+            if (_failed) {
+                return;
+            } else if (_queue.size() == MAX_QUEUED_REPLIES) {
+                Utils.debug(1, "analysis client not reading replies");
+                fail();
+                try {
+                    _channel.close();
+                } catch (IOException excp) {
+                    Utils.debug(1, "close failed: %s", excp.getMessage());
+                }
+                return;
+            }
+            _queue.add(line);
+            notifyAll();
+        }
+
+        /** Send the lines queued, waiting at most DRAIN_MILLIS for them
+         *  to go, and stop. */
+        void finish() {
+            synchronized (this) {
+                _finished = true;
+                notifyAll();
+            }
+            try {
+                _thread.join(DRAIN_MILLIS);
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** Send queued lines until finished and none remain, or my
+         *  connection fails. */
+        private void write() {
+            while (true) {
+                String line;
+                synchronized (this) {
+                    try {
+                        while (_queue.isEmpty() && !_finished && !_failed) {
+                            wait();
+                        }
+                    } catch (InterruptedException excp) {
+                        return;
+                    }
+                    if (_queue.isEmpty() || _failed) {
+                        return;
+                    }
+                    line = _queue.remove();
+                }
+                try {
+                    _out.write((line + "\n")
+                               .getBytes(StandardCharsets.UTF_8));
+                } catch (IOException excp) {
+                    Utils.debug(1, "analysis reply failed: %s",
+                                excp.getMessage());
+                    synchronized (this) {
+                        fail();
+                    }
+                    return;
+                }
+            }
+        }
+
+        /** Discard my queued lines and any sent hereafter. */
+        private void fail() {
+            _failed = true;
+            _queue.clear();
+            notifyAll();
+        }
+
+        /** The connection. */
+        private final SocketChannel _channel;
+        /** Writes to _channel. */
+        private final OutputStream _out;
+        /** The thread sending lines. */
+        private final Thread _thread;
+        /** Lines waiting to be sent. */
+        private final ArrayDeque<String> _queue = new ArrayDeque<>();
+        /** True once no more lines will be queued. */
+        private boolean _finished;
+        /** True once my connection has failed or been closed. */
+        private boolean _failed;
+    }
+
+    /** Channel on which I accept connections. */
+    private final ServerSocketChannel _server;
+    /** The service analyzing positions. */
+    private final AnalysisService _service;
+    /** Open connections. */
+    private final HashSet<SocketChannel> _connections = new HashSet<>();
+
+}
@@ -0,0 +1,323 @@
+package jump61;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static jump61.Side.*;
+
+/** Analyzes positions for any number of concurrent clients on a fixed
+ *  set of worker threads, which share one transposition table (and
+ *  optionally an AnalysisCache), so that each client benefits from the
+ *  searches done for the others.
+ *
+ *  A request (submit) names a position, a search depth, and a deadline,
+ *  and is answered through a CompletableFuture.  Requests for a
+ *  position (identified by its hash, as in a TranspositionTable)
+ *  already waiting to be analyzed are coalesced with it: the
+ *  position is searched once, to the greatest depth requested, and the
+ *  result goes to all.  Waiting requests are taken in order of deadline,
+ *  one at a time by each worker, so that requests behind a long search
+ *  are left to the other workers.  A search is cut short shortly
+ *  before the latest deadline of its requests (see DEADLINE_MARGIN),
+ *  returning the result of the deepest search completed; a request
+ *  whose deadline passes before it is answered completes exceptionally
+ *  with a TimeoutException.  The service keeps
+ *  counts of requests and the latencies of the last LATENCY_SAMPLES
+ *  answered, reported by stats().
+ *  @author Will Harvey
+ */
+class AnalysisService implements Closeable {
+
+    /** Percentage of the time remaining before its deadline that a
+     *  search leaves unused, so that its answer arrives in time. */
+    static final int DEADLINE_MARGIN = 10;
+    /** Number of recent latencies kept for percentiles. */
+    static final int LATENCY_SAMPLES = 4096;
+    /** Default size of the shared transposition table, in MB. */
+    static final int TABLE_MEGABYTES = 64;
+
+    /** The result of analyzing a position. */
+    static class Analysis {
+
+        /** The result of a search to DEPTH moves that found MOVE (a
+         *  square number, or -1 if the game is over) with VALUE
+         *  (positive favoring Red), visiting NODES nodes. */
+        Analysis(int move, int value, int depth, long nodes) {
+            this.move = move;
+            this.value = value;
+            this.depth = depth;
+            this.nodes = nodes;
+        }
+
+        /** The best move found (a square number), or -1 if the game is
+         *  over. */
+        final int move;
+        /** The value of the position, positive favoring Red. */
+        final int value;
+        /** The depth of the deepest search completed. */
+        final int depth;
+        /** The number of nodes visited. */
+        final long nodes;
+    }
+
+    /** A service analyzing positions on THREADS threads, sharing a
+     *  transposition table of MEGABYTES MB. */
+    AnalysisService(int threads, int megabytes) {
+        this(threads, megabytes, null);
+    }
+
+    /** A service analyzing positions on THREADS threads, sharing a
+     *  transposition table of MEGABYTES MB, whose workers consult and
+     *  update CACHE (if not null), which remains owned by the caller. */
+    AnalysisService(int threads, int megabytes, AnalysisCache cache) {
+        _table = new TranspositionTable(megabytes);
+        _cache = cache;
+        for (int k = 0; k < threads; k += 1) {
+            Thread worker = new Thread(this::work, "jump61-analysis-" + k);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /** Return a future for the analysis of POSITION (which is copied)
+     *  to DEPTH > 0 moves, which must be answered within TIMEOUT
+     *  milliseconds.  May be called from any thread. */
+    CompletableFuture<Analysis> submit(Board position, int depth,
+                                       long timeout) {
+        long now = System.nanoTime();
+        long deadline = now + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Job job;
+        synchronized (this) {
+            if (_closed) {
+                throw new IllegalStateException("analysis service closed");
+            }
+            _submitted += 1;
+            job = _pending.get(position.positionHash());
+            if (job != null) {
+                _coalesced += 1;
+                job.depth = Math.max(job.depth, depth);
+                if (deadline > job.deadline) {
+                    _queue.remove(job);
+                    job.deadline = deadline;
+                    _queue.add(job);
+                }
+            } else {
+                Board copy = new Board(position.size());
+                copy.copy(position);
+                job = new Job(copy, depth, deadline);
+                _pending.put(position.positionHash(), job);
+                _queue.add(job);
+                notify();
+            }
+        }
+        CompletableFuture<Analysis> result = new CompletableFuture<>();
+        job.result.whenComplete((analysis, excp) -> {
+            if (excp != null) {
+                result.completeExceptionally(excp);
+            } else {
+                if (!result.isDone()) {
+                    recordLatency(System.nanoTime() - now);
+                }
+                result.complete(analysis);
+            }
+        });
+        result.orTimeout(timeout, TimeUnit.MILLISECONDS)
+            .exceptionally((excp) -> {
+                if (excp instanceof TimeoutException) {
+                    countExpired();
+                }
+                return null;
+            });
+        return result;
+    }
+
+    /** Return the number of positions waiting to be analyzed. */
+    synchronized int queueDepth() {
+        return _queue.size();
+    }
+
+    /** Return the latency (from submission to answer, in nanoseconds)
+     *  not exceeded by FRACTION of the recent requests answered, or 0 if
+     *  none have been. */
+    long latency(double fraction) {
+        long[] samples;
+        synchronized (_latencies) {
+            samples = Arrays.copyOf(_latencies,
+                                    (int) Math.min(_answered,
+                                                   LATENCY_SAMPLES));
+        }
+        if (samples.length == 0) {
+            return 0;
+        }
+        Arrays.sort(samples);
+        int k = (int) Math.ceil(fraction * samples.length) - 1;
+        return samples[Math.max(0, Math.min(samples.length - 1, k))];
+    }
+
+    /** Return a one-line summary of my state: the queue depth; the
+     *  numbers of requests submitted, coalesced with others, answered,
+     *  and expired; and the 50th, 90th, and 99th percentile latencies in
+     *  milliseconds. */
+    String stats() {
+        long submitted, coalesced, answered, expired;
+        int queued;
+        synchronized (this) {
+            queued = _queue.size();
+            submitted = _submitted;
+            coalesced = _coalesced;
+            expired = _expired;
+        }
+        synchronized (_latencies) {
+            answered = _answered;
+        }
+        return String.format("queue %d submitted %d coalesced %d"
+                             + " answered %d expired %d"
+                             + " p50 %.1f p90 %.1f p99 %.1f",
+                             queued, submitted, coalesced, answered,
+                             expired, latency(0.5) / 1e6,
+                             latency(0.9) / 1e6, latency(0.99) / 1e6);
+    }
+
+    /** Stop my workers after they finish the requests they have taken;
+     *  requests still waiting complete exceptionally. */
+    @Override
+    public void close() {
+        ArrayList<Job> abandoned;
+        synchronized (this) {
+            _closed = true;
+            abandoned = new ArrayList<>(_queue);
+            _queue.clear();
+            _pending.clear();
+            notifyAll();
+        }
+        for (Job job : abandoned) {
+            job.result.completeExceptionally(
+                new IllegalStateException("analysis service closed"));
+        }
+    }
+
+    /** A position waiting to be analyzed, and the requests for it. */
+    private static class Job implements Comparable<Job> {
+
+        /** A job analyzing POSITION to DEPTH by DEADLINE (from
+         *  System.nanoTime). */
+        Job(Board position, int depth, long deadline) {
+            this.position = position;
+            this.depth = depth;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            return Long.compare(deadline, other.deadline);
+        }
+
+        /** The position. */
+        final Board position;
+        /** The greatest depth requested. */
+        int depth;
+        /** The latest deadline requested. */
+        long deadline;
+        /** The analysis, when done. */
+        final CompletableFuture<Analysis> result = new CompletableFuture<>();
+    }
+
+    /** Analyze waiting positions, one at a time, until closed.  Run by
+     *  each worker. */
+    private void work() {
+        AI[] players = new AI[Side.values().length];
+        for (Side side : new Side[] { RED, BLUE }) {
+            players[side.ordinal()] = new AI(null, side, 0);
+            players[side.ordinal()].setTranspositionTable(_table);
+            players[side.ordinal()].setCache(_cache);
+        }
+        while (true) {
+            Job job;
+            synchronized (this) {
+                while (_queue.isEmpty() && !_closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException excp) {
+                        return;
+                    }
+                }
+                if (_closed) {
+                    return;
+                }
+                job = _queue.poll();
+                _pending.remove(job.position.positionHash(), job);
+            }
+            analyze(job, players);
+        }
+    }
+
+    /** Analyze the position of JOB, using PLAYERS (indexed by Side
+     *  ordinal), and complete it. */
+    private void analyze(Job job, AI[] players) {
+        long remaining = job.deadline - System.nanoTime();
+        if (remaining <= 0) {
+            job.result.completeExceptionally(
+                new TimeoutException("deadline passed before analysis"));
+            return;
+        }
+        Board position = job.position;
+        Side winner = position.getWinner();
+        try {
+            if (winner != null) {
+                job.result.complete(new Analysis(-1, winner == RED ? AI.RW
+                                                 : AI.BW, 0, 0));
+                return;
+            }
+            AI player = players[position.whoseMove().ordinal()];
+            player.setMaxDepth(job.depth);
+            player.setTimeLimit(Math.max(1, TimeUnit.NANOSECONDS
+                                         .toMillis(remaining)
+                                         * (100 - DEADLINE_MARGIN) / 100));
+            int move = player.searchForMove(position, job.depth);
+            job.result.complete(new Analysis(move, player.foundValue(),
+                                             player.depthReached(),
+                                             player.nodes()));
+        } catch (RuntimeException excp) {
+            job.result.completeExceptionally(excp);
+        }
+    }
+
+    /** Record that a request was answered after LATENCY nanoseconds. */
+    private void recordLatency(long latency) {
+        synchronized (_latencies) {
+            _latencies[(int) (_answered % LATENCY_SAMPLES)] = latency;
+            _answered += 1;
+        }
+    }
+
+    /** Count a request whose deadline passed. */
+    private synchronized void countExpired() {
+        _expired += 1;
+    }
+
+    /** Table shared by all workers' searches. */
+    private final TranspositionTable _table;
+    /** Persistent store of search results, or null. */
+    private final AnalysisCache _cache;
+    /** Jobs waiting to be taken by a worker, earliest deadline first. */
+    private final PriorityQueue<Job> _queue = new PriorityQueue<>();
+    /** The jobs in _queue, indexed by position hash. */
+    private final HashMap<Long, Job> _pending = new HashMap<>();
+    /** True iff I am closed. */
+    private boolean _closed;
+    /** Numbers of requests submitted, coalesced with a waiting job, and
+     *  expired. */
+    private long _submitted, _coalesced, _expired;
+    /** The latencies of the last LATENCY_SAMPLES requests answered, in
+     *  nanoseconds, indexed by answer number modulo LATENCY_SAMPLES. */
+    private final long[] _latencies = new long[LATENCY_SAMPLES];
+    /** Number of requests answered.  Guarded by _latencies. */
+    private long _answered;
+
+}
@@ -0,0 +1,114 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import static jump61.AnalysisService.Analysis;
+import static org.junit.Assert.*;
+
+/** Unit tests of the analysis service and its socket endpoint.
+ *  @author Will Harvey
+ */
+public class AnalysisServiceTest {
+
+    @Test
+    public void testCoalesceAndExpire() throws Exception {
+        try (AnalysisService service = new AnalysisService(1, 1)) {
+            Board busy = new Board(8);
+            CompletableFuture<Analysis> first =
+                service.submit(busy, AI.MAX_SEARCH_DEPTH, 500);
+            while (service.queueDepth() > 0) {
+                Thread.sleep(1);
+            }
+            Board position = new Board(4);
+            position.addSpot(Side.RED, 5);
+            CompletableFuture<Analysis> a = service.submit(position, 2, 10000),
+                b = service.submit(position, 3, 10000),
+                late = service.submit(new Board(5), 2, 1);
+            assertEquals(2, service.queueDepth());
+            try {
+                late.get();
+                fail("request answered after its deadline");
+            } catch (ExecutionException excp) {
+                assertTrue(excp.getCause() instanceof TimeoutException);
+            }
+            assertTrue(first.get().depth > 0);
+            assertTrue(a.get() == b.get());
+            assertEquals(3, a.get().depth);
+            assertTrue(position.isLegal(Side.BLUE, a.get().move));
+            String stats = service.stats();
+            assertTrue(stats, stats.startsWith("queue 0 submitted 4"
+                                               + " coalesced 1 answered 3"
+                                               + " expired 1 "));
+            assertTrue(service.latency(0.5) <= service.latency(0.99));
+        }
+    }
+
+    @Test
+    public void testAfterCutShort() throws Exception {
+        try (AnalysisService service = new AnalysisService(1, 1)) {
+            Analysis cut =
+                service.submit(new Board(8), AI.MAX_SEARCH_DEPTH, 300).get();
+            assertTrue(cut.depth < AI.MAX_SEARCH_DEPTH);
+            Board position = new Board(4);
+            Analysis next = service.submit(position, 3, 10000).get();
+            assertEquals(3, next.depth);
+            assertTrue(next.nodes > 1);
+            assertTrue(position.isLegal(Side.RED, next.move));
+        }
+    }
+
+    @Test
+    public void testServer() throws Exception {
+        try (AnalysisService service = new AnalysisService(2, 1)) {
+            AnalysisServer server =
+                new AnalysisServer(GameServer.parseAddress("0"), service);
+            Thread serving = new Thread(() -> {
+                try {
+                    server.serve();
+                } catch (java.io.IOException excp) {
+                    fail(excp.getMessage());
+                }
+            });
+            serving.start();
+            try (Socket socket = new Socket()) {
+                socket.connect((InetSocketAddress) server.localAddress());
+                socket.setSoTimeout(10000);
+                OutputStream out = socket.getOutputStream();
+                BufferedReader inp =
+                    new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.UTF_8));
+                out.write(("analyze p1 2 5000\n" + new Board(3)
+                           + "\nanalyze p2 0 10\n" + new Board(2)
+                           + "\nanalyze p3 2 5000\n"
+                           + "===\n 1r 1r\n 1r 1r\n===\nstats\nquit\n")
+                          .getBytes(StandardCharsets.UTF_8));
+                String[] replies = new String[4];
+                for (int k = 0; k < replies.length; k += 1) {
+                    replies[k] = inp.readLine();
+                }
+                Arrays.sort(replies);
+                assertTrue(replies[0], replies[0].matches(
+                    "p1 move [1-3] [1-3] value -?\\d+ depth 2 nodes \\d+"));
+                assertEquals("p2 error depth and time must be positive",
+                             replies[1]);
+                assertEquals("p3 over red", replies[2]);
+                assertTrue(replies[3].startsWith("stats queue "));
+            } finally {
+                server.stop();
+                serving.join();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package jump61;
+
+import java.util.ArrayList;
+
+/** A Board whose contents and undo history are kept in a slot of a
+ *  BoardArena.  Its undo history holds at most the arena's undoDepth()
+ *  moves (making more is an error), and is not copied to other Boards.
+ *  @author Will Harvey
+ */
+class ArenaBoard extends Board {
+
+    /** The board with handle HANDLE in ARENA, whose contents are kept in
+     *  SPOTS and OWNERS starting at index BASE. */
+    ArenaBoard(BoardArena arena, int handle, byte[] spots, byte[] owners,
+               int base) {
+        super(spots, owners, base, Defaults.BOARD_SIZE);
+        _arena = arena;
+        _handle = handle;
+        _readonlyBoard = new ConstantBoard(this);
+    }
+
+    /** Return my arena. */
+    BoardArena arena() {
+        return _arena;
+    }
+
+    /** Return my handle in my arena. */
+    int handle() {
+        return _handle;
+    }
+
+    @Override
+    Board readonlyBoard() {
+        return _readonlyBoard;
+    }
+
+    @Override
+    void markUndo() {
+        _arena.pushUndo(_handle, this);
+    }
+
+    @Override
+    void undo() {
+        _arena.popUndo(_handle, this);
+    }
+
+    @Override
+    void clearUndo() {
+        _arena.clearUndo(_handle);
+    }
+
+    /** Returns an empty list: my undo history is kept by my arena.
+     * @return empty undo history */
+    @Override
+    public ArrayList<Board> getUndo() {
+        return new ArrayList<>();
+    }
+
+    /** The arena holding my contents. */
+    private final BoardArena _arena;
+    /** My handle in _arena. */
+    private final int _handle;
+    /** A read-only view of me. */
+    private final ConstantBoard _readonlyBoard;
+
+}
@@ -0,0 +1,171 @@
+package jump61;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static jump61.Side.*;
+
+/** Evaluates a stream of positions with the AI, in parallel.  Positions
+ *  are read one at a time and handed to a work-stealing pool, each of
+ *  whose threads keeps its own AI players.  Results are written in input
+ *  order, one line per position:
+ *      <number> <static value> <best move row> <best move column> <value>
+ *  or, for a position in which the game is over,
+ *      <number> <static value> over <winner>
+ *  or, if evaluating it fails,
+ *      <number> error <description>
+ *  where values are positive when favorable to Red.  Positions are
+ *  numbered from 1.  Results that finish early wait in a reordering
+ *  buffer with room for a fixed number of positions; reading stops while
+ *  it is full, so memory use does not grow with the input.
+ *  @author Will Harvey
+ */
+class BatchEvaluator {
+
+    /** Default number of positions that may be in progress or waiting to
+     *  be written at once, per thread. */
+    static final int WINDOW_PER_THREAD = 64;
+
+    /** Interval between progress reports, in nanoseconds. */
+    static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(2);
+
+    /** An evaluator that searches each position to DEPTH (0 for static
+     *  evaluation only) using THREADS threads, writes results to OUT,
+     *  and reports progress on PROGRESS, if not null. */
+    BatchEvaluator(int depth, int threads, PrintStream out,
+                   PrintStream progress) {
+        _depth = depth;
+        _threads = threads;
+        _window = threads * WINDOW_PER_THREAD;
+        _out = out;
+        _progress = progress;
+        _results = new String[_window];
+        _permits = new Semaphore(_window);
+    }
+
+    /** Have the AI consult and update CACHE, which remains owned by the
+     *  caller.  Must be called before run. */
+    void setCache(AnalysisCache cache) {
+        _cache = cache;
+    }
+
+    /** Evaluate all positions from INP, returning the number evaluated.
+     *  Throws a GameException if INP contains a malformed position. */
+    long run(PositionReader inp) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        ThreadLocal<AI[]> players = ThreadLocal.withInitial(() -> {
+            AI[] ai = new AI[Side.values().length];
+            ai[RED.ordinal()] = new AI(null, RED, 0);
+            ai[BLUE.ordinal()] = new AI(null, BLUE, 0);
+            ai[RED.ordinal()].setCache(_cache);
+            ai[BLUE.ordinal()].setCache(_cache);
+            return ai;
+        });
+        _startTime = _lastReport = System.nanoTime();
+        long submitted;
+        submitted = 0;
+        try {
+            for (Board b = inp.next(); b != null; b = inp.next()) {
+                _permits.acquireUninterruptibly();
+                long seq = submitted;
+                Board position = b;
+                pool.execute(() -> {
+                    String result;
+                    result = String.format("%d error failed", seq + 1);
+                    try {
+                        result = evaluate(seq + 1, position, players.get());
+                    } catch (RuntimeException excp) {
+                        result = String.format("%d error %s", seq + 1, excp);
+                    } catch (Error excp) {
+                        result = String.format("%d error %s", seq + 1, excp);
+                        throw excp;
+                    } finally {
+                        finish(seq, result);
+                    }
+                });
+                submitted += 1;
+            }
+        } finally {
+            _permits.acquireUninterruptibly(_window);
+            _permits.release(_window);
+            pool.shutdown();
+        }
+        report(true);
+        return submitted;
+    }
+
+    /** Return the result line for POSITION, which is number NUM in the
+     *  input, using PLAYERS (indexed by Side ordinal). */
+    private String evaluate(long num, Board position, AI[] players) {
+        int value = players[RED.ordinal()].staticEval(position, AI.RW);
+        Side winner = position.getWinner();
+        if (winner != null) {
+            return String.format("%d %d over %s", num, value, winner);
+        } else if (_depth == 0) {
+            return String.format("%d %d", num, value);
+        }
+        AI player = players[position.whoseMove().ordinal()];
+        int move = player.searchForMove(position, _depth);
+        return String.format("%d %d %s %d", num, value,
+                             position.moveString(move), player.foundValue());
+    }
+
+    /** Record RESULT as the result for position number SEQ (from 0),
+     *  writing it and any results that follow it if all earlier ones
+     *  have been written. */
+    private synchronized void finish(long seq, String result) {
+        _results[(int) (seq % _window)] = result;
+        while (true) {
+            int k = (int) (_written % _window);
+            if (_results[k] == null) {
+                break;
+            }
+            _out.println(_results[k]);
+            _results[k] = null;
+            _written += 1;
+            _permits.release();
+        }
+        report(false);
+    }
+
+    /** Report progress, if it is time to or if FORCE. */
+    private synchronized void report(boolean force) {
+        long now = System.nanoTime();
+        if (_progress == null
+            || (!force && now - _lastReport < PROGRESS_INTERVAL)) {
+            return;
+        }
+        _lastReport = now;
+        double seconds = (now - _startTime) / 1e9;
+        _progress.printf("%d positions in %.1f s (%.0f positions/sec)%n",
+                         _written, seconds, _written / seconds);
+    }
+
+    /** Search depth, or 0 for static evaluation only. */
+    private final int _depth;
+    /** Number of evaluation threads. */
+    private final int _threads;
+    /** Number of positions that may be in progress or waiting to be
+     *  written at once. */
+    private final int _window;
+    /** Destination of results. */
+    private final PrintStream _out;
+    /** Destination of progress reports, or null. */
+    private final PrintStream _progress;
+    /** Results waiting to be written, indexed by position number modulo
+     *  _window. */
+    private final String[] _results;
+    /** Free slots in _results. */
+    private final Semaphore _permits;
+    /** Number of results written. */
+    private long _written;
+    /** Starting time of the run and of the last report, from
+     *  System.nanoTime. */
+    private long _startTime, _lastReport;
+    /** Persistent store of search results, or null. */
+    private AnalysisCache _cache;
+
+}
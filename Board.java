@@ -2,11 +2,12 @@
 package jump61;
 
 import java.util.ArrayList;
-import java.util.ArrayDeque;
-import java.util.Formatter;
+import java.util.Arrays;
+import java.util.Random;
 
 import java.util.function.Consumer;
 
+import static jump61.GameException.error;
 import static jump61.Side.*;
 
 /** Represents the state of a Jump61 game.  Squares are indexed either by
@@ -16,6 +17,20 @@ import static jump61.Side.*;
  *
  *  A Board may be given a notifier---a Consumer<Board> whose
  *  .accept method is called whenever the Board's contents are changed.
+ *  It may also have any number of BoardListeners, which receive a
+ *  BoardChange describing what changed after each move, undo, set, or
+ *  copy, or after each outermost batch of them.  Listeners are not
+ *  copied with a Board's contents, and a Board with none does no work
+ *  to describe changes.
+ *
+ *  The contents of the squares are kept as two ranges of SLOT_LENGTH
+ *  bytes, starting at the same index of two arrays, and padded with
+ *  zeros as described in Kernels: the number of spots on each square and
+ *  the ordinal of the Side owning it (WHITE squares hold one spot).  A
+ *  Board normally has arrays of its own; an ArenaBoard's are shared with
+ *  the other boards of its BoardArena.  Counts
+ *  over the board, and the cascades of explosions that follow a move,
+ *  are computed by the Kernels selected for the run of the program.
  *
  *  @author Will Harvey
  */
@@ -28,13 +43,32 @@ class Board {
 
     /** An N x N board in initial configuration. */
     Board(int N) {
-        this();
-        _boardList = new ArrayList<Square>();
-        for (int k = 0; k < N * N; k++) {
-            _boardList.add(Square.square(WHITE, 1));
-        }
+        this(new byte[SLOT_LENGTH], new byte[SLOT_LENGTH], 0, N);
         _undoHistory = new ArrayList<Board>();
+    }
+
+    /** An N x N board in initial configuration, whose contents are kept
+     *  in SPOTS and OWNERS, starting at index BASE, and that has no undo
+     *  history of its own.  Only for use by subtypes. */
+    protected Board(byte[] spots, byte[] owners, int base, int N) {
+        this();
+        _spots = spots;
+        _owners = owners;
+        _base = base;
+        reset(N);
+    }
+
+    /** Set my contents to an N x N board in initial configuration,
+     *  without announcing the change or recording it for listeners. */
+    final void reset(int N) {
+        Arrays.fill(_spots, _base, _base + SLOT_LENGTH, (byte) 0);
+        Arrays.fill(_spots, _base, _base + N * N, (byte) 1);
+        Arrays.fill(_owners, _base, _base + SLOT_LENGTH, (byte) 0);
         _size = N;
+        _hash = SIZE_KEYS[N];
+        if (_clusters != null) {
+            _clusters.invalidate();
+        }
     }
 
     /** A board whose initial contents are copied from BOARD0, but whose
@@ -54,15 +88,15 @@ class Board {
      *  the undo history and sets the number of moves to 0. */
     void clear(int N) {
         copy(new Board(N));
-        announce();
     }
 
-    /** Copy the contents of BOARD into me. */
+    /** Copy the contents of BOARD into me, clearing my undo history.  My
+     *  notifier and listeners are unchanged, and are notified once. */
     void copy(Board board) {
-        this._boardList = deepCopyBoard(board.getBoard());
-        this._undoHistory = new ArrayList<>();
-        this._notifier = board._notifier;
-        this._size = board.size();
+        load(board);
+        clearUndo();
+        deliver();
+        announce();
     }
 
 
@@ -70,11 +104,65 @@ class Board {
          *  history. Assumes BOARD and I have the same size. */
     private void internalCopy(Board board) {
         assert size() == board.size();
-        this._boardList = deepCopyBoard(board.getBoard());
+        load(board);
         this._undoHistory = deepCopyUndo(board.getUndo());
         this._notifier = board._notifier;
     }
 
+    /** Copy the size and the contents of the squares of BOARD into me,
+     *  recording changes for my listeners. */
+    final void load(Board board) {
+        Board contents = board.contents();
+        load(contents._spots, contents._owners, contents._base,
+             contents._size, contents._hash);
+    }
+
+    /** Set my contents to those of a SIZE x SIZE board whose squares are
+     *  kept in SPOTS and OWNERS starting at index BASE, and whose
+     *  position hash is HASH, recording changes for my listeners. */
+    final void load(byte[] spots, byte[] owners, int base, int size,
+                    long hash) {
+        if (_spots == null) {
+            _spots = new byte[SLOT_LENGTH];
+            _owners = new byte[SLOT_LENGTH];
+        }
+        if (_listeners != null) {
+            if (size != _size) {
+                _change.markResized(size);
+            } else {
+                for (int n = 0; n < size * size; n += 1) {
+                    if (spots[base + n] != _spots[_base + n]
+                        || owners[base + n] != _owners[_base + n]) {
+                        _change.markDirty(n);
+                    }
+                }
+            }
+        }
+        System.arraycopy(spots, base, _spots, _base, SLOT_LENGTH);
+        System.arraycopy(owners, base, _owners, _base, SLOT_LENGTH);
+        _size = size;
+        _hash = hash;
+        if (_clusters != null) {
+            _clusters.invalidate();
+        }
+    }
+
+    /** Copy the contents of my squares and my position hash into SPOTS,
+     *  OWNERS, and HASHES, starting at index BASE of SPOTS and OWNERS and
+     *  index HASHINDEX of HASHES. */
+    final void store(byte[] spots, byte[] owners, int base, long[] hashes,
+                     int hashIndex) {
+        System.arraycopy(_spots, _base, spots, base, SLOT_LENGTH);
+        System.arraycopy(_owners, _base, owners, base, SLOT_LENGTH);
+        hashes[hashIndex] = _hash;
+    }
+
+    /** Return the Board holding my squares' contents: myself, unless I
+     *  am a view of another Board. */
+    Board contents() {
+        return this;
+    }
+
     /** Return the number of rows and of columns of THIS. */
     int size() {
         return _size;
@@ -90,15 +178,54 @@ class Board {
      *  squares in row 1 number 0 - size()-1, in row 2 numbered
      *  size() - 2*size() - 1, etc. */
     Square get(int n) {
-        return _boardList.get(n);
+        return Square.square(SIDES[_owners[_base + n]], _spots[_base + n]);
+    }
+
+    /** Returns the number of spots on square #N.  Unlike get, this reads
+     *  my squares directly, so that a view of another board (such as a
+     *  ConstantBoard) must be replaced by its contents() first. */
+    final int spots(int n) {
+        return _spots[_base + n];
+    }
+
+    /** Returns the ordinal of the Side owning square #N, reading my
+     *  squares directly, as for spots. */
+    final int owner(int n) {
+        return _owners[_base + n];
+    }
+
+    /** Returns the index of the clusters of my critical squares (those
+     *  of my contents(), if I am a view of another Board), which is kept
+     *  up to date from then on.  Like listeners, the index is not copied
+     *  with my contents. */
+    final ClusterIndex clusters() {
+        Board contents = contents();
+        if (contents != this) {
+            return contents.clusters();
+        }
+        if (_clusters == null) {
+            _clusters = new ClusterIndex(this);
+        }
+        return _clusters;
     }
 
     /** Returns the total number of spots on the board. */
     int numPieces() {
-        int numSpots = 0;
-        for (Square squares : _boardList) {
-            numSpots += squares.getSpots();
-        } return numSpots;
+        return KERNELS.sum(_spots, _base, _size * _size);
+    }
+
+    /** Returns the number of critical squares (those holding as many
+     *  spots as they have neighbors, so that one more spot makes them
+     *  explode) numbered from FROM up to TO. */
+    int numCritical(int from, int to) {
+        return KERNELS.countEqual(_spots, _base, LIMITS[_size], from, to);
+    }
+
+    /** Returns a hash of my size and the contents of my squares, suitable
+     *  for identifying positions.  Equal positions have equal hashes in
+     *  every run of the program. */
+    long positionHash() {
+        return _hash;
     }
 
     /** Returns the Side of the player who would be next to move.  If the
@@ -179,12 +306,7 @@ class Board {
 
     /** Return the number of squares of given SIDE. */
     int numOfSide(Side side) {
-        int number = 0;
-        for (Square square : _boardList) {
-            if (square.getSide().equals(side)) {
-                number++;
-            }
-        } return number;
+        return KERNELS.count(_owners, _base, _size * _size, side.ordinal());
     }
 
     /** Add a spot from PLAYER at row R, column C.  Assumes
@@ -201,19 +323,105 @@ class Board {
             throw new GameException("square location is invalid");
         } else if (!isLegal(player)) {
             throw new GameException("game is over or its not your turn");
+        } else if (_moveEvents && Events.enabled()) {
+            Events.MoveEvent event = new Events.MoveEvent();
+            event.begin();
+            int owned = event.isEnabled() ? numOfSide(player) : 0;
+            String failure = null;
+            try {
+                resolveMove(player, n);
+            } catch (RuntimeException | Error excp) {
+                failure = excp.toString();
+                throw excp;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.move = moveString(n);
+                    event.player = player.toString();
+                    event.size = size();
+                    event.explosions = _explosions;
+                    event.waves = _waves;
+                    event.flipped = numOfSide(player) - owned;
+                    event.failure = failure;
+                    event.commit();
+                }
+            }
         } else {
-            markUndo();
-            simpleAdd(player, n, 1);
-            if (overfull(n)) {
-                jump(n, player);
+            resolveMove(player, n);
+        }
+    }
+
+    /** Add a spot from PLAYER at square #N and resolve the resulting
+     *  cascade, assuming the move is legal. */
+    private void resolveMove(Side player, int n) {
+        markUndo();
+        placeSpot(player, n);
+        deliver();
+    }
+
+    /** Add a spot from PLAYER at square #N and resolve the resulting
+     *  cascade, assuming the move is legal, recording the move for my
+     *  listeners but not in my undo history, and not delivering it. */
+    private void placeSpot(Side player, int n) {
+        if (_listeners != null) {
+            _change.startMove(n, player);
+        }
+        _explosions = _waves = 0;
+        simpleAdd(player, n, 1);
+        if (overfull(n) && (_listeners != null || !resolveWaves(player))) {
+            _explosions = _waves = 0;
+            jump(n, player, 0);
+        }
+    }
+
+    /** Make the moves MOVES[FROM] to MOVES[TO - 1] (square numbers), each
+     *  by the side to move, with the same result as addSpot, but faster:
+     *  the moves are checked to be squares in one pass before any is
+     *  made, and then only for ownership as they are made; they are not
+     *  recorded in my undo history, except that if CHECKPOINT > 0, the
+     *  positions before every CHECKPOINT-th move (starting with the
+     *  first) are, so that undo returns to them; and my listeners
+     *  receive one BoardChange for all of them, and my notifier is called
+     *  once, at the end.  Throws a GameException if a move is not a
+     *  square, in which case none is made, or if a move is illegal or
+     *  the game is over before it, in which case I am left in the
+     *  position before it. */
+    void applyMoves(int[] moves, int from, int to, int checkpoint) {
+        int squares = _size * _size;
+        for (int k = from; k < to; k += 1) {
+            if (moves[k] < 0 || moves[k] >= squares) {
+                throw error("move #%d is not a square: %d", k, moves[k]);
             }
         }
+        Side player = whoseMove();
+        beginBatch();
+        try {
+            for (int k = from; k < to; k += 1) {
+                int n = moves[k], owner = _owners[_base + n];
+                if (owner != WHITE.ordinal() && owner != player.ordinal()) {
+                    throw error("move #%d is invalid: %s", k, moveString(n));
+                } else if (getWinner() != null) {
+                    throw error("game is over before move #%d", k);
+                }
+                if (checkpoint > 0 && (k - from) % checkpoint == 0) {
+                    markUndo();
+                }
+                placeSpot(player, n);
+                player = player.opposite();
+            }
+        } finally {
+            endBatch();
+            announce();
+        }
     }
 
     /** Set the square at row R, column C to NUM spots (0 <= NUM), and give
-     *  it color PLAYER if NUM > 0 (otherwise, white). */
+     *  it color PLAYER if NUM > 0.  Otherwise, or if PLAYER is WHITE, the
+     *  square becomes unoccupied: white, with 1 spot (as Square.square
+     *  and a new Board have it). */
     void set(int r, int c, int num, Side player) {
         internalSet(r, c, num, player);
+        deliver();
         announce();
     }
 
@@ -225,13 +433,39 @@ class Board {
     }
 
     /** Set the square #N to NUM spots (0 <= NUM), and give it color PLAYER
-     *  if NUM > 0 (otherwise, white). Does not announce changes. */
-    private void internalSet(int n, int num, Side player) {
-        if (num > 0) {
-            _boardList.set(n, Square.square(player, num));
+     *  if NUM > 0 (otherwise, white with 1 spot, as for set). Does not
+     *  announce changes. */
+    void internalSet(int n, int num, Side player) {
+        int p = _base + n;
+        int owner = _owners[p], spots = _spots[p];
+        if (num > 0 && player != WHITE) {
+            _owners[p] = (byte) player.ordinal();
+            _spots[p] = (byte) num;
         } else {
-            _boardList.set(n, Square.square(WHITE, num));
+            _owners[p] = (byte) WHITE.ordinal();
+            _spots[p] = 1;
         }
+        if (owner != _owners[p] || spots != _spots[p]) {
+            _hash ^= squareKey(n, owner, spots)
+                ^ squareKey(n, _owners[p], _spots[p]);
+            if (_listeners != null) {
+                _change.markDirty(n);
+            }
+            if (_clusters != null) {
+                int limit = neighbors(n);
+                _clusters.changed(n, spots == limit, _spots[p] == limit);
+            }
+        }
+    }
+
+    /** Returns the hash key for square #N owned by the Side with ordinal
+     *  OWNER and holding SPOTS spots.  Unoccupied squares have key 0, so
+     *  that an initial board hashes to the key for its size alone. */
+    private static long squareKey(int n, int owner, int spots) {
+        if (owner == WHITE.ordinal()) {
+            return 0;
+        }
+        return SQUARE_KEYS[n][owner * SPOT_KEYS + spots];
     }
 
 
@@ -241,13 +475,29 @@ class Board {
     void undo() {
         int lastMove = _undoHistory.size() - 1;
         internalCopy(_undoHistory.get(lastMove));
+        deliver();
     }
 
     /** Record the beginning of a move in the undo history. */
-    private void markUndo() {
+    void markUndo() {
         _undoHistory.add(new Board(this));
     }
 
+    /** Clear my undo history. */
+    void clearUndo() {
+        _undoHistory = new ArrayList<>();
+    }
+
+    /** Set my contents to those of a SIZE x SIZE board whose squares are
+     *  kept in SPOTS and OWNERS starting at index BASE, and whose
+     *  position hash is HASH, as for undo: my listeners are notified,
+     *  but not my notifier. */
+    final void restore(byte[] spots, byte[] owners, int base, int size,
+                       long hash) {
+        load(spots, owners, base, size, hash);
+        deliver();
+    }
+
     /** Add DELTASPOTS spots of side PLAYER to row R, column C,
      *  updating counts of numbers of squares of each color. */
     private void simpleAdd(Side player, int r, int c, int deltaSpots) {
@@ -257,52 +507,127 @@ class Board {
     /** Add DELTASPOTS spots of color PLAYER to square #N,
      *  updating counts of numbers of squares of each color. */
     private void simpleAdd(Side player, int n, int deltaSpots) {
-        internalSet(n, deltaSpots + get(n).getSpots(), player);
+        internalSet(n, deltaSpots + _spots[_base + n], player);
+    }
+
+    /** Number of bits of a work-queue entry holding a square number. */
+    private static final int WAVE_SHIFT = 8;
+
+    /** Used in jump to keep track of squares needing processing, as a
+     *  circular queue of _workSize entries starting at _workHead.  Each
+     *  entry holds the number of a square to receive a spot, plus the
+     *  wave of explosions in which that square would explode, shifted
+     *  left by WAVE_SHIFT.  Allocated here to cut down on
+     *  allocations. */
+    private int[] _workQueue = new int[16];
+    /** Index of the first entry in _workQueue. */
+    private int _workHead;
+    /** Number of entries in _workQueue. */
+    private int _workSize;
+    /** Wave number to record in entries added to _workQueue. */
+    private int _pushWave;
+    /** Number of explosions in the last move. */
+    private int _explosions;
+    /** Number of waves of explosions in the last move. */
+    private int _waves;
+
+    /** Add square #N to the end of _workQueue, as a square that would
+     *  explode in wave _pushWave. */
+    private void enqueue(int n) {
+        if (_workSize == _workQueue.length) {
+            int[] queue = new int[2 * _workSize];
+            for (int k = 0; k < _workSize; k += 1) {
+                queue[k] = _workQueue[(_workHead + k) % _workQueue.length];
+            }
+            _workQueue = queue;
+            _workHead = 0;
+        }
+        _workQueue[(_workHead + _workSize) % _workQueue.length] =
+            n | _pushWave << WAVE_SHIFT;
+        _workSize += 1;
     }
 
-    /** Used in jump to keep track of squares needing processing.  Allocated
-     *  here to cut down on allocations. */
-    private final ArrayDeque<Integer> _workQueue = new ArrayDeque<>();
+    /** Remove and return the first entry of _workQueue. */
+    private int dequeue() {
+        int entry = _workQueue[_workHead];
+        _workHead = (_workHead + 1) % _workQueue.length;
+        _workSize -= 1;
+        return entry;
+    }
 
     /** Do all jumping on this board, assuming that initially, S is the only
-     *  square that might be over-full.
+     *  square that might be over-full, and that it explodes in wave WAVE
+     *  of the current move.
      *  @param player player
-     *  @param S square*/
-    private void jump(int S, Side player) {
+     *  @param S square
+     *  @param wave wave */
+    private void jump(int S, Side player, int wave) {
+        _explosions += 1;
+        _waves = Math.max(_waves, wave + 1);
+        if (_listeners != null) {
+            _change.explode(S, wave);
+        }
+        _pushWave = wave + 1;
         neighborList(S);
         internalSet(S, 1, player);
         if (getWinner() != null) {
-            _workQueue.clear();
+            _workSize = 0;
         }
-        while (!_workQueue.isEmpty()) {
-            int s = _workQueue.pop();
+        while (_workSize > 0) {
+            int entry = dequeue();
+            int s = entry & ((1 << WAVE_SHIFT) - 1);
             simpleAdd(player,  s, 1);
             if (overfull(s)) {
-                jump(s, player);
+                jump(s, player, entry >>> WAVE_SHIFT);
+            }
+        }
+    }
+
+    /** Resolve the cascade of explosions on this board, moving for
+     *  PLAYER, after a spot has been added to an overfull square, by
+     *  exploding all overfull squares at once in each wave.  This gives
+     *  the same result as jump (the order of explosions does not matter)
+     *  unless PLAYER wins during the cascade, when jump stops at the
+     *  first explosion that wins.  In that case, return false without
+     *  changing me; otherwise, return true.  Does not record changes for
+     *  listeners. */
+    private boolean resolveWaves(Side player) {
+        int n = _size * _size;
+        if (_over == null) {
+            _waveSpots = new byte[SLOT_LENGTH];
+            _waveOwners = new byte[SLOT_LENGTH];
+            _over = new byte[SLOT_LENGTH + 2 * OVER_MARGIN];
+        }
+        byte[] spots = _waveSpots, owners = _waveOwners;
+        System.arraycopy(_spots, _base, spots, 0, SLOT_LENGTH);
+        System.arraycopy(_owners, _base, owners, 0, SLOT_LENGTH);
+        byte[] limits = LIMITS[_size];
+        int exploding;
+        while ((exploding = KERNELS.markOverfull(spots, limits, _over,
+                                                 OVER_MARGIN, n)) > 0) {
+            _explosions += exploding;
+            _waves += 1;
+            KERNELS.spread(spots, owners, _over, OVER_MARGIN, limits,
+                           HAS_LEFT[_size], HAS_RIGHT[_size], _size,
+                           player.ordinal());
+            if (KERNELS.count(owners, 0, n, player.ordinal()) == n) {
+                return false;
+            }
+        }
+        for (int k = 0; k < n; k += 1) {
+            if (spots[k] != _spots[_base + k]
+                || owners[k] != _owners[_base + k]) {
+                internalSet(k, spots[k], player);
             }
         }
+        return true;
     }
 
     /** Returns my dumped representation. */
     @Override
     public String toString() {
-        Formatter out = new Formatter();
-        out.format("===");
-        for (int i = 0; i < size() * size(); i++) {
-            if (i % size() == 0) {
-                out.format("\n");
-                out.format("    ");
-            }
-            out.format("%d", _boardList.get(i).getSpots());
-            if (_boardList.get(i).getSide().equals(RED)) {
-                out.format("r ");
-            } else if (_boardList.get(i).getSide().equals(BLUE)) {
-                out.format("b ");
-            } else {
-                out.format("- ");
-            }
-        } out.format("\n");
-        out.format("===");
+        StringBuilder out = new StringBuilder(8 + size() * (4 + 3 * size()));
+        BoardCodec.write(this, out);
         return out.toString();
     }
 
@@ -310,15 +635,8 @@ class Board {
      *  textual display, with row and column numbers.  This is distinct
      *  from the dumped representation (returned by toString). */
     public String toDisplayString() {
-        String[] lines = toString().trim().split("\\R");
-        Formatter out = new Formatter();
-        for (int i = 1; i + 1 < lines.length; i += 1) {
-            out.format("%2d %s%n", i, lines[i].trim());
-        }
-        out.format("  ");
-        for (int i = 1; i <= size(); i += 1) {
-            out.format("%3d", i);
-        }
+        StringBuilder out = new StringBuilder(6 * (size() + 1) * size());
+        BoardCodec.writeDisplay(this, out);
         return out.toString();
     }
 
@@ -344,7 +662,7 @@ class Board {
 
     /** Returns the number of neighbors of square #N. */
     int neighbors(int n) {
-        return neighbors(row(n), col(n));
+        return LIMITS[size()][n];
     }
 
     @Override
@@ -353,10 +671,15 @@ class Board {
             return false;
         } else {
             Board B = (Board) obj;
-            return this._undoHistory.equals(B._undoHistory)
+            return this._size == B._size
+                    && Arrays.equals(_spots, _base, _base + SLOT_LENGTH,
+                                     B._spots, B._base,
+                                     B._base + SLOT_LENGTH)
+                    && Arrays.equals(_owners, _base, _base + SLOT_LENGTH,
+                                     B._owners, B._base,
+                                     B._base + SLOT_LENGTH)
                     && this._notifier.equals(B._notifier)
-                    && this._boardList.equals(B._boardList)
-                    && this._size == B._size;
+                    && this.getUndo().equals(B.getUndo());
         }
     }
 
@@ -365,26 +688,68 @@ class Board {
         return numPieces();
     }
 
+    /** Record a MoveEvent for each move made on me iff ON (and events
+     *  are enabled).  Initially, and in copies, this is off, so that
+     *  only a game's own board records its moves, and not the copies on
+     *  which the AI searches. */
+    void setMoveEvents(boolean on) {
+        _moveEvents = on;
+    }
+
     /** Set my notifier to NOTIFY. */
     public void setNotifier(Consumer<Board> notify) {
         _notifier = notify;
         announce();
     }
 
-    /** Take any action that has been set for a change in my state. */
-    private void announce() {
-        _notifier.accept(this);
+    /** Add LISTENER to the listeners to my changes. */
+    void addListener(BoardListener listener) {
+        if (_listeners == null) {
+            _listeners = new ArrayList<>();
+            _change = new BoardChange();
+        }
+        _listeners.add(listener);
     }
 
-    /** Performs a deepcopy of an ArrayList of Squares.
-     * @return ArrayList of squares
-     * @param lst ArrayList*/
-    private ArrayList<Square> deepCopyBoard(ArrayList<Square> lst) {
-        if (lst == null) {
-            return null;
-        } else {
-            return new ArrayList<>(lst);
+    /** Remove LISTENER from the listeners to my changes, if present. */
+    void removeListener(BoardListener listener) {
+        if (_listeners != null) {
+            _listeners.remove(listener);
+            if (_listeners.isEmpty()) {
+                _listeners = null;
+            }
+        }
+    }
+
+    /** Start a batch of changes, which are delivered to my listeners
+     *  together, as one BoardChange, at the matching endBatch.  Batches
+     *  may nest; changes are delivered at the end of the outermost. */
+    void beginBatch() {
+        _batchDepth += 1;
+    }
+
+    /** End the batch of changes started by the matching beginBatch. */
+    void endBatch() {
+        assert _batchDepth > 0;
+        _batchDepth -= 1;
+        deliver();
+    }
+
+    /** Deliver the changes recorded since the last delivery to my
+     *  listeners, unless a batch is in progress. */
+    private void deliver() {
+        if (_listeners == null || _batchDepth > 0 || _change.isEmpty()) {
+            return;
+        }
+        for (int k = 0; k < _listeners.size(); k += 1) {
+            _listeners.get(k).boardChanged(this, _change);
         }
+        _change.clear();
+    }
+
+    /** Take any action that has been set for a change in my state. */
+    private void announce() {
+        _notifier.accept(this);
     }
 
     /** Performs a deepcopy of an ArrayList of Boards.
@@ -402,13 +767,18 @@ class Board {
      * @return true if overfull false if not
      * @param n int*/
     public boolean overfull(int n) {
-        return _boardList.get(n).getSpots() > neighbors(n);
+        return _spots[_base + n] > LIMITS[_size][n];
     }
 
-    /** Getter method for _board.
+    /** Returns a list of my squares in order of square number.  Changes
+     *  to the list do not affect me.
      * @return current board */
     public ArrayList<Square> getBoard() {
-        return _boardList;
+        ArrayList<Square> squares = new ArrayList<>(size() * size());
+        for (int n = 0; n < size() * size(); n += 1) {
+            squares.add(get(n));
+        }
+        return squares;
     }
 
     /** Getter Method for _undoHistory.
@@ -422,41 +792,113 @@ class Board {
     public void neighborList(int n) {
         if (neighbors(n) == 2) {
             if (n == 0) {
-                _workQueue.add(1);
-                _workQueue.add(size());
+                enqueue(1);
+                enqueue(size());
             } else if (n == size() - 1) {
-                _workQueue.add(n - 1);
-                _workQueue.add(n + size());
+                enqueue(n - 1);
+                enqueue(n + size());
             } else if (n == size() * size() - 1) {
-                _workQueue.add(n - 1);
-                _workQueue.add(n - size());
+                enqueue(n - 1);
+                enqueue(n - size());
             } else {
-                _workQueue.add(n + 1);
-                _workQueue.add(n - size());
+                enqueue(n + 1);
+                enqueue(n - size());
             }
         } else if (neighbors(n) == 3) {
             if (n % size() == 0) {
-                _workQueue.add(n + 1);
-                _workQueue.add(n + size());
-                _workQueue.add(n - size());
+                enqueue(n + 1);
+                enqueue(n + size());
+                enqueue(n - size());
             } else if (n < size()) {
-                _workQueue.add(n + 1);
-                _workQueue.add(n - 1);
-                _workQueue.add(n + size());
+                enqueue(n + 1);
+                enqueue(n - 1);
+                enqueue(n + size());
             } else if (n % size() == size() - 1) {
-                _workQueue.add(n - 1);
-                _workQueue.add(n + size());
-                _workQueue.add(n - size());
+                enqueue(n - 1);
+                enqueue(n + size());
+                enqueue(n - size());
             } else {
-                _workQueue.add(n + 1);
-                _workQueue.add(n - size());
-                _workQueue.add(n - 1);
+                enqueue(n + 1);
+                enqueue(n - size());
+                enqueue(n - 1);
             }
         } else {
-            _workQueue.add(n + 1);
-            _workQueue.add(n + size());
-            _workQueue.add(n - size());
-            _workQueue.add(n - 1);
+            enqueue(n + 1);
+            enqueue(n + size());
+            enqueue(n - size());
+            enqueue(n - 1);
+        }
+    }
+
+    /** Length of the ranges of the arrays holding the contents of the
+     *  squares of any Board. */
+    static final int SLOT_LENGTH =
+        Kernels.paddedLength(Defaults.MAX_BOARD_SIZE
+                             * Defaults.MAX_BOARD_SIZE);
+
+    /** Number of hash keys reserved for each side on one square (indexed
+     *  by number of spots). */
+    private static final int SPOT_KEYS = 10;
+
+    /** Hash keys for each board size. */
+    private static final long[] SIZE_KEYS =
+        new long[Defaults.MAX_BOARD_SIZE + 1];
+
+    /** Hash keys for each square number and square contents. */
+    private static final long[][] SQUARE_KEYS =
+        new long[Defaults.MAX_BOARD_SIZE * Defaults.MAX_BOARD_SIZE]
+                [Side.values().length * SPOT_KEYS];
+
+    /** The Sides, indexed by ordinal. */
+    private static final Side[] SIDES = Side.values();
+
+    /** The kernels used to scan and update squares. */
+    private static final Kernels KERNELS = Kernels.get();
+
+    /** Number of entries of _over before and after those for squares,
+     *  which hold zeros so that the neighbors of edge squares may be
+     *  read without bounds checks. */
+    private static final int OVER_MARGIN = Defaults.MAX_BOARD_SIZE;
+
+    /** For each board size N, the number of neighbors of each square, as
+     *  a padded array (padded with Byte.MAX_VALUE, so that padding is
+     *  never overfull). */
+    private static final byte[][] LIMITS =
+        new byte[Defaults.MAX_BOARD_SIZE + 1][];
+    /** For each board size N, 1 for each square having a neighbor to its
+     *  left in the same row, and 0 otherwise, as a padded array. */
+    private static final byte[][] HAS_LEFT =
+        new byte[Defaults.MAX_BOARD_SIZE + 1][];
+    /** For each board size N, 1 for each square having a neighbor to its
+     *  right in the same row, and 0 otherwise, as a padded array. */
+    private static final byte[][] HAS_RIGHT =
+        new byte[Defaults.MAX_BOARD_SIZE + 1][];
+
+    static {
+        for (int N = 1; N <= Defaults.MAX_BOARD_SIZE; N += 1) {
+            LIMITS[N] = new byte[SLOT_LENGTH];
+            HAS_LEFT[N] = new byte[SLOT_LENGTH];
+            HAS_RIGHT[N] = new byte[SLOT_LENGTH];
+            Arrays.fill(LIMITS[N], Byte.MAX_VALUE);
+            for (int n = 0; n < N * N; n += 1) {
+                int r = n / N + 1, c = n % N + 1;
+                LIMITS[N][n] = (byte) ((r > 1 ? 1 : 0) + (c > 1 ? 1 : 0)
+                                       + (r < N ? 1 : 0) + (c < N ? 1 : 0));
+                HAS_LEFT[N][n] = (byte) (c > 1 ? 1 : 0);
+                HAS_RIGHT[N][n] = (byte) (c < N ? 1 : 0);
+            }
+        }
+    }
+
+    static {
+        Random keys = new Random(0x6a756d703631L);
+        for (int k = 0; k < SIZE_KEYS.length; k += 1) {
+            SIZE_KEYS[k] = keys.nextLong();
+        }
+        for (long[] square : SQUARE_KEYS) {
+            for (int k = 0; k < square.length; k += 1) {
+                square[k] = keys.nextLong();
+            }
         }
     }
 
@@ -469,13 +911,41 @@ class Board {
     /** Use _notifier.accept(B) to announce changes to this board. */
     private Consumer<Board> _notifier;
 
+    /** True iff moves made on me are recorded as MoveEvents. */
+    private boolean _moveEvents;
+
     /** List of undo history. */
     private ArrayList<Board> _undoHistory;
 
     /** Size of board (# of rows/columns. */
     private int _size;
 
-    /** Current Board. */
-    private ArrayList<Square> _boardList;
+    /** Hash of my size and contents, maintained by internalSet. */
+    private long _hash;
+
+    /** Number of spots on each square, from index _base. */
+    private byte[] _spots;
+    /** Ordinal of the Side owning each square, from index _base. */
+    private byte[] _owners;
+    /** Index of square #0 in _spots and _owners. */
+    private int _base;
+
+    /** Scratch copies of _spots and _owners used by resolveWaves, or
+     *  null if not yet needed. */
+    private byte[] _waveSpots, _waveOwners;
+    /** Squares exploding in the current wave of resolveWaves (1 for
+     *  exploding), starting at index OVER_MARGIN, or null. */
+    private byte[] _over;
+
+    /** Listeners to my changes, or null if there are none. */
+    private ArrayList<BoardListener> _listeners;
+    /** Changes not yet delivered to _listeners, or null if I have never
+     *  had listeners. */
+    private BoardChange _change;
+    /** Number of batches in progress. */
+    private int _batchDepth;
+    /** Index of my critical clusters, or null if none has been asked
+     *  for. */
+    private ClusterIndex _clusters;
 
 }
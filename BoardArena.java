@@ -0,0 +1,173 @@
+package jump61;
+
+import static jump61.GameException.error;
+
+/** A fixed number of boards whose contents are kept together in a few
+ *  large arrays, for programs that use many boards at once or in quick
+ *  succession (such as searches and servers), so that their memory is
+ *  allocated once, and does not become garbage as games and searches
+ *  come and go.
+ *
+ *  Each board occupies a slot, identified by a handle between 0 and
+ *  capacity() - 1, which holds its contents and the contents before each
+ *  of its last undoDepth() moves, so that the memory used by each board
+ *  is fixed.  Making more moves than that without undoing them is an
+ *  error.  Slots are
+ *  obtained with allocate and returned with release, and each is viewed
+ *  as a Board by an ArenaBoard.  Allocation and release may be done from
+ *  any thread; an allocated board is used as any other Board.
+ *  @author Will Harvey
+ */
+class BoardArena {
+
+    /** An arena of CAPACITY boards, each of which can undo its last
+     *  UNDODEPTH moves. */
+    BoardArena(int capacity, int undoDepth) {
+        if (capacity < 0 || undoDepth < 0
+            || (long) capacity * (undoDepth + 1) * Board.SLOT_LENGTH
+               > Integer.MAX_VALUE) {
+            throw error("bad board arena dimensions: %d x %d",
+                        capacity, undoDepth);
+        }
+        _undoDepth = undoDepth;
+        _frames = undoDepth + 1;
+        _spots = new byte[capacity * _frames * Board.SLOT_LENGTH];
+        _owners = new byte[_spots.length];
+        _hashes = new long[capacity * _frames];
+        _undoCount = new int[capacity];
+        _free = new int[capacity];
+        _allocated = new boolean[capacity];
+        _boards = new ArenaBoard[capacity];
+        for (int k = 0; k < capacity; k += 1) {
+            _free[k] = capacity - 1 - k;
+            _boards[k] = new ArenaBoard(this, k, _spots, _owners,
+                                        base(k, 0));
+        }
+        _numFree = capacity;
+    }
+
+    /** Return the number of boards I hold. */
+    int capacity() {
+        return _boards.length;
+    }
+
+    /** Return the number of moves each of my boards can undo. */
+    int undoDepth() {
+        return _undoDepth;
+    }
+
+    /** Return the number of my boards not currently allocated. */
+    synchronized int available() {
+        return _numFree;
+    }
+
+    /** Allocate one of my boards, set it to an N x N board in initial
+     *  configuration, and return its handle, or return -1 if all my
+     *  boards are allocated. */
+    synchronized int allocate(int N) {
+        if (_numFree == 0) {
+            return -1;
+        }
+        _numFree -= 1;
+        int handle = _free[_numFree];
+        _allocated[handle] = true;
+        _undoCount[handle] = 0;
+        _boards[handle].reset(N);
+        return handle;
+    }
+
+    /** Return the board with handle HANDLE. */
+    ArenaBoard board(int handle) {
+        return _boards[handle];
+    }
+
+    /** Return the board with handle HANDLE to me.  The caller must have
+     *  removed any listeners and notifier it gave the board. */
+    synchronized void release(int handle) {
+        assert _allocated[handle];
+        _allocated[handle] = false;
+        _free[_numFree] = handle;
+        _numFree += 1;
+    }
+
+    /** Return a board with the contents of BOARD (but no undo history):
+     *  one of mine, if any is free, and otherwise a new Board.  Return it
+     *  with release(Board). */
+    Board copy(Board board) {
+        int handle = allocate(board.size());
+        if (handle < 0) {
+            return new Board(board);
+        }
+        ArenaBoard result = board(handle);
+        result.load(board);
+        return result;
+    }
+
+    /** Release BOARD, if it is one of mine. */
+    void release(Board board) {
+        if (board instanceof ArenaBoard
+            && ((ArenaBoard) board).arena() == this) {
+            release(((ArenaBoard) board).handle());
+        }
+    }
+
+    /** Record the contents of BOARD, with handle HANDLE, in its undo
+     *  history.  Throws IndexOutOfBoundsException if the history is
+     *  full. */
+    void pushUndo(int handle, Board board) {
+        int frame = _undoCount[handle] + 1;
+        if (frame > _undoDepth) {
+            throw new IndexOutOfBoundsException("undo history full");
+        }
+        _undoCount[handle] = frame;
+        board.store(_spots, _owners, base(handle, frame), _hashes,
+                    handle * _frames + frame);
+    }
+
+    /** Restore BOARD, with handle HANDLE, to the last contents recorded
+     *  in its undo history, removing them from the history. */
+    void popUndo(int handle, Board board) {
+        if (_undoCount[handle] == 0) {
+            throw new IndexOutOfBoundsException("no moves to undo");
+        }
+        int frame = _undoCount[handle];
+        _undoCount[handle] -= 1;
+        board.restore(_spots, _owners, base(handle, frame), board.size(),
+                      _hashes[handle * _frames + frame]);
+    }
+
+    /** Clear the undo history of the board with handle HANDLE. */
+    void clearUndo(int handle) {
+        _undoCount[handle] = 0;
+    }
+
+    /** Return the index in _spots and _owners of frame FRAME of the slot
+     *  with handle HANDLE: frame 0 holds the board's contents, and frames
+     *  1 to _undoDepth, its undo history. */
+    private int base(int handle, int frame) {
+        return (handle * _frames + frame) * Board.SLOT_LENGTH;
+    }
+
+    /** Number of moves each board can undo. */
+    private final int _undoDepth;
+    /** Number of frames in each slot. */
+    private final int _frames;
+    /** Spots on the squares of every frame of every slot. */
+    private final byte[] _spots;
+    /** Owners of the squares of every frame of every slot. */
+    private final byte[] _owners;
+    /** Position hashes of every frame of every slot. */
+    private final long[] _hashes;
+    /** For each slot, the number of entries in its undo history, which
+     *  occupy frames 1 to that number, oldest first. */
+    private final int[] _undoCount;
+    /** The handles of the free slots, in _free[0 .. _numFree-1]. */
+    private final int[] _free;
+    /** Number of free slots. */
+    private int _numFree;
+    /** For each slot, true iff it is allocated. */
+    private final boolean[] _allocated;
+    /** The views of my slots, indexed by handle. */
+    private final ArenaBoard[] _boards;
+
+}
@@ -0,0 +1,102 @@
+package jump61;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of board arenas.
+ *  @author Will Harvey
+ */
+public class BoardArenaTest {
+
+    @Test
+    public void testAllocate() {
+        BoardArena arena = new BoardArena(2, 4);
+        int a = arena.allocate(4), b = arena.allocate(6);
+        assertEquals(-1, arena.allocate(4));
+        assertEquals(0, arena.available());
+        assertEquals(new Board(4).toString(), arena.board(a).toString());
+        assertEquals(new Board(6).toString(), arena.board(b).toString());
+        assertEquals(new Board(6).positionHash(),
+                     arena.board(b).positionHash());
+        arena.board(a).addSpot(RED, 5);
+        arena.release(a);
+        assertEquals(1, arena.available());
+        int c = arena.allocate(4);
+        assertEquals(a, c);
+        assertEquals(new Board(4), new Board(arena.board(c)));
+        Board copy = arena.copy(arena.board(b));
+        assertFalse(copy instanceof ArenaBoard);
+        assertEquals(arena.board(b).toString(), copy.toString());
+    }
+
+    @Test
+    public void testMatchesBoard() {
+        BoardArena arena = new BoardArena(1, 128);
+        Random random = new Random(41);
+        for (int game = 0; game < 50; game += 1) {
+            int size = 2 + game % 6;
+            Board plain = new Board(size);
+            Board board = arena.copy(plain);
+            int moves;
+            moves = 0;
+            while (plain.getWinner() == null) {
+                if (moves == arena.undoDepth()
+                    || (moves > 0 && random.nextInt(4) == 0)) {
+                    plain.undo();
+                    board.undo();
+                    moves -= 1;
+                } else {
+                    Side player = plain.whoseMove();
+                    int n;
+                    do {
+                        n = random.nextInt(size * size);
+                    } while (!plain.isLegal(player, n));
+                    plain.addSpot(player, n);
+                    board.addSpot(player, n);
+                    moves += 1;
+                }
+                assertEquals(plain.toString(), board.toString());
+                assertEquals(plain.positionHash(), board.positionHash());
+                assertEquals(plain.numPieces(), board.numPieces());
+            }
+            arena.release(board);
+        }
+    }
+
+    @Test
+    public void testUndoDepth() {
+        BoardArena arena = new BoardArena(1, 2);
+        Board board = arena.board(arena.allocate(4));
+        Board[] positions = new Board[3];
+        for (int k = 0; k < positions.length; k += 1) {
+            positions[k] = new Board(board);
+            if (k < 2) {
+                board.addSpot(board.whoseMove(), k);
+            }
+        }
+        try {
+            board.addSpot(board.whoseMove(), 2);
+            fail("made more moves than the arena can undo");
+        } catch (IndexOutOfBoundsException excp) {
+            assertEquals(positions[2].toString(), board.toString());
+        }
+        board.undo();
+        assertEquals(positions[1].toString(), board.toString());
+        board.undo();
+        assertEquals(positions[0].toString(), board.toString());
+        try {
+            board.undo();
+            fail("undid more moves than the arena holds");
+        } catch (IndexOutOfBoundsException excp) {
+            assertEquals(positions[0].toString(), board.toString());
+        }
+        board.addSpot(board.whoseMove(), 3);
+        board.undo();
+        assertEquals(positions[0].toString(), board.toString());
+    }
+
+}
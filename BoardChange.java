@@ -0,0 +1,163 @@
+package jump61;
+
+import java.util.BitSet;
+
+/** A description of changes to a Board, as delivered to BoardListeners:
+ *  the set of squares whose contents changed, and for a move, the move,
+ *  the player who made it, and its cascade of explosions.
+ *
+ *  The explosions are grouped into waves.  Wave 0 is the explosion (if
+ *  any) of the square on which the move was made; each explosion in wave
+ *  k + 1 was caused by a spot thrown by an explosion in wave k.
+ *  Explosions are numbered from 0 in the order in which they happened,
+ *  which puts the explosions of each wave after those of the one before.
+ *
+ *  Changes made within a batch (see Board.beginBatch) are delivered
+ *  together: the set of changed squares is their union, and the move,
+ *  player, and explosions are those of the last move.
+ *
+ *  A BoardChange is owned by its Board, which clears and reuses it after
+ *  each delivery, so that reporting changes does not allocate once the
+ *  arrays recording explosions have grown large enough.
+ *  @author Will Harvey
+ */
+class BoardChange {
+
+    /** Return the set of numbers of squares whose contents changed.  The
+     *  caller must not modify it. */
+    BitSet dirty() {
+        return _dirty;
+    }
+
+    /** Return true iff the contents of square #N changed. */
+    boolean isDirty(int n) {
+        return _dirty.get(n);
+    }
+
+    /** Return true iff the size of the board changed (in which case all
+     *  squares are dirty). */
+    boolean resized() {
+        return _resized;
+    }
+
+    /** Return the number of moves made. */
+    int numMoves() {
+        return _numMoves;
+    }
+
+    /** Return the square number of the last move made, or -1 if
+     *  none. */
+    int move() {
+        return _move;
+    }
+
+    /** Return the player who made the last move, or null if none. */
+    Side mover() {
+        return _mover;
+    }
+
+    /** Return the number of explosions caused by the last move. */
+    int numExplosions() {
+        return _numExplosions;
+    }
+
+    /** Return the number of the square that exploded in explosion #K. */
+    int explosion(int k) {
+        assert k < _numExplosions;
+        return _explosions[k];
+    }
+
+    /** Return the number of waves of explosions caused by the last
+     *  move. */
+    int numWaves() {
+        return _numWaves;
+    }
+
+    /** Return the number of the first explosion in wave W, where
+     *  0 <= W <= numWaves().  The explosions in wave W are numbered
+     *  waveStart(W) to waveStart(W + 1) - 1. */
+    int waveStart(int w) {
+        return w == _numWaves ? _numExplosions : _waveStarts[w];
+    }
+
+    /** Return true iff this records no changes. */
+    boolean isEmpty() {
+        return _numMoves == 0 && _dirty.isEmpty();
+    }
+
+    /** Record that square #N changed. */
+    void markDirty(int n) {
+        _dirty.set(n);
+    }
+
+    /** Record that the board was resized to N x N. */
+    void markResized(int N) {
+        _resized = true;
+        _dirty.set(0, N * N);
+    }
+
+    /** Record the start of a move by PLAYER on square #N. */
+    void startMove(int n, Side player) {
+        _numMoves += 1;
+        _move = n;
+        _mover = player;
+        _numExplosions = _numWaves = 0;
+    }
+
+    /** Record the explosion of square #N in wave WAVE of the current
+     *  move. */
+    void explode(int n, int wave) {
+        if (wave == _numWaves) {
+            if (_numWaves == _waveStarts.length) {
+                _waveStarts = grow(_waveStarts);
+            }
+            _waveStarts[_numWaves] = _numExplosions;
+            _numWaves += 1;
+        }
+        assert wave == _numWaves - 1;
+        if (_numExplosions == _explosions.length) {
+            _explosions = grow(_explosions);
+        }
+        _explosions[_numExplosions] = n;
+        _numExplosions += 1;
+    }
+
+    /** Forget all recorded changes. */
+    void clear() {
+        _dirty.clear();
+        _resized = false;
+        _numMoves = _numExplosions = _numWaves = 0;
+        _move = -1;
+        _mover = null;
+    }
+
+    /** Return a copy of A with twice the length. */
+    private static int[] grow(int[] a) {
+        int[] result = new int[2 * a.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        return result;
+    }
+
+    /** Numbers of the squares that changed. */
+    private final BitSet _dirty =
+        new BitSet(Defaults.MAX_BOARD_SIZE * Defaults.MAX_BOARD_SIZE);
+    /** True iff the board was resized. */
+    private boolean _resized;
+    /** Number of moves made. */
+    private int _numMoves;
+    /** Last move made, or -1. */
+    private int _move = -1;
+    /** Player making the last move, or null. */
+    private Side _mover;
+    /** Squares that exploded in the last move, in order.  Only the first
+     *  _numExplosions are meaningful. */
+    private int[] _explosions = new int[16];
+    /** Number of explosions in the last move. */
+    private int _numExplosions;
+    /** Index in _explosions of the start of each wave.  Only the first
+     *  _numWaves are meaningful. */
+    private int[] _waveStarts = new int[16];
+    /** Number of waves in the last move. */
+    private int _numWaves;
+
+}
@@ -0,0 +1,380 @@
+package jump61;
+
+import java.nio.ByteBuffer;
+
+import static jump61.GameException.error;
+import static jump61.Side.*;
+
+/** Conversions between Boards and external representations: the text
+ *  dump format produced by Board.toString (as text or as ASCII bytes),
+ *  the human-readable display format of Board.toDisplayString, and a
+ *  fixed-width binary encoding.
+ *
+ *  The binary encoding of an N x N board is one byte holding N, followed
+ *  by the squares in row-major order, two to a byte (the first in the low
+ *  four bits).  Each square is encoded as 4 * c + s - 1, where c is 0 for
+ *  an unoccupied square, 1 for red, and 2 for blue, and s is its number
+ *  of spots; unoccupied squares are encoded as 0.  The encoding takes
+ *  encodedSize(N) bytes.
+ *
+ *  None of these methods uses regular expressions or Formatters, and
+ *  apart from the resulting Board, the parsers allocate only a small,
+ *  fixed amount of scratch space.
+ *  @author Will Harvey
+ */
+class BoardCodec {
+
+    /** Line that starts and ends a dumped board. */
+    static final String DELIMITER = "===";
+
+    /** Return the board described by the first board in dump format
+     *  in TEXT.  Text before the first delimiter is ignored.  Throws a
+     *  GameException if there is no well-formed board. */
+    static Board parse(CharSequence text) {
+        return parse(text, 0, null);
+    }
+
+    /** Return the board described by the first board in dump format in
+     *  the ASCII text between the position and limit of BUF, advancing
+     *  BUF's position past the board.  Text before the first delimiter
+     *  is ignored.  Throws a GameException if there is no well-formed
+     *  board. */
+    static Board parse(ByteBuffer buf) {
+        int[] end = new int[1];
+        Board result = parse(new AsciiSequence(buf), 0, end);
+        buf.position(buf.position() + end[0]);
+        return result;
+    }
+
+    /** Append B in dump format (as returned by Board.toString) to OUT. */
+    static void write(Board b, StringBuilder out) {
+        int N = b.size();
+        out.append(DELIMITER);
+        for (int n = 0; n < N * N; n += 1) {
+            if (n % N == 0) {
+                out.append("\n    ");
+            }
+            Square sq = b.get(n);
+            out.append((char) ('0' + sq.getSpots()))
+                .append(sideChar(sq.getSide())).append(' ');
+        }
+        out.append('\n').append(DELIMITER);
+    }
+
+    /** Write B in dump format (as returned by Board.toString) to OUT as
+     *  ASCII bytes. */
+    static void write(Board b, ByteBuffer out) {
+        int N = b.size();
+        putAscii(out, DELIMITER);
+        for (int n = 0; n < N * N; n += 1) {
+            if (n % N == 0) {
+                putAscii(out, "\n    ");
+            }
+            Square sq = b.get(n);
+            out.put((byte) ('0' + sq.getSpots()))
+                .put((byte) sideChar(sq.getSide())).put((byte) ' ');
+        }
+        out.put((byte) '\n');
+        putAscii(out, DELIMITER);
+    }
+
+    /** Append B in display format (as returned by Board.toDisplayString)
+     *  to OUT. */
+    static void writeDisplay(Board b, StringBuilder out) {
+        int N = b.size();
+        String nl = System.lineSeparator();
+        for (int r = 1; r <= N; r += 1) {
+            pad(out, r, 2);
+            for (int c = 1; c <= N; c += 1) {
+                Square sq = b.get(r, c);
+                out.append(' ').append((char) ('0' + sq.getSpots()))
+                    .append(sideChar(sq.getSide()));
+            }
+            out.append(nl);
+        }
+        out.append("  ");
+        for (int c = 1; c <= N; c += 1) {
+            pad(out, c, 3);
+        }
+    }
+
+    /** Return the number of bytes in the binary encoding of an N x N
+     *  board. */
+    static int encodedSize(int N) {
+        return 1 + (N * N + 1) / 2;
+    }
+
+    /** Write the binary encoding of B to OUT. */
+    static void encode(Board b, ByteBuffer out) {
+        int N = b.size();
+        out.put((byte) N);
+        int pending;
+        pending = 0;
+        for (int n = 0; n < N * N; n += 1) {
+            int code = code(b.get(n));
+            if (n % 2 == 0) {
+                pending = code;
+            } else {
+                out.put((byte) (pending | code << 4));
+            }
+        }
+        if (N * N % 2 == 1) {
+            out.put((byte) pending);
+        }
+    }
+
+    /** Return the board whose binary encoding starts at the position of
+     *  IN, advancing IN past it.  Throws a GameException if the encoding
+     *  is invalid. */
+    static Board decode(ByteBuffer in) {
+        int N = in.get();
+        if (N < 2 || N > Defaults.MAX_BOARD_SIZE) {
+            throw error("bad board size in encoded board: %d", N);
+        }
+        Board b = new Board(N);
+        int bits;
+        bits = 0;
+        for (int n = 0; n < N * N; n += 1) {
+            if (n % 2 == 0) {
+                bits = in.get();
+            } else {
+                bits >>= 4;
+            }
+            int code = bits & 0xf;
+            if (code != 0) {
+                Side side = code < 8 ? RED : BLUE;
+                int spots = (code & 3) + 1;
+                if (code >= 12 || code < 4 || spots > b.neighbors(n)) {
+                    throw error("bad square in encoded board");
+                }
+                b.internalSet(n, spots, side);
+            }
+        }
+        return b;
+    }
+
+    /** Return the board described by the first board in dump format in
+     *  TEXT at or after index START, setting END[0] (if END is not null)
+     *  to the index just past its closing delimiter. */
+    private static Board parse(CharSequence text, int start, int[] end) {
+        int len = text.length();
+        int k = start;
+        while (true) {
+            if (k >= len) {
+                throw error("no board found");
+            }
+            int eol = lineEnd(text, k);
+            boolean delimiter = isDelimiter(text, k, eol);
+            k = eol + 1;
+            if (delimiter) {
+                break;
+            }
+        }
+
+        byte[] spots = new byte[Defaults.MAX_BOARD_SIZE
+                                * Defaults.MAX_BOARD_SIZE];
+        Side[] sides = new Side[spots.length];
+        int N, rows, count;
+        N = -1;
+        rows = count = 0;
+        while (true) {
+            if (k >= len) {
+                throw error("unterminated board");
+            }
+            int eol = lineEnd(text, k);
+            if (isDelimiter(text, k, eol)) {
+                k = eol + 1;
+                break;
+            }
+            int rowStart = count;
+            for (int i = k; i < eol; i += 1) {
+                char ch = text.charAt(i);
+                if (ch == ' ' || ch == '\t' || ch == '\r') {
+                    continue;
+                }
+                int numStart = i;
+                int num;
+                num = 0;
+                while (i < eol && '0' <= text.charAt(i)
+                       && text.charAt(i) <= '9') {
+                    num = 10 * num + text.charAt(i) - '0';
+                    i += 1;
+                }
+                if (i == numStart || i == eol || num > 9
+                    || count == spots.length) {
+                    throw error("malformed board");
+                }
+                spots[count] = (byte) num;
+                sides[count] = sideOf(text.charAt(i));
+                count += 1;
+            }
+            if (count == rowStart) {
+                k = eol + 1;
+                continue;
+            }
+            if (N == -1) {
+                N = count;
+            } else if (count - rowStart != N) {
+                throw error("wrong number of squares in row %d", rows + 1);
+            }
+            rows += 1;
+            k = eol + 1;
+        }
+        if (N < 2 || N > Defaults.MAX_BOARD_SIZE || rows != N) {
+            throw error("bad board size");
+        }
+
+        Board b = new Board(N);
+        for (int n = 0; n < N * N; n += 1) {
+            if (spots[n] < 1 || spots[n] > b.neighbors(n)) {
+                throw error("bad number of spots in row %d", n / N + 1);
+            }
+            if (sides[n] != WHITE) {
+                b.internalSet(n, spots[n], sides[n]);
+            }
+        }
+        if (end != null) {
+            end[0] = Math.min(k, len);
+        }
+        return b;
+    }
+
+    /** Return the index of the end of the line in TEXT containing
+     *  index K (the index of its newline, or the length of TEXT). */
+    private static int lineEnd(CharSequence text, int k) {
+        int len = text.length();
+        while (k < len && text.charAt(k) != '\n') {
+            k += 1;
+        }
+        return k;
+    }
+
+    /** Return true iff TEXT[START .. END-1] consists of DELIMITER,
+     *  possibly surrounded by whitespace. */
+    private static boolean isDelimiter(CharSequence text, int start,
+                                       int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start += 1;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end -= 1;
+        }
+        if (end - start != DELIMITER.length()) {
+            return false;
+        }
+        for (int i = 0; i < DELIMITER.length(); i += 1) {
+            if (text.charAt(start + i) != DELIMITER.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the character denoting SIDE in dump format. */
+    private static char sideChar(Side side) {
+        switch (side) {
+        case RED:
+            return 'r';
+        case BLUE:
+            return 'b';
+        default:
+            return '-';
+        }
+    }
+
+    /** Return the Side denoted by CH in dump format. */
+    private static Side sideOf(char ch) {
+        switch (ch) {
+        case 'r':
+            return RED;
+        case 'b':
+            return BLUE;
+        case '-':
+            return WHITE;
+        default:
+            throw error("bad square color: %c", ch);
+        }
+    }
+
+    /** Return the 4-bit binary code for SQ. */
+    private static int code(Square sq) {
+        if (sq.getSide() == WHITE) {
+            return 0;
+        }
+        if (sq.getSpots() > 4) {
+            throw error("cannot encode overfull square");
+        }
+        return 4 * sq.getSide().ordinal() + sq.getSpots() - 1;
+    }
+
+    /** Append the decimal numeral for 0 <= NUM < 1000 to OUT, padded with
+     *  blanks on the left to WIDTH characters. */
+    private static void pad(StringBuilder out, int num, int width) {
+        int digits = num < 10 ? 1 : num < 100 ? 2 : 3;
+        for (int k = digits; k < width; k += 1) {
+            out.append(' ');
+        }
+        out.append(num);
+    }
+
+    /** Write the characters of S to OUT as ASCII. */
+    private static void putAscii(ByteBuffer out, String s) {
+        for (int k = 0; k < s.length(); k += 1) {
+            out.put((byte) s.charAt(k));
+        }
+    }
+
+    /** A view of the bytes between the position and limit of a ByteBuffer
+     *  as ASCII characters. */
+    static class AsciiSequence implements CharSequence {
+
+        /** A view of the remaining bytes of BUF. */
+        AsciiSequence(ByteBuffer buf) {
+            this(buf, buf.position(), buf.remaining());
+        }
+
+        /** A view of the LENGTH bytes of BUF starting at START. */
+        private AsciiSequence(ByteBuffer buf, int start, int length) {
+            _buf = buf;
+            _start = start;
+            _length = length;
+        }
+
+        @Override
+        public int length() {
+            return _length;
+        }
+
+        @Override
+        public char charAt(int k) {
+            return (char) (_buf.get(_start + k) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > _length || start > end) {
+                throw new IndexOutOfBoundsException(
+                    String.format("subSequence(%d, %d) of length %d",
+                                  start, end, _length));
+            }
+            return new AsciiSequence(_buf, _start + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder(_length);
+            for (int k = 0; k < _length; k += 1) {
+                result.append(charAt(k));
+            }
+            return result.toString();
+        }
+
+        /** The underlying buffer. */
+        private final ByteBuffer _buf;
+        /** Position in _buf of character 0. */
+        private final int _start;
+        /** Number of characters. */
+        private final int _length;
+    }
+
+}
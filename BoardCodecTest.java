@@ -0,0 +1,112 @@
+package jump61;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of BoardCodec.
+ *  @author Will Harvey
+ */
+public class BoardCodecTest {
+
+    private static final String NL = System.getProperty("line.separator");
+
+    @Test
+    public void testFormats() {
+        Board B = new Board(3);
+        B.set(1, 1, 2, RED);
+        B.set(2, 3, 3, BLUE);
+        assertEquals("===\n    2r 1- 1- \n    1- 1- 3b \n    1- 1- 1- \n===",
+                     B.toString());
+        assertEquals(" 1 2r 1- 1-" + NL + " 2 1- 1- 3b" + NL
+                     + " 3 1- 1- 1-" + NL + "    1  2  3",
+                     B.toDisplayString());
+    }
+
+    @Test
+    public void testTextRoundTrip() {
+        Random random = new Random(2);
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        Board[] boards = new Board[50];
+        for (int k = 0; k < boards.length; k += 1) {
+            boards[k] = randomBoard(2 + k % 9, random);
+            Board copy = BoardCodec.parse("junk\n" + boards[k] + "\n");
+            assertSameContents(boards[k], copy);
+            BoardCodec.write(boards[k], buf);
+            buf.put((byte) '\n');
+        }
+        buf.flip();
+        for (Board b : boards) {
+            assertSameContents(b, BoardCodec.parse(buf));
+        }
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        Random random = new Random(5);
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        Board[] boards = new Board[50];
+        for (int k = 0; k < boards.length; k += 1) {
+            boards[k] = randomBoard(2 + k % 9, random);
+            BoardCodec.encode(boards[k], buf);
+        }
+        buf.flip();
+        for (Board b : boards) {
+            int start = buf.position();
+            assertSameContents(b, BoardCodec.decode(buf));
+            assertEquals(BoardCodec.encodedSize(b.size()),
+                         buf.position() - start);
+        }
+    }
+
+    @Test
+    public void testAsciiSequence() {
+        ByteBuffer buf = ByteBuffer.wrap(
+            "xx===\n 1r\n===".getBytes(StandardCharsets.US_ASCII));
+        buf.position(2);
+        CharSequence text = new BoardCodec.AsciiSequence(buf);
+        assertEquals("===\n 1r\n===", text.toString());
+        CharSequence sub = text.subSequence(5, 8);
+        assertEquals(3, sub.length());
+        assertEquals("1r\n", sub.toString());
+        assertEquals("r", sub.subSequence(1, 2).toString());
+        assertEquals("", text.subSequence(3, 3).toString());
+        try {
+            text.subSequence(2, 12);
+            fail("subSequence past end");
+        } catch (IndexOutOfBoundsException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test(expected = GameException.class)
+    public void testMalformed() {
+        BoardCodec.parse("===\n    1r 1-\n    1- \n===\n");
+    }
+
+    /** Assert that A and B have the same size and squares. */
+    private void assertSameContents(Board A, Board B) {
+        assertEquals(A.toString(), B.toString());
+        assertEquals(A.positionHash(), B.positionHash());
+    }
+
+    /** Return a board of size N reached by random play, using RANDOM. */
+    private Board randomBoard(int N, Random random) {
+        Board board = new Board(N);
+        int plies = random.nextInt(3 * N * N);
+        for (int k = 0; k < plies && board.getWinner() == null; k += 1) {
+            int n;
+            do {
+                n = random.nextInt(N * N);
+            } while (!board.isLegal(board.whoseMove(), n));
+            board.addSpot(board.whoseMove(), n);
+        }
+        return board;
+    }
+
+}
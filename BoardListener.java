@@ -0,0 +1,14 @@
+package jump61;
+
+/** An observer of the changes to a Board, registered with
+ *  Board.addListener.
+ *  @author Will Harvey
+ */
+interface BoardListener {
+
+    /** Respond to CHANGE, a description of changes just made to BOARD.
+     *  CHANGE belongs to BOARD, which reuses it, so it is valid only
+     *  during this call, and must not be modified. */
+    void boardChanged(Board board, BoardChange change);
+
+}
@@ -3,6 +3,8 @@ package jump61;
 
 import static jump61.Side.*;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -34,6 +36,15 @@ public class BoardTest {
         assertEquals("wrong count", 1, B.numOfSide(RED));
         assertEquals("wrong count", 0, B.numOfSide(BLUE));
         assertEquals("wrong count", 24, B.numOfSide(WHITE));
+        B.set(2, 2, 0, RED);
+        assertEquals("wrong number of spots", 1, B.get(2, 2).getSpots());
+        assertEquals("wrong color", WHITE, B.get(2, 2).getSide());
+        B.set(3, 3, 2, WHITE);
+        assertEquals("wrong number of spots", 1, B.get(3, 3).getSpots());
+        assertEquals("wrong color", WHITE, B.get(3, 3).getSide());
+        assertEquals("wrong count", 25, B.numOfSide(WHITE));
+        assertEquals("wrong hash", new Board(5).positionHash(),
+                     B.positionHash());
     }
 
     @Test
@@ -191,4 +202,113 @@ public class BoardTest {
         assertEquals("extra squares filled", contents.length / 4, c);
     }
 
+    @Test
+    public void testChangeWaves() {
+        Board B = new Board(3);
+        Side p = B.whoseMove();
+        B.set(1, 1, 2, p);
+        B.set(1, 2, 3, p);
+        B.set(3, 3, 2, p);
+        int[] calls = new int[1];
+        B.addListener((board, change) -> {
+            calls[0] += 1;
+            assertEquals(1, change.numMoves());
+            assertEquals(0, change.move());
+            assertEquals(p, change.mover());
+            assertEquals("{0, 1, 2, 3, 4}", change.dirty().toString());
+            assertEquals(2, change.numWaves());
+            assertEquals(2, change.numExplosions());
+            assertEquals(0, change.explosion(change.waveStart(0)));
+            assertEquals(1, change.explosion(change.waveStart(1)));
+            assertEquals(2, change.waveStart(2));
+        });
+        B.addSpot(p, 0);
+        assertEquals(1, calls[0]);
+        Board copy = new Board(B);
+        copy.addSpot(copy.whoseMove(), 6);
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void testChangeBatch() {
+        Board B = new Board(4);
+        StringBuilder dirty = new StringBuilder();
+        B.addListener((board, change) -> {
+            dirty.append(change.dirty()).append(change.numMoves());
+        });
+        B.beginBatch();
+        B.addSpot(B.whoseMove(), 0);
+        B.addSpot(B.whoseMove(), 5);
+        B.endBatch();
+        B.undo();
+        B.clear(2);
+        assertEquals("{0, 5}2{5}0{0, 1, 2, 3}0", dirty.toString());
+    }
+
+    @Test
+    public void testApplyMoves() {
+        Random random = new Random(49);
+        for (int game = 0; game < 20; game += 1) {
+            int size = 2 + game % 6;
+            Board B = new Board(size);
+            int[] moves = new int[10000];
+            int count;
+            count = 0;
+            while (B.getWinner() == null) {
+                int n;
+                do {
+                    n = random.nextInt(size * size);
+                } while (!B.isLegal(B.whoseMove(), n));
+                B.addSpot(B.whoseMove(), n);
+                moves[count] = n;
+                count += 1;
+            }
+            Board C = new Board(size);
+            int[] calls = { 0, 0 };
+            C.addListener((board, change) -> {
+                calls[0] += 1;
+                calls[1] = change.numMoves();
+            });
+            C.applyMoves(moves, 0, count, 0);
+            assertEquals(1, calls[0]);
+            assertEquals(count, calls[1]);
+            assertEquals(B.toString(), C.toString());
+            assertEquals(B.positionHash(), C.positionHash());
+            assertEquals(B.getWinner(), C.getWinner());
+        }
+    }
+
+    @Test
+    public void testApplyMovesCheckpoints() {
+        Board B = new Board(4);
+        int[] moves = { 0, 15, 5, 10, 1, 14 };
+        B.applyMoves(moves, 0, 6, 4);
+        Board C = new Board(4);
+        C.applyMoves(moves, 0, 4, 0);
+        B.undo();
+        assertEquals(C.toString(), B.toString());
+        B.undo();
+        assertEquals(new Board(4).toString(), B.toString());
+    }
+
+    @Test
+    public void testApplyMovesErrors() {
+        Board B = new Board(3);
+        int[] moves = { 0, 8, 4, 4, 9 };
+        try {
+            B.applyMoves(moves, 0, 5, 0);
+            fail("non-square move accepted");
+        } catch (GameException excp) {
+            assertEquals(new Board(3).toString(), B.toString());
+        }
+        try {
+            B.applyMoves(moves, 0, 4, 0);
+            fail("illegal move accepted");
+        } catch (GameException excp) {
+            Board C = new Board(3);
+            C.applyMoves(moves, 0, 3, 0);
+            assertEquals(C.toString(), B.toString());
+        }
+    }
+
 }
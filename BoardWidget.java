@@ -1,4 +1,3 @@
-
 package jump61;
 
 import ucb.gui2.Pad;
@@ -6,14 +5,26 @@ import ucb.gui2.Pad;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 
 import java.util.concurrent.ArrayBlockingQueue;
 
+import javax.swing.Timer;
+
 import static jump61.Side.*;
 
 /** A GUI component that displays a Jump61 board, and converts mouse clicks
  *  on that board to commands that are sent to the current Game.
+ *
+ *  Updates only record a snapshot of the board: one byte per square.
+ *  The snapshot is rendered on the event-dispatch thread no sooner than
+ *  Display.BOARD_UPDATE_INTERVAL msec after the first update following
+ *  the previous rendering, so that any number of updates in that
+ *  interval cost one rendering.  Rendering draws only the squares that
+ *  differ from the previous snapshot, each as a single pre-rendered
+ *  image, into an off-screen image that painting simply copies.
  *  @author Will harvey
  */
 class BoardWidget extends Pad {
@@ -28,6 +39,8 @@ class BoardWidget extends Pad {
     private static final int SEPARATOR_SIZE = 3;
     /** Width of square plus one separator. */
     private static final int SQUARE_SEP = SQUARE_SIZE + SEPARATOR_SIZE;
+    /** Largest number of spots drawn on a square. */
+    private static final int MAX_SPOTS = 4;
 
     /** Colors of various parts of the displayed board. */
     private static final Color
@@ -38,30 +51,36 @@ class BoardWidget extends Pad {
         BLUE_TINT = new Color(200, 200, 255);
 
     /** A new BoardWidget that monitors and displays a game Board, and
-     *  converts mouse clicks to commands to COMMANDQUEUE. */
-    BoardWidget(ArrayBlockingQueue<String> commandQueue) {
+     *  converts mouse clicks to commands to COMMANDQUEUE.  RESIZED is run
+     *  (on the event-dispatch thread) whenever the size of the displayed
+     *  board changes. */
+    BoardWidget(ArrayBlockingQueue<String> commandQueue, Runnable resized) {
         _commandQueue = commandQueue;
+        _resized = resized;
         _side = 6 * SQUARE_SEP + SEPARATOR_SIZE;
+        _timer = new Timer((int) Display.BOARD_UPDATE_INTERVAL,
+                           (e) -> refresh());
+        _timer.setRepeats(false);
         setMouseHandler("click", this::doClick);
     }
 
-    /* .update and .paintComponent are synchronized because they are called
-     *  by three different threads (the main thread, the thread that
-     *  responds to events, and the display thread).  We don't want the
-     *  saved copy of our Board to change while it is being displayed. */
-
-    /** Update my display to show BOARD.  Here, we save a copy of
-     *  BOARD (so that we can deal with changes to it only when we are ready
-     *  for them), and recompute the size of the displayed board. */
-    synchronized void update(Board board) {
-        if (board.equals(_board)) {
-            return;
+    /** Arrange to display BOARD.  Here, we save a snapshot of BOARD's
+     *  squares, and schedule a rendering if none is pending.  May be
+     *  called from any thread. */
+    void update(Board board) {
+        int N = board.size();
+        byte[] squares = new byte[N * N];
+        for (int n = 0; n < squares.length; n += 1) {
+            squares[n] = code(board.get(n));
         }
-        if (_board != null && _board.size() != board.size()) {
-            invalidate();
+        synchronized (this) {
+            _pending = squares;
+            if (_refreshScheduled) {
+                return;
+            }
+            _refreshScheduled = true;
         }
-        _board = new Board(board);
-        _side = _board.size() * SQUARE_SEP + SEPARATOR_SIZE;
+        _timer.restart();
     }
 
     @Override
@@ -80,16 +99,111 @@ class BoardWidget extends Pad {
     }
 
     @Override
-    public synchronized void paintComponent(Graphics2D g) {
-        if (_board == null) {
+    public void paintComponent(Graphics2D g) {
+        if (_image != null) {
+            g.drawImage(_image, 0, 0, null);
+        }
+    }
+
+    /** Render the latest snapshot into _image and repaint.  Called on the
+     *  event-dispatch thread. */
+    private void refresh() {
+        byte[] squares;
+        synchronized (this) {
+            squares = _pending;
+            _refreshScheduled = false;
+        }
+        if (squares == _shown) {
             return;
         }
+        boolean resized = _shown == null || squares.length != _shown.length;
+        if (resized) {
+            _size = (int) Math.round(Math.sqrt(squares.length));
+            _side = _size * SQUARE_SEP + SEPARATOR_SIZE;
+            _image = new BufferedImage(_side, _side,
+                                       BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = _image.createGraphics();
+            g.setColor(SEPARATOR_COLOR);
+            g.fillRect(0, 0, _side, _side);
+            g.dispose();
+        }
+        Graphics2D g = _image.createGraphics();
+        boolean changed;
+        changed = resized;
+        for (int n = 0; n < squares.length; n += 1) {
+            if (resized || squares[n] != _shown[n]) {
+                g.drawImage(squareImage(squares[n]),
+                            SEPARATOR_SIZE + (n % _size) * SQUARE_SEP,
+                            SEPARATOR_SIZE + (n / _size) * SQUARE_SEP, null);
+                changed = true;
+            }
+        }
+        g.dispose();
+        _shown = squares;
+        if (resized) {
+            invalidate();
+            _resized.run();
+        }
+        if (changed) {
+            repaint();
+        }
     }
 
-    /** Color and display the spots on the square at row R and column C
-     *  on G.  (Used by paintComponent). */
-    private void displaySpots(Graphics2D g, int r, int c) {
+    /** Return the snapshot code for SQ: its color's ordinal in the high
+     *  four bits and its number of spots in the low four. */
+    private static byte code(Square sq) {
+        return (byte) (sq.getSide().ordinal() << 4 | sq.getSpots());
+    }
 
+    /** Return the image of a square whose snapshot code is CODE, creating
+     *  it if needed. */
+    private BufferedImage squareImage(byte code) {
+        int side = code >> 4;
+        int spots = Math.min(code & 0xf, MAX_SPOTS);
+        if (_squareImages[side][spots] == null) {
+            BufferedImage image =
+                new BufferedImage(SQUARE_SIZE, SQUARE_SIZE,
+                                  BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                               RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(side == RED.ordinal() ? RED_TINT
+                       : side == BLUE.ordinal() ? BLUE_TINT : NEUTRAL);
+            g.fillRect(0, 0, SQUARE_SIZE, SQUARE_SIZE);
+            displaySpots(g, spots);
+            g.dispose();
+            _squareImages[side][spots] = image;
+        }
+        return _squareImages[side][spots];
+    }
+
+    /** Display SPOTS spots, arranged as on a die, on G, which draws on one
+     *  square.  (Used by squareImage). */
+    private void displaySpots(Graphics2D g, int spots) {
+        int lo = SPOT_MARGIN, mid = SQUARE_SIZE / 2,
+            hi = SQUARE_SIZE - SPOT_MARGIN;
+        switch (spots) {
+        case 1:
+            spot(g, mid, mid);
+            break;
+        case 2:
+            spot(g, lo, lo);
+            spot(g, hi, hi);
+            break;
+        case 3:
+            spot(g, lo, lo);
+            spot(g, mid, mid);
+            spot(g, hi, hi);
+            break;
+        case 4:
+            spot(g, lo, lo);
+            spot(g, lo, hi);
+            spot(g, hi, lo);
+            spot(g, hi, hi);
+            break;
+        default:
+            break;
+        }
     }
 
     /** Draw one spot centered at position (X, Y) on G. */
@@ -102,15 +216,38 @@ class BoardWidget extends Pad {
     public void doClick(String dummy, MouseEvent event) {
         int x = event.getX() - SEPARATOR_SIZE,
             y = event.getY() - SEPARATOR_SIZE;
-        int r = 1;
-        int c = 1;
-        _commandQueue.offer(String.format("%d %d", r, c));
+        if (x < 0 || y < 0 || x % SQUARE_SEP >= SQUARE_SIZE
+            || y % SQUARE_SEP >= SQUARE_SIZE) {
+            return;
+        }
+        int r = y / SQUARE_SEP + 1;
+        int c = x / SQUARE_SEP + 1;
+        if (r <= _size && c <= _size) {
+            _commandQueue.offer(String.format("%d %d", r, c));
+        }
     }
 
-    /** The Board I am displaying. */
-    private Board _board;
+    /** The latest snapshot of the board: the code of each square, as
+     *  given by code(Square), in row-major order. */
+    private byte[] _pending;
+    /** True iff a rendering of _pending is scheduled. */
+    private boolean _refreshScheduled;
+    /** The snapshot rendered in _image, or null if none. */
+    private byte[] _shown;
+    /** The rendered board. */
+    private BufferedImage _image;
+    /** Images of squares, indexed by color ordinal and number of spots,
+     *  or null if not yet needed. */
+    private final BufferedImage[][] _squareImages =
+        new BufferedImage[Side.values().length][MAX_SPOTS + 1];
+    /** Number of squares on a side of the displayed board. */
+    private int _size;
     /** Dimension in pixels of one side of the board. */
     private int _side;
+    /** Schedules renderings. */
+    private final Timer _timer;
+    /** Run when the size of the displayed board changes. */
+    private final Runnable _resized;
     /** Destination for commands derived from mouse clicks. */
     private ArrayBlockingQueue<String> _commandQueue;
 }
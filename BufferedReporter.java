@@ -0,0 +1,174 @@
+package jump61;
+
+import java.io.PrintStream;
+import java.util.Formatter;
+
+/** A Reporter for bulk output.  It produces the same text as
+ *  TextReporter, but formats each message into a buffer, which a
+ *  background writer thread delivers to the output stream in large
+ *  pieces: whenever WRITE_SIZE characters have accumulated, and on
+ *  sync (that is, at prompts and the ends of games).  Messages that
+ *  need no formatting (announcements, boards, and messages without
+ *  arguments) are appended to the buffer directly; the rest go through
+ *  a single Formatter writing into it.  Error messages are written
+ *  directly, after the messages before them have been delivered.
+ *  Messages may be sent from any thread.
+ *  @author Will Harvey
+ */
+class BufferedReporter implements Reporter {
+
+    /** Number of buffered characters at which the writer is woken. */
+    static final int WRITE_SIZE = 1 << 14;
+    /** Number of buffered characters at which senders wait for the
+     *  writer. */
+    static final int MAX_BUFFERED = 1 << 20;
+
+    /** A reporter writing messages to OUT and errors to ERR. */
+    BufferedReporter(PrintStream out, PrintStream err) {
+        _out = out;
+        _err = err;
+        _formatter = new Formatter(_text);
+        Thread writer = new Thread(this::write, "jump61-output");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public synchronized void announceWin(Side side) {
+        _text.append("* ").append(side.toCapitalizedString())
+            .append(" wins.");
+        endMessage();
+    }
+
+    @Override
+    public synchronized void announceMove(int row, int col) {
+        _text.append("* ").append(row).append(' ').append(col).append('.');
+        endMessage();
+    }
+
+    @Override
+    public synchronized void msg(String format, Object... args) {
+        if (args.length == 0 && format.indexOf('%') < 0) {
+            _text.append(format);
+        } else if (args.length == 1 && format.equals("%s")) {
+            _text.append(args[0]);
+        } else {
+            _formatter.format(format, args);
+        }
+        endMessage();
+    }
+
+    @Override
+    public void err(String format, Object... args) {
+        sync();
+        _err.printf(format, args);
+        _err.println();
+    }
+
+    @Override
+    public synchronized void showBoard(Board board, boolean display) {
+        if (display) {
+            BoardCodec.writeDisplay(board, _text);
+        } else {
+            BoardCodec.write(board, _text);
+        }
+        endMessage();
+    }
+
+    @Override
+    public void log(String format, Object... args) {
+        msg(format, args);
+    }
+
+    @Override
+    public synchronized void sync() {
+        long target = _taken + _text.length();
+        if (_flushed >= target) {
+            return;
+        }
+        _syncs += 1;
+        notifyAll();
+        try {
+            while (_flushed < target) {
+                wait();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } finally {
+            _syncs -= 1;
+        }
+    }
+
+    /** End the message in my buffer, waking the writer if the buffer is
+     *  large enough, and waiting for it if the buffer is full. */
+    private void endMessage() {
+        _text.append(NL);
+        if (_text.length() >= WRITE_SIZE) {
+            notifyAll();
+            try {
+                while (_text.length() >= MAX_BUFFERED) {
+                    wait();
+                }
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Deliver buffered text to my output as it accumulates or is
+     *  synced.  Run by the writer thread. */
+    private void write() {
+        StringBuilder chunk = new StringBuilder(WRITE_SIZE);
+        while (true) {
+            boolean flush;
+            long end;
+            synchronized (this) {
+                try {
+                    while (_text.length() < WRITE_SIZE
+                           && (_syncs == 0
+                               || _flushed == _taken + _text.length())) {
+                        wait();
+                    }
+                } catch (InterruptedException excp) {
+                    return;
+                }
+                chunk.append(_text);
+                _taken += _text.length();
+                _text.setLength(0);
+                end = _taken;
+                flush = _syncs > 0;
+                notifyAll();
+            }
+            _out.append(chunk);
+            if (flush) {
+                _out.flush();
+            }
+            chunk.setLength(0);
+            if (flush) {
+                synchronized (this) {
+                    _flushed = end;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /** Line separator. */
+    private static final String NL = System.lineSeparator();
+
+    /** Destination of messages. */
+    private final PrintStream _out;
+    /** Destination of error messages. */
+    private final PrintStream _err;
+    /** Messages not yet taken by the writer. */
+    private final StringBuilder _text = new StringBuilder(2 * WRITE_SIZE);
+    /** Formats messages into _text. */
+    private final Formatter _formatter;
+    /** Number of characters taken by the writer. */
+    private long _taken;
+    /** Number of characters written and flushed. */
+    private long _flushed;
+    /** Number of threads waiting in sync. */
+    private int _syncs;
+
+}
@@ -0,0 +1,47 @@
+package jump61;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of buffered reporting.
+ *  @author Will Harvey
+ */
+public class BufferedReporterTest {
+
+    @Test
+    public void testOutput() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, false);
+        BufferedReporter reporter = new BufferedReporter(out, out);
+        Board board = new Board(4);
+        board.addSpot(RED, 5);
+        StringBuilder expected = new StringBuilder();
+        String nl = System.lineSeparator();
+        for (int k = 0; k < 1000; k += 1) {
+            reporter.announceMove(k, k + 1);
+            reporter.msg("%d%% of %s", k, "100");
+            reporter.msg("no arguments");
+            reporter.showBoard(board, k % 2 == 0);
+            expected.append(String.format("* %d %d.%n%d%% of 100%n", k,
+                                          k + 1, k));
+            expected.append("no arguments").append(nl);
+            expected.append(k % 2 == 0 ? board.toDisplayString()
+                            : board.toString()).append(nl);
+        }
+        reporter.err("error %d", 1);
+        reporter.announceWin(BLUE);
+        expected.append("error 1").append(nl).append("* Blue wins.")
+            .append(nl);
+        assertTrue(expected.length() > BufferedReporter.WRITE_SIZE);
+        reporter.sync();
+        assertEquals(expected.toString(), bytes.toString());
+        reporter.sync();
+        assertEquals(expected.toString(), bytes.toString());
+    }
+
+}
@@ -0,0 +1,232 @@
+package jump61;
+
+/** An index of the clusters of critical squares of a Board: the
+ *  connected components (by row and column adjacency) of the squares
+ *  holding as many spots as they have neighbors, of either color.  A
+ *  spot added to a critical square explodes its whole cluster, since
+ *  each of its squares receives a spot from an exploding neighbor, and
+ *  so gives a spot to, and takes, every square next to the cluster.
+ *  That is the least a move reaches; squares outside the cluster that
+ *  receive enough spots to explode in turn take the cascade further.
+ *
+ *  A Board keeps its index (once asked for it with Board.clusters) up
+ *  to date as its squares change.  Clusters are kept as a union-find
+ *  structure, with each cluster's squares also linked in a circular
+ *  list, so that a square becoming critical joins its neighbors'
+ *  clusters at once.  A square ceasing to be critical may split its
+ *  cluster, so unless it was alone, the index is instead marked stale,
+ *  and rebuilt (in time proportional to the number of squares) when it
+ *  is next queried.  Wholesale changes to the board (loading, copying,
+ *  undoing) also make it stale.  The cascade of a move usually empties
+ *  clusters, so a search that queries the index at every node rebuilds
+ *  it about once per node.
+ *  @author Will Harvey
+ */
+class ClusterIndex {
+
+    /** An index of the critical clusters of BOARD, which must hold its
+     *  own contents (not be a view of another board). */
+    ClusterIndex(Board board) {
+        int squares = Defaults.MAX_BOARD_SIZE * Defaults.MAX_BOARD_SIZE;
+        _board = board;
+        _parent = new int[squares];
+        _count = new int[squares];
+        _next = new int[squares];
+        _marks = new int[squares];
+        _reached = new int[squares];
+        _stale = true;
+    }
+
+    /** Return true iff square #N is critical. */
+    boolean critical(int n) {
+        return _board.spots(n) == _board.neighbors(n);
+    }
+
+    /** Return the number of squares in the cluster containing square
+     *  #N, or 0 if it is not critical. */
+    int clusterSize(int n) {
+        refresh();
+        return _parent[n] < 0 ? 0 : _count[find(n)];
+    }
+
+    /** Return true iff squares #M and #N are in the same cluster. */
+    boolean sameCluster(int m, int n) {
+        refresh();
+        return _parent[m] >= 0 && _parent[n] >= 0 && find(m) == find(n);
+    }
+
+    /** Store in SQUARES the numbers of the squares that a spot added to
+     *  square #N reaches at least (square #N itself, if it is not
+     *  critical, and otherwise its cluster and the squares next to it),
+     *  and return their number.  Takes time proportional to the size of
+     *  the cluster. */
+    int reach(int n, int[] squares) {
+        refresh();
+        if (_parent[n] < 0) {
+            squares[0] = n;
+            return 1;
+        }
+        _stamp += 1;
+        int size = _board.size(), last = size * size - 1, count;
+        count = 0;
+        int s = n;
+        do {
+            count = visit(s, squares, count);
+            int c = s % size;
+            if (s >= size) {
+                count = visit(s - size, squares, count);
+            }
+            if (s + size <= last) {
+                count = visit(s + size, squares, count);
+            }
+            if (c > 0) {
+                count = visit(s - 1, squares, count);
+            }
+            if (c < size - 1) {
+                count = visit(s + 1, squares, count);
+            }
+            s = _next[s];
+        } while (s != n);
+        return count;
+    }
+
+    /** Return the number of squares of PLAYER's opponent among those
+     *  that a spot from PLAYER added to square #N reaches at least (see
+     *  reach): a lower bound on the number of squares the move takes. */
+    int flips(int n, Side player) {
+        int count = reach(n, _reached);
+        int opponent = player.opposite().ordinal(), flips;
+        flips = 0;
+        for (int k = 0; k < count; k += 1) {
+            if (_board.owner(_reached[k]) == opponent) {
+                flips += 1;
+            }
+        }
+        return flips;
+    }
+
+    /** Record that square #N changed from critical, if WAS, or not, to
+     *  critical, if IS, or not.  Called by my board. */
+    void changed(int n, boolean was, boolean is) {
+        if (_stale || was == is) {
+            return;
+        }
+        if (is) {
+            _parent[n] = n;
+            _count[n] = 1;
+            _next[n] = n;
+            int size = _board.size(), c = n % size;
+            if (n >= size) {
+                join(n, n - size);
+            }
+            if (n + size < size * size) {
+                join(n, n + size);
+            }
+            if (c > 0) {
+                join(n, n - 1);
+            }
+            if (c < size - 1) {
+                join(n, n + 1);
+            }
+        } else if (_count[find(n)] == 1) {
+            _parent[n] = -1;
+        } else {
+            _stale = true;
+        }
+    }
+
+    /** Record that my board's contents changed wholesale.  Called by my
+     *  board. */
+    void invalidate() {
+        _stale = true;
+    }
+
+    /** Rebuild me from my board's squares, if I am stale. */
+    private void refresh() {
+        if (!_stale) {
+            return;
+        }
+        _stale = false;
+        int size = _board.size();
+        for (int n = 0; n < size * size; n += 1) {
+            if (!critical(n)) {
+                _parent[n] = -1;
+                continue;
+            }
+            _parent[n] = n;
+            _count[n] = 1;
+            _next[n] = n;
+            if (n >= size) {
+                join(n, n - size);
+            }
+            if (n % size > 0) {
+                join(n, n - 1);
+            }
+        }
+    }
+
+    /** Merge the cluster of critical square #N with that of square #M,
+     *  if it is critical. */
+    private void join(int n, int m) {
+        if (_parent[m] < 0) {
+            return;
+        }
+        int a = find(n), b = find(m);
+        if (a == b) {
+            return;
+        }
+        if (_count[a] < _count[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        _parent[b] = a;
+        _count[a] += _count[b];
+        int t = _next[a];
+        _next[a] = _next[b];
+        _next[b] = t;
+    }
+
+    /** Return the representative of the cluster containing critical
+     *  square #N. */
+    private int find(int n) {
+        while (_parent[n] != n) {
+            _parent[n] = _parent[_parent[n]];
+            n = _parent[n];
+        }
+        return n;
+    }
+
+    /** Add square #N to the COUNT squares in SQUARES if it is not yet
+     *  among them, and return the new count. */
+    private int visit(int n, int[] squares, int count) {
+        if (_marks[n] == _stamp) {
+            return count;
+        }
+        _marks[n] = _stamp;
+        squares[count] = n;
+        return count + 1;
+    }
+
+    /** The board indexed. */
+    private final Board _board;
+    /** For each critical square, its parent in the union-find forest
+     *  (itself for a representative); -1 for other squares. */
+    private final int[] _parent;
+    /** For each representative, the number of squares in its
+     *  cluster. */
+    private final int[] _count;
+    /** For each critical square, the next square of its cluster, in a
+     *  circular list. */
+    private final int[] _next;
+    /** For each square, the value of _stamp when reach last visited
+     *  it. */
+    private final int[] _marks;
+    /** Number of the current call of reach. */
+    private int _stamp;
+    /** Scratch space for flips. */
+    private final int[] _reached;
+    /** True iff I must be rebuilt before use. */
+    private boolean _stale;
+
+}
@@ -0,0 +1,128 @@
+package jump61;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of critical-cluster indices.
+ *  @author Will Harvey
+ */
+public class ClusterIndexTest {
+
+    /** Return the size of the cluster of critical squares of BOARD
+     *  containing square #N (0 if it is not critical), by searching. */
+    private static int clusterSize(Board board, int n) {
+        int size = board.size();
+        boolean[] seen = new boolean[size * size];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int count;
+        count = 0;
+        queue.add(n);
+        while (!queue.isEmpty()) {
+            int s = queue.remove();
+            if (seen[s] || board.spots(s) != board.neighbors(s)) {
+                continue;
+            }
+            seen[s] = true;
+            count += 1;
+            int r = board.row(s), c = board.col(s);
+            if (r > 1) {
+                queue.add(s - size);
+            }
+            if (r < size) {
+                queue.add(s + size);
+            }
+            if (c > 1) {
+                queue.add(s - 1);
+            }
+            if (c < size) {
+                queue.add(s + 1);
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testClusters() {
+        Random random = new Random(48);
+        for (int game = 0; game < 40; game += 1) {
+            int size = 3 + game % 6;
+            Board board = new Board(size);
+            ClusterIndex clusters = board.clusters();
+            while (board.getWinner() == null) {
+                for (int n = 0; n < size * size; n += 1) {
+                    assertEquals(clusterSize(board, n),
+                                 clusters.clusterSize(n));
+                }
+                Side player = board.whoseMove();
+                int n;
+                do {
+                    n = random.nextInt(size * size);
+                } while (!board.isLegal(player, n));
+                board.addSpot(player, n);
+                if (random.nextInt(8) == 0) {
+                    board.undo();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReach() {
+        Random random = new Random(48);
+        int[] reached = new int[Defaults.MAX_BOARD_SIZE
+                                * Defaults.MAX_BOARD_SIZE];
+        for (int game = 0; game < 40; game += 1) {
+            int size = 3 + game % 6;
+            Board board = new Board(size);
+            ClusterIndex clusters = board.clusters();
+            while (board.getWinner() == null) {
+                Side player = board.whoseMove();
+                Side opponent = player.opposite();
+                for (int n = 0; n < size * size; n += 1) {
+                    if (!board.isLegal(player, n)) {
+                        continue;
+                    }
+                    int count = clusters.reach(n, reached);
+                    int flips = clusters.flips(n, player);
+                    Board after = new Board(board);
+                    after.addSpot(player, n);
+                    for (int k = 0; k < count; k += 1) {
+                        assertEquals(player.ordinal(),
+                                     after.owner(reached[k]));
+                    }
+                    assertTrue(flips <= board.numOfSide(opponent)
+                               - after.numOfSide(opponent));
+                    assertTrue(count
+                               <= Math.max(1, 5 * clusters.clusterSize(n)));
+                }
+                int n;
+                do {
+                    n = random.nextInt(size * size);
+                } while (!board.isLegal(player, n));
+                board.addSpot(player, n);
+            }
+        }
+    }
+
+    @Test
+    public void testView() {
+        Board board = new Board(4);
+        board.set(1, 1, 2, RED);
+        board.set(1, 2, 3, BLUE);
+        ClusterIndex clusters = new ConstantBoard(board).clusters();
+        assertTrue(clusters == board.clusters());
+        assertEquals(2, clusters.clusterSize(0));
+        assertTrue(clusters.sameCluster(0, 1));
+        assertEquals(0, clusters.clusterSize(2));
+        assertEquals(1, clusters.flips(0, RED));
+        board.set(1, 2, 1, BLUE);
+        assertEquals(1, clusters.clusterSize(0));
+        assertFalse(clusters.sameCluster(0, 1));
+    }
+
+}
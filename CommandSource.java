@@ -20,4 +20,19 @@ interface CommandSource {
      *  prompts for input, use PROMPT, if not null, to do so. */
     String getCommand(String prompt);
 
+    /** Return true iff I prompt for input, so that the output that
+     *  precedes each prompt should be delivered before it. */
+    default boolean prompts() {
+        return true;
+    }
+
+    /** Returns a command, as for getCommand, if one is available without
+     *  waiting, and otherwise null.  The game polls for commands this way
+     *  while it is busy (as when an AI is searching for a move).  By
+     *  default, a source offers no commands while the game is busy, so
+     *  that commands are only read when the game asks for one. */
+    default String pollCommand() {
+        return null;
+    }
+
 }
@@ -35,6 +35,21 @@ class ConstantBoard extends Board {
         return _board.numPieces();
     }
 
+    @Override
+    int numCritical(int from, int to) {
+        return _board.numCritical(from, to);
+    }
+
+    @Override
+    Board contents() {
+        return _board.contents();
+    }
+
+    @Override
+    long positionHash() {
+        return _board.positionHash();
+    }
+
     @Override
     Side whoseMove() {
         return _board.whoseMove();
@@ -65,6 +80,16 @@ class ConstantBoard extends Board {
         return _board.hashCode();
     }
 
+    @Override
+    void addListener(BoardListener listener) {
+        _board.addListener(listener);
+    }
+
+    @Override
+    void removeListener(BoardListener listener) {
+        _board.removeListener(listener);
+    }
+
     /* Mutators modified to do nothing. */
 
     @Override
@@ -91,6 +116,14 @@ class ConstantBoard extends Board {
     void undo() {
     }
 
+    @Override
+    void beginBatch() {
+    }
+
+    @Override
+    void endBatch() {
+    }
+
     @Override
     public String toString() {
         return _board.toString();
@@ -27,7 +27,7 @@ class Display extends TopLevel implements View, CommandSource, Reporter {
         addMenuButton("Game->New Game", this::newGame);
 
 
-        _boardWidget = new BoardWidget(_commandQueue);
+        _boardWidget = new BoardWidget(_commandQueue, this::pack);
         add(_boardWidget, new LayoutSpec("y", 1, "width", 2));
         display(true);
     }
@@ -46,10 +46,7 @@ class Display extends TopLevel implements View, CommandSource, Reporter {
 
     @Override
     public void update(Board board) {
-
         _boardWidget.update(board);
-        pack();
-        _boardWidget.repaint();
     }
 
     @Override
@@ -61,6 +58,11 @@ class Display extends TopLevel implements View, CommandSource, Reporter {
         }
     }
 
+    @Override
+    public String pollCommand() {
+        return _commandQueue.poll();
+    }
+
     @Override
     public void announceWin(Side side) {
         showMessage(String.format("%s wins!", side.toCapitalizedString()),
@@ -81,7 +83,9 @@ class Display extends TopLevel implements View, CommandSource, Reporter {
         showMessage(String.format(format, args), "Error", "error");
     }
 
-    /** Time interval in msec to wait after a board update. */
+    /** Time interval in msec to wait after a board update before
+     *  rendering it, so that the updates in that interval are rendered
+     *  together. */
     static final long BOARD_UPDATE_INTERVAL = 50;
 
     /** The widget that displays the actual playing board. */
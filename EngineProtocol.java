@@ -0,0 +1,429 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static jump61.GameException.error;
+import static jump61.Side.*;
+import static jump61.Utils.*;
+
+/** A line-based protocol, modeled on the Universal Chess Interface, by
+ *  which other programs (tournament managers, test harnesses) drive the
+ *  AI.  Nothing but replies to commands is written.  Commands are:
+ *
+ *    uci             Reply with id and option lines, then uciok.
+ *    isready         Reply readyok (at once, even during a search).
+ *    ucinewgame      Forget the results of earlier searches.
+ *    setoption name <name> value <v>
+ *                    Set option Hash (size of the transposition table
+ *                    in MB, 0 for none), Threads (number of threads
+ *                    per search), or Selective (true or false: whether
+ *                    to search selectively; see AI.setSelective).
+ *    position startpos [<N>] [moves <move> ...]
+ *                    Set the position to the initial N x N board
+ *                    (default 6), followed by the moves.
+ *    position dump [moves <move> ...]
+ *                    Set the position to the board in dump format on the
+ *                    following lines, followed by the moves.
+ *    go [depth <D>] [nodes <N>] [movetime <ms>] [infinite]
+ *                    Search from the position for the side to move,
+ *                    within the limits given (if none, until stopped).
+ *    stop            End the search in progress.
+ *    quit            Exit.
+ *
+ *  Moves are written <row>:<column>.  A search replies with a line
+ *      info depth <D> score <value> nodes <N> time <ms> nps <R> pv <move>
+ *  as each depth is completed, where value is "cp <V>" (V positive
+ *  favoring the side to move), "win", or "loss", and ends with
+ *      bestmove <move>
+ *  Commands other than isready, stop, and quit wait for any search in
+ *  progress to finish.  Errors are reported on "info string" lines.
+ *  @author Will Harvey
+ */
+class EngineProtocol {
+
+    /** Default size of the transposition table in MB. */
+    static final int DEFAULT_HASH = 16;
+    /** Maximum size of the transposition table in MB. */
+    static final int MAX_HASH = 4096;
+    /** Maximum number of threads per search. */
+    static final int MAX_THREADS = 256;
+
+    /** An engine that reads commands from IN and writes replies to OUT. */
+    EngineProtocol(BufferedReader in, PrintStream out) {
+        _in = in;
+        _out = out;
+        _board = new Board(Defaults.BOARD_SIZE);
+        for (Side side : new Side[] { RED, BLUE }) {
+            AI ai = new AI(null, side, 0);
+            ai.setListener(this::info);
+            _players[side.ordinal()] = ai;
+        }
+        setHash(DEFAULT_HASH);
+    }
+
+    /** Have the AI consult and update CACHE, which remains owned by the
+     *  caller. */
+    void setCache(AnalysisCache cache) {
+        for (AI ai : _players) {
+            if (ai != null) {
+                ai.setCache(cache);
+            }
+        }
+    }
+
+    /** Execute commands until quit or the end of input, and return an
+     *  exit code.  Any search in progress is then stopped, and its
+     *  result reported. */
+    int run() throws IOException {
+        try {
+            String line;
+            while ((line = _in.readLine()) != null) {
+                try {
+                    if (!execute(line)) {
+                        break;
+                    }
+                } catch (GameException excp) {
+                    send("info string error: %s", excp.getMessage());
+                } catch (NumberFormatException excp) {
+                    send("info string error: bad number in: %s", line);
+                } catch (ArrayIndexOutOfBoundsException excp) {
+                    send("info string error: argument(s) missing: %s",
+                         line);
+                }
+            }
+        } finally {
+            if (_searching != null) {
+                _searching.stop();
+            }
+            _searcher.shutdown();
+            try {
+                _searcher.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException excp) {
+                /* Exit without the result. */
+            }
+            if (_pool != null) {
+                _pool.shutdown();
+            }
+        }
+        return 0;
+    }
+
+    /** Execute the command LINE, returning false iff it is quit. */
+    private boolean execute(String line) throws IOException {
+        String[] words = words(line);
+        switch (words[0]) {
+        case "":
+            break;
+        case "uci":
+            send("id name %s", Defaults.VERSION);
+            send("id author Will Harvey");
+            send("option name Hash type spin default %d min 0 max %d",
+                 DEFAULT_HASH, MAX_HASH);
+            send("option name Threads type spin default 1 min 1 max %d",
+                 MAX_THREADS);
+            send("option name Selective type check default %b",
+                 _players[RED.ordinal()].isSelective());
+            send("uciok");
+            break;
+        case "isready":
+            send("readyok");
+            break;
+        case "stop":
+            if (_searching != null) {
+                _searching.stop();
+            }
+            break;
+        case "quit":
+            return false;
+        case "ucinewgame":
+            finishSearch();
+            if (_table != null) {
+                _table.clear();
+            }
+            break;
+        case "setoption":
+            finishSearch();
+            setOption(words);
+            break;
+        case "position":
+            finishSearch();
+            setPosition(words);
+            break;
+        case "go":
+            finishSearch();
+            go(words);
+            break;
+        default:
+            throw error("unknown command: %s", words[0]);
+        }
+        return true;
+    }
+
+    /** Set the option given by WORDS, a setoption command. */
+    private void setOption(String[] words) {
+        if (!words[1].equals("name")) {
+            throw error("expected: setoption name <name> value <value>");
+        }
+        int k;
+        StringBuilder name = new StringBuilder();
+        for (k = 2; k < words.length && !words[k].equals("value"); k += 1) {
+            name.append(name.length() == 0 ? "" : " ").append(words[k]);
+        }
+        if (k + 1 >= words.length) {
+            throw error("expected: setoption name <name> value <value>");
+        }
+        String word = words[k + 1];
+        int value;
+        switch (name.toString().toLowerCase()) {
+        case "selective":
+            if (!word.equals("true") && !word.equals("false")) {
+                throw error("Selective must be true or false");
+            }
+            for (AI ai : _players) {
+                if (ai != null) {
+                    ai.setSelective(word.equals("true"));
+                }
+            }
+            break;
+        case "hash":
+            value = toInt(word);
+            if (value < 0 || value > MAX_HASH) {
+                throw error("Hash must be between 0 and %d", MAX_HASH);
+            }
+            setHash(value);
+            break;
+        case "threads":
+            value = toInt(word);
+            if (value < 1 || value > MAX_THREADS) {
+                throw error("Threads must be between 1 and %d", MAX_THREADS);
+            }
+            if (_pool != null) {
+                _pool.shutdown();
+            }
+            _pool = value == 1 ? null : new ForkJoinPool(value);
+            for (AI ai : _players) {
+                if (ai != null) {
+                    ai.setPool(_pool);
+                }
+            }
+            break;
+        default:
+            throw error("unknown option: %s", name);
+        }
+    }
+
+    /** Use a transposition table of MEGABYTES MB, or none if 0. */
+    private void setHash(int megabytes) {
+        _table = megabytes == 0 ? null : new TranspositionTable(megabytes);
+        for (AI ai : _players) {
+            if (ai != null) {
+                ai.setTranspositionTable(_table);
+            }
+        }
+    }
+
+    /** Set the position as directed by WORDS, a position command. */
+    private void setPosition(String[] words) throws IOException {
+        Board board;
+        int k;
+        switch (words[1]) {
+        case "startpos":
+            int size = Defaults.BOARD_SIZE;
+            k = 2;
+            if (k < words.length && !words[k].equals("moves")) {
+                size = toInt(words[k]);
+                k += 1;
+            }
+            if (size < 2 || size > Defaults.MAX_BOARD_SIZE) {
+                throw error("size must be between 2 and %d",
+                            Defaults.MAX_BOARD_SIZE);
+            }
+            board = new Board(size);
+            break;
+        case "dump":
+            board = BoardCodec.parse(readDump());
+            k = 2;
+            break;
+        default:
+            throw error("expected: position startpos or position dump");
+        }
+        if (k < words.length) {
+            if (!words[k].equals("moves")) {
+                throw error("expected: moves");
+            }
+            for (k += 1; k < words.length; k += 1) {
+                int n = parseMove(board, words[k]);
+                if (board.getWinner() != null
+                    || !board.isLegal(board.whoseMove(), n)) {
+                    throw error("illegal move: %s", words[k]);
+                }
+                board.addSpot(board.whoseMove(), n);
+            }
+        }
+        _board = board;
+    }
+
+    /** Return the text of a board in dump format read from the lines of
+     *  input up to and including its closing delimiter. */
+    private String readDump() throws IOException {
+        StringBuilder text = new StringBuilder();
+        int delimiters;
+        delimiters = 0;
+        while (delimiters < 2) {
+            String line = _in.readLine();
+            if (line == null) {
+                throw error("unterminated board");
+            }
+            text.append(line).append('\n');
+            if (line.strip().equals(BoardCodec.DELIMITER)) {
+                delimiters += 1;
+            }
+        }
+        return text.toString();
+    }
+
+    /** Return the square number on BOARD of MOVE, written
+     *  <row>:<column>. */
+    private int parseMove(Board board, String move) {
+        int colon = move.indexOf(':');
+        if (colon < 0) {
+            throw error("bad move: %s", move);
+        }
+        int r = toInt(move.substring(0, colon)),
+            c = toInt(move.substring(colon + 1));
+        if (!board.exists(r, c)) {
+            throw error("bad move: %s", move);
+        }
+        return board.sqNum(r, c);
+    }
+
+    /** Return MOVE, a square number on BOARD, as written in the
+     *  protocol. */
+    private static String moveString(Board board, int move) {
+        return board.row(move) + ":" + board.col(move);
+    }
+
+    /** Start a search as directed by WORDS, a go command. */
+    private void go(String[] words) {
+        if (_board.getWinner() != null) {
+            throw error("game is over");
+        }
+        int depth = AI.MAX_SEARCH_DEPTH;
+        long nodes, movetime;
+        nodes = movetime = 0;
+        for (int k = 1; k < words.length; k += 1) {
+            switch (words[k]) {
+            case "depth":
+                k += 1;
+                depth = toInt(words[k]);
+                if (depth < 1 || depth > AI.MAX_SEARCH_DEPTH) {
+                    throw error("depth must be between 1 and %d",
+                                AI.MAX_SEARCH_DEPTH);
+                }
+                break;
+            case "nodes":
+                k += 1;
+                nodes = toLong(words[k]);
+                break;
+            case "movetime":
+                k += 1;
+                movetime = toLong(words[k]);
+                break;
+            case "infinite":
+                break;
+            default:
+                throw error("unknown go parameter: %s", words[k]);
+            }
+        }
+        if (nodes < 0 || movetime < 0) {
+            throw error("limits must not be negative");
+        }
+        AI ai = _players[_board.whoseMove().ordinal()];
+        ai.setMaxDepth(depth);
+        ai.setNodeLimit(nodes);
+        ai.setTimeLimit(movetime);
+        Board position = new Board(_board);
+        _position = position;
+        _searching = ai;
+        Future<Integer> search = ai.startSearch(_searcher, position, depth);
+        _search = search;
+        _searcher.execute(() -> {
+            try {
+                send("bestmove %s", moveString(position, search.get()));
+            } catch (InterruptedException | ExecutionException excp) {
+                send("info string error: search failed: %s", excp);
+            }
+        });
+    }
+
+    /** Wait for the search in progress, if any, to finish. */
+    private void finishSearch() {
+        if (_search == null) {
+            return;
+        }
+        try {
+            _search.get();
+        } catch (InterruptedException | ExecutionException excp) {
+            /* Reported with bestmove. */
+        }
+        _search = null;
+        _searching = null;
+    }
+
+    /** Report the completion of a search to DEPTH that found MOVE with
+     *  VALUE, after visiting NODES nodes in NANOS nanoseconds. */
+    private void info(int depth, int move, int value, long nodes,
+                      long nanos) {
+        if (_position.whoseMove() == BLUE) {
+            value = -value;
+        }
+        String score = value >= AI.RW ? "win"
+            : value <= AI.BW ? "loss" : "cp " + value;
+        send("info depth %d score %s nodes %d time %d nps %d pv %s",
+             depth, score, nodes, nanos / 1_000_000,
+             nodes * 1_000_000_000L / Math.max(1, nanos),
+             moveString(_position, move));
+    }
+
+    /** Write the line formed from FORMAT and ARGS, as for String.format,
+     *  to the output at once. */
+    private synchronized void send(String format, Object... args) {
+        _out.println(String.format(format, args));
+        _out.flush();
+    }
+
+    /** Source of commands. */
+    private final BufferedReader _in;
+    /** Destination of replies. */
+    private final PrintStream _out;
+    /** The current position. */
+    private Board _board;
+    /** The position being searched, or last searched. */
+    private volatile Board _position;
+    /** AI players, indexed by Side ordinal. */
+    private final AI[] _players = new AI[Side.values().length];
+    /** The players' transposition table, or null. */
+    private TranspositionTable _table;
+    /** Pool on which the players search in parallel, or null. */
+    private ForkJoinPool _pool;
+    /** The search in progress or last started, or null. */
+    private Future<Integer> _search;
+    /** The AI that is searching, or null. */
+    private AI _searching;
+    /** Runs searches and reports their results. */
+    private final ExecutorService _searcher =
+        Executors.newSingleThreadExecutor((task) -> {
+            Thread thread = new Thread(task, "jump61-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+}
@@ -0,0 +1,67 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Unit tests of the engine protocol.
+ *  @author Will Harvey
+ */
+public class EngineProtocolTest {
+
+    /** Return the replies of an engine to the commands in INPUT. */
+    private String[] run(String input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EngineProtocol engine =
+            new EngineProtocol(new BufferedReader(new StringReader(input)),
+                               new PrintStream(out));
+        assertEquals(0, engine.run());
+        return out.toString().split("\n");
+    }
+
+    @Test
+    public void testSearch() throws IOException {
+        String[] replies =
+            run("uci\nisready\nposition startpos 4 moves 1:1 4:4\n"
+                + "go depth 3\nposition startpos 3\nquit\n");
+        assertEquals("uciok", replies[5]);
+        assertEquals("readyok", replies[6]);
+        assertTrue(replies[7].startsWith("info depth 1 score cp "));
+        assertTrue(replies[9].startsWith("info depth 3 "));
+        assertTrue(replies[10].matches("bestmove [1-4]:[1-4]"));
+        assertEquals(11, replies.length);
+    }
+
+    @Test
+    public void testSelective() throws IOException {
+        String[] replies =
+            run("uci\nsetoption name Selective value true\n"
+                + "position startpos 4\ngo depth 3\nposition startpos\n");
+        assertEquals("option name Selective type check default false",
+                     replies[4]);
+        assertTrue(replies[8].startsWith("info depth 3 "));
+        assertTrue(replies[9].matches("bestmove [1-4]:[1-4]"));
+        replies = run("setoption name Selective value maybe\n");
+        assertEquals("info string error: Selective must be true or false",
+                     replies[0]);
+    }
+
+    @Test
+    public void testDumpAndErrors() throws IOException {
+        String[] replies =
+            run("position dump moves 2:2\n===\n  2r 1- \n  1- 1- \n===\n"
+                + "frob\nposition startpos moves 0:1\ngo nodes 1000\n"
+                + "position startpos\n");
+        assertEquals("info string error: unknown command: frob", replies[0]);
+        assertEquals("info string error: bad move: 0:1", replies[1]);
+        assertTrue(replies[2].startsWith("info depth 1 score cp 160 nodes 4 "));
+        assertTrue(replies[replies.length - 1].matches("bestmove [12]:[12]"));
+    }
+
+}
@@ -0,0 +1,168 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static jump61.GameException.error;
+import static jump61.Side.*;
+
+/** A static evaluation of positions as a weighted sum of features, each
+ *  of which is a count for Red minus the same count for Blue:
+ *      SQUARES   squares owned,
+ *      SPOTS     spots on squares owned,
+ *      CRITICAL  critical squares owned (those that explode when they
+ *                receive another spot),
+ *      ATTACKS   critical squares owned next to a square of the
+ *                opponent,
+ *      CORNERS   corner squares owned,
+ *      TEMPO     1 if the side is to move, and otherwise 0.
+ *  Values are positive when favorable to Red, in units such that a value
+ *  of V estimates the odds of a win for Red at e^(V / SCALE) to 1.
+ *  Weights are tuned to match the outcomes of self-play games (see
+ *  Tuner), and may be read from and written to weights files, which hold
+ *  one line "NAME WEIGHT" per feature (in any order; features not
+ *  mentioned have weight 0).  Blank lines and text after '#' are
+ *  ignored.
+ *  @author Will Harvey
+ */
+class Evaluation {
+
+    /** Feature indices. */
+    static final int SQUARES = 0, SPOTS = 1, CRITICAL = 2, ATTACKS = 3,
+        CORNERS = 4, TEMPO = 5;
+
+    /** Number of features. */
+    static final int NUM_FEATURES = 6;
+
+    /** Names of the features in weights files, indexed by feature. */
+    static final String[] FEATURE_NAMES = {
+        "squares", "spots", "critical", "attacks", "corners", "tempo"
+    };
+
+    /** Value corresponding to odds of e to 1. */
+    static final int SCALE = 1000;
+
+    /** Weights tuned to 33,184 positions from 600 self-play games (with
+     *  the weights of an earlier round of tuning) on boards of sizes 4 to
+     *  8, searching 3 moves ahead. */
+    static final Evaluation DEFAULT =
+        new Evaluation(new int[] { 48, -14, 82, 70, 34, 114 });
+
+    /** An evaluation with weights WEIGHTS, indexed by feature. */
+    Evaluation(int[] weights) {
+        assert weights.length == NUM_FEATURES;
+        _weights = weights.clone();
+        int margin;
+        margin = 2 * Math.abs(_weights[TEMPO]);
+        for (int f : new int[] { SQUARES, SPOTS, CRITICAL, ATTACKS,
+                                 CORNERS }) {
+            margin += Math.abs(_weights[f]);
+        }
+        _quietMargin = margin;
+    }
+
+    /** Return the evaluation in the weights file FILE.  Throws a
+     *  GameException if FILE is malformed. */
+    static Evaluation read(Path file) throws IOException {
+        int[] weights = new int[NUM_FEATURES];
+        try (BufferedReader inp = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = inp.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                String[] words = Utils.words(line);
+                if (words[0].isEmpty()) {
+                    continue;
+                }
+                int f = Arrays.asList(FEATURE_NAMES).indexOf(words[0]);
+                if (words.length != 2 || f < 0) {
+                    throw error("bad weights line in %s: %s", file, line);
+                }
+                try {
+                    weights[f] = Utils.toInt(words[1]);
+                } catch (NumberFormatException excp) {
+                    throw error("bad weight in %s: %s", file, line);
+                }
+            }
+        }
+        return new Evaluation(weights);
+    }
+
+    /** Write my weights to OUT in weights-file format. */
+    void write(PrintStream out) {
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            out.printf("%-9s %d%n", FEATURE_NAMES[f], _weights[f]);
+        }
+    }
+
+    /** Return my weights, indexed by feature. */
+    int[] weights() {
+        return _weights.clone();
+    }
+
+    /** Return the value of BOARD, which need not be a won position. */
+    int value(Board board) {
+        int[] features = new int[NUM_FEATURES];
+        features(board, features);
+        int value;
+        value = 0;
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            value += _weights[f] * features[f];
+        }
+        return value;
+    }
+
+    /** Return a bound on the amount by which a move that does not
+     *  explode, and is not next to a critical square, can improve my
+     *  value for the side that makes it. */
+    int quietMargin() {
+        return _quietMargin;
+    }
+
+    /** Set FEATURES[F] to the value of feature F of BOARD for each F. */
+    static void features(Board board, int[] features) {
+        Arrays.fill(features, 0);
+        board = board.contents();
+        int size = board.size(), last = size * size - 1;
+        for (int n = 0; n <= last; n += 1) {
+            int owner = board.owner(n), spots = board.spots(n);
+            if (owner == WHITE_ORDINAL) {
+                continue;
+            }
+            int sense = owner == RED_ORDINAL ? 1 : -1;
+            features[SQUARES] += sense;
+            features[SPOTS] += sense * spots;
+            if (n == 0 || n == size - 1 || n == last - size + 1
+                || n == last) {
+                features[CORNERS] += sense;
+            }
+            if (spots == board.neighbors(n)) {
+                features[CRITICAL] += sense;
+                int c = n % size, opponent = RED_ORDINAL + BLUE_ORDINAL - owner;
+                if (n >= size && board.owner(n - size) == opponent
+                    || n + size <= last && board.owner(n + size) == opponent
+                    || c > 0 && board.owner(n - 1) == opponent
+                    || c < size - 1 && board.owner(n + 1) == opponent) {
+                    features[ATTACKS] += sense;
+                }
+            }
+        }
+        features[TEMPO] = board.whoseMove() == RED ? 1 : -1;
+    }
+
+    /** Ordinals of the Sides. */
+    private static final int WHITE_ORDINAL = WHITE.ordinal(),
+        RED_ORDINAL = RED.ordinal(), BLUE_ORDINAL = BLUE.ordinal();
+
+    /** Weights, indexed by feature. */
+    private final int[] _weights;
+    /** Value of quietMargin(). */
+    private final int _quietMargin;
+
+}
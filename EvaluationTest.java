@@ -0,0 +1,109 @@
+package jump61;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static jump61.Evaluation.*;
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of evaluations and their tuning.
+ *  @author Will Harvey
+ */
+public class EvaluationTest {
+
+    @Test
+    public void testFeatures() {
+        Board board = BoardCodec.parse("===\n"
+                                       + "    2r 3b 1-\n"
+                                       + "    1- 2b 2r\n"
+                                       + "    1r 1- 1-\n"
+                                       + "===\n");
+        int[] features = new int[NUM_FEATURES];
+        Evaluation.features(board, features);
+        assertEquals(3 - 2, features[SQUARES]);
+        assertEquals(5 - 5, features[SPOTS]);
+        assertEquals(1 - 1, features[CRITICAL]);
+        assertEquals(1 - 1, features[ATTACKS]);
+        assertEquals(2 - 0, features[CORNERS]);
+        assertEquals(board.whoseMove() == RED ? 1 : -1, features[TEMPO]);
+        int[] weights = { 1, 10, 100, 1000, 10000, 100000 };
+        assertEquals(1 + 20000 + 100000 * features[TEMPO],
+                     new Evaluation(weights).value(board));
+    }
+
+    @Test
+    public void testQuietMargin() {
+        Evaluation eval = DEFAULT;
+        Random random = new Random(44);
+        for (int game = 0; game < 20; game += 1) {
+            Board board = new Board(3 + game % 5);
+            int size2 = board.size() * board.size();
+            while (board.getWinner() == null) {
+                Side player = board.whoseMove();
+                int sense = player == RED ? 1 : -1;
+                int before = eval.value(board);
+                for (int n = 0; n < size2; n += 1) {
+                    if (board.isLegal(player, n) && quiet(board, n)) {
+                        board.addSpot(player, n);
+                        assertTrue(sense * (eval.value(board) - before)
+                                   <= eval.quietMargin());
+                        board.undo();
+                    }
+                }
+                int n;
+                do {
+                    n = random.nextInt(size2);
+                } while (!board.isLegal(player, n));
+                board.addSpot(player, n);
+            }
+        }
+    }
+
+    /** Return true iff neither square #N of BOARD nor any of its neighbors
+     *  is critical. */
+    private static boolean quiet(Board board, int n) {
+        int size = board.size();
+        for (int k : new int[] { n, n - size, n + size,
+                                 n % size > 0 ? n - 1 : -1,
+                                 n % size < size - 1 ? n + 1 : -1 }) {
+            if (board.exists(k)
+                && board.get(k).getSpots() == board.neighbors(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void testWeightsFiles() throws IOException {
+        Evaluation eval = new Evaluation(new int[] { 3, -1, 4, 1, -5, 9 });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        eval.write(new PrintStream(out, true));
+        Path file = Files.createTempFile("jump61", ".weights");
+        try {
+            Files.writeString(file, "# tuned\n\n" + out);
+            assertArrayEquals(eval.weights(),
+                              Evaluation.read(file).weights());
+            Files.writeString(file, "critical 7  # only\n");
+            assertArrayEquals(new int[] { 0, 0, 7, 0, 0, 0 },
+                              Evaluation.read(file).weights());
+            Files.writeString(file, "critical seven\n");
+            try {
+                Evaluation.read(file);
+                fail("read a malformed weights file");
+            } catch (GameException excp) {
+                /* Expected. */
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
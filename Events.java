@@ -0,0 +1,225 @@
+package jump61;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Registered;
+import jdk.jfr.StackTrace;
+
+/** Java Flight Recorder events describing where the program spends its
+ *  time: moves (with their cascades), AI searches, commands, and output
+ *  through Reporters.
+ *
+ *  The events are registered, and the program creates them, only after
+ *  enable() is called (by the --events option).  Until then, each
+ *  instrumented operation costs one test of a static field.  Once
+ *  enabled, events are recorded by any JFR recording, such as one
+ *  started with -XX:StartFlightRecording or jcmd JFR.start, and cost
+ *  almost nothing when no recording is running.
+ *  @author Will Harvey
+ */
+class Events {
+
+    /** Register the events and start creating them. */
+    static void enable() {
+        FlightRecorder.register(MoveEvent.class);
+        FlightRecorder.register(SearchEvent.class);
+        FlightRecorder.register(CommandEvent.class);
+        FlightRecorder.register(OutputEvent.class);
+        _enabled = true;
+    }
+
+    /** Return true iff events are to be created. */
+    static boolean enabled() {
+        return _enabled;
+    }
+
+    /** Return a Reporter that passes everything to REPORTER, recording an
+     *  OutputEvent for each message if events are enabled. */
+    static Reporter reporter(Reporter reporter) {
+        if (!_enabled) {
+            return reporter;
+        }
+        return new Reporter() {
+            @Override
+            public void announceWin(Side side) {
+                OutputEvent event = start("win", side.toString());
+                try {
+                    reporter.announceWin(side);
+                } finally {
+                    event.commit();
+                }
+            }
+
+            @Override
+            public void announceMove(int row, int col) {
+                OutputEvent event = start("move", row + " " + col);
+                try {
+                    reporter.announceMove(row, col);
+                } finally {
+                    event.commit();
+                }
+            }
+
+            @Override
+            public void msg(String format, Object... args) {
+                OutputEvent event = start("message", format);
+                try {
+                    reporter.msg(format, args);
+                } finally {
+                    event.commit();
+                }
+            }
+
+            @Override
+            public void err(String format, Object... args) {
+                OutputEvent event = start("error", format);
+                try {
+                    reporter.err(format, args);
+                } finally {
+                    event.commit();
+                }
+            }
+
+            @Override
+            public void showBoard(Board board, boolean display) {
+                OutputEvent event = start("board", display ? "display"
+                                          : "dump");
+                try {
+                    reporter.showBoard(board, display);
+                } finally {
+                    event.commit();
+                }
+            }
+
+            @Override
+            public void log(String format, Object... args) {
+                OutputEvent event = start("log", format);
+                try {
+                    reporter.log(format, args);
+                } finally {
+                    event.commit();
+                }
+            }
+
+            @Override
+            public void sync() {
+                reporter.sync();
+            }
+
+            /** Return a started event for output of kind KIND, described
+             *  by TEXT. */
+            private OutputEvent start(String kind, String text) {
+                OutputEvent event = new OutputEvent();
+                event.kind = kind;
+                event.text = text;
+                event.begin();
+                return event;
+            }
+        };
+    }
+
+    /** One move on a game's board: Board.addSpot. */
+    @Name("jump61.Move")
+    @Label("Move")
+    @Category("jump61")
+    @Description("A move, including the resolution of its cascade")
+    @StackTrace(false)
+    @Registered(false)
+    static class MoveEvent extends Event {
+        /** Row and column of the move. */
+        @Label("Move")
+        String move;
+        /** Player making the move. */
+        @Label("Player")
+        String player;
+        /** Board size. */
+        @Label("Size")
+        int size;
+        /** Number of explosions in the cascade. */
+        @Label("Explosions")
+        int explosions;
+        /** Number of waves in the cascade. */
+        @Label("Waves")
+        int waves;
+        /** Number of squares that changed color. */
+        @Label("Squares Flipped")
+        int flipped;
+        /** The exception that ended the move, or null. */
+        @Label("Failure")
+        String failure;
+    }
+
+    /** One AI search: AI.searchForMove. */
+    @Name("jump61.Search")
+    @Label("AI Search")
+    @Category("jump61")
+    @Description("A search for an automated player's move")
+    @StackTrace(false)
+    @Registered(false)
+    static class SearchEvent extends Event {
+        /** Player searching. */
+        @Label("Player")
+        String player;
+        /** Board size. */
+        @Label("Size")
+        int size;
+        /** Depth of the deepest search completed. */
+        @Label("Depth")
+        int depth;
+        /** Number of nodes visited (each involving a board copy). */
+        @Label("Nodes")
+        long nodes;
+        /** Row and column of the move chosen. */
+        @Label("Move")
+        String move;
+        /** Value of the move chosen, positive favoring Red. */
+        @Label("Value")
+        int value;
+        /** True iff the search was stopped early. */
+        @Label("Stopped")
+        boolean stopped;
+        /** The exception that ended the search, or null. */
+        @Label("Failure")
+        String failure;
+    }
+
+    /** One command: Game.executeCommand. */
+    @Name("jump61.Command")
+    @Label("Command")
+    @Category("jump61")
+    @Description("Execution of one command or move entered by a player")
+    @StackTrace(false)
+    @Registered(false)
+    static class CommandEvent extends Event {
+        /** The command. */
+        @Label("Command")
+        String command;
+        /** The exception that ended the command, or null. */
+        @Label("Failure")
+        String failure;
+    }
+
+    /** One message sent through a Reporter. */
+    @Name("jump61.Output")
+    @Label("Output")
+    @Category("jump61")
+    @Description("A message sent to the user through a Reporter")
+    @StackTrace(false)
+    @Registered(false)
+    static class OutputEvent extends Event {
+        /** Kind of output: win, move, message, or error. */
+        @Label("Kind")
+        String kind;
+        /** The message's format, or the move or winner announced. */
+        @Label("Text")
+        String text;
+    }
+
+    /** True iff events are to be created. */
+    private static volatile boolean _enabled;
+
+}
@@ -1,6 +1,20 @@
 
 package jump61;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static jump61.Side.*;
 import static jump61.GameException.error;
 import static jump61.Utils.*;
@@ -15,11 +29,47 @@ class Game {
 
     /** A list of all commands. */
     private static final String[] COMMAND_NAMES = {
-        "auto", "board", "clear", "dump", "help", "manual",
-        "new", "q", "quiet", "quit",
-        "seed", "set", "size", "start", "verbose",
+        "auto", "board", "clear", "dump", "force", "help", "load", "manual",
+        "new", "perft", "q", "quiet", "quit", "save",
+        "seed", "set", "size", "solve", "start", "time", "verbose",
     };
 
+    /** Interval in msec at which to poll for commands while an AI is
+     *  searching. */
+    static final long POLL_INTERVAL = 50;
+
+    /** Size of the table of the solver in MB. */
+    static final int SOLVER_MEGABYTES = 4;
+    /** Default node limit of the solve command. */
+    static final long SOLVE_NODES = 1_000_000;
+    /** Node limit of the solver when used by AIs before each search. */
+    static final long SOLVER_NODES = 500;
+
+    /** Value in COMMAND_PREFIXES of prefixes of more than one command. */
+    private static final String AMBIGUOUS = new String("?");
+
+    /** Maps each command name to itself, and each other prefix of a
+     *  command name to that name, or to AMBIGUOUS if it is a prefix of
+     *  more than one. */
+    private static final HashMap<String, String> COMMAND_PREFIXES =
+        new HashMap<>();
+
+    static {
+        for (String name : COMMAND_NAMES) {
+            for (int k = 1; k < name.length(); k += 1) {
+                String prefix = name.substring(0, k);
+                if (COMMAND_PREFIXES.containsKey(prefix)) {
+                    COMMAND_PREFIXES.put(prefix, AMBIGUOUS);
+                } else {
+                    COMMAND_PREFIXES.put(prefix, name);
+                }
+            }
+        }
+        for (String name : COMMAND_NAMES) {
+            COMMAND_PREFIXES.put(name, name);
+        }
+    }
+
     /** A new Game that takes command/move input from INP, logs
      *  commands if LOGGING, displays the board using VIEW, and uses REPORTER
      *  for messages to the user and error messages. SEED is intended to
@@ -35,6 +85,7 @@ class Game {
         _board = new Board(Defaults.BOARD_SIZE);
         _readonlyBoard = new ConstantBoard(_board);
         _board.setNotifier((b) -> _view.update(b));
+        _board.setMoveEvents(true);
     }
 
     /** Returns a readonly view of the game board.  This board remains valid
@@ -43,6 +94,13 @@ class Game {
         return _readonlyBoard;
     }
 
+    /** Return a new hub broadcasting the changes to my board, which
+     *  delivers them on EXECUTOR.  The hub must be created and closed by
+     *  the thread executing my commands. */
+    SpectatorHub spectate(Executor executor) {
+        return new SpectatorHub(_board, executor);
+    }
+
     /** Return true iff the current game is not over. */
     boolean gameInProgress() {
         return _board.getWinner() == null;
@@ -52,46 +110,212 @@ class Game {
      *  and proceeds until the user exits.  Returns an exit code: 0 is
      *  normal; any positive quantity indicates an error.  */
     int play() {
-        boolean winnerAnnounced;
-
         System.out.println("Welcome to " + Defaults.VERSION);
-        _board.clear(Defaults.BOARD_SIZE);
-        setManual(RED);
-        setAuto(BLUE);
-        _exit = -1;
-        winnerAnnounced = false;
+        start();
         while (_exit < 0) {
-            String cmnd;
             _view.update(_board);
-            if (_board.getWinner() == null) {
-                winnerAnnounced = false;
+            checkForWin();
+            if (gameInProgress()) {
+                Player player = getPlayer(_board.whoseMove());
                 try {
-                    executeCommand(getPlayer(_board.whoseMove()).getMove());
+                    if (player instanceof AI) {
+                        runAI((AI) player);
+                    } else {
+                        executeCommand(player.getMove());
+                    }
                 } catch (GameException e) {
                     reportError(e.getMessage());
                 }
-            } else if (!gameInProgress()) {
-                if (!winnerAnnounced) {
-                    _reporter.announceWin(_board.getWinner());
-                    winnerAnnounced = true;
-                }
+            } else {
                 executeCommand(getCommand());
             }
         }
+        _reporter.sync();
         return _exit;
     }
 
-    /** Return a suggested prompt for command input. */
-    private String prompt() {
-        if (gameInProgress()) {
-            return String.format("%s> ", _board.whoseMove());
+    /** Start a session: set up a new game of the default size between a
+     *  manual Red player and an automated Blue player.  A session driven
+     *  by play() does this itself; other drivers call start() once and
+     *  then feed input to acceptCommand, making automated moves found by
+     *  autoPlayer() with makeAutoMove, until sessionOver(). */
+    void start() {
+        _board.clear(Defaults.BOARD_SIZE);
+        setManual(RED);
+        setAuto(BLUE);
+        startRecord();
+        _exit = -1;
+        _winnerAnnounced = false;
+    }
+
+    /** Return true iff the current session has ended. */
+    boolean sessionOver() {
+        return _exit >= 0;
+    }
+
+    /** Return the exit code of the session, once sessionOver(). */
+    int exitCode() {
+        return _exit;
+    }
+
+    /** Execute CMND, a line of input from the user, treating it as a move
+     *  by the player to move if that player is manual.  Rejects a move
+     *  that is illegal for that player, as the player would. */
+    void acceptCommand(String cmnd) {
+        Player player = getPlayer(_board.whoseMove());
+        if (gameInProgress() && player instanceof HumanPlayer
+            && !((HumanPlayer) player).isValidMove(cmnd)) {
+            reportError("invalid move: %s", cmnd);
         } else {
+            executeCommand(cmnd);
+        }
+        checkForWin();
+    }
+
+    /** Return the automated player whose move it is, or null if the game
+     *  or session is over or the player to move is manual. */
+    AI autoPlayer() {
+        Player player = getPlayer(_board.whoseMove());
+        if (sessionOver() || !gameInProgress() || !(player instanceof AI)) {
+            return null;
+        }
+        return (AI) player;
+    }
+
+    /** Make move #N, as found by autoPlayer(), reporting it as the
+     *  automated player's move. */
+    void makeAutoMove(int n) {
+        reportMove(_board.row(n), _board.col(n));
+        makeMove(n);
+        checkForWin();
+    }
+
+    /** Announce the winner if the current game has ended and its
+     *  winner has not yet been announced. */
+    private void checkForWin() {
+        if (gameInProgress()) {
+            _winnerAnnounced = false;
+        } else if (!_winnerAnnounced) {
+            _reporter.announceWin(_board.getWinner());
+            _reporter.sync();
+            _winnerAnnounced = true;
+        }
+    }
+
+    /** Have AI, the player to move, search for a move in the background
+     *  and make it.  Meanwhile, execute any commands that the input source
+     *  offers without waiting (see CommandSource.pollCommand): "force"
+     *  and "time" apply to the search, commands that only display
+     *  information are executed at once, moves are rejected, and any
+     *  other command ends the search without a move and is then
+     *  executed. */
+    private void runAI(AI ai) {
+        Future<Integer> search = ai.startSearch(searcher());
+        _searching = ai;
+        try {
+            while (true) {
+                try {
+                    int move = search.get(POLL_INTERVAL, MILLISECONDS);
+                    reportMove(_board.row(move), _board.col(move));
+                    executeCommand(_board.moveString(move));
+                    return;
+                } catch (TimeoutException excp) {
+                    String cmnd = _inp.pollCommand();
+                    if (cmnd == null) {
+                        continue;
+                    } else if (!executeDuringSearch(cmnd)) {
+                        ai.stop();
+                        search.get();
+                        executeCommand(cmnd);
+                        return;
+                    }
+                    deliverOutput();
+                }
+            }
+        } catch (InterruptedException excp) {
+            throw new Error("unexpected interrupt");
+        } catch (ExecutionException excp) {
+            throw new Error("AI search failed", excp.getCause());
+        } finally {
+            _searching = null;
+        }
+    }
+
+    /** Execute CMND and return true if it may be executed while an AI
+     *  searches for a move.  Otherwise, return false. */
+    private boolean executeDuringSearch(String cmnd) {
+        if (parseMove(cmnd, _move)) {
+            reportError("it is not your move");
+            return true;
+        }
+        String name;
+        try {
+            name = canonicalizeCommand(words(cmnd.toLowerCase())[0]);
+        } catch (GameException excp) {
+            reportError(excp.getMessage());
+            return true;
+        }
+        switch (name) {
+        case "#": case "": case "board": case "dump": case "force":
+        case "help": case "quiet": case "seed": case "time": case "verbose":
+            executeCommand(cmnd);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Return the executor on which AIs search in the background,
+     *  creating it if needed. */
+    private ExecutorService searcher() {
+        if (_searcher == null) {
+            _searcher = Executors.newSingleThreadExecutor((task) -> {
+                Thread thread = new Thread(task, "jump61-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _searcher;
+    }
+
+    /** Limit the time automated players spend searching for each move to
+     *  SECONDS, or remove the limit if SECONDS is 0.  Applies to a search
+     *  in progress. */
+    private void setTimeLimit(double seconds) {
+        if (seconds < 0) {
+            throw error("time limit must not be negative");
+        }
+        _timeLimit = Math.round(seconds * 1000);
+        for (Player player : _players) {
+            if (player instanceof AI) {
+                ((AI) player).setTimeLimit(_timeLimit);
+            }
+        }
+    }
+
+    /** Have an AI that is searching for a move make the best move it has
+     *  found so far. */
+    private void forceMove() {
+        if (_searching == null) {
+            throw error("no move is being searched for");
+        }
+        _searching.stop();
+    }
+
+    /** Return a suggested prompt for command input. */
+    String prompt() {
+        if (!gameInProgress()) {
             return "+> ";
+        } else if (_board.whoseMove() == RED) {
+            return "red> ";
+        } else {
+            return "blue> ";
         }
     }
 
     /** Return a command from the current source. */
     String getCommand() {
+        deliverOutput();
         String cmnd = _inp.getCommand(prompt());
         if (cmnd == null) {
             return "quit";
@@ -100,10 +324,22 @@ class Game {
         }
     }
 
+    /** Deliver the output sent so far, if my input source prompts for
+     *  input (and so its user is waiting for it). */
+    private void deliverOutput() {
+        if (_inp.prompts()) {
+            _reporter.sync();
+        }
+    }
+
     /** Add a spot to R C, if legal to do so. */
     void makeMove(int r, int c) {
+        if (!_board.exists(r, c)) {
+            throw error("square location is invalid");
+        }
         assert _board.isLegal(_board.whoseMove(), r, c);
         _board.addSpot(_board.whoseMove(), r, c);
+        recordMove(_board.sqNum(r, c));
         if (_verbose) {
             printBoard();
         }
@@ -113,11 +349,102 @@ class Game {
     void makeMove(int n) {
         assert _board.isLegal(_board.whoseMove(), n);
         _board.addSpot(_board.whoseMove(), n);
+        recordMove(n);
         if (_verbose) {
             printBoard();
         }
     }
 
+    /** Record all subsequent games on RECORDER, which remains owned by
+     *  the caller (who must eventually close it). */
+    void setRecorder(GameRecordWriter recorder) {
+        _recorder = recorder;
+    }
+
+    /** Have automated players consult and update CACHE, which remains
+     *  owned by the caller. */
+    void setCache(AnalysisCache cache) {
+        _cache = cache;
+        for (Player player : _players) {
+            if (player instanceof AI) {
+                ((AI) player).setCache(cache);
+            }
+        }
+    }
+
+    /** Have automated players try the proof solver on each position,
+     *  expanding up to NODES positions, before searching it, or never if
+     *  NODES is 0.  By default, they do, with SOLVER_NODES. */
+    void setSolverNodes(long nodes) {
+        _solverNodes = nodes;
+        for (Player player : _players) {
+            if (player instanceof AI) {
+                ((AI) player).setSolver(nodes > 0 ? _solver : null, nodes);
+            }
+        }
+    }
+
+    /** Start recording a new game from the current (initial) position,
+     *  first saving any unfinished game that has moves, and clear the
+     *  move history. */
+    private void startRecord() {
+        _historyLength = 0;
+        if (_recorder == null) {
+            return;
+        }
+        try {
+            if (_recorder.inGame() && _recorder.numMoves() > 0) {
+                _recorder.endGame(null);
+            }
+            _recorder.beginGame(_board.size(), _seed, playerSettings(),
+                                AI.SEARCH_DEPTH);
+        } catch (IOException excp) {
+            recordError(excp);
+        }
+    }
+
+    /** Return the player settings: a combination of GameRecord.RED_AUTO
+     *  and GameRecord.BLUE_AUTO. */
+    private int playerSettings() {
+        int settings;
+        settings = 0;
+        if (getPlayer(RED) instanceof AI) {
+            settings |= GameRecord.RED_AUTO;
+        }
+        if (getPlayer(BLUE) instanceof AI) {
+            settings |= GameRecord.BLUE_AUTO;
+        }
+        return settings;
+    }
+
+    /** Record a move to square #N in the move history, and in the game
+     *  record with the result if it ended the game. */
+    private void recordMove(int n) {
+        if (_historyLength == _history.length) {
+            _history = Arrays.copyOf(_history, 2 * _history.length);
+        }
+        _history[_historyLength] = n;
+        _historyLength += 1;
+        if (_recorder == null || !_recorder.inGame()) {
+            return;
+        }
+        _recorder.move(n);
+        if (_board.getWinner() != null) {
+            try {
+                _recorder.endGame(_board.getWinner());
+            } catch (IOException excp) {
+                recordError(excp);
+            }
+        }
+    }
+
+    /** Report EXCP, a failure to write a game record, and stop
+     *  recording. */
+    private void recordError(IOException excp) {
+        _recorder = null;
+        reportError("could not write game record: %s", excp.getMessage());
+    }
+
     /** Return the side denoted by COLOR (which must be lower case).  */
     Side toSide(String color) {
         switch (color) {
@@ -148,7 +475,11 @@ class Game {
 
     /** Make the player of COLOR an AI for subsequent moves. */
     private void setAuto(Side color) {
-        setPlayer(color, new AI(this, color, _seed));
+        AI ai = new AI(this, color, _seed);
+        ai.setTimeLimit(_timeLimit);
+        ai.setCache(_cache);
+        ai.setSolver(_solverNodes > 0 ? _solver : null, _solverNodes);
+        setPlayer(color, ai);
         _seed += 1;
     }
 
@@ -171,21 +502,95 @@ class Game {
     /** Clear the board to its initial state. */
     void clear() {
         _board.clear(_board.size());
+        startRecord();
     }
 
     /** Print the current board using standard board-dump format. */
     private void dump() {
-        _reporter.msg(_board.toString());
+        _reporter.showBoard(_board, false);
     }
 
     /** Print a board with row/column numbers. */
     private void printBoard() {
-        _reporter.msg(_board.toDisplayString());
+        _reporter.showBoard(_board, true);
     }
 
     /** Print a help message. */
     private void help() {
-        printHelpResource(HELP, System.out);
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        printHelpResource(HELP, new PrintStream(text));
+        _reporter.msg("%s", text.toString().stripTrailing());
+    }
+
+    /** Count the leaves of the game tree DEPTH moves below the current
+     *  position and report them, along with the search rate.  OPTIONS
+     *  may include "divide" (also report the count below each move),
+     *  "unique" (count only distinct positions), and "parallel" (search
+     *  below the root moves in parallel). */
+    private void perft(int depth, String... options) {
+        boolean divide, unique, parallel;
+        divide = unique = parallel = false;
+        for (String option : options) {
+            switch (option) {
+            case "divide":
+                divide = true;
+                break;
+            case "unique":
+                unique = true;
+                break;
+            case "parallel":
+                parallel = true;
+                break;
+            default:
+                throw error("unknown perft option: %s", option);
+            }
+        }
+        Perft perft = new Perft(_board, unique, parallel);
+        long leaves = perft.run(depth);
+        if (divide) {
+            int[] moves = perft.rootMoves();
+            long[] counts = perft.rootCounts();
+            for (int k = 0; k < moves.length; k += 1) {
+                _reporter.msg("%s: %d", _board.moveString(moves[k]),
+                              counts[k]);
+            }
+        }
+        _reporter.msg("perft %d: %d leaves, %d nodes in %d ms"
+                      + " (%d nodes/sec)", depth, leaves, perft.nodes(),
+                      perft.elapsedNanos() / 1_000_000,
+                      perft.nodesPerSecond());
+    }
+
+    /** Try to prove a forced win for the side to move in the current
+     *  position, or for the other side, expanding at most NODES
+     *  positions, and report the result, with a winning line if the side
+     *  to move wins. */
+    private void solve(long nodes) {
+        if (_board.getWinner() != null) {
+            throw error("game is over");
+        } else if (nodes <= 0) {
+            throw error("node limit must be positive");
+        }
+        Side player = _board.whoseMove();
+        switch (_solver.solve(_board, nodes)) {
+        case ProofSolver.PROVEN:
+            StringBuilder line = new StringBuilder();
+            for (int move : _solver.line()) {
+                line.append(line.length() == 0 ? "" : ", ")
+                    .append(_board.moveString(move));
+            }
+            _reporter.msg("%s wins: %s", player.toCapitalizedString(), line);
+            break;
+        case ProofSolver.DISPROVEN:
+            _reporter.msg("%s wins against any move.",
+                          player.opposite().toCapitalizedString());
+            break;
+        default:
+            _reporter.msg("No result within %d nodes.", nodes);
+            break;
+        }
+        _reporter.msg("solve: %d nodes in %d ms", _solver.nodes(),
+                      _solver.elapsedNanos() / 1_000_000);
     }
 
     /** Seed the random-number generator with SEED. */
@@ -201,12 +606,61 @@ class Game {
         if (_board.exists(r, c) && spots >= 0
             && spots <= _board.neighbors(r, c)) {
             _board.set(r, c, spots, toSide(color));
+            _historyLength = 0;
+            if (_recorder != null) {
+                _recorder.discardGame();
+            }
         } else {
             throw error("invalid request to put %d spots on square %d %d",
                         spots, r, c);
         }
     }
 
+    /** Save the position, player settings, and move history of the
+     *  current game in the snapshot file NAME. */
+    private void save(String name) {
+        int flags = _verbose ? GameSnapshot.VERBOSE : 0;
+        int[] moves = Arrays.copyOf(_history, _historyLength);
+        GameSnapshot snapshot =
+            new GameSnapshot(_board, playerSettings(), flags, _seed,
+                             _timeLimit, moves);
+        try {
+            snapshot.write(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not save game: %s", excp.getMessage());
+        }
+    }
+
+    /** Replace the current game with the one saved in the snapshot file
+     *  NAME.  The board changes (and is announced) once. */
+    private void load(String name) {
+        GameSnapshot snapshot;
+        try {
+            snapshot = GameSnapshot.read(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not load game: %s", excp.getMessage());
+        }
+        _timeLimit = snapshot.timeLimit();
+        for (Side side : new Side[] { RED, BLUE }) {
+            int auto = side == RED ? GameRecord.RED_AUTO
+                : GameRecord.BLUE_AUTO;
+            if ((snapshot.settings() & auto) != 0) {
+                setAuto(side);
+            } else {
+                setManual(side);
+            }
+        }
+        _seed = snapshot.seed();
+        _verbose = (snapshot.flags() & GameSnapshot.VERBOSE) != 0;
+        _history = Arrays.copyOf(snapshot.moves(),
+                               Math.max(16, snapshot.moves().length));
+        _historyLength = snapshot.moves().length;
+        if (_recorder != null) {
+            _recorder.discardGame();
+        }
+        _board.copy(snapshot.board());
+    }
+
     /** Stop any current game and set the board to an empty N x N board
      *  with numMoves() == 0.  Requires 2 <= N <= 10. */
     private void setSize(int n) {
@@ -215,6 +669,7 @@ class Game {
             throw error("size must be between 2 and 10");
         }
         _board.clear(n);
+        startRecord();
     }
 
     /** Return the full, lower-case command name that uniquely fits
@@ -228,31 +683,51 @@ class Game {
             return "#";
         }
 
-        String fullName;
-        fullName = null;
-        for (String name : COMMAND_NAMES) {
-            if (name.equals(command)) {
-                return command;
-            }
-            if (name.startsWith(command)) {
-                if (fullName != null) {
-                    throw error("%s is not a unique command abbreviation",
-                                command);
-                }
-                fullName = name;
-            }
-        }
+        String fullName = COMMAND_PREFIXES.get(command);
         if (fullName == null) {
             return command;
+        } else if (fullName == AMBIGUOUS) {
+            throw error("%s is not a unique command abbreviation", command);
         } else {
             return fullName;
         }
     }
 
-    /** Execute command CMND.  Throws GameException on errors. */
+    /** Execute command CMND, recording a CommandEvent if events are
+     *  enabled. */
     private void executeCommand(String cmnd) {
-        String[] parts = cmnd.trim().toLowerCase().split("\\s+");
-        log(cmnd);
+        if (Events.enabled()) {
+            Events.CommandEvent event = new Events.CommandEvent();
+            event.command = cmnd;
+            event.begin();
+            try {
+                runCommand(cmnd);
+            } catch (RuntimeException | Error excp) {
+                event.failure = excp.toString();
+                throw excp;
+            } finally {
+                event.commit();
+            }
+        } else {
+            runCommand(cmnd);
+        }
+    }
+
+    /** Execute command CMND.  Throws GameException on errors. */
+    private void runCommand(String cmnd) {
+        if (_logging) {
+            log("%s", cmnd);
+        }
+        try {
+            if (parseMove(cmnd, _move)) {
+                makeMove(_move[0], _move[1]);
+                return;
+            }
+        } catch (GameException excp) {
+            reportError(excp.getMessage());
+            return;
+        }
+        String[] parts = words(cmnd.toLowerCase());
         try {
             switch (canonicalizeCommand(parts[0])) {
             case "#": case "":
@@ -266,21 +741,34 @@ class Game {
             case "dump":
                 dump();
                 break;
+            case "force":
+                forceMove();
+                break;
             case "help":
                 help();
                 break;
+            case "load":
+                load(arg(cmnd, parts));
+                break;
             case "manual":
                 setManual(toSide(parts[1]));
                 break;
             case "new":
                 clear();
                 break;
+            case "perft":
+                perft(toInt(parts[1]),
+                      Arrays.copyOfRange(parts, 2, parts.length));
+                break;
             case "quiet":
                 _verbose = false;
                 break;
             case "quit": case "q":
                 _exit = 0;
                 break;
+            case "save":
+                save(arg(cmnd, parts));
+                break;
             case "seed":
                 setSeed(toLong(parts[1]));
                 break;
@@ -291,6 +779,12 @@ class Game {
             case "size":
                 setSize(toInt(parts[1]));
                 break;
+            case "solve":
+                solve(parts.length > 1 ? toLong(parts[1]) : SOLVE_NODES);
+                break;
+            case "time":
+                setTimeLimit(Double.parseDouble(parts[1]));
+                break;
             case "verbose":
                 _verbose = true;
                 break;
@@ -308,12 +802,22 @@ class Game {
         }
     }
 
+    /** Return the argument of the command CMND, whose words are PARTS:
+     *  the remainder of CMND following its first word, with surrounding
+     *  whitespace removed, in its original case. */
+    private String arg(String cmnd, String[] parts) {
+        if (parts.length < 2) {
+            throw error("Argument(s) missing: %s", cmnd);
+        }
+        return cmnd.strip().substring(parts[0].length()).strip();
+    }
+
     /** Print a message on the logging stream, if any, appending a newline.
      *  The arguments FORMAT and ARGS have the same meaning as for
      *  String.format. */
     private void log(String format, Object... args) {
         if (_logging) {
-            System.out.printf(format + "%n", args);
+            _reporter.log(format, args);
         }
     }
 
@@ -321,11 +825,17 @@ class Game {
      *  and ARGS, whose meanings are as for printf. */
     void reportError(String format, Object... args) {
         _reporter.err(format, args);
-        if (Main.strict()) {
+        if (_strict) {
             _exit = 1;
         }
     }
 
+    /** Set strict mode to STRICT.  In strict mode, any user error ends
+     *  the session with exit code 1. */
+    void setStrict(boolean strict) {
+        _strict = strict;
+    }
+
     /** Returns command input for the current game. */
     private final CommandSource _inp;
     /** Outlet for responses to the user. */
@@ -339,6 +849,21 @@ class Game {
     private View _view;
     /** True iff we are logging commands. */
     private boolean _logging;
+    /** True iff user errors end the session. */
+    private boolean _strict;
+
+    /** Destination for records of games played, or null. */
+    private GameRecordWriter _recorder;
+
+    /** Persistent store of AI search results, or null. */
+    private AnalysisCache _cache;
+
+    /** Solver used by the solve command and by AIs.  Its memory is
+     *  allocated on first use. */
+    private final ProofSolver _solver = new ProofSolver(SOLVER_MEGABYTES);
+    /** Node budget of AIs' use of _solver before each search, or 0 if
+     *  they do not use it. */
+    private long _solverNodes = SOLVER_NODES;
 
     /** True iff we should print the board after each move. */
     private boolean _verbose;
@@ -351,6 +876,23 @@ class Game {
      *  at the earliest possible point, returning _exit.  When negative,
      *  indicates that the session is not over. */
     private int _exit;
+    /** True iff the winner of the current game has been announced. */
+    private boolean _winnerAnnounced;
+
+    /** Time limit for automated players' searches in msec, or 0 for
+     *  none. */
+    private long _timeLimit;
+    /** The AI searching for a move in the background, or null. */
+    private AI _searching;
+    /** Executor for background searches, or null if not yet needed. */
+    private ExecutorService _searcher;
+
+    /** The moves of the current game since it started or its position
+     *  was last set, as square numbers, in _history[0 .. _historyLength-1].
+     */
+    private int[] _history = new int[16];
+    /** Number of moves in _history. */
+    private int _historyLength;
 
     /** Current players, indexed by color (RED, BLUE). */
     private final Player[] _players = new Player[Side.values().length];
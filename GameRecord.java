@@ -0,0 +1,137 @@
+package jump61;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static jump61.Side.*;
+import static jump61.Utils.*;
+
+/** The record of one game: its board size, the seed and settings of the
+ *  players, the result, and the moves (as square numbers), starting from
+ *  an initial board.  GameRecords are stored in record files by
+ *  GameRecordWriter and retrieved by GameRecordReader.
+ *  @author Will Harvey
+ */
+class GameRecord {
+
+    /** Bit in settings() set if Red is played by an AI. */
+    static final int RED_AUTO = 1;
+    /** Bit in settings() set if Blue is played by an AI. */
+    static final int BLUE_AUTO = 2;
+
+    /** A record of a game on a SIZE x SIZE board played with random seed
+     *  SEED, player SETTINGS (a combination of RED_AUTO and BLUE_AUTO),
+     *  and AI search DEPTH, in which MOVES were made, and which was won
+     *  by WINNER (null if the game was not finished). */
+    GameRecord(int size, long seed, int settings, int depth,
+               Side winner, int[] moves) {
+        _size = size;
+        _seed = seed;
+        _settings = settings;
+        _depth = depth;
+        _winner = winner;
+        _moves = moves;
+    }
+
+    /** Return the board size. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the random seed in effect at the start of the game. */
+    long seed() {
+        return _seed;
+    }
+
+    /** Return the player settings: a combination of RED_AUTO and
+     *  BLUE_AUTO. */
+    int settings() {
+        return _settings;
+    }
+
+    /** Return the AI search depth. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the winner, or null if the game was not finished. */
+    Side winner() {
+        return _winner;
+    }
+
+    /** Return the moves, as square numbers.  The caller must not modify
+     *  the result. */
+    int[] moves() {
+        return _moves;
+    }
+
+    /** Return the position at the end of the game, replaying all moves
+     *  from an initial board.  Throws a GameException if the moves are
+     *  not legal. */
+    Board replay() {
+        Board board = new Board(_size);
+        board.applyMoves(_moves, 0, _moves.length, 0);
+        return board;
+    }
+
+    /** Append my encoding to OUT. */
+    void encode(ByteArrayOutputStream out) {
+        putVarint(out, _size);
+        putSignedVarint(out, _seed);
+        putVarint(out, _settings);
+        putVarint(out, _depth);
+        putVarint(out, _winner == null ? WHITE.ordinal() : _winner.ordinal());
+        putVarint(out, _moves.length);
+        for (int move : _moves) {
+            putVarint(out, move);
+        }
+    }
+
+    /** Return the GameRecord whose encoding (as written by encode) starts
+     *  at the current position of IN, advancing IN past it. */
+    static GameRecord decode(ByteBuffer in) {
+        int size = (int) getVarint(in);
+        long seed = getSignedVarint(in);
+        int settings = (int) getVarint(in);
+        int depth = (int) getVarint(in);
+        Side winner = Side.values()[(int) getVarint(in)];
+        int[] moves = new int[(int) getVarint(in)];
+        for (int k = 0; k < moves.length; k += 1) {
+            moves[k] = (int) getVarint(in);
+        }
+        return new GameRecord(size, seed, settings, depth,
+                              winner == WHITE ? null : winner, moves);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof GameRecord)) {
+            return false;
+        }
+        GameRecord other = (GameRecord) obj;
+        return _size == other._size && _seed == other._seed
+            && _settings == other._settings && _depth == other._depth
+            && _winner == other._winner
+            && Arrays.equals(_moves, other._moves);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_moves) * 31 + _size;
+    }
+
+    /** Board size. */
+    private final int _size;
+    /** Random seed. */
+    private final long _seed;
+    /** Player settings. */
+    private final int _settings;
+    /** AI search depth. */
+    private final int _depth;
+    /** Winner, or null. */
+    private final Side _winner;
+    /** Moves, as square numbers. */
+    private final int[] _moves;
+
+}
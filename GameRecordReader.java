@@ -0,0 +1,116 @@
+package jump61;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static java.nio.file.StandardOpenOption.*;
+import static jump61.GameRecordWriter.*;
+
+/** Reads GameRecords from a record file written by GameRecordWriter.
+ *  Games may be read in any order; the index at the end of the file
+ *  leads directly to each game's block, and the most recently
+ *  decompressed block is kept, so that reading games in order
+ *  decompresses each block only once.
+ *  @author Will Harvey
+ */
+class GameRecordReader implements Closeable {
+
+    /** A reader of the record file FILE. */
+    GameRecordReader(Path file) throws IOException {
+        _in = FileChannel.open(file, READ);
+        long size = _in.size();
+        if (size < HEADER_SIZE + TRAILER_SIZE) {
+            throw new IOException("not a game record file: " + file);
+        }
+        ByteBuffer header = read(0, HEADER_SIZE);
+        ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+        if (header.getInt() != MAGIC || trailer.getInt(12) != MAGIC) {
+            throw new IOException("not a game record file: " + file);
+        }
+        if (header.getInt() != VERSION) {
+            throw new IOException("unsupported record file version: "
+                                  + file);
+        }
+        _numGames = trailer.getInt(0);
+        _index = read(trailer.getLong(4),
+                      (long) _numGames * INDEX_ENTRY_SIZE);
+    }
+
+    /** Return the number of games in the file. */
+    int numGames() {
+        return _numGames;
+    }
+
+    /** Return game #K (numbered from 0) in the file. */
+    GameRecord read(int k) throws IOException {
+        if (k < 0 || k >= _numGames) {
+            throw new IndexOutOfBoundsException("no game #" + k);
+        }
+        long blockStart = _index.getLong(k * INDEX_ENTRY_SIZE);
+        int offset = _index.getInt(k * INDEX_ENTRY_SIZE + 8);
+        if (blockStart != _blockStart) {
+            loadBlock(blockStart);
+        }
+        _block.position(offset);
+        return GameRecord.decode(_block);
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+        _inflater.end();
+    }
+
+    /** Read and decompress the block at file position START into
+     *  _block. */
+    private void loadBlock(long start) throws IOException {
+        ByteBuffer header = read(start, BLOCK_HEADER_SIZE);
+        int rawLength = header.getInt(), length = header.getInt();
+        ByteBuffer compressed = read(start + BLOCK_HEADER_SIZE, length);
+        if (_block.capacity() < rawLength) {
+            _block = ByteBuffer.allocate(rawLength);
+        }
+        _inflater.reset();
+        _inflater.setInput(compressed.array(), 0, length);
+        try {
+            int n = _inflater.inflate(_block.array(), 0, rawLength);
+            if (n != rawLength || !_inflater.finished()) {
+                throw new IOException("corrupt block in game record file");
+            }
+        } catch (DataFormatException excp) {
+            throw new IOException("corrupt block in game record file");
+        }
+        _block.clear().limit(rawLength);
+        _blockStart = start;
+    }
+
+    /** Return a buffer holding the LEN bytes at file position START. */
+    private ByteBuffer read(long start, long len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) len);
+        while (buf.hasRemaining()) {
+            if (_in.read(buf, start + buf.position()) < 0) {
+                throw new IOException("game record file is truncated");
+            }
+        }
+        return buf.flip();
+    }
+
+    /** The file being read. */
+    private final FileChannel _in;
+    /** Number of games in the file. */
+    private final int _numGames;
+    /** The file's index. */
+    private final ByteBuffer _index;
+    /** The most recently decompressed block. */
+    private ByteBuffer _block = ByteBuffer.allocate(0);
+    /** File position of _block, or -1 if none. */
+    private long _blockStart = -1;
+    /** Decompressor used for all blocks. */
+    private final Inflater _inflater = new Inflater();
+
+}
@@ -0,0 +1,77 @@
+package jump61;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of game-record files.
+ *  @author Will Harvey
+ */
+public class GameRecordTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = Files.createTempFile("jump61", ".rec");
+        ArrayList<GameRecord> games = new ArrayList<>();
+        Random random = new Random(3);
+        try (GameRecordWriter out = new GameRecordWriter(file)) {
+            for (int k = 0; k < 2000; k += 1) {
+                GameRecord game = randomGame(2 + k % 9, random);
+                games.add(game);
+                if (k % 2 == 0) {
+                    out.write(game);
+                } else {
+                    out.beginGame(game.size(), game.seed(), game.settings(),
+                                  game.depth());
+                    for (int move : game.moves()) {
+                        out.move(move);
+                    }
+                    out.endGame(game.winner());
+                }
+            }
+            out.beginGame(6, 0, 0, 0);
+            out.move(1);
+        }
+        try (GameRecordReader in = new GameRecordReader(file)) {
+            assertEquals(games.size(), in.numGames());
+            for (int k = 0; k < games.size(); k += 1) {
+                assertEquals(games.get(k), in.read(k));
+            }
+            GameRecord last = in.read(games.size() - 1);
+            assertEquals(games.get(0), in.read(0));
+            assertEquals(last.winner(), last.replay().getWinner());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /** Return a randomly played game on an N x N board, using
+     *  RANDOM. */
+    private GameRecord randomGame(int N, Random random) {
+        Board board = new Board(N);
+        int[] moves = new int[2000];
+        int numMoves;
+        for (numMoves = 0; board.getWinner() == null
+                 && numMoves < moves.length; numMoves += 1) {
+            int n;
+            do {
+                n = random.nextInt(N * N);
+            } while (!board.isLegal(board.whoseMove(), n));
+            board.addSpot(board.whoseMove(), n);
+            moves[numMoves] = n;
+        }
+        int[] played = new int[numMoves];
+        System.arraycopy(moves, 0, played, 0, numMoves);
+        return new GameRecord(N, random.nextLong() >> random.nextInt(64),
+                              random.nextInt(4), 3, board.getWinner(),
+                              played);
+    }
+
+}
@@ -0,0 +1,209 @@
+package jump61;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/** Writes GameRecords to a record file, either whole or one move at a time
+ *  as a game is played.
+ *
+ *  A record file consists of
+ *    - a header: the magic number MAGIC and the format VERSION (ints);
+ *    - a sequence of blocks, each holding the encodings of one or more
+ *      complete games (see GameRecord.encode), compressed with Deflate.
+ *      Each block is preceded by its uncompressed and compressed lengths
+ *      (ints);
+ *    - an index: for each game, the file position of its block (a long)
+ *      and its offset in the uncompressed block (an int);
+ *    - a trailer: the number of games (an int), the file position of the
+ *      index (a long), and MAGIC.
+ *  All numbers outside of blocks are big-endian.
+ *  @author Will Harvey
+ */
+class GameRecordWriter implements Closeable {
+
+    /** Magic number identifying record files. */
+    static final int MAGIC = 0x4a363152;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Size of the file header. */
+    static final int HEADER_SIZE = 8;
+    /** Size of the file trailer. */
+    static final int TRAILER_SIZE = 16;
+    /** Size of one index entry. */
+    static final int INDEX_ENTRY_SIZE = 12;
+    /** Size of the header of one block. */
+    static final int BLOCK_HEADER_SIZE = 8;
+
+    /** Approximate uncompressed size of a block. */
+    static final int BLOCK_SIZE = 1 << 16;
+
+    /** A writer of a new record file FILE (replacing any existing one). */
+    GameRecordWriter(Path file) throws IOException {
+        _out = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        write(header);
+    }
+
+    /** Start recording a game on a SIZE x SIZE board, with random seed
+     *  SEED, player SETTINGS, and AI search DEPTH (see GameRecord),
+     *  discarding any unfinished game. */
+    void beginGame(int size, long seed, int settings, int depth) {
+        _size = size;
+        _seed = seed;
+        _settings = settings;
+        _depth = depth;
+        _numMoves = 0;
+        _inGame = true;
+    }
+
+    /** Return true iff a game has been started and not yet ended or
+     *  discarded. */
+    boolean inGame() {
+        return _inGame;
+    }
+
+    /** Return the number of moves recorded so far in the current
+     *  game. */
+    int numMoves() {
+        return _numMoves;
+    }
+
+    /** Record a move to square #N in the current game. */
+    void move(int n) {
+        assert _inGame;
+        if (_numMoves == _moves.length) {
+            int[] moves = new int[2 * _moves.length];
+            System.arraycopy(_moves, 0, moves, 0, _numMoves);
+            _moves = moves;
+        }
+        _moves[_numMoves] = n;
+        _numMoves += 1;
+    }
+
+    /** Finish the current game, which was won by WINNER (null if
+     *  unfinished), and add it to the file. */
+    void endGame(Side winner) throws IOException {
+        assert _inGame;
+        int[] moves = new int[_numMoves];
+        System.arraycopy(_moves, 0, moves, 0, _numMoves);
+        _inGame = false;
+        write(new GameRecord(_size, _seed, _settings, _depth,
+                             winner, moves));
+    }
+
+    /** Discard the current game, if any. */
+    void discardGame() {
+        _inGame = false;
+    }
+
+    /** Add the complete game RECORD to the file. */
+    void write(GameRecord record) throws IOException {
+        addIndexEntry(_blockStart, _block.size());
+        record.encode(_block);
+        if (_block.size() >= BLOCK_SIZE) {
+            flushBlock();
+        }
+    }
+
+    /** Return the number of games written so far. */
+    int numGames() {
+        return _numGames;
+    }
+
+    /** Finish the file, writing any pending block, the index and the
+     *  trailer.  Any unfinished game is discarded. */
+    @Override
+    public void close() throws IOException {
+        if (!_out.isOpen()) {
+            return;
+        }
+        flushBlock();
+        long indexPosition = _position;
+        ByteBuffer index = ByteBuffer.wrap(_index.toByteArray());
+        write(index);
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        trailer.putInt(_numGames).putLong(indexPosition).putInt(MAGIC);
+        trailer.flip();
+        write(trailer);
+        _out.close();
+        _deflater.end();
+    }
+
+    /** Add an index entry for a game at offset OFFSET in the block that
+     *  will start at file position BLOCKSTART. */
+    private void addIndexEntry(long blockStart, int offset) {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putLong(blockStart).putInt(offset);
+        _index.write(entry.array(), 0, INDEX_ENTRY_SIZE);
+        _numGames += 1;
+    }
+
+    /** Compress and write out the current block, if it is not empty. */
+    private void flushBlock() throws IOException {
+        if (_block.size() == 0) {
+            return;
+        }
+        byte[] raw = _block.toByteArray();
+        _deflater.reset();
+        _deflater.setInput(raw);
+        _deflater.finish();
+        int bound = BLOCK_HEADER_SIZE + raw.length + raw.length / 100 + 64;
+        if (_compressed.length < bound) {
+            _compressed = new byte[bound];
+        }
+        int len = _deflater.deflate(_compressed, BLOCK_HEADER_SIZE,
+                                    _compressed.length - BLOCK_HEADER_SIZE);
+        assert _deflater.finished();
+        ByteBuffer block =
+            ByteBuffer.wrap(_compressed, 0, BLOCK_HEADER_SIZE + len);
+        block.putInt(0, raw.length).putInt(4, len);
+        write(block);
+        _block.reset();
+        _blockStart = _position;
+    }
+
+    /** Write all of BUF at the end of the file. */
+    private void write(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            _position += _out.write(buf);
+        }
+    }
+
+    /** The file being written. */
+    private final FileChannel _out;
+    /** Current size of the file. */
+    private long _position;
+    /** File position at which the current block will be written. */
+    private long _blockStart = HEADER_SIZE;
+    /** Uncompressed contents of the current block. */
+    private final ByteArrayOutputStream _block =
+        new ByteArrayOutputStream(BLOCK_SIZE + BLOCK_SIZE / 4);
+    /** Output buffer for compressed blocks. */
+    private byte[] _compressed = new byte[0];
+    /** Compressor used for all blocks. */
+    private final Deflater _deflater = new Deflater(Deflater.BEST_SPEED);
+    /** Index entries written so far. */
+    private final ByteArrayOutputStream _index = new ByteArrayOutputStream();
+    /** Number of games written so far. */
+    private int _numGames;
+
+    /** True iff a game is being recorded move by move. */
+    private boolean _inGame;
+    /** Size, settings, and depth of the current game. */
+    private int _size, _settings, _depth;
+    /** Seed of the current game. */
+    private long _seed;
+    /** Moves of the current game. */
+    private int[] _moves = new int[64];
+    /** Number of moves in the current game. */
+    private int _numMoves;
+
+}
@@ -0,0 +1,756 @@
+package jump61;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.channels.SelectionKey.*;
+import static jump61.GameException.error;
+
+/** A server hosting any number of independent sessions of jump61, one
+ *  per connection, over TCP or a Unix-domain socket.  Each session is a
+ *  Game that reads lines of commands from its connection and writes
+ *  what a terminal session would print back to it, prompts included.
+ *
+ *  A single thread does all network I/O through a Selector.  The
+ *  sessions' games run on a shared pool with a fixed number of threads,
+ *  one unit of work (an input line or an automated move) at a time per
+ *  session, so that no session can monopolize a thread and a session
+ *  waiting for input costs no thread at all.  An idle session holds
+ *  only its connection, its Game, and a few small buffers, and a
+ *  session whose client does not read its output stops executing its
+ *  commands rather than buffering without limit.  Sessions'
+ *  AIs do not use the proof solver, whose table is large; a session's
+ *  table is allocated only if it uses the solve command.
+ *
+ *  Each session has a number, given in its welcome line.  Besides the
+ *  usual commands, a client may enter "watch N" to watch session N,
+ *  after which each move in that session is reported as a line
+ *  "session N: SIDE ROW COL", and any other change to its board (and
+ *  its position when watching starts) as "session N:" followed by the
+ *  board in dump format.  "watch" alone stops watching.  A session's
+ *  changes are broadcast through a SpectatorHub, created once it has
+ *  watchers, so that its game never waits for them; a watcher whose
+ *  client does not read its output falls behind, skips ahead, and is
+ *  eventually dropped.
+ *  @author Will Harvey
+ */
+class GameServer {
+
+    /** Maximum length of an input line, in bytes. */
+    static final int MAX_LINE = 1024;
+
+    /** Maximum number of input lines waiting to be executed in one
+     *  session.  Reading from a connection stops while it has this
+     *  many. */
+    static final int MAX_QUEUED_LINES = 64;
+
+    /** Maximum number of bytes of output waiting to be written to one
+     *  session's connection.  A session stops executing commands while
+     *  it has this many, and so stops reading once MAX_QUEUED_LINES
+     *  lines are waiting as well. */
+    static final int MAX_QUEUED_OUTPUT = 1 << 16;
+
+    /** Size of the buffer used for all reads. */
+    static final int READ_BUFFER_SIZE = 1 << 16;
+
+    /** Maximum number of pending connections. */
+    static final int BACKLOG = 1024;
+
+    /** Return the address denoted by SPEC: either a port number (on the
+     *  loopback interface), HOST:PORT, or the path of a Unix-domain
+     *  socket. */
+    static SocketAddress parseAddress(String spec) {
+        int colon = spec.lastIndexOf(':');
+        String port = spec.substring(colon + 1);
+        if (!port.isEmpty() && port.chars().allMatch(Character::isDigit)) {
+            int num = Integer.parseInt(port);
+            if (num > 0xffff) {
+                throw error("invalid port number: %s", port);
+            } else if (colon < 0) {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                             num);
+            } else {
+                return new InetSocketAddress(spec.substring(0, colon), num);
+            }
+        }
+        return UnixDomainSocketAddress.of(spec);
+    }
+
+    /** A server listening on ADDRESS (a Unix-domain socket path or an
+     *  Internet socket address) that runs its games on THREADS threads.
+     *  Its games are in strict mode iff STRICT. */
+    GameServer(SocketAddress address, int threads, boolean strict)
+        throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            _server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            _server = ServerSocketChannel.open();
+            _server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        }
+        _server.bind(address, BACKLOG);
+        _server.configureBlocking(false);
+        _selector = Selector.open();
+        _server.register(_selector, OP_ACCEPT);
+        _pool = Executors.newFixedThreadPool(threads, (task) -> {
+            Thread thread = new Thread(task, "jump61-game");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _strict = strict;
+    }
+
+    /** Have the automated players of sessions started hereafter consult
+     *  and update CACHE, which remains owned by the caller. */
+    void setCache(AnalysisCache cache) {
+        _cache = cache;
+    }
+
+    /** Return the address on which I am listening. */
+    SocketAddress localAddress() throws IOException {
+        return _server.getLocalAddress();
+    }
+
+    /** Return the number of open sessions. */
+    int numSessions() {
+        return _numSessions.get();
+    }
+
+    /** Serve connections until stop() is called, then close all
+     *  sessions. */
+    void serve() throws IOException {
+        _selectorThread = Thread.currentThread();
+        try {
+            while (!_stopping) {
+                _selector.select(this::handle);
+                for (Session session = _changed.poll(); session != null;
+                     session = _changed.poll()) {
+                    session.updateInterest();
+                }
+            }
+        } finally {
+            for (SelectionKey key : _selector.keys()) {
+                if (key.attachment() != null) {
+                    ((Session) key.attachment()).close();
+                }
+            }
+            _pool.shutdownNow();
+            SocketAddress address = _server.getLocalAddress();
+            _server.close();
+            _selector.close();
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address)
+                                     .getPath());
+            }
+        }
+    }
+
+    /** Cause serve() to return.  May be called from any thread. */
+    void stop() {
+        _stopping = true;
+        _selector.wakeup();
+    }
+
+    /** Respond to the readiness of KEY's channel. */
+    private void handle(SelectionKey key) {
+        if (key.isValid() && key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Session session = (Session) key.attachment();
+        if (key.isValid() && key.isReadable()) {
+            session.read();
+        }
+        if (key.isValid() && key.isWritable()) {
+            session.flush();
+        }
+    }
+
+    /** Accept all pending connections, starting a session for each. */
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = _server.accept();
+                if (channel == null) {
+                    return;
+                }
+                channel.configureBlocking(false);
+                if (!(channel.getLocalAddress()
+                      instanceof UnixDomainSocketAddress)) {
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY,
+                                      true);
+                }
+            } catch (IOException excp) {
+                Utils.debug(1, "accept failed: %s", excp.getMessage());
+                return;
+            }
+            Session session = new Session(channel);
+            try {
+                session._key = channel.register(_selector, OP_READ, session);
+            } catch (IOException excp) {
+                session.close();
+                continue;
+            }
+            _numSessions.incrementAndGet();
+            _sessions.put(session._id, session);
+            session.schedule();
+        }
+    }
+
+    /** One connection and its game.  Its game is only touched by one
+     *  task at a time; everything else is guarded by the Session's
+     *  lock. */
+    private class Session extends TextReporter
+        implements CommandSource, Runnable {
+
+        /** A session communicating over CHANNEL. */
+        Session(SocketChannel channel) {
+            _nextId += 1;
+            _id = _nextId;
+            _channel = channel;
+            _game = new Game(this, (b) -> { }, this, false);
+            _game.setStrict(_strict);
+            _game.setCache(_cache);
+            _game.setSolverNodes(0);
+            msg("Welcome to %s (session %d)", Defaults.VERSION, _id);
+            _game.start();
+        }
+
+        @Override
+        public synchronized String getCommand(String ignored) {
+            return _lines.poll();
+        }
+
+        @Override
+        public void msg(String format, Object... args) {
+            write(String.format(format, args) + "\n");
+        }
+
+        @Override
+        public void err(String format, Object... args) {
+            msg(format, args);
+        }
+
+        /** Perform one unit of work for my game: an automated move, if
+         *  one is due, or else one line of input, after subscribing any
+         *  new watchers.  Then reschedule myself if there is more to do
+         *  (unless MAX_QUEUED_OUTPUT bytes of output are waiting, in
+         *  which case flush does so once they are written), or otherwise
+         *  prompt for input (unless I only subscribed watchers). */
+        @Override
+        public void run() {
+            boolean failed, quiet, closed;
+            failed = quiet = closed = false;
+            try {
+                boolean attached = attachWatchers();
+                AI ai = _game.autoPlayer();
+                if (ai != null) {
+                    _game.makeAutoMove(ai.searchForMove());
+                } else {
+                    String line = getCommand(null);
+                    if (line == null) {
+                        quiet = attached;
+                    } else if (!watchCommand(line)) {
+                        _game.acceptCommand(line);
+                    }
+                }
+            } catch (RuntimeException excp) {
+                err("internal error: %s", excp);
+                failed = true;
+            }
+            synchronized (this) {
+                if (_closed || failed || _game.sessionOver()) {
+                    closed = _closed;
+                    _ending = true;
+                    _busy = false;
+                } else if (_lines.isEmpty() && _game.autoPlayer() == null) {
+                    _busy = false;
+                    if (_inputEnded) {
+                        _ending = true;
+                    } else if (!quiet) {
+                        write(_game.prompt());
+                    }
+                    if (!_newWatchers.isEmpty()) {
+                        schedule();
+                    }
+                } else if (_outLen >= MAX_QUEUED_OUTPUT) {
+                    _busy = false;
+                    _stalled = true;
+                } else {
+                    _pool.execute(this);
+                }
+                if (_paused && _lines.size() < MAX_QUEUED_LINES) {
+                    _paused = false;
+                    requestUpdate();
+                }
+            }
+            if (closed) {
+                closeHub();
+            }
+            flush();
+        }
+
+        /** If LINE is a watch command, execute it and return true;
+         *  otherwise return false. */
+        private boolean watchCommand(String line) {
+            String[] words = line.trim().split("\\s+");
+            if (!words[0].equals("watch")) {
+                return false;
+            }
+            if (words.length > 2) {
+                err("usage: watch [SESSION]");
+                return true;
+            }
+            Watcher watcher;
+            synchronized (this) {
+                watcher = _watcher;
+                _watcher = null;
+                _watchBlocked = false;
+            }
+            if (watcher != null) {
+                watcher.cancel();
+            }
+            if (words.length == 1) {
+                return true;
+            }
+            Session target;
+            try {
+                target = _sessions.get(Integer.parseInt(words[1]));
+            } catch (NumberFormatException excp) {
+                target = null;
+            }
+            if (target == null || target == this) {
+                err("no other session %s", words[1]);
+                return true;
+            }
+            watcher = new Watcher(target._id);
+            synchronized (this) {
+                _watcher = watcher;
+            }
+            if (!target.addWatcher(watcher)) {
+                err("no other session %s", words[1]);
+            }
+            return true;
+        }
+
+        /** Arrange for WATCHER to be subscribed to my changes, and return
+         *  true, unless I am ending, in which case return false. */
+        synchronized boolean addWatcher(Watcher watcher) {
+            if (_closed || _ending) {
+                return false;
+            }
+            _newWatchers.add(watcher);
+            schedule();
+            return true;
+        }
+
+        /** Subscribe any new watchers to my hub, creating it if need
+         *  be, and return true iff there were any.  Called only by my
+         *  game's task. */
+        private boolean attachWatchers() {
+            Watcher[] watchers;
+            synchronized (this) {
+                if (_newWatchers.isEmpty()) {
+                    return false;
+                }
+                watchers = _newWatchers.toArray(new Watcher[0]);
+                _newWatchers.clear();
+            }
+            if (_hub == null) {
+                _hub = _game.spectate(_pool);
+            }
+            for (Watcher watcher : watchers) {
+                _hub.subscribe(watcher);
+            }
+            return true;
+        }
+
+        /** Close my hub, if any, completing my watchers' subscriptions.
+         *  Called by my game's task once I am closed. */
+        private void closeHub() {
+            attachWatchers();
+            if (_hub != null) {
+                _hub.close();
+                _hub = null;
+            }
+        }
+
+        /** Run my game on the pool if it has work to do and is not
+         *  already scheduled or stalled on output. */
+        synchronized void schedule() {
+            if (!_busy && !_closed && !_stalled) {
+                _busy = true;
+                _pool.execute(this);
+            }
+        }
+
+        /** Read what is available from my connection, queueing complete
+         *  lines for execution.  Called from the selector thread. */
+        void read() {
+            ByteBuffer buf = _readBuffer;
+            buf.clear();
+            int n;
+            try {
+                n = _channel.read(buf);
+            } catch (IOException excp) {
+                close();
+                return;
+            }
+            if (n < 0) {
+                endInput();
+                return;
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                byte b = buf.get();
+                if (b == '\n') {
+                    endLine();
+                } else if (_partialLen == MAX_LINE) {
+                    _overlong = true;
+                } else {
+                    if (_partial == null) {
+                        _partial = new byte[32];
+                    } else if (_partialLen == _partial.length) {
+                        byte[] partial = new byte[2 * _partialLen];
+                        System.arraycopy(_partial, 0, partial, 0,
+                                         _partialLen);
+                        _partial = partial;
+                    }
+                    _partial[_partialLen] = b;
+                    _partialLen += 1;
+                }
+            }
+            synchronized (this) {
+                if (_lines.size() >= MAX_QUEUED_LINES) {
+                    _paused = true;
+                    updateInterest();
+                }
+            }
+            schedule();
+        }
+
+        /** Note that my client has sent all its input: stop reading,
+         *  and close once the lines already received (including any
+         *  final unterminated one) have been executed and my output
+         *  written.  Called from the selector thread. */
+        private void endInput() {
+            if (_partialLen > 0 || _overlong) {
+                endLine();
+            }
+            synchronized (this) {
+                _inputEnded = true;
+                updateInterest();
+                if (!_busy && !_stalled) {
+                    if (_lines.isEmpty() && _game.autoPlayer() == null) {
+                        _ending = true;
+                    } else {
+                        schedule();
+                    }
+                }
+            }
+            flush();
+        }
+
+        /** Queue the line accumulated in _partial. */
+        private void endLine() {
+            int len = _partialLen;
+            _partialLen = 0;
+            if (_overlong) {
+                _overlong = false;
+                err("input line too long");
+                return;
+            }
+            if (len > 0 && _partial[len - 1] == '\r') {
+                len -= 1;
+            }
+            String line =
+                len == 0 ? "" : new String(_partial, 0, len,
+                                           StandardCharsets.UTF_8);
+            synchronized (this) {
+                _lines.add(line);
+            }
+        }
+
+        /** Append TEXT to my pending output. */
+        private synchronized void write(String text) {
+            if (_closed) {
+                return;
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            if (_out == null) {
+                _out = new byte[Math.max(bytes.length, 64)];
+            } else if (_outLen + bytes.length > _out.length) {
+                byte[] out =
+                    new byte[Math.max(_outLen + bytes.length,
+                                      2 * _out.length)];
+                System.arraycopy(_out, 0, out, 0, _outLen);
+                _out = out;
+            }
+            System.arraycopy(bytes, 0, _out, _outLen, bytes.length);
+            _outLen += bytes.length;
+        }
+
+        /** Write as much of my pending output as my connection will
+         *  take without blocking, arranging to be called again when it
+         *  can take more, and resuming my game if it stalled on output.
+         *  Closes the session once it is ending and all output is
+         *  written. */
+        synchronized void flush() {
+            if (_closed) {
+                return;
+            }
+            if (_outLen > 0) {
+                try {
+                    int n = _channel.write(ByteBuffer.wrap(_out, 0, _outLen));
+                    System.arraycopy(_out, n, _out, 0, _outLen - n);
+                    _outLen -= n;
+                } catch (IOException excp) {
+                    close();
+                    return;
+                }
+            }
+            if (_outLen == 0) {
+                _out = null;
+                if (_ending) {
+                    close();
+                    return;
+                }
+            }
+            if (_stalled && _outLen < MAX_QUEUED_OUTPUT) {
+                _stalled = false;
+                schedule();
+            }
+            if (_watchBlocked && _outLen < MAX_QUEUED_OUTPUT) {
+                _watchBlocked = false;
+                _watcher.request();
+            }
+            if ((_outLen > 0) != _writing) {
+                requestUpdate();
+            }
+        }
+
+        /** Arrange for updateInterest to be called on the selector
+         *  thread. */
+        private void requestUpdate() {
+            if (Thread.currentThread() == _selectorThread) {
+                updateInterest();
+            } else {
+                _changed.add(this);
+                _selector.wakeup();
+            }
+        }
+
+        /** Set the operations my connection waits for according to my
+         *  state.  Called from the selector thread. */
+        synchronized void updateInterest() {
+            if (_closed || !_key.isValid()) {
+                return;
+            }
+            _writing = _outLen > 0;
+            int ops = (_paused || _ending || _inputEnded) ? 0 : OP_READ;
+            if (_writing) {
+                ops |= OP_WRITE;
+            }
+            _key.interestOps(ops);
+        }
+
+        /** End this session, closing its connection. */
+        synchronized void close() {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            _out = null;
+            _outLen = 0;
+            if (_key != null) {
+                _key.cancel();
+                _numSessions.decrementAndGet();
+                _sessions.remove(_id);
+            }
+            if (_watcher != null) {
+                _watcher.cancel();
+                _watcher = null;
+            }
+            if (!_busy) {
+                _pool.execute(this::closeHub);
+            }
+            try {
+                _channel.close();
+            } catch (IOException excp) {
+                Utils.debug(1, "close failed: %s", excp.getMessage());
+            }
+        }
+
+        /** A subscriber to another session's changes that reports them
+         *  to my client, requesting one at a time while my output is not
+         *  full. */
+        private class Watcher implements Flow.Subscriber<SpectatorHub.Frame> {
+
+            /** A watcher of session ID. */
+            Watcher(int id) {
+                _target = id;
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                _subscription = subscription;
+                if (_cancelled) {
+                    subscription.cancel();
+                } else {
+                    request();
+                }
+            }
+
+            @Override
+            public void onNext(SpectatorHub.Frame frame) {
+                _board = frame.applyTo(_board);
+                if (frame.kind() == SpectatorHub.Frame.SNAPSHOT) {
+                    msg("session %d:%n%s", _target, _board);
+                } else {
+                    msg("session %d: %s %s", _target, frame.mover(),
+                        _board.moveString(frame.square()));
+                }
+                boolean more;
+                synchronized (Session.this) {
+                    flush();
+                    more = _watcher == this && _outLen < MAX_QUEUED_OUTPUT;
+                    _watchBlocked = _watcher == this && !more;
+                }
+                if (more) {
+                    request();
+                }
+            }
+
+            @Override
+            public void onError(Throwable excp) {
+                msg("session %d: stopped watching: %s", _target,
+                    excp.getMessage());
+                flush();
+            }
+
+            @Override
+            public void onComplete() {
+                msg("session %d ended", _target);
+                flush();
+            }
+
+            /** Request one more change. */
+            void request() {
+                _subscription.request(1);
+            }
+
+            /** Stop watching. */
+            void cancel() {
+                _cancelled = true;
+                Flow.Subscription subscription = _subscription;
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+            }
+
+            /** Number of the session watched. */
+            private final int _target;
+            /** The position after the changes received, or null before
+             *  the first. */
+            private Board _board;
+            /** My subscription, or null until subscribed. */
+            private volatile Flow.Subscription _subscription;
+            /** True iff I have stopped watching. */
+            private volatile boolean _cancelled;
+        }
+
+        /** My session number. */
+        private final int _id;
+        /** My connection. */
+        private final SocketChannel _channel;
+        /** My connection's registration with _selector. */
+        private SelectionKey _key;
+        /** My game. */
+        private final Game _game;
+        /** Input lines not yet executed. */
+        private final ArrayDeque<String> _lines = new ArrayDeque<>(4);
+        /** The bytes of the current partial input line, or null if none
+         *  has been needed yet. */
+        private byte[] _partial;
+        /** Number of bytes in _partial. */
+        private int _partialLen;
+        /** True iff the current input line has exceeded MAX_LINE. */
+        private boolean _overlong;
+        /** Output not yet written, or null if there is none. */
+        private byte[] _out;
+        /** Number of bytes in _out. */
+        private int _outLen;
+        /** True iff I am scheduled or running on _pool. */
+        private boolean _busy;
+        /** True iff my game is not run because _out is full. */
+        private boolean _stalled;
+        /** True iff reading is suspended because _lines is full. */
+        private boolean _paused;
+        /** True iff my connection is registered for writing. */
+        private boolean _writing;
+        /** True iff my client has sent all its input. */
+        private boolean _inputEnded;
+        /** True iff I am to close once my output is written. */
+        private boolean _ending;
+        /** True iff I am closed. */
+        private boolean _closed;
+        /** Watchers from other sessions not yet subscribed to _hub. */
+        private final ArrayDeque<Watcher> _newWatchers = new ArrayDeque<>(1);
+        /** The hub broadcasting my changes, or null if I have had no
+         *  watchers.  Touched only by my game's task. */
+        private SpectatorHub _hub;
+        /** My subscription to another session's changes, or null. */
+        private Watcher _watcher;
+        /** True iff _watcher is waiting for my output to drain before
+         *  requesting more changes. */
+        private boolean _watchBlocked;
+    }
+
+    /** Channel on which I accept connections. */
+    private final ServerSocketChannel _server;
+    /** Selector for all my channels. */
+    private final Selector _selector;
+    /** Threads that run games. */
+    private final ExecutorService _pool;
+    /** True iff games are in strict mode. */
+    private final boolean _strict;
+    /** Persistent store of AI search results, or null. */
+    private volatile AnalysisCache _cache;
+    /** Buffer used for all reads (by the selector thread). */
+    private final ByteBuffer _readBuffer =
+        ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    /** Sessions whose interest sets need updating. */
+    private final ConcurrentLinkedQueue<Session> _changed =
+        new ConcurrentLinkedQueue<>();
+    /** Number of open sessions. */
+    private final AtomicInteger _numSessions = new AtomicInteger();
+    /** Open sessions, by number. */
+    private final ConcurrentHashMap<Integer, Session> _sessions =
+        new ConcurrentHashMap<>();
+    /** Number of the last session started (by the selector thread). */
+    private int _nextId;
+    /** The thread running serve(). */
+    private volatile Thread _selectorThread;
+    /** True iff serve() is to return. */
+    private volatile boolean _stopping;
+
+}
@@ -0,0 +1,217 @@
+package jump61;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Unit tests of GameServer.
+ *  @author Will Harvey
+ */
+public class GameServerTest {
+
+    /** Return the text read from INP up to and including the first
+     *  occurrence of END, or all of it if END never occurs. */
+    private static String readUntil(InputStream inp, String end)
+        throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (text.indexOf(end) < 0) {
+            int c = inp.read();
+            if (c < 0) {
+                break;
+            }
+            text.append((char) c);
+        }
+        return text.toString();
+    }
+
+    /** Return a connection to SERVER. */
+    private static Socket connect(GameServer server) throws IOException {
+        Socket socket = new Socket();
+        socket.connect((InetSocketAddress) server.localAddress());
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    @Test
+    public void testSessions() throws Exception {
+        GameServer server =
+            new GameServer(GameServer.parseAddress("0"), 2, false);
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException excp) {
+                fail(excp.getMessage());
+            }
+        });
+        serving.start();
+        try (Socket s1 = connect(server); Socket s2 = connect(server)) {
+            InputStream in1 = s1.getInputStream(),
+                in2 = s2.getInputStream();
+            OutputStream out1 = s1.getOutputStream(),
+                out2 = s2.getOutputStream();
+            assertTrue(readUntil(in1, "red> ").startsWith("Welcome"));
+            assertTrue(readUntil(in2, "red> ").startsWith("Welcome"));
+            out1.write("size 3\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("red> ", readUntil(in1, "red> "));
+            out1.write("9 9\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("invalid move: 9 9\nred> ", readUntil(in1, "red> "));
+            out2.write("1 1\n".getBytes(StandardCharsets.UTF_8));
+            assertTrue(readUntil(in2, "red> ").startsWith("* "));
+            out1.write("quit\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("", readUntil(in1, "\n"));
+            out2.write("dump\n".getBytes(StandardCharsets.UTF_8));
+            assertTrue(readUntil(in2, "red> ").contains("2r"));
+            assertEquals(1, server.numSessions());
+        } finally {
+            server.stop();
+            serving.join();
+        }
+    }
+
+    @Test
+    public void testEndOfInput() throws Exception {
+        GameServer server =
+            new GameServer(GameServer.parseAddress("0"), 2, false);
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException excp) {
+                fail(excp.getMessage());
+            }
+        });
+        serving.start();
+        try (Socket s1 = connect(server); Socket s2 = connect(server)) {
+            s1.getOutputStream().write("dump\nquit\n"
+                                       .getBytes(StandardCharsets.UTF_8));
+            s1.shutdownOutput();
+            String text = readUntil(s1.getInputStream(), "\u0000");
+            assertTrue(text, text.startsWith("Welcome"));
+            assertTrue(text, text.contains("===\n"));
+            s2.getOutputStream().write("size 3\ndump"
+                                       .getBytes(StandardCharsets.UTF_8));
+            s2.shutdownOutput();
+            text = readUntil(s2.getInputStream(), "\u0000");
+            assertTrue(text, text.endsWith("===\n"));
+        } finally {
+            server.stop();
+            serving.join();
+        }
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        GameServer server =
+            new GameServer(GameServer.parseAddress("0"), 2, false);
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException excp) {
+                fail(excp.getMessage());
+            }
+        });
+        serving.start();
+        try (Socket s1 = connect(server); Socket s2 = connect(server)) {
+            InputStream in1 = new BufferedInputStream(s1.getInputStream()),
+                in2 = new BufferedInputStream(s2.getInputStream());
+            OutputStream out1 = s1.getOutputStream(),
+                out2 = s2.getOutputStream();
+            String text = readUntil(in1, "red> ");
+            String id = text.replaceAll("(?s).*session (\\d+).*", "$1");
+            text = readUntil(in2, "red> ");
+            String own = text.replaceAll("(?s).*session (\\d+).*", "$1");
+            out2.write("watch 999\n".getBytes(StandardCharsets.UTF_8));
+            assertTrue(readUntil(in2, "red> ")
+                       .startsWith("no other session 999"));
+            out2.write(("watch " + own + "\n")
+                       .getBytes(StandardCharsets.UTF_8));
+            assertTrue(readUntil(in2, "red> ")
+                       .startsWith("no other session " + own));
+            out2.write(("watch " + id + "\n")
+                       .getBytes(StandardCharsets.UTF_8));
+            String watched = "session " + id + ":";
+            text = readUntil(in2, watched + "\n");
+            assertTrue(text, text.endsWith(watched + "\n"));
+            readUntil(in2, "===");
+            text = readUntil(in2, "===");
+            assertTrue(text, text.startsWith("\n    1- 1- "));
+            out1.write("1 1\n".getBytes(StandardCharsets.UTF_8));
+            text = readUntil(in2, watched + " red 1 1\n");
+            assertTrue(text, text.endsWith(watched + " red 1 1\n"));
+            out1.write("quit\n".getBytes(StandardCharsets.UTF_8));
+            text = readUntil(in2, "session " + id + " ended\n");
+            assertTrue(text, text.endsWith("session " + id + " ended\n"));
+            out2.write("quit\n".getBytes(StandardCharsets.UTF_8));
+            readUntil(in1, "\u0000");
+            readUntil(in2, "\u0000");
+            assertEquals(0, server.numSessions());
+        } finally {
+            server.stop();
+            serving.join();
+        }
+    }
+
+    @Test
+    public void testUnreadOutput() throws Exception {
+        GameServer server =
+            new GameServer(GameServer.parseAddress("0"), 2, false);
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException excp) {
+                fail(excp.getMessage());
+            }
+        });
+        serving.start();
+        final int dumps = 20000;
+        try (Socket s1 = connect(server)) {
+            InputStream in1 = new BufferedInputStream(s1.getInputStream());
+            OutputStream out1 = s1.getOutputStream();
+            assertTrue(readUntil(in1, "red> ").startsWith("Welcome"));
+            Thread writing = new Thread(() -> {
+                try {
+                    for (int k = 0; k < dumps; k += 1) {
+                        out1.write("dump\n".getBytes(StandardCharsets.UTF_8));
+                    }
+                } catch (IOException excp) {
+                    fail(excp.getMessage());
+                }
+            });
+            writing.start();
+            Thread.sleep(1000);
+            int equals, c;
+            equals = 0;
+            while (equals < 6 * dumps && (c = in1.read()) >= 0) {
+                if (c == '=') {
+                    equals += 1;
+                }
+            }
+            writing.join();
+            assertEquals(6 * dumps, equals);
+            assertEquals("\nred> ", readUntil(in1, "red> "));
+        } finally {
+            server.stop();
+            serving.join();
+        }
+    }
+
+    @Test
+    public void testParseAddress() {
+        assertEquals(6161, ((InetSocketAddress)
+                            GameServer.parseAddress("6161")).getPort());
+        assertEquals("localhost",
+                     ((InetSocketAddress)
+                      GameServer.parseAddress("localhost:6161"))
+                     .getHostString());
+        assertFalse(GameServer.parseAddress("/tmp/jump61")
+                    instanceof InetSocketAddress);
+    }
+
+}
@@ -0,0 +1,224 @@
+package jump61;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/** The saved state of a game: its position and side to move, the player
+ *  settings, and the moves made since the game started or its position
+ *  was last set.  Snapshots are written to and read from snapshot files
+ *  by the save and load commands.
+ *
+ *  A snapshot file consists of
+ *    - a header: the magic number MAGIC (an int) and the format VERSION
+ *      (a byte);
+ *    - the player settings (a combination of GameRecord.RED_AUTO and
+ *      GameRecord.BLUE_AUTO) and flags (VERBOSE) (bytes), the random
+ *      seed (a long), and the AI time limit in msec (a long);
+ *    - the position, as encoded by BoardCodec.encode, and the ordinal of
+ *      the side to move (a byte);
+ *    - the number of moves (an int), and the moves, as square numbers
+ *      (a byte each);
+ *    - the CRC-32 checksum of all of the above (an int).
+ *  All numbers are big-endian.  Each file is read or written with a
+ *  single transfer.
+ *  @author Will Harvey
+ */
+class GameSnapshot {
+
+    /** Magic number identifying snapshot files. */
+    static final int MAGIC = 0x4a363153;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Bit in flags() set if the board is displayed after each move. */
+    static final int VERBOSE = 1;
+
+    /** Size of a snapshot file, excluding its position and moves. */
+    private static final int FIXED_SIZE = 4 + 1 + 1 + 1 + 8 + 8 + 1 + 4 + 4;
+
+    /** A snapshot of BOARD, played with player SETTINGS (a combination of
+     *  GameRecord.RED_AUTO and GameRecord.BLUE_AUTO), FLAGS, random seed
+     *  SEED, and AI time limit TIMELIMIT (msec, or 0 for none), reached by
+     *  MOVES (square numbers). */
+    GameSnapshot(Board board, int settings, int flags, long seed,
+                 long timeLimit, int[] moves) {
+        _board = board;
+        _settings = settings;
+        _flags = flags;
+        _seed = seed;
+        _timeLimit = timeLimit;
+        _moves = moves;
+    }
+
+    /** Return the position.  The caller must not modify the result. */
+    Board board() {
+        return _board;
+    }
+
+    /** Return the player settings: a combination of GameRecord.RED_AUTO
+     *  and GameRecord.BLUE_AUTO. */
+    int settings() {
+        return _settings;
+    }
+
+    /** Return the flags: a combination of VERBOSE. */
+    int flags() {
+        return _flags;
+    }
+
+    /** Return the random seed. */
+    long seed() {
+        return _seed;
+    }
+
+    /** Return the AI time limit in msec, or 0 for none. */
+    long timeLimit() {
+        return _timeLimit;
+    }
+
+    /** Return the moves, as square numbers.  The caller must not modify
+     *  the result. */
+    int[] moves() {
+        return _moves;
+    }
+
+    /** Write me to the snapshot file FILE, replacing any existing one. */
+    void write(Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(encodedSize());
+        encode(buf);
+        buf.flip();
+        try (FileChannel out = FileChannel.open(file, CREATE, WRITE,
+                                                TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+        }
+    }
+
+    /** Return the snapshot in the snapshot file FILE.  Throws an
+     *  IOException if FILE is not a valid snapshot file. */
+    static GameSnapshot read(Path file) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel in = FileChannel.open(file, READ)) {
+            long size = in.size();
+            if (size < FIXED_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("not a snapshot file: " + file);
+            }
+            buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining() && in.read(buf) >= 0) {
+                continue;
+            }
+        }
+        buf.flip();
+        try {
+            return decode(buf);
+        } catch (IOException | GameException
+                 | BufferUnderflowException | IndexOutOfBoundsException excp) {
+            throw new IOException("bad snapshot file: " + file + ": "
+                                  + excp.getMessage());
+        }
+    }
+
+    /** Return the number of bytes in my encoding. */
+    int encodedSize() {
+        return FIXED_SIZE + BoardCodec.encodedSize(_board.size())
+            + _moves.length;
+    }
+
+    /** Write my encoding, including its checksum, to OUT. */
+    void encode(ByteBuffer out) {
+        int start = out.position();
+        out.putInt(MAGIC).put((byte) VERSION);
+        out.put((byte) _settings).put((byte) _flags);
+        out.putLong(_seed).putLong(_timeLimit);
+        BoardCodec.encode(_board, out);
+        out.put((byte) _board.whoseMove().ordinal());
+        out.putInt(_moves.length);
+        for (int move : _moves) {
+            out.put((byte) move);
+        }
+        out.putInt(checksum(out, start, out.position()));
+    }
+
+    /** Return the snapshot whose encoding (as written by encode) occupies
+     *  the remainder of IN.  Throws an IOException if the encoding is not
+     *  valid. */
+    static GameSnapshot decode(ByteBuffer in) throws IOException {
+        int start = in.position(), end = in.limit() - 4;
+        if (end - start < FIXED_SIZE - 4 || in.getInt() != MAGIC) {
+            throw new IOException("not a snapshot");
+        }
+        if (in.get() != VERSION) {
+            throw new IOException("unsupported snapshot version");
+        }
+        if (in.getInt(end) != checksum(in, start, end)) {
+            throw new IOException("snapshot checksum mismatch");
+        }
+        int settings = in.get(), flags = in.get();
+        long seed = in.getLong(), timeLimit = in.getLong();
+        Board board = BoardCodec.decode(in);
+        if (in.get() != board.whoseMove().ordinal()) {
+            throw new IOException("side to move does not match position");
+        }
+        int numMoves = in.getInt();
+        if (numMoves < 0 || numMoves != end - in.position()) {
+            throw new IOException("bad number of moves");
+        }
+        int[] moves = new int[numMoves];
+        for (int k = 0; k < numMoves; k += 1) {
+            moves[k] = in.get() & 0xff;
+            if (moves[k] >= board.size() * board.size()) {
+                throw new IOException("bad move");
+            }
+        }
+        in.position(in.limit());
+        return new GameSnapshot(board, settings, flags, seed, timeLimit,
+                                moves);
+    }
+
+    /** Return the CRC-32 checksum of the bytes of BUF from index START up
+     *  to END, leaving the position of BUF unchanged. */
+    private static int checksum(ByteBuffer buf, int start, int end) {
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().limit(end).position(start));
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof GameSnapshot)) {
+            return false;
+        }
+        GameSnapshot other = (GameSnapshot) obj;
+        return _settings == other._settings && _flags == other._flags
+            && _seed == other._seed && _timeLimit == other._timeLimit
+            && _board.size() == other._board.size()
+            && _board.toString().equals(other._board.toString())
+            && Arrays.equals(_moves, other._moves);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_moves) * 31 + _board.hashCode();
+    }
+
+    /** The position. */
+    private final Board _board;
+    /** Player settings. */
+    private final int _settings;
+    /** Flags. */
+    private final int _flags;
+    /** Random seed. */
+    private final long _seed;
+    /** AI time limit in msec. */
+    private final long _timeLimit;
+    /** Moves, as square numbers. */
+    private final int[] _moves;
+
+}
@@ -0,0 +1,122 @@
+package jump61;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Unit tests of saving and loading games.
+ *  @author Will Harvey
+ */
+public class GameSnapshotTest {
+
+    @Test
+    public void testSaveLoad() throws IOException {
+        Path file = Files.createTempFile("jump61", ".snap");
+        try {
+            ArrayDeque<String> commands = new ArrayDeque<>();
+            int[] updates = new int[1];
+            StringBuilder errors = new StringBuilder();
+            Reporter reporter = new TextReporter() {
+                @Override
+                public void err(String format, Object... args) {
+                    errors.append(String.format(format, args));
+                }
+            };
+            Game game = new Game((prompt) -> commands.poll(),
+                                 (b) -> updates[0] += 1, reporter, false);
+            game.start();
+            game.acceptCommand("manual blue");
+            game.acceptCommand("size 4");
+            game.acceptCommand("1 1");
+            game.acceptCommand("2 2");
+            game.acceptCommand("1 1");
+            game.acceptCommand("verbose");
+            game.acceptCommand("save " + file);
+            String saved = game.getBoard().toString();
+
+            game.acceptCommand("new");
+            game.acceptCommand("quiet");
+            game.acceptCommand("auto red");
+            updates[0] = 0;
+            game.acceptCommand("load " + file);
+            assertEquals("", errors.toString());
+            assertEquals(1, updates[0]);
+            assertEquals(saved, game.getBoard().toString());
+            assertEquals(null, game.autoPlayer());
+
+            GameSnapshot snapshot = GameSnapshot.read(file);
+            assertArrayEquals(new int[] { 0, 5, 0 }, snapshot.moves());
+            assertEquals(GameSnapshot.VERBOSE, snapshot.flags());
+            assertEquals(0, snapshot.settings());
+
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[8] ^= 1;
+            Files.write(file, bytes);
+            game.acceptCommand("load " + file);
+            assertTrue(errors.toString().contains("checksum"));
+            assertEquals(saved, game.getBoard().toString());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testEncoding() throws IOException {
+        Board board = new Board(5);
+        board.addSpot(Side.RED, 3);
+        board.addSpot(Side.BLUE, 24);
+        GameSnapshot snapshot =
+            new GameSnapshot(board, GameRecord.BLUE_AUTO, 0, -7, 1500,
+                             new int[] { 3, 24 });
+        ByteBuffer buf = ByteBuffer.allocate(snapshot.encodedSize());
+        snapshot.encode(buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+        assertEquals(snapshot, GameSnapshot.decode(buf));
+    }
+
+    @Test
+    public void testShortBoard() throws IOException {
+        byte[] bytes = new byte[4 + 1 + 1 + 1 + 8 + 8 + 1 + 10 + 4];
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        int end = bytes.length - 4;
+        long seed;
+        for (seed = 0; seed < 100000; seed += 1) {
+            buf.clear();
+            buf.putInt(GameSnapshot.MAGIC).put((byte) GameSnapshot.VERSION)
+                .put((byte) 0).put((byte) 0).putLong(seed).putLong(0)
+                .put((byte) Defaults.MAX_BOARD_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, end);
+            buf.putInt(end, (int) crc.getValue());
+            buf.clear();
+            try {
+                GameSnapshot.decode(buf);
+            } catch (BufferUnderflowException excp) {
+                break;
+            } catch (IOException | GameException excp) {
+                continue;
+            }
+        }
+        assertTrue(seed < 100000);
+        Path file = Files.createTempFile("jump61", ".snap");
+        try {
+            Files.write(file, bytes);
+            GameSnapshot.read(file);
+            fail("read a snapshot whose board is cut short");
+        } catch (IOException excp) {
+            assertTrue(excp.getMessage().startsWith("bad snapshot file"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
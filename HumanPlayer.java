@@ -1,9 +1,6 @@
 
 package jump61;
 
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
-
 import static jump61.Utils.*;
 
 /** A Player that gets its moves from manual input.
@@ -17,23 +14,29 @@ class HumanPlayer extends Player {
         super(game, color);
     }
 
-    /** Syntax of a move.  Groups capture row and column. */
-    private static final Pattern MOVE_PATN =
-        Pattern.compile("(\\d+)\\s+(\\d+)\\b");
-
     @Override
     String getMove() {
         Game game = getGame();
-        Board board = getBoard();
         while (true) {
             String cmnd = game.getCommand();
-            Matcher m = MOVE_PATN.matcher(cmnd);
-            if (!m.matches() || board.isLegal(getSide(), toInt(m.group(1)),
-                                              toInt(m.group(2)))) {
+            if (isValidMove(cmnd)) {
                 return cmnd;
             }
             game.reportError("invalid move: %s", cmnd);
         }
     }
 
+    /** Return false iff CMND is a move that I may not make: one to a
+     *  nonexistent square or to a square of the opposing color.  Other
+     *  commands are valid. */
+    boolean isValidMove(String cmnd) {
+        Board board = getBoard();
+        return !parseMove(cmnd, _move)
+            || (board.exists(_move[0], _move[1])
+                && board.isLegal(getSide(), _move[0], _move[1]));
+    }
+
+    /** Row and column of the last move entered. */
+    private final int[] _move = new int[2];
+
 }
@@ -0,0 +1,168 @@
+package jump61;
+
+/** Scans and updates of the squares of a board, stored as arrays of
+ *  bytes: the number of spots on each square, the ordinal of the Side
+ *  owning it, and for each board size, the number of neighbors of each
+ *  square.  Arrays are indexed by square number and padded with zeros to
+ *  a multiple of CHUNK bytes (neighbor counts are padded with
+ *  Byte.MAX_VALUE), so that implementations may process whole chunks.
+ *
+ *  There are two implementations: plain loops (the default), and
+ *  VectorKernels, which uses the incubating Vector API
+ *  (jdk.incubator.vector) to process many squares per instruction.  The
+ *  system property PROPERTY selects one ("scalar" or "vector") for the
+ *  run of the program; the vector kernels also require the option
+ *  --add-modules jdk.incubator.vector when the program is run, and
+ *  otherwise the scalar kernels are used.
+ *  @author Will Harvey
+ */
+abstract class Kernels {
+
+    /** Name of the system property selecting the kernels. */
+    static final String PROPERTY = "jump61.kernels";
+
+    /** Arrays are padded to a multiple of this many bytes. */
+    static final int CHUNK = 64;
+
+    /** Return the kernels selected for this run of the program. */
+    static Kernels get() {
+        return ACTIVE;
+    }
+
+    /** Return the length of an array holding N squares, with padding. */
+    static int paddedLength(int n) {
+        return (n + CHUNK - 1) / CHUNK * CHUNK;
+    }
+
+    /** Return the kernels named NAME: "vector" for VectorKernels, if
+     *  available, and otherwise the scalar kernels. */
+    static Kernels select(String name) {
+        if (name.equals("vector")) {
+            try {
+                return (Kernels) Class.forName("jump61.VectorKernels")
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError excp) {
+                System.err.printf("Vector kernels unavailable (%s); using"
+                                  + " scalar kernels.%n", excp);
+            }
+        }
+        return new Scalar();
+    }
+
+    /** Return the name of these kernels. */
+    abstract String name();
+
+    /** Return A[BASE] + ... + A[BASE + N - 1]. */
+    abstract int sum(byte[] a, int base, int n);
+
+    /** Return the number of K < N such that A[BASE + K] == VALUE. */
+    abstract int count(byte[] a, int base, int n, int value);
+
+    /** Return the number of K, FROM <= K < TO, such that
+     *  A[BASE + K] == B[K]. */
+    abstract int countEqual(byte[] a, int base, byte[] b, int from,
+                            int to);
+
+    /** Set OVER[OFFSET + K] to 1 if SPOTS[K] > LIMITS[K], and otherwise
+     *  to 0, for all K < N, and return the number of 1s.  Entries of OVER
+     *  at OFFSET + K for N <= K < paddedLength(N) are set to 0. */
+    abstract int markOverfull(byte[] spots, byte[] limits, byte[] over,
+                              int offset, int n);
+
+    /** Explode all squares K of a SIZE x SIZE board for which
+     *  OVER[OFFSET + K] is 1 at once: remove LIMITS[K] spots from each,
+     *  add one spot to each of its neighbors, and give PLAYER (a Side
+     *  ordinal) all squares that explode or receive spots.  HASLEFT[K]
+     *  and HASRIGHT[K] are 1 iff square K has a neighbor in the same row
+     *  to its left or right, and 0 otherwise.  OFFSET must be at least
+     *  SIZE, and OVER must have at least OFFSET + SIZE entries past the
+     *  padded length of the others.  Entries of SPOTS and OWNERS past the
+     *  squares may be changed. */
+    abstract void spread(byte[] spots, byte[] owners, byte[] over,
+                         int offset, byte[] limits, byte[] hasLeft,
+                         byte[] hasRight, int size, int player);
+
+    /** Kernels that use plain loops. */
+    static class Scalar extends Kernels {
+
+        @Override
+        String name() {
+            return "scalar";
+        }
+
+        @Override
+        int sum(byte[] a, int base, int n) {
+            int sum;
+            sum = 0;
+            for (int k = base; k < base + n; k += 1) {
+                sum += a[k];
+            }
+            return sum;
+        }
+
+        @Override
+        int count(byte[] a, int base, int n, int value) {
+            int count;
+            count = 0;
+            for (int k = base; k < base + n; k += 1) {
+                if (a[k] == value) {
+                    count += 1;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        int countEqual(byte[] a, int base, byte[] b, int from, int to) {
+            int count;
+            count = 0;
+            for (int k = from; k < to; k += 1) {
+                if (a[base + k] == b[k]) {
+                    count += 1;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        int markOverfull(byte[] spots, byte[] limits, byte[] over,
+                         int offset, int n) {
+            int count;
+            count = 0;
+            for (int k = 0; k < n; k += 1) {
+                if (spots[k] > limits[k]) {
+                    over[offset + k] = 1;
+                    count += 1;
+                } else {
+                    over[offset + k] = 0;
+                }
+            }
+            for (int k = n; k < paddedLength(n); k += 1) {
+                over[offset + k] = 0;
+            }
+            return count;
+        }
+
+        @Override
+        void spread(byte[] spots, byte[] owners, byte[] over, int offset,
+                    byte[] limits, byte[] hasLeft, byte[] hasRight,
+                    int size, int player) {
+            int n = size * size;
+            for (int k = 0; k < n; k += 1) {
+                int p = offset + k;
+                int received = over[p - 1] * hasLeft[k]
+                    + over[p + 1] * hasRight[k]
+                    + over[p - size] + over[p + size];
+                if (received > 0 || over[p] != 0) {
+                    spots[k] += received - over[p] * limits[k];
+                    owners[k] = (byte) player;
+                }
+            }
+        }
+    }
+
+    /** The kernels selected for this run of the program. */
+    private static final Kernels ACTIVE =
+        select(System.getProperty(PROPERTY, "scalar"));
+
+}
@@ -0,0 +1,98 @@
+package jump61;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of the board kernels and of cascades resolved in waves.
+ *  @author Will Harvey
+ */
+public class KernelsTest {
+
+    /** Return an array of N squares' worth of random bytes below BOUND,
+     *  padded with zeros, from RANDOM. */
+    private static byte[] randomBytes(Random random, int n, int bound) {
+        byte[] a = new byte[Kernels.paddedLength(n)];
+        for (int k = 0; k < n; k += 1) {
+            a[k] = (byte) random.nextInt(bound);
+        }
+        return a;
+    }
+
+    /** Check that KERNELS agree with the scalar kernels on random data. */
+    private void checkAgainstScalar(Kernels kernels) {
+        Kernels scalar = new Kernels.Scalar();
+        Random random = new Random(61);
+        for (int trial = 0; trial < 200; trial += 1) {
+            int n = 1 + random.nextInt(100);
+            byte[] a = randomBytes(random, n, 5),
+                b = randomBytes(random, n, 5);
+            int base = random.nextInt(2) * Kernels.CHUNK;
+            byte[] c = new byte[base + a.length];
+            System.arraycopy(a, 0, c, base, a.length);
+            assertEquals(scalar.sum(a, 0, n), kernels.sum(c, base, n));
+            assertEquals(scalar.count(a, 0, n, 2),
+                         kernels.count(c, base, n, 2));
+            int from = random.nextInt(n), to = from + random.nextInt(n - from);
+            assertEquals(scalar.countEqual(a, 0, b, from, to),
+                         kernels.countEqual(c, base, b, from, to));
+            byte[] over1 = new byte[a.length + 20],
+                over2 = new byte[a.length + 20];
+            assertEquals(scalar.markOverfull(a, b, over1, 10, n),
+                         kernels.markOverfull(a, b, over2, 10, n));
+            assertArrayEquals(over1, over2);
+        }
+    }
+
+    @Test
+    public void testScalar() {
+        checkAgainstScalar(Kernels.select("scalar"));
+        assertEquals("scalar", Kernels.select("scalar").name());
+    }
+
+    @Test
+    public void testVector() {
+        Kernels vector = Kernels.select("vector");
+        if (vector.name().startsWith("vector")) {
+            checkAgainstScalar(vector);
+        }
+    }
+
+    @Test
+    public void testWavesMatchQueue() {
+        Random random = new Random(1);
+        for (int game = 0; game < 200; game += 1) {
+            int size = 2 + game % 7;
+            Board waves = new Board(size), queue = new Board(size);
+            queue.addListener((board, change) -> { });
+            while (waves.getWinner() == null) {
+                Side player = waves.whoseMove();
+                int n;
+                do {
+                    n = random.nextInt(size * size);
+                } while (!waves.isLegal(player, n));
+                waves.addSpot(player, n);
+                queue.addSpot(player, n);
+                assertEquals(queue.toString(), waves.toString());
+                assertEquals(queue.positionHash(), waves.positionHash());
+            }
+            assertEquals(queue.getWinner(), waves.getWinner());
+        }
+    }
+
+    @Test
+    public void testNumCritical() {
+        Board board = new Board(3);
+        assertEquals(0, board.numCritical(0, 9));
+        board.set(1, 1, 2, RED);
+        board.set(2, 2, 3, BLUE);
+        board.set(3, 2, 3, RED);
+        assertEquals(2, board.numCritical(0, 9));
+        assertEquals(1, board.numCritical(1, 9));
+        assertEquals(0, board.numCritical(1, 4));
+    }
+
+}
@@ -1,11 +1,19 @@
 package jump61;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Reader;
+import java.net.SocketAddress;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 
+import static jump61.GameException.error;
 import static jump61.Utils.*;
 
 import ucb.util.CommandArgs;
@@ -18,13 +26,26 @@ public class Main {
     /** Location of usage message resource. */
     static final String USAGE = "jump61/Usage.txt";
 
+    /** Size of the standard output buffer in script mode. */
+    static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     /** Play jump61.  ARGS0 may consist of the single string
      *  '--display' to indicate that the game is played using a GUI. Prints
      *  a usage message if the arguments are wrong. */
     public static void main(String[] args0) {
         CommandArgs args =
             new CommandArgs("--display{0,1} --strict{0,1} --version{0,1}"
-                            + " --debug=(\\d+){0,1} --log --=(.*){0,}", args0);
+                            + " --debug=(\\d+){0,1} --log"
+                            + " --record=(.+){0,1} --evaluate=(\\d+){0,1}"
+                            + " --threads=(\\d+){0,1} --script{0,1}"
+                            + " --serve=(.+){0,1} --events{0,1}"
+                            + " --cache=(.+){0,1} --engine{0,1}"
+                            + " --weights=(.+){0,1} --selfplay=(\\d+){0,1}"
+                            + " --tune{0,1} --analysis=(.+){0,1}"
+                            + " --verify{0,1} --coordinate=(.+){0,1}"
+                            + " --workers=(\\d+){0,1} --worker=(.+){0,1}"
+                            + " --selective{0,1}"
+                            + " --=(.*){0,}", args0);
 
         if (!args.ok()) {
             usage();
@@ -41,41 +62,397 @@ public class Main {
         if (args.contains("--debug")) {
             Utils.setMessageLevel(args.getInt("--debug"));
         }
+        if (args.contains("--events")) {
+            Events.enable();
+        }
+        loadWeights(args);
+        if (args.contains("--selective")) {
+            AI.setDefaultSelective(true);
+        }
 
         Game game;
         if (args.contains("--display")) {
             Display display = new Display("Jump61");
-            game = new Game(display, display, display, log);
+            game = new Game(display, display, Events.reporter(display), log);
+            game.setStrict(_strict);
+            record(game, args);
+            game.setCache(openCache(args));
             game.play();
+        } else if (args.contains("--evaluate")) {
+            System.exit(evaluate(args));
+        } else if (args.contains("--selfplay")) {
+            System.exit(selfPlay(args));
+        } else if (args.contains("--worker")) {
+            System.exit(work(args));
+        } else if (args.contains("--tune")) {
+            System.exit(tune(args));
+        } else if (args.contains("--verify")) {
+            System.exit(verify(args));
+        } else if (args.contains("--engine")) {
+            System.exit(engine(args));
+        } else if (args.contains("--serve")) {
+            System.exit(serve(args));
+        } else if (args.contains("--analysis")) {
+            System.exit(analysis(args));
+        } else if (args.contains("--script")) {
+            ArrayList<String> names = new ArrayList<>(args.get("--"));
+            if (names.isEmpty()) {
+                names.add("-");
+            }
+            System.setOut(new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE),
+                false));
+            Reporter reporter =
+                Events.reporter(new BufferedReporter(System.out, System.err));
+            game = new Game(new ScriptSource(names), (b) -> {
+            }, reporter, log);
+            game.setStrict(_strict);
+            record(game, args);
+            game.setCache(openCache(args));
+            int code = game.play();
+            System.out.flush();
+            System.exit(code);
+        } else {
+            ArrayList<Reader> inReaders = inputReaders(args);
+            Reporter reporter =
+                Events.reporter(new BufferedReporter(System.out, System.err));
+            game = new Game(new TextSource(inReaders), (b) -> {
+            }, reporter, log);
+            game.setStrict(_strict);
+            record(game, args);
+            game.setCache(openCache(args));
+            System.exit(game.play());
+        }
+    }
+
+    /** Return Readers for the input files named in ARGS (the standard
+     *  input if there are none, or for each name "-").  Exits if a file
+     *  cannot be opened. */
+    private static ArrayList<Reader> inputReaders(CommandArgs args) {
+        ArrayList<Reader> inReaders = new ArrayList<>();
+        if (args.get("--").isEmpty()) {
+            inReaders.add(new InputStreamReader(System.in));
         } else {
-            TextSource source;
-            ArrayList<Reader> inReaders = new ArrayList<>();
-            if (args.get("--").isEmpty()) {
-                inReaders.add(new InputStreamReader(System.in));
+            for (String name : args.get("--")) {
+                if (name.equals("-")) {
+                    inReaders.add(new InputStreamReader(System.in));
+                } else {
+                    try {
+                        inReaders.add(new FileReader(name));
+                    } catch (IOException excp) {
+                        System.err.printf("Could not open %s", name);
+                        System.exit(1);
+                    }
+                }
+            }
+        }
+        return inReaders;
+    }
+
+    /** Evaluate the positions in the input files named in ARGS, as
+     *  directed by ARGS, and return an exit code. */
+    private static int evaluate(CommandArgs args) {
+        int depth = args.getInt("--evaluate");
+        PrintStream out =
+            new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE),
+                false);
+        BatchEvaluator evaluator =
+            new BatchEvaluator(depth, numThreads(args), out, System.err);
+        evaluator.setCache(openCache(args));
+        try {
+            evaluator.run(new PositionReader(inputReaders(args)));
+            return 0;
+        } catch (IOException | GameException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            return 1;
+        } finally {
+            out.flush();
+        }
+    }
+
+    /** Play the self-play games requested in ARGS, adding their
+     *  positions to the training-data file named in ARGS, and return an
+     *  exit code. */
+    private static int selfPlay(CommandArgs args) {
+        int games = args.getInt("--selfplay");
+        try (TrainingData data = openData(args)) {
+            if (args.contains("--coordinate")) {
+                coordinate(args, data, games);
             } else {
-                for (String name : args.get("--")) {
-                    if (name.equals("-")) {
-                        inReaders.add(new InputStreamReader(System.in));
-                    } else {
-                        try {
-                            inReaders.add(new FileReader(name));
-                        } catch (IOException excp) {
-                            System.err.printf("Could not open %s", name);
-                            System.exit(1);
+                SelfPlay generator =
+                    new SelfPlay(numThreads(args), data, System.err);
+                generator.run(data.size(), games);
+            }
+            System.err.printf("%d positions in %s%n", data.size(),
+                              args.getFirst("--"));
+            return 0;
+        } catch (IOException | GameException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            return 1;
+        }
+    }
+
+    /** Have worker processes play GAMES self-play games, as directed by
+     *  ARGS, adding their positions to DATA. */
+    private static void coordinate(CommandArgs args, TrainingData data,
+                                   int games) throws IOException {
+        GameRecordWriter recorder = null;
+        if (args.contains("--record")) {
+            recorder = new GameRecordWriter(Paths.get(args.getFirst(
+                                                          "--record")));
+        }
+        try {
+            SelfPlayCoordinator coordinator =
+                new SelfPlayCoordinator(GameServer.parseAddress(
+                                            args.getFirst("--coordinate")),
+                                        data, recorder, System.err);
+            System.err.printf("Coordinating on %s%n",
+                              coordinator.localAddress());
+            if (args.contains("--workers")) {
+                ArrayList<String> options = new ArrayList<>();
+                options.add("--threads=" + numThreads(args));
+                if (args.contains("--weights")) {
+                    options.add("--weights=" + args.getFirst("--weights"));
+                }
+                if (args.contains("--selective")) {
+                    options.add("--selective");
+                }
+                coordinator.startWorkers(args.getInt("--workers"), options);
+            }
+            coordinator.run(data.size(), games,
+                            SelfPlayCoordinator.BATCH_SIZE);
+        } finally {
+            if (recorder != null) {
+                recorder.close();
+            }
+        }
+    }
+
+    /** Play self-play games for the coordinator named in ARGS, as
+     *  directed by ARGS, and return an exit code. */
+    private static int work(CommandArgs args) {
+        try {
+            SelfPlayWorker worker =
+                new SelfPlayWorker(GameServer.parseAddress(
+                                       args.getFirst("--worker")),
+                                   numThreads(args));
+            worker.run();
+            return 0;
+        } catch (IOException | GameException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            return 1;
+        }
+    }
+
+    /** Tune the evaluation weights (starting from those in effect) to the
+     *  training-data file named in ARGS, write them to the standard
+     *  output, and return an exit code. */
+    private static int tune(CommandArgs args) {
+        try (TrainingData data = openData(args)) {
+            if (data.size() == 0) {
+                System.err.printf("Error: no positions in %s%n",
+                                  args.getFirst("--"));
+                return 1;
+            }
+            Tuner tuner = new Tuner(numThreads(args), System.err);
+            Evaluation start = new AI(null, Side.RED, 0).evaluation();
+            Evaluation tuned = tuner.tune(data, start);
+            System.out.printf("# Tuned to %d positions: mean log loss"
+                              + " %.5f (was %.5f)%n", data.size(),
+                              Tuner.loss(data, tuned),
+                              Tuner.loss(data, start));
+            tuned.write(System.out);
+            return 0;
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            return 1;
+        }
+    }
+
+    /** Replay each game in the record files named in ARGS, reporting
+     *  those whose moves are illegal or that do not end as recorded, and
+     *  then the number of games verified and the rate.  Return an exit
+     *  code: 1 if any game failed or a file could not be read. */
+    private static int verify(CommandArgs args) {
+        if (args.get("--").isEmpty()) {
+            System.err.println("Error: no record files to verify");
+            return 1;
+        }
+        long games, moves, failed;
+        games = moves = failed = 0;
+        long start = System.nanoTime();
+        for (String name : args.get("--")) {
+            try (GameRecordReader reader =
+                 new GameRecordReader(Paths.get(name))) {
+                for (int k = 0; k < reader.numGames(); k += 1) {
+                    GameRecord game = reader.read(k);
+                    games += 1;
+                    moves += game.moves().length;
+                    try {
+                        Side winner = game.replay().getWinner();
+                        if (winner != game.winner()) {
+                            throw error("ends with winner %s, not %s",
+                                        winner, game.winner());
                         }
+                    } catch (GameException excp) {
+                        failed += 1;
+                        System.err.printf("%s: game %d: %s%n", name, k,
+                                          excp.getMessage());
                     }
                 }
+            } catch (IOException excp) {
+                System.err.printf("Error: %s%n", excp.getMessage());
+                return 1;
             }
-            game = new Game(new TextSource(inReaders), (b) -> {
-            }, new TextReporter(), log);
-            System.exit(game.play());
         }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games (%d moves) verified in %.2f s"
+                          + " (%.0f games/sec): %d failed%n", games, moves,
+                          seconds, games / seconds, failed);
+        return failed == 0 ? 0 : 1;
+    }
+
+    /** Return the training data in the one file named in ARGS.  Throws
+     *  IOException if ARGS do not name exactly one file or it cannot be
+     *  opened. */
+    private static TrainingData openData(CommandArgs args)
+        throws IOException {
+        if (args.get("--").size() != 1) {
+            throw new IOException("expected one training-data file");
+        }
+        return new TrainingData(Paths.get(args.getFirst("--")),
+                                TrainingData.DEFAULT_CAPACITY);
     }
 
-    /** Return true if in strict mode, where user errors are not allowed and
-     *  cause error exit from the program. */
-    static boolean strict() {
-        return _strict;
+    /** Return the number of threads requested in ARGS, by default the
+     *  number of processors. */
+    private static int numThreads(CommandArgs args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.contains("--threads")) {
+            threads = args.getInt("--threads");
+        }
+        return Math.max(1, threads);
+    }
+
+    /** If ARGS name a weights file, have AIs evaluate positions with the
+     *  weights it contains.  Exits if it cannot be read. */
+    private static void loadWeights(CommandArgs args) {
+        if (!args.contains("--weights")) {
+            return;
+        }
+        String name = args.getFirst("--weights");
+        try {
+            AI.setDefaultEvaluation(Evaluation.read(Paths.get(name)));
+        } catch (IOException | GameException excp) {
+            System.err.printf("Could not read %s: %s%n", name,
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Drive the AI through the engine protocol on the standard input and
+     *  output, as directed by ARGS, and return an exit code. */
+    private static int engine(CommandArgs args) {
+        EngineProtocol engine =
+            new EngineProtocol(new BufferedReader(
+                                   new InputStreamReader(System.in)),
+                               System.out);
+        engine.setCache(openCache(args));
+        try {
+            return engine.run();
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            return 1;
+        }
+    }
+
+    /** Serve games to clients connecting to the address given in ARGS,
+     *  as directed by ARGS, and return an exit code. */
+    private static int serve(CommandArgs args) {
+        try {
+            SocketAddress address =
+                GameServer.parseAddress(args.getFirst("--serve"));
+            GameServer server =
+                new GameServer(address, numThreads(args), _strict);
+            server.setCache(openCache(args));
+            System.err.printf("Serving on %s%n", server.localAddress());
+            server.serve();
+            return 0;
+        } catch (IOException | GameException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            return 1;
+        }
+    }
+
+    /** Answer analysis requests from clients connecting to the address
+     *  given in ARGS, as directed by ARGS, and return an exit code. */
+    private static int analysis(CommandArgs args) {
+        try (AnalysisService service =
+             new AnalysisService(numThreads(args),
+                                 AnalysisService.TABLE_MEGABYTES,
+                                 openCache(args))) {
+            AnalysisServer server =
+                new AnalysisServer(GameServer.parseAddress(
+                                       args.getFirst("--analysis")),
+                                   service);
+            System.err.printf("Analyzing on %s%n", server.localAddress());
+            server.serve();
+            return 0;
+        } catch (IOException | GameException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            return 1;
+        }
+    }
+
+    /** If ARGS request it, record the games played in GAME in a game
+     *  record file, which is completed when the program exits. */
+    private static void record(Game game, CommandArgs args) {
+        if (!args.contains("--record")) {
+            return;
+        }
+        String name = args.getFirst("--record");
+        try {
+            GameRecordWriter recorder =
+                new GameRecordWriter(Paths.get(name));
+            game.setRecorder(recorder);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    recorder.close();
+                } catch (IOException excp) {
+                    System.err.printf("Could not complete %s%n", name);
+                }
+            }));
+        } catch (IOException excp) {
+            System.err.printf("Could not open %s%n", name);
+            System.exit(1);
+        }
+    }
+
+    /** Return the analysis cache named in ARGS, which is closed when the
+     *  program exits, or null if ARGS name none. */
+    private static AnalysisCache openCache(CommandArgs args) {
+        if (!args.contains("--cache")) {
+            return null;
+        }
+        String name = args.getFirst("--cache");
+        try {
+            AnalysisCache cache =
+                new AnalysisCache(Paths.get(name), AnalysisCache.DEFAULT_SLOTS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    cache.close();
+                } catch (IOException excp) {
+                    System.err.printf("Could not complete %s%n", name);
+                }
+            }));
+            return cache;
+        } catch (IOException excp) {
+            System.err.printf("Could not open %s: %s%n", name,
+                              excp.getMessage());
+            System.exit(1);
+            return null;
+        }
     }
 
     /** Print usage message. */
@@ -83,7 +460,8 @@ public class Main {
         printHelpResource(USAGE, System.err);
     }
 
-    /** True if we are to run in strict mode. */
+    /** True if we are to run in strict mode, where user errors are not
+     *  allowed and cause error exit from the program. */
     private static boolean _strict;
     /** True if we should log moves and commands. */
     private static boolean _log;
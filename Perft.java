@@ -0,0 +1,172 @@
+package jump61;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import static jump61.GameException.error;
+
+/** Enumerates the game tree below a position to a fixed depth, counting
+ *  the positions reached ("perft").  The counts depend only on the rules
+ *  as implemented by Board.addSpot, so they serve both to check a
+ *  changed engine against the current one and to measure the raw speed
+ *  of move generation and jumping.
+ *
+ *  A position counts as a leaf if it is reached after exactly the
+ *  requested number of moves.  A won position has no moves, and so
+ *  contributes no leaves below it.
+ *  @author Will Harvey
+ */
+class Perft {
+
+    /** A Perft of the game tree below START.  If UNIQUE, counts only
+     *  distinct leaf positions (as identified by Board.positionHash).
+     *  If PARALLEL, searches the subtrees of the root moves in parallel.
+     *  START is copied, and is not modified. */
+    Perft(Board start, boolean unique, boolean parallel) {
+        _start = new Board(start);
+        _unique = unique;
+        _parallel = parallel;
+    }
+
+    /** Enumerate the tree to DEPTH moves and return the number of
+     *  leaves.  Requires 0 <= DEPTH <= MAX_DEPTH. */
+    long run(int depth) {
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw error("perft depth must be between 0 and %d", MAX_DEPTH);
+        }
+        long startTime = System.nanoTime();
+        _nodes.reset();
+        _seen = _unique ? ConcurrentHashMap.newKeySet() : null;
+
+        Side player = _start.whoseMove();
+        ArrayList<Integer> moves = new ArrayList<>();
+        if (depth > 0 && _start.getWinner() == null) {
+            for (int n = 0; n < _start.size() * _start.size(); n += 1) {
+                if (_start.isLegal(player, n)) {
+                    moves.add(n);
+                }
+            }
+        }
+        _rootMoves = new int[moves.size()];
+        _rootCounts = new long[moves.size()];
+
+        long total;
+        if (depth == 0) {
+            _nodes.increment();
+            total = 1;
+        } else {
+            IntStream roots = IntStream.range(0, moves.size());
+            if (_parallel) {
+                roots = roots.parallel();
+            }
+            roots.forEach((k) -> {
+                Board work = new Board(_start);
+                work.addSpot(player, moves.get(k));
+                _rootMoves[k] = moves.get(k);
+                _rootCounts[k] = count(work, depth - 1);
+            });
+            _nodes.increment();
+            total = 0;
+            for (long count : _rootCounts) {
+                total += count;
+            }
+        }
+        _elapsed = System.nanoTime() - startTime;
+        return total;
+    }
+
+    /** Return the number of leaves DEPTH moves below B, which is
+     *  restored to its original contents on return. */
+    private long count(Board b, int depth) {
+        _nodes.increment();
+        if (_seen != null
+            && !_seen.add(b.positionHash() ^ DEPTH_KEYS[depth])) {
+            return 0;
+        }
+        if (depth == 0) {
+            return 1;
+        }
+        if (b.getWinner() != null) {
+            return 0;
+        }
+        Side player = b.whoseMove();
+        long total;
+        total = 0;
+        for (int n = 0; n < b.size() * b.size(); n += 1) {
+            if (b.isLegal(player, n)) {
+                b.addSpot(player, n);
+                total += count(b, depth - 1);
+                b.undo();
+            }
+        }
+        return total;
+    }
+
+    /** Return the root moves (as square numbers) of the last run. */
+    int[] rootMoves() {
+        return _rootMoves;
+    }
+
+    /** Return the number of leaves below each of rootMoves() in the last
+     *  run.  With unique counting, a leaf reachable from several root
+     *  moves is counted under only one of them. */
+    long[] rootCounts() {
+        return _rootCounts;
+    }
+
+    /** Return the number of positions visited in the last run, including
+     *  interior positions and the root. */
+    long nodes() {
+        return _nodes.sum();
+    }
+
+    /** Return the duration of the last run in nanoseconds. */
+    long elapsedNanos() {
+        return _elapsed;
+    }
+
+    /** Return the rate at which positions were visited in the last run,
+     *  in positions per second. */
+    long nodesPerSecond() {
+        return _nodes.sum() * 1_000_000_000L / Math.max(1, _elapsed);
+    }
+
+    /** Largest depth accepted by run. */
+    static final int MAX_DEPTH = 63;
+
+    /** Keys distinguishing equal positions visited with different numbers
+     *  of remaining moves, when counting unique leaves. */
+    private static final long[] DEPTH_KEYS = new long[MAX_DEPTH + 1];
+
+    static {
+        Random keys = new Random(0x7065726674L);
+        for (int k = 0; k < DEPTH_KEYS.length; k += 1) {
+            DEPTH_KEYS[k] = keys.nextLong();
+        }
+    }
+
+    /** The position at the root of the tree. */
+    private final Board _start;
+    /** True iff counting only distinct leaves. */
+    private final boolean _unique;
+    /** True iff root moves are searched in parallel. */
+    private final boolean _parallel;
+    /** Hashes of (position, remaining depth) pairs already visited in
+     *  the current run, when counting distinct leaves; otherwise null.
+     *  Two visits to the same pair reach the same leaves, so the second
+     *  need not be searched. */
+    private Set<Long> _seen;
+    /** Root moves of the last run. */
+    private int[] _rootMoves = new int[0];
+    /** Leaf counts for each root move of the last run. */
+    private long[] _rootCounts = new long[0];
+    /** Number of positions visited in the current run. */
+    private final LongAdder _nodes = new LongAdder();
+    /** Duration of the last run in nanoseconds. */
+    private long _elapsed;
+
+}
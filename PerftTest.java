@@ -0,0 +1,62 @@
+package jump61;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Unit tests of Perft.
+ *  @author Will Harvey
+ */
+public class PerftTest {
+
+    @Test
+    public void testSmallCounts() {
+        Board B = new Board(2);
+        assertEquals(1, new Perft(B, false, false).run(0));
+        assertEquals(4, new Perft(B, false, false).run(1));
+        assertEquals(12, new Perft(B, false, false).run(2));
+        assertEquals(12, new Perft(B, true, false).run(2));
+    }
+
+    @Test
+    public void testDivide() {
+        Board B = new Board(3);
+        Perft perft = new Perft(B, false, false);
+        long total = perft.run(3);
+        long sum = 0;
+        for (long count : perft.rootCounts()) {
+            sum += count;
+        }
+        assertEquals(9, perft.rootMoves().length);
+        assertEquals(total, sum);
+    }
+
+    @Test
+    public void testUniqueAndParallel() {
+        Board B = new Board(3);
+        long all = new Perft(B, false, false).run(4);
+        assertEquals(all, new Perft(B, false, true).run(4));
+        long unique = new Perft(B, true, false).run(4);
+        assertTrue(unique < all);
+        assertEquals(unique, new Perft(B, true, true).run(4));
+    }
+
+    @Test
+    public void testPositionHash() {
+        Board B = new Board(4);
+        Board C = new Board(4);
+        assertEquals(B.positionHash(), C.positionHash());
+        assertNotEquals(B.positionHash(), new Board(5).positionHash());
+        B.addSpot(Side.RED, 0);
+        B.addSpot(Side.BLUE, 5);
+        B.addSpot(Side.RED, 3);
+        C.addSpot(Side.RED, 3);
+        C.addSpot(Side.BLUE, 5);
+        C.addSpot(Side.RED, 0);
+        assertEquals(B.positionHash(), C.positionHash());
+        C.undo();
+        assertNotEquals(B.positionHash(), C.positionHash());
+        assertEquals(B.positionHash(), new Board(B).positionHash());
+    }
+
+}
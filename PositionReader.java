@@ -0,0 +1,96 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static jump61.GameException.error;
+
+/** A source of positions read incrementally from a sequence of Readers
+ *  containing boards in the dump format produced by Board.toString:
+ *  a line "===", one line per row with one entry per square (a number of
+ *  spots followed by 'r', 'b', or '-'), and another line "===".  Any text
+ *  outside of these delimiters is ignored.  Positions are parsed by
+ *  BoardCodec.
+ *  @author Will Harvey
+ */
+class PositionReader {
+
+    /** A source of the positions in the concatenation of READERS. */
+    PositionReader(List<Reader> readers) {
+        _readers = new ArrayList<>(readers);
+    }
+
+    /** Return the next position, or null if there are no more.  Throws a
+     *  GameException if the next position is malformed. */
+    Board next() throws IOException {
+        String line;
+        do {
+            line = nextLine();
+            if (line == null) {
+                return null;
+            }
+        } while (!line.trim().equals(BoardCodec.DELIMITER));
+        _text.setLength(0);
+        _text.append(BoardCodec.DELIMITER).append('\n');
+        while (true) {
+            line = nextLine();
+            if (line == null) {
+                throw error("unterminated position at line %d", _lineNum);
+            }
+            _text.append(line).append('\n');
+            if (line.trim().equals(BoardCodec.DELIMITER)) {
+                break;
+            }
+        }
+        try {
+            Board result = BoardCodec.parse(_text);
+            _count += 1;
+            return result;
+        } catch (GameException excp) {
+            throw error("%s at line %d", excp.getMessage(), _lineNum);
+        }
+    }
+
+    /** Return the number of positions read so far. */
+    long count() {
+        return _count;
+    }
+
+    /** Return the next line of input, or null at the end of the last
+     *  Reader. */
+    private String nextLine() throws IOException {
+        while (true) {
+            if (_inp == null) {
+                if (_readers.isEmpty()) {
+                    return null;
+                }
+                _inp = new BufferedReader(_readers.remove(0), BUFFER_SIZE);
+            }
+            String line = _inp.readLine();
+            if (line != null) {
+                _lineNum += 1;
+                return line;
+            }
+            _inp.close();
+            _inp = null;
+        }
+    }
+
+    /** Size of input buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Readers to use after the current one. */
+    private final ArrayList<Reader> _readers;
+    /** The current Reader, or null if none has been opened. */
+    private BufferedReader _inp;
+    /** Number of lines read. */
+    private long _lineNum;
+    /** Number of positions read. */
+    private long _count;
+    /** Text of the current position. */
+    private final StringBuilder _text = new StringBuilder();
+
+}
@@ -0,0 +1,346 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** Proves or disproves that the side to move in a position can force a
+ *  win, by depth-first proof-number search (df-pn) with a table of the
+ *  proof and disproof numbers of positions already examined.
+ *
+ *  The proof number of a position is the least number of positions
+ *  whose outcome must still be established to prove that the attacker
+ *  (the side to move at the root) wins; the disproof number, the least
+ *  number to prove that the defender wins.  At the attacker's moves the
+ *  proof number is the minimum, and the disproof number the sum, of
+ *  those of the positions after each move; at the defender's moves, the
+ *  reverse.  The search always extends the most proving position,
+ *  within thresholds that keep it in one subtree until another becomes
+ *  more promising, so it reaches forced wins many moves deep while
+ *  examining far fewer positions than a full-width search.
+ *
+ *  Since each move adds a spot, no position can recur in a game, and
+ *  no game lasts forever.  The table is kept from one solve to the next,
+ *  so that later searches of the same game start from what earlier ones
+ *  learned.  A solver is not safe for use by more than one
+ *  thread at a time.
+ *  @author Will Harvey
+ */
+class ProofSolver {
+
+    /** Result of solve: the side to move can force a win. */
+    static final int PROVEN = 1;
+    /** Result of solve: the side to move cannot avoid a loss. */
+    static final int DISPROVEN = 2;
+    /** Result of solve: neither was established within the budget. */
+    static final int UNKNOWN = 3;
+
+    /** Moves below the root beyond which the search does not go. */
+    static final int MAX_DEPTH = 500;
+
+    /** Proof and disproof numbers of established outcomes. */
+    private static final int INF = Integer.MAX_VALUE / 2;
+
+    /** A solver whose table occupies at most MEGABYTES MB (at least one
+     *  entry).  The table is allocated on first use. */
+    ProofSolver(int megabytes) {
+        long entries = Math.max(1, ((long) megabytes << 20) / ENTRY_SIZE);
+        _mask = (int) Long.highestOneBit(Math.min(entries, 1 << 26)) - 1;
+    }
+
+    /** Try to establish the outcome of START, which must not be won, for
+     *  the side to move, expanding at most MAXNODES positions, and return
+     *  PROVEN, DISPROVEN, or UNKNOWN.  START is not modified. */
+    int solve(Board start, long maxNodes) {
+        assert start.getWinner() == null;
+        long startTime = System.nanoTime();
+        if (_keys == null) {
+            _keys = new long[_mask + 1];
+            _numbers = new long[_mask + 1];
+            _arena = new BoardArena(1, MAX_DEPTH);
+        }
+        _board = _arena.copy(start);
+        _attacker = start.whoseMove();
+        _nodes = 0;
+        _maxNodes = maxNodes;
+        _stopped = _truncated = false;
+        _move = -1;
+        _line = new int[0];
+        try {
+            long root = mid(INF, INF, 0);
+            if (proof(root) == 0) {
+                _result = PROVEN;
+                _line = winningLine();
+            } else if (disproof(root) == 0 && !_truncated) {
+                _result = DISPROVEN;
+            } else {
+                _result = UNKNOWN;
+            }
+            if (_truncated) {
+                Arrays.fill(_keys, 0);
+            }
+        } finally {
+            _arena.release(_board);
+            _board = null;
+        }
+        _elapsed = System.nanoTime() - startTime;
+        return _result;
+    }
+
+    /** Return the result of the last solve. */
+    int result() {
+        return _result;
+    }
+
+    /** Return a winning move (a square number) if the last solve proved
+     *  a win, and otherwise -1. */
+    int move() {
+        return _result == PROVEN ? _move : -1;
+    }
+
+    /** Return a line of play (square numbers) from the position of the
+     *  last solve, if it proved a win: the winning move, then
+     *  alternately a defense and the attacker's winning reply, ending
+     *  with the winning move, as far as the table still records it.
+     *  Otherwise, return an empty array. */
+    int[] line() {
+        return _line;
+    }
+
+    /** Return the number of positions expanded by the last solve. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the duration of the last solve in nanoseconds. */
+    long elapsedNanos() {
+        return _elapsed;
+    }
+
+    /** Return the proof and disproof numbers (as packed by numbers) of
+     *  _board, PLY moves below the root, after searching it until either
+     *  reaches its threshold (THPN and THDN), the outcome is established,
+     *  or the node budget is exhausted.  Records the result in the
+     *  table.  _board is restored on return. */
+    private long mid(int thpn, int thdn, int ply) {
+        Board board = _board;
+        int size2 = board.size() * board.size();
+        Side player = board.whoseMove();
+        boolean attacking = player == _attacker;
+        int numMoves;
+        numMoves = 0;
+        int[] moves = new int[size2];
+        for (int n = 0; n < size2; n += 1) {
+            if (board.isLegal(player, n)) {
+                moves[numMoves] = n;
+                numMoves += 1;
+            }
+        }
+        int[] pn = new int[numMoves], dn = new int[numMoves];
+        for (int k = 0; k < numMoves; k += 1) {
+            board.addSpot(player, moves[k]);
+            long child = evaluate(board);
+            pn[k] = proof(child);
+            dn[k] = disproof(child);
+            board.undo();
+        }
+        int p, d;
+        while (true) {
+            int best, second;
+            if (attacking) {
+                p = INF;
+                d = 0;
+                best = 0;
+                second = INF;
+                for (int k = 0; k < numMoves; k += 1) {
+                    d = Math.min(INF, d + dn[k]);
+                    if (pn[k] < pn[best]) {
+                        second = pn[best];
+                        best = k;
+                    } else if (k != best) {
+                        second = Math.min(second, pn[k]);
+                    }
+                }
+                p = pn[best];
+            } else {
+                p = 0;
+                d = INF;
+                best = 0;
+                second = INF;
+                for (int k = 0; k < numMoves; k += 1) {
+                    p = Math.min(INF, p + pn[k]);
+                    if (dn[k] < dn[best]) {
+                        second = dn[best];
+                        best = k;
+                    } else if (k != best) {
+                        second = Math.min(second, dn[k]);
+                    }
+                }
+                d = dn[best];
+            }
+            if (p >= thpn || d >= thdn || _stopped) {
+                break;
+            }
+            if (_nodes >= _maxNodes) {
+                _stopped = true;
+                break;
+            }
+            _nodes += 1;
+            board.addSpot(player, moves[best]);
+            long child;
+            if (ply + 1 >= MAX_DEPTH) {
+                _truncated = true;
+                child = numbers(INF, 0);
+            } else if (attacking) {
+                child = mid(Math.min(thpn, second + 1),
+                            thdn - d + dn[best], ply + 1);
+            } else {
+                child = mid(thpn - p + pn[best],
+                            Math.min(thdn, second + 1), ply + 1);
+            }
+            board.undo();
+            pn[best] = proof(child);
+            dn[best] = disproof(child);
+        }
+        if (ply == 0 && attacking && p == 0) {
+            for (int k = 0; _move == -1; k += 1) {
+                if (pn[k] == 0) {
+                    _move = moves[k];
+                }
+            }
+        }
+        long result = numbers(p, d);
+        store(key(board), result);
+        return result;
+    }
+
+    /** Return the proof and disproof numbers of BOARD as far as known
+     *  without searching it: those of a won position, or those in the
+     *  table, or else 1 and 1. */
+    private long evaluate(Board board) {
+        Side winner = board.getWinner();
+        if (winner == _attacker) {
+            return numbers(0, INF);
+        } else if (winner != null) {
+            return numbers(INF, 0);
+        }
+        long entry = probe(key(board));
+        return entry == NONE ? numbers(1, 1) : entry;
+    }
+
+    /** Return a winning line from the root, as for line(), assuming
+     *  the root has been proven. */
+    private int[] winningLine() {
+        int[] line = new int[MAX_DEPTH];
+        int length;
+        length = 0;
+        Board board = _board;
+        int size2 = board.size() * board.size();
+        int next = _move;
+        while (next >= 0) {
+            board.addSpot(board.whoseMove(), next);
+            line[length] = next;
+            length += 1;
+            next = -1;
+            if (board.getWinner() != null || length == MAX_DEPTH) {
+                break;
+            }
+            Side player = board.whoseMove();
+            for (int n = 0; n < size2 && next == -1; n += 1) {
+                if (board.isLegal(player, n)) {
+                    board.addSpot(player, n);
+                    if (proven(board)) {
+                        next = n;
+                    }
+                    board.undo();
+                }
+            }
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    /** Return true iff BOARD is won by the attacker, or proven won in
+     *  the table. */
+    private boolean proven(Board board) {
+        if (board.getWinner() != null) {
+            return board.getWinner() == _attacker;
+        }
+        long entry = probe(key(board));
+        return entry != NONE && proof(entry) == 0;
+    }
+
+    /** Return the key in the table of BOARD searched for _attacker. */
+    private long key(Board board) {
+        return board.positionHash() ^ (_attacker == Side.RED ? 0 : BLUE_KEY);
+    }
+
+    /** Return the entry for the position whose hash is KEY in the table,
+     *  or NONE if there is none. */
+    private long probe(long key) {
+        int p = (int) key & _mask;
+        return _keys[p] == key ? _numbers[p] : NONE;
+    }
+
+    /** Record proof and disproof numbers NUMBERS for the position whose
+     *  hash is KEY, replacing any previous entry in its slot. */
+    private void store(long key, long numbers) {
+        int p = (int) key & _mask;
+        _keys[p] = key;
+        _numbers[p] = numbers;
+    }
+
+    /** Return PROOF and DISPROOF packed into one long. */
+    private static long numbers(int proof, int disproof) {
+        return (long) proof << 32 | disproof;
+    }
+
+    /** Return the proof number packed in NUMBERS. */
+    private static int proof(long numbers) {
+        return (int) (numbers >>> 32);
+    }
+
+    /** Return the disproof number packed in NUMBERS. */
+    private static int disproof(long numbers) {
+        return (int) numbers;
+    }
+
+    /** Distinguishes the keys of positions searched with Blue as the
+     *  attacker from those with Red. */
+    private static final long BLUE_KEY = 0x5d2ad1c7a1b1e4c3L;
+    /** Value of probe for a position not in the table. */
+    private static final long NONE = -1;
+    /** Size of one table entry in bytes. */
+    private static final int ENTRY_SIZE = 16;
+
+    /** Holds _board, which can undo every move of the search, or null
+     *  if not yet allocated (with the table). */
+    private BoardArena _arena;
+    /** Index mask of the table. */
+    private final int _mask;
+    /** Hashes of the positions in the table, or null if not yet
+     *  allocated. */
+    private long[] _keys;
+    /** Proof and disproof numbers of the positions in _keys. */
+    private long[] _numbers;
+
+    /** The position being searched. */
+    private Board _board;
+    /** The side to move at the root. */
+    private Side _attacker;
+    /** Number of positions expanded so far. */
+    private long _nodes;
+    /** Limit on _nodes. */
+    private long _maxNodes;
+    /** True iff the node budget is exhausted. */
+    private boolean _stopped;
+    /** True iff the search reached MAX_DEPTH, so that disproofs may be
+     *  wrong. */
+    private boolean _truncated;
+    /** Result of the last solve. */
+    private int _result = UNKNOWN;
+    /** Winning move found by the last solve, or -1. */
+    private int _move;
+    /** Winning line found by the last solve. */
+    private int[] _line = new int[0];
+    /** Duration of the last solve in nanoseconds. */
+    private long _elapsed;
+
+}
@@ -0,0 +1,64 @@
+package jump61;
+
+import org.junit.Test;
+
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of the proof-number solver.
+ *  @author Will Harvey
+ */
+public class ProofSolverTest {
+
+    /** A position in which Red, to move, forces a win in five moves. */
+    static final String WON =
+        "===\n"
+        + "    1- 3r 3r 1r\n"
+        + "    3b 2b 4r 3r\n"
+        + "    2b 2b 3b 2r\n"
+        + "    1b 3b 2r 1-\n"
+        + "===\n";
+
+    @Test
+    public void testProof() {
+        Board board = BoardCodec.parse(WON);
+        String start = board.toString();
+        ProofSolver solver = new ProofSolver(1);
+        assertEquals(ProofSolver.PROVEN, solver.solve(board, 10000));
+        assertEquals(start, board.toString());
+        int[] line = solver.line();
+        assertEquals(solver.move(), line[0]);
+        Side attacker = board.whoseMove();
+        for (int move : line) {
+            assertNull(board.getWinner());
+            board.addSpot(board.whoseMove(), move);
+        }
+        assertEquals(attacker, board.getWinner());
+
+        board = BoardCodec.parse(WON);
+        board.addSpot(attacker, line[0]);
+        assertEquals(ProofSolver.DISPROVEN, solver.solve(board, 10000));
+        assertEquals(-1, solver.move());
+        assertEquals(0, solver.line().length);
+    }
+
+    @Test
+    public void testBudget() {
+        ProofSolver solver = new ProofSolver(1);
+        assertEquals(ProofSolver.UNKNOWN, solver.solve(new Board(6), 50));
+        assertEquals(50, solver.nodes());
+    }
+
+    @Test
+    public void testAIPlaysProof() {
+        Board board = BoardCodec.parse(WON);
+        ProofSolver solver = new ProofSolver(1);
+        AI ai = new AI(null, board.whoseMove(), 0);
+        ai.setSolver(solver, 10000);
+        int move = ai.searchForMove(board, 1);
+        assertEquals(solver.move(), move);
+        assertEquals(board.whoseMove() == RED ? AI.RW : AI.BW,
+                     ai.foundValue());
+    }
+
+}
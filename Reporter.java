@@ -21,5 +21,24 @@ interface Reporter {
      *  the same meaning as in String.format. */
     void err(String format, Object... args);
 
+    /** Display BOARD in dump format (as returned by Board.toString), or
+     *  if DISPLAY, in display format (as returned by
+     *  Board.toDisplayString). */
+    default void showBoard(Board board, boolean display) {
+        msg("%s", display ? board.toDisplayString() : board.toString());
+    }
+
+    /** Send a log message, indicated by FORMAT and ARGS as for
+     *  String.format, to the standard output. */
+    default void log(String format, Object... args) {
+        System.out.printf(format + "%n", args);
+    }
+
+    /** Return once all messages sent so far have been delivered.  Called
+     *  before prompting for input and at the end of each game.  By
+     *  default, messages are delivered as they are sent. */
+    default void sync() {
+    }
+
 }
 
@@ -0,0 +1,117 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/** A CommandSource for running scripts in bulk: it takes commands from
+ *  the concatenation of a sequence of files and never prompts.  Regular
+ *  files are memory-mapped and split into lines directly; the standard
+ *  input (named "-") is read through a large buffer.
+ *  @author Will Harvey
+ */
+class ScriptSource implements CommandSource {
+
+    /** Size of the buffer used for streams that cannot be mapped. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** A source of commands from the files named by NAMES, in order,
+     *  where "-" denotes the standard input. */
+    ScriptSource(List<String> names) {
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("must be at least one file");
+        }
+        _names = new ArrayList<>(names);
+    }
+
+    @Override
+    public boolean prompts() {
+        return false;
+    }
+
+    @Override
+    public String getCommand(String ignored) {
+        try {
+            while (true) {
+                if (_mapped != null && _mapped.hasRemaining()) {
+                    return mappedLine();
+                } else if (_stream != null) {
+                    String line = _stream.readLine();
+                    if (line != null) {
+                        return line;
+                    }
+                    _stream = null;
+                } else if (_names.isEmpty()) {
+                    return null;
+                } else {
+                    open(_names.remove(0));
+                }
+            }
+        } catch (IOException excp) {
+            throw new GameException("error reading script: "
+                                    + excp.getMessage());
+        }
+    }
+
+    /** Start reading from the file named NAME. */
+    private void open(String name) throws IOException {
+        _mapped = null;
+        if (name.equals("-")) {
+            _stream = new BufferedReader(new InputStreamReader(System.in),
+                                         BUFFER_SIZE);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(Paths.get(name), READ)) {
+            if (file.size() <= Integer.MAX_VALUE) {
+                _mapped = file.map(FileChannel.MapMode.READ_ONLY, 0,
+                                   file.size());
+                return;
+            }
+        }
+        _stream = new BufferedReader(new InputStreamReader(
+                      new FileInputStream(name)), BUFFER_SIZE);
+    }
+
+    /** Return the next line of _mapped, advancing past it, without its
+     *  line terminator. */
+    private String mappedLine() {
+        int len;
+        len = 0;
+        while (_mapped.hasRemaining()) {
+            byte b = _mapped.get();
+            if (b == '\n') {
+                break;
+            }
+            if (len == _line.length) {
+                byte[] line = new byte[2 * len];
+                System.arraycopy(_line, 0, line, 0, len);
+                _line = line;
+            }
+            _line[len] = b;
+            len += 1;
+        }
+        if (len > 0 && _line[len - 1] == '\r') {
+            len -= 1;
+        }
+        return new String(_line, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /** Names of files not yet opened. */
+    private final ArrayList<String> _names;
+    /** The current file, if mapped, else null. */
+    private MappedByteBuffer _mapped;
+    /** The current stream, if not mapped, else null. */
+    private BufferedReader _stream;
+    /** Bytes of the current line. */
+    private byte[] _line = new byte[256];
+
+}
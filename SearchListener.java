@@ -0,0 +1,16 @@
+package jump61;
+
+/** An observer of the progress of an AI's searches, registered with
+ *  AI.setListener.
+ *  @author Will Harvey
+ */
+interface SearchListener {
+
+    /** Respond to the completion of a search to DEPTH moves, which found
+     *  MOVE (a square number) with VALUE (positive favoring Red) after
+     *  visiting NODES nodes in NANOS nanoseconds since the search
+     *  started.  Called on the searching thread. */
+    void iterationDone(int depth, int move, int value, long nodes,
+                       long nanos);
+
+}
@@ -0,0 +1,183 @@
+package jump61;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static jump61.Side.*;
+
+/** Plays games between AI players in parallel and records the positions
+ *  reached, labeled with the winner of each game, as TrainingData.  Each
+ *  game is played on a board of size MIN_SIZE to MAX_SIZE (in rotation)
+ *  and opens with a random number (up to a quarter of the number of
+ *  squares) of random moves, so that the games differ; the players then
+ *  search DEPTH moves ahead with the current default Evaluation.  The
+ *  positions after the opening are recorded.  Game #K uses random seed
+ *  K, so a run is reproducible, apart from the order of positions in the
+ *  data.  A game is played (by playGame) into a GameRecord, from which
+ *  its positions are then recorded (by addPositions), so that games may
+ *  also be played elsewhere (see SelfPlayCoordinator).
+ *  @author Will Harvey
+ */
+class SelfPlay {
+
+    /** Search depth of the players. */
+    static final int DEPTH = 3;
+    /** Smallest board size played. */
+    static final int MIN_SIZE = 4;
+    /** Largest board size played. */
+    static final int MAX_SIZE = 8;
+    /** Games lasting more moves than this are abandoned. */
+    static final int MAX_MOVES = 2000;
+
+    /** Interval between progress reports, in nanoseconds. */
+    static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(2);
+
+    /** A generator that plays games using THREADS threads, records them
+     *  in DATA, which remains owned by the caller, and reports progress
+     *  on PROGRESS, if not null. */
+    SelfPlay(int threads, TrainingData data, PrintStream progress) {
+        _threads = threads;
+        _data = data;
+        _progress = progress;
+    }
+
+    /** Play games #FIRST to #FIRST + COUNT - 1, and return the number of
+     *  positions added to my data. */
+    long run(int first, int count) {
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        ThreadLocal<AI[]> players =
+            ThreadLocal.withInitial(SelfPlay::newPlayers);
+        _startTime = _lastReport = System.nanoTime();
+        _games = _positions = 0;
+        try {
+            for (int k = 0; k < count; k += 1) {
+                int game = first + k;
+                pool.execute(() -> {
+                    finish(addPositions(playGame(game, players.get())));
+                });
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (InterruptedException excp) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        report(true);
+        return _positions;
+    }
+
+    /** Return a new pair of players for self-play games, indexed by
+     *  Side ordinal. */
+    static AI[] newPlayers() {
+        AI[] players = new AI[Side.values().length];
+        players[RED.ordinal()] = new AI(null, RED, 0);
+        players[BLUE.ordinal()] = new AI(null, BLUE, 0);
+        return players;
+    }
+
+    /** Return the record of game #GAME played by PLAYERS (indexed by Side
+     *  ordinal): its random opening and the moves the players chose,
+     *  with a null winner if the game was abandoned. */
+    static GameRecord playGame(int game, AI[] players) {
+        Random random = new Random(game);
+        int size = MIN_SIZE + game % (MAX_SIZE - MIN_SIZE + 1);
+        Board board = new Board(size);
+        int opening = openingLength(random, size);
+        int[] moves = new int[opening + MAX_MOVES];
+        int count;
+        for (count = 0; count < opening; count += 1) {
+            Side player = board.whoseMove();
+            int n;
+            do {
+                n = random.nextInt(size * size);
+            } while (!board.isLegal(player, n));
+            board.addSpot(player, n);
+            moves[count] = n;
+        }
+        while (board.getWinner() == null && count < moves.length) {
+            AI player = players[board.whoseMove().ordinal()];
+            int n = player.searchForMove(board, DEPTH);
+            board.addSpot(board.whoseMove(), n);
+            moves[count] = n;
+            count += 1;
+        }
+        return new GameRecord(size, game,
+                              GameRecord.RED_AUTO | GameRecord.BLUE_AUTO,
+                              DEPTH, board.getWinner(),
+                              Arrays.copyOf(moves, count));
+    }
+
+    /** Add the positions after the opening of RECORD, a game played by
+     *  playGame, labeled with its winner, to my data, and return the
+     *  number added (none if the game was abandoned). */
+    int addPositions(GameRecord record) {
+        if (record.winner() == null) {
+            return 0;
+        }
+        int[] moves = record.moves();
+        int opening = openingLength(new Random(record.seed()),
+                                    record.size());
+        Board board = new Board(record.size());
+        board.applyMoves(moves, 0, Math.min(opening, moves.length), 0);
+        int[] features = new int[Evaluation.NUM_FEATURES];
+        int added;
+        added = 0;
+        for (int k = opening; k < moves.length; k += 1) {
+            Evaluation.features(board, features);
+            if (_data.add(board.positionHash(), features, record.winner())) {
+                added += 1;
+            }
+            board.addSpot(board.whoseMove(), moves[k]);
+        }
+        return added;
+    }
+
+    /** Return the number of random opening moves of a game on a SIZE x
+     *  SIZE board, drawn from RANDOM, newly seeded with the game's
+     *  seed. */
+    private static int openingLength(Random random, int size) {
+        return random.nextInt(size * size / 4 + 1);
+    }
+
+    /** Count a game that added POSITIONS positions. */
+    private synchronized void finish(int positions) {
+        _games += 1;
+        _positions += positions;
+        report(false);
+    }
+
+    /** Report progress, if it is time to or if FORCE. */
+    private synchronized void report(boolean force) {
+        long now = System.nanoTime();
+        if (_progress == null
+            || (!force && now - _lastReport < PROGRESS_INTERVAL)) {
+            return;
+        }
+        _lastReport = now;
+        double seconds = (now - _startTime) / 1e9;
+        _progress.printf("%d games, %d new positions in %.1f s"
+                         + " (%.0f positions/sec)%n",
+                         _games, _positions, seconds, _positions / seconds);
+    }
+
+    /** Number of threads playing games. */
+    private final int _threads;
+    /** Destination of positions. */
+    private final TrainingData _data;
+    /** Destination of progress reports, or null. */
+    private final PrintStream _progress;
+    /** Number of games finished. */
+    private long _games;
+    /** Number of positions added. */
+    private long _positions;
+    /** Starting time of the run and of the last report, from
+     *  System.nanoTime. */
+    private long _startTime, _lastReport;
+
+}
@@ -0,0 +1,467 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static jump61.GameException.error;
+
+/** Distributes self-play games (see SelfPlay) among worker processes
+ *  (see SelfPlayWorker), on this machine or others, that connect to a
+ *  local socket (TCP or Unix-domain).  It hands out the games in batches
+ *  of consecutive game numbers, collects the records of the games
+ *  played, and adds their positions to TrainingData, as SelfPlay does in
+ *  one process.  Since a game's number determines the game, the result
+ *  does not depend on which worker plays which batch.  A batch whose
+ *  worker disconnects (or crashes) before returning its records, or
+ *  returns records that are not the requested games played legally to
+ *  their recorded ends, is handed to another worker.
+ *
+ *  Each connection carries lines:
+ *      ready                      (from the worker) Request a batch.
+ *      play FIRST COUNT           (reply) Play games #FIRST to
+ *                                 #FIRST + COUNT - 1.
+ *      done                       (reply) No games remain; the
+ *                                 connection is closed.
+ *      records FIRST COUNT DATA   (from the worker) The records of the
+ *                                 games of a batch: their encodings (see
+ *                                 GameRecord.encode), concatenated, in
+ *                                 Base64.
+ *  Each connection is read by its own thread.  The coordinator can also
+ *  start worker processes itself, and replaces those that exit while
+ *  games remain (up to MAX_RESTARTS times, after which the run fails
+ *  once none is left).
+ *  @author Will Harvey
+ */
+class SelfPlayCoordinator {
+
+    /** Default number of games in a batch. */
+    static final int BATCH_SIZE = 8;
+    /** Maximum number of replacements for worker processes started by
+     *  startWorkers. */
+    static final int MAX_RESTARTS = 16;
+
+    /** A coordinator listening on ADDRESS (as for GameServer.parseAddress)
+     *  that adds the positions of the games played to DATA, records the
+     *  games in RECORDER, if not null, and reports progress on PROGRESS,
+     *  if not null.  DATA and RECORDER remain owned by the caller. */
+    SelfPlayCoordinator(SocketAddress address, TrainingData data,
+                        GameRecordWriter recorder, PrintStream progress)
+        throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            _server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            _server = ServerSocketChannel.open();
+            _server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        }
+        _server.bind(address);
+        _selfPlay = new SelfPlay(1, data, null);
+        _recorder = recorder;
+        _progress = progress;
+    }
+
+    /** Return the address on which I am listening. */
+    SocketAddress localAddress() throws IOException {
+        return _server.getLocalAddress();
+    }
+
+    /** Start WORKERS worker processes on this machine, running the same
+     *  Java installation, JVM options, and class path as this program,
+     *  and passing OPTIONS (such as --threads) to Main in addition to the
+     *  address to connect to.  Their standard error is this program's. */
+    synchronized void startWorkers(int workers, List<String> options)
+        throws IOException {
+        SocketAddress address = localAddress();
+        _workerCommand.clear();
+        _workerCommand.add(ProcessHandle.current().info().command()
+                           .orElse("java"));
+        _workerCommand.addAll(ManagementFactory.getRuntimeMXBean()
+                              .getInputArguments());
+        _workerCommand.add("-cp");
+        _workerCommand.add(System.getProperty("java.class.path"));
+        _workerCommand.add("jump61.Main");
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress inet = (InetSocketAddress) address;
+            _workerCommand.add("--worker=" + inet.getHostString() + ":"
+                               + inet.getPort());
+        } else {
+            _workerCommand.add("--worker=" + address);
+        }
+        _workerCommand.addAll(options);
+        for (int k = 0; k < workers; k += 1) {
+            startWorker();
+        }
+    }
+
+    /** Have workers play games #FIRST to #FIRST + COUNT - 1, handed out in
+     *  batches of BATCH games, and return the number of positions added
+     *  to my data once all have been recorded.  Then stop accepting
+     *  workers and close all connections.  May be called once. */
+    long run(int first, int count, int batch) throws IOException {
+        synchronized (this) {
+            _next = first;
+            _end = first + count;
+            _batchSize = Math.max(1, batch);
+            _startTime = _lastReport = System.nanoTime();
+        }
+        Thread acceptor = new Thread(this::accept, "jump61-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            synchronized (this) {
+                while (_games < count && _failure == null) {
+                    report(false);
+                    wait(TimeUnit.NANOSECONDS.toMillis(
+                        SelfPlay.PROGRESS_INTERVAL));
+                }
+                if (_failure != null) {
+                    throw _failure;
+                }
+                report(true);
+                return _positions;
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("coordinator interrupted");
+        } finally {
+            close();
+        }
+    }
+
+    /** Return the number of batches handed to a second worker. */
+    synchronized int numReassigned() {
+        return _reassigned;
+    }
+
+    /** Accept connections from workers until my server is closed. */
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = _server.accept();
+            } catch (IOException excp) {
+                if (_server.isOpen()) {
+                    Utils.debug(1, "accept failed: %s", excp.getMessage());
+                }
+                return;
+            }
+            synchronized (this) {
+                if (_closed) {
+                    closeQuietly(channel);
+                    return;
+                }
+                _connections.add(channel);
+            }
+            Thread reader =
+                new Thread(() -> converse(channel), "jump61-coordinator-io");
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    /** Hand out batches over CHANNEL and collect their records until the
+     *  worker disconnects, misbehaves, or no games remain. */
+    private void converse(SocketChannel channel) {
+        int[] batch = null;
+        OutputStream out = Channels.newOutputStream(channel);
+        try (BufferedReader inp =
+             new BufferedReader(new InputStreamReader(
+                 Channels.newInputStream(channel),
+                 StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = inp.readLine()) != null) {
+                String[] words = Utils.words(line);
+                if (words[0].equals("ready") && batch == null) {
+                    batch = take();
+                    if (batch == null) {
+                        send(out, "done");
+                        return;
+                    }
+                    send(out, "play " + batch[0] + " " + batch[1]);
+                } else if (words[0].equals("records") && batch != null
+                           && words.length == 4
+                           && words[1].equals(Integer.toString(batch[0]))
+                           && words[2].equals(Integer.toString(batch[1]))) {
+                    finish(batch, decode(words[3], batch));
+                    batch = null;
+                } else {
+                    throw error("unexpected message: %s", words[0]);
+                }
+            }
+        } catch (IOException | GameException | IllegalArgumentException excp) {
+            Utils.debug(1, "worker connection failed: %s", excp.getMessage());
+        } finally {
+            synchronized (this) {
+                _connections.remove(channel);
+                if (batch != null) {
+                    _orphans.add(batch);
+                }
+                notifyAll();
+                checkWorkers();
+            }
+            closeQuietly(channel);
+        }
+    }
+
+    /** Return the next batch to hand out, as {FIRST, COUNT}, waiting
+     *  until one is returned by a failed worker if all have been handed
+     *  out, or null once the run is over. */
+    private synchronized int[] take() throws InterruptedIOException {
+        try {
+            while (_orphans.isEmpty() && _next == _end && !_closed) {
+                wait();
+            }
+        } catch (InterruptedException excp) {
+            throw new InterruptedIOException("coordinator interrupted");
+        }
+        if (_closed) {
+            return null;
+        } else if (!_orphans.isEmpty()) {
+            _reassigned += 1;
+            return _orphans.remove();
+        } else {
+            int[] batch = { _next, Math.min(_batchSize, _end - _next) };
+            _next += batch[1];
+            return batch;
+        }
+    }
+
+    /** Return the records of the games of BATCH ({FIRST, COUNT}) in
+     *  DATA, as sent by a worker.  Throws a GameException unless they are
+     *  the records of those games, in order, played legally to their
+     *  recorded ends. */
+    private static GameRecord[] decode(String data, int[] batch) {
+        ByteBuffer in = ByteBuffer.wrap(Base64.getDecoder().decode(data));
+        GameRecord[] records = new GameRecord[batch[1]];
+        try {
+            for (int k = 0; k < records.length; k += 1) {
+                GameRecord record = GameRecord.decode(in);
+                if (record.seed() != batch[0] + k
+                    || record.size() < SelfPlay.MIN_SIZE
+                    || record.size() > SelfPlay.MAX_SIZE) {
+                    throw error("record of the wrong game");
+                }
+                if (record.replay().getWinner() != record.winner()) {
+                    throw error("game %d does not end as recorded",
+                                record.seed());
+                }
+                records[k] = record;
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException
+                 | ArrayIndexOutOfBoundsException excp) {
+            throw error("malformed records");
+        }
+        if (in.hasRemaining()) {
+            throw error("malformed records");
+        }
+        return records;
+    }
+
+    /** Record RECORDS, the games of BATCH, and add their positions to my
+     *  data. */
+    private void finish(int[] batch, GameRecord[] records) {
+        int positions;
+        positions = 0;
+        for (GameRecord record : records) {
+            positions += _selfPlay.addPositions(record);
+        }
+        synchronized (this) {
+            try {
+                if (_recorder != null) {
+                    for (GameRecord record : records) {
+                        _recorder.write(record);
+                    }
+                }
+            } catch (IOException excp) {
+                _failure = excp;
+            }
+            _games += batch[1];
+            _positions += positions;
+            notifyAll();
+        }
+    }
+
+    /** Start a worker process as directed by startWorkers. */
+    private synchronized void startWorker() throws IOException {
+        Process process = new ProcessBuilder(_workerCommand)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        _processes.add(process);
+        process.onExit().thenAccept(this::workerExited);
+    }
+
+    /** Note that PROCESS, a worker I started, has exited, and replace it
+     *  if games remain. */
+    private synchronized void workerExited(Process process) {
+        _processes.remove(process);
+        if (_closed) {
+            return;
+        } else if (_restarts == MAX_RESTARTS) {
+            checkWorkers();
+            return;
+        }
+        _restarts += 1;
+        if (_progress != null) {
+            _progress.printf("worker %d exited (code %d); restarting%n",
+                             process.pid(), process.exitValue());
+        }
+        try {
+            startWorker();
+        } catch (IOException excp) {
+            _failure = excp;
+            notifyAll();
+        }
+    }
+
+    /** Fail the run if games remain but no worker is left to play them:
+     *  the worker processes I started have been replaced MAX_RESTARTS
+     *  times, and none is running or connected. */
+    private synchronized void checkWorkers() {
+        if (!_closed && _failure == null && _restarts == MAX_RESTARTS
+            && _processes.isEmpty() && _connections.isEmpty()
+            && (_next < _end || !_orphans.isEmpty())) {
+            _failure = new IOException("all workers failed");
+            notifyAll();
+        }
+    }
+
+    /** Stop handing out games, and once connected workers have been
+     *  told so (or after WORKER_EXIT_TIME), close all connections and
+     *  stop the worker processes I started that have not exited. */
+    private void close() throws IOException {
+        ArrayList<Process> processes;
+        synchronized (this) {
+            _closed = true;
+            notifyAll();
+            long deadline =
+                System.nanoTime() + TimeUnit.SECONDS.toNanos(WORKER_EXIT_TIME);
+            try {
+                while (!_connections.isEmpty()
+                       && System.nanoTime() < deadline) {
+                    wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(
+                        deadline - System.nanoTime())));
+                }
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+            processes = new ArrayList<>(_processes);
+        }
+        SocketAddress address = _server.getLocalAddress();
+        _server.close();
+        synchronized (this) {
+            for (SocketChannel channel : _connections) {
+                closeQuietly(channel);
+            }
+            _connections.clear();
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address)
+                                 .getPath());
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(WORKER_EXIT_TIME, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            } catch (InterruptedException excp) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Report progress, if it is time to or if FORCE. */
+    private synchronized void report(boolean force) {
+        long now = System.nanoTime();
+        if (_progress == null
+            || (!force && now - _lastReport < SelfPlay.PROGRESS_INTERVAL)) {
+            return;
+        }
+        _lastReport = now;
+        double seconds = (now - _startTime) / 1e9;
+        _progress.printf("%d games, %d new positions in %.1f s"
+                         + " (%.1f games/sec, %d workers, %d batches"
+                         + " reassigned)%n", _games, _positions, seconds,
+                         _games / seconds, _connections.size(),
+                         _reassigned);
+    }
+
+    /** Send LINE to OUT. */
+    private static void send(OutputStream out, String line)
+        throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Close CHANNEL, ignoring failures. */
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            Utils.debug(1, "close failed: %s", excp.getMessage());
+        }
+    }
+
+    /** Time allowed for workers to disconnect and exit once no games
+     *  remain, in seconds. */
+    private static final long WORKER_EXIT_TIME = 5;
+
+    /** Channel on which I accept connections. */
+    private final ServerSocketChannel _server;
+    /** Adds the positions of games to the training data. */
+    private final SelfPlay _selfPlay;
+    /** Destination of game records, or null. */
+    private final GameRecordWriter _recorder;
+    /** Destination of progress reports, or null. */
+    private final PrintStream _progress;
+    /** Open connections. */
+    private final HashSet<SocketChannel> _connections = new HashSet<>();
+    /** Batches returned by failed workers, to be handed out again. */
+    private final ArrayDeque<int[]> _orphans = new ArrayDeque<>();
+    /** The number of the first game not yet handed out, and the number
+     *  after the last game to be played. */
+    private int _next, _end;
+    /** Number of games in a batch. */
+    private int _batchSize;
+    /** Number of games recorded. */
+    private long _games;
+    /** Number of positions added. */
+    private long _positions;
+    /** Number of batches handed out again. */
+    private int _reassigned;
+    /** True once no more games will be handed out. */
+    private boolean _closed;
+    /** The failure that ends the run, or null. */
+    private IOException _failure;
+    /** Command that starts a worker process. */
+    private final ArrayList<String> _workerCommand = new ArrayList<>();
+    /** Worker processes started and running. */
+    private final HashSet<Process> _processes = new HashSet<>();
+    /** Number of worker processes replaced. */
+    private int _restarts;
+    /** Starting time of the run and of the last report, from
+     *  System.nanoTime. */
+    private long _startTime, _lastReport;
+
+}
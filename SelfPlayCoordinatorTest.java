@@ -0,0 +1,120 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Unit tests of distributed self-play.
+ *  @author Will Harvey
+ */
+public class SelfPlayCoordinatorTest {
+
+    /** Connect to the coordinator at ADDRESS, take a batch, and then
+     *  either disconnect or, if REPLY, reply with REPLY (for the batch's
+     *  records) and wait to be disconnected. */
+    private static void failingWorker(InetSocketAddress address,
+                                      String reply) throws Exception {
+        try (Socket socket = new Socket()) {
+            socket.connect(address);
+            socket.setSoTimeout(10000);
+            OutputStream out = socket.getOutputStream();
+            BufferedReader inp =
+                new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write("ready\n".getBytes(StandardCharsets.UTF_8));
+            String[] words = inp.readLine().split(" ");
+            assertEquals("play", words[0]);
+            if (reply != null) {
+                out.write(String.format("records %s %s %s\n", words[1],
+                                        words[2], reply)
+                          .getBytes(StandardCharsets.UTF_8));
+                assertNull(inp.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void testCoordinate() throws Exception {
+        Path local = Files.createTempFile("jump61", ".train"),
+            remote = Files.createTempFile("jump61", ".train"),
+            records = Files.createTempFile("jump61", ".rec");
+        Files.delete(local);
+        Files.delete(remote);
+        try (TrainingData expected = new TrainingData(local, 1 << 12);
+             TrainingData data = new TrainingData(remote, 1 << 12)) {
+            new SelfPlay(1, expected, null).run(0, 4);
+            SelfPlayCoordinator coordinator;
+            try (GameRecordWriter recorder = new GameRecordWriter(records)) {
+                coordinator =
+                    new SelfPlayCoordinator(GameServer.parseAddress("0"),
+                                            data, recorder, null);
+                InetSocketAddress address =
+                    (InetSocketAddress) coordinator.localAddress();
+                FutureTask<Long> run =
+                    new FutureTask<>(() -> coordinator.run(0, 4, 2));
+                new Thread(run).start();
+                failingWorker(address, null);
+                failingWorker(address, "AAAA");
+                assertEquals(4, new SelfPlayWorker(address, 2).run());
+                assertEquals(expected.size(), (long) run.get());
+            }
+            assertEquals(2, coordinator.numReassigned());
+            assertEquals(expected.size(), data.size());
+            HashSet<Long> hashes = new HashSet<>();
+            for (int i = 0; i < expected.size(); i += 1) {
+                hashes.add(expected.hash(i));
+            }
+            for (int i = 0; i < data.size(); i += 1) {
+                assertTrue(hashes.contains(data.hash(i)));
+            }
+            try (GameRecordReader reader = new GameRecordReader(records)) {
+                assertEquals(4, reader.numGames());
+                HashSet<Long> seeds = new HashSet<>();
+                for (int k = 0; k < 4; k += 1) {
+                    seeds.add(reader.read(k).seed());
+                }
+                assertEquals(4, seeds.size());
+            }
+        } finally {
+            Files.deleteIfExists(local);
+            Files.deleteIfExists(remote);
+            Files.deleteIfExists(records);
+        }
+    }
+
+    @Test
+    public void testWorkersFail() throws Exception {
+        Path remote = Files.createTempFile("jump61", ".train"),
+            weights = Files.createTempFile("jump61", ".weights");
+        Files.delete(remote);
+        Files.delete(weights);
+        try (TrainingData data = new TrainingData(remote, 1 << 12)) {
+            SelfPlayCoordinator coordinator =
+                new SelfPlayCoordinator(GameServer.parseAddress("0"),
+                                        data, null, null);
+            coordinator.startWorkers(1, List.of("--weights=" + weights));
+            try {
+                coordinator.run(0, 4, 2);
+                fail("run succeeded without workers");
+            } catch (IOException excp) {
+                assertEquals("all workers failed", excp.getMessage());
+            }
+        } finally {
+            Files.deleteIfExists(remote);
+        }
+    }
+
+}
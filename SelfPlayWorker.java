@@ -0,0 +1,109 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** Plays self-play games for a SelfPlayCoordinator: connects to it,
+ *  and plays the batches of games it hands out (see SelfPlay.playGame),
+ *  the games of each batch in parallel, returning their records, until
+ *  no games remain.
+ *  @author Will Harvey
+ */
+class SelfPlayWorker {
+
+    /** A worker that connects to a coordinator at ADDRESS and plays
+     *  games on THREADS threads. */
+    SelfPlayWorker(SocketAddress address, int threads) {
+        _address = address;
+        _threads = threads;
+    }
+
+    /** Play the games handed out by my coordinator until it has none
+     *  left, and return the number played.  Throws an IOException if the
+     *  connection fails. */
+    long run() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        ThreadLocal<AI[]> players =
+            ThreadLocal.withInitial(SelfPlay::newPlayers);
+        long played;
+        played = 0;
+        try (SocketChannel channel = SocketChannel.open(_address);
+             BufferedReader inp =
+             new BufferedReader(new InputStreamReader(
+                 Channels.newInputStream(channel),
+                 StandardCharsets.UTF_8))) {
+            OutputStream out = Channels.newOutputStream(channel);
+            while (true) {
+                send(out, "ready");
+                String line = inp.readLine();
+                if (line == null) {
+                    throw new IOException("coordinator closed connection");
+                }
+                String[] words = Utils.words(line);
+                if (words[0].equals("done")) {
+                    return played;
+                } else if (!words[0].equals("play") || words.length != 3) {
+                    throw new IOException("unexpected message: " + line);
+                }
+                int first = Utils.toInt(words[1]),
+                    count = Utils.toInt(words[2]);
+                GameRecord[] records = new GameRecord[count];
+                ArrayList<Callable<Void>> tasks = new ArrayList<>();
+                for (int k = 0; k < count; k += 1) {
+                    int i = k;
+                    tasks.add(() -> {
+                        records[i] =
+                            SelfPlay.playGame(first + i, players.get());
+                        return null;
+                    });
+                }
+                for (Future<Void> task : pool.invokeAll(tasks)) {
+                    task.get();
+                }
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                for (GameRecord record : records) {
+                    record.encode(data);
+                }
+                send(out, String.format("records %d %d %s", first, count,
+                                        Base64.getEncoder().encodeToString(
+                                            data.toByteArray())));
+                played += count;
+            }
+        } catch (NumberFormatException excp) {
+            throw new IOException("malformed batch: " + excp.getMessage());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("worker interrupted");
+        } catch (ExecutionException excp) {
+            throw new IOException("game failed", excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Send LINE to OUT. */
+    private static void send(OutputStream out, String line)
+        throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Address of the coordinator. */
+    private final SocketAddress _address;
+    /** Number of threads playing games. */
+    private final int _threads;
+
+}
@@ -0,0 +1,346 @@
+package jump61;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Broadcasts the changes to a Board to any number of spectators, as
+ *  Flow subscribers of encoded Frames.  The hub listens to its board
+ *  (as a BoardListener), and on each change encodes one move frame (or,
+ *  for a change that is not a single move, a snapshot frame) and one
+ *  snapshot frame, which are shared by all subscribers.
+ *
+ *  The board's thread does only that encoding, a store into a ring of
+ *  the last RING_SIZE changes, and the scheduling of one task on the
+ *  hub's Executor; it never waits for a subscriber, and its cost does
+ *  not depend on their number.  Frames are delivered on the Executor,
+ *  to each subscriber in order, as it requests them.  Each subscriber
+ *  starts with a snapshot of the current position.  A subscriber that
+ *  falls more than MAX_LAG changes behind skips to the latest snapshot
+ *  instead of receiving the changes it missed; one that has to skip
+ *  MAX_RESYNCS times in a row without catching up is dropped (with
+ *  onError).
+ *  @author Will Harvey
+ */
+class SpectatorHub
+    implements BoardListener, Flow.Publisher<SpectatorHub.Frame> {
+
+    /** Number of changes kept for delivery (a power of 2). */
+    static final int RING_SIZE = 256;
+    /** Largest number of changes a subscriber may fall behind before it
+     *  skips to a snapshot. */
+    static final int MAX_LAG = 128;
+    /** Number of consecutive skips after which a subscriber is
+     *  dropped. */
+    static final int MAX_RESYNCS = 4;
+
+    /** An immutable encoded change, shared by all subscribers.  A frame
+     *  consists of its kind (MOVE or SNAPSHOT, a byte) and sequence
+     *  number (a long), followed, for a move, by the ordinal of the
+     *  mover (a byte) and the square number (a short), and for a
+     *  snapshot, by the position as encoded by BoardCodec.encode.  All
+     *  numbers are big-endian.  The sequence number of a snapshot is that
+     *  of the last change it includes. */
+    static final class Frame {
+
+        /** Kinds of frame. */
+        static final byte MOVE = 1, SNAPSHOT = 2;
+
+        /** A frame whose encoding is BYTES, which must not be
+         *  modified. */
+        private Frame(byte[] bytes) {
+            _bytes = bytes;
+        }
+
+        /** Return my kind: MOVE or SNAPSHOT. */
+        byte kind() {
+            return _bytes[0];
+        }
+
+        /** Return my sequence number. */
+        long sequence() {
+            return ByteBuffer.wrap(_bytes).getLong(1);
+        }
+
+        /** Return the player who made my move.  Assumes I am a MOVE
+         *  frame. */
+        Side mover() {
+            return Side.values()[_bytes[1 + 8]];
+        }
+
+        /** Return the number of the square of my move.  Assumes I am a
+         *  MOVE frame. */
+        int square() {
+            return ByteBuffer.wrap(_bytes).getShort(1 + 8 + 1);
+        }
+
+        /** Return my encoding, as a read-only buffer. */
+        ByteBuffer bytes() {
+            return ByteBuffer.wrap(_bytes).asReadOnlyBuffer();
+        }
+
+        /** Return the length of my encoding. */
+        int length() {
+            return _bytes.length;
+        }
+
+        /** Apply my change to BOARD, which must hold the position before
+         *  it (for a move), and return the result: BOARD, or a new board
+         *  for a snapshot. */
+        Board applyTo(Board board) {
+            if (kind() == SNAPSHOT) {
+                ByteBuffer buf = ByteBuffer.wrap(_bytes);
+                buf.position(1 + 8);
+                return BoardCodec.decode(buf);
+            }
+            board.addSpot(mover(), square());
+            return board;
+        }
+
+        /** Encoding. */
+        private final byte[] _bytes;
+    }
+
+    /** A hub broadcasting the changes to BOARD, delivering them on
+     *  EXECUTOR.  Must be created on BOARD's thread. */
+    SpectatorHub(Board board, Executor executor) {
+        _board = board;
+        _executor = executor;
+        publish(snapshot(board, 0), null);
+        board.addListener(this);
+    }
+
+    /** Stop broadcasting and complete all subscriptions.  Must be called
+     *  on my board's thread. */
+    void close() {
+        _board.removeListener(this);
+        _closed = true;
+        fanOut();
+    }
+
+    /** Return the number of subscribers. */
+    int numSubscribers() {
+        return _subscriptions.size();
+    }
+
+    /** Return the number of subscribers dropped for being slow. */
+    long numDropped() {
+        return _dropped.get();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Frame> subscriber) {
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        _subscriptions.add(subscription);
+        if (subscription._cancelled) {
+            _subscriptions.remove(subscription);
+        }
+        subscription.start();
+    }
+
+    @Override
+    public void boardChanged(Board board, BoardChange change) {
+        long sequence = _published;
+        Frame snapshot = snapshot(board, sequence);
+        if (change.numMoves() == 1 && !change.resized()) {
+            ByteBuffer buf = ByteBuffer.allocate(1 + 8 + 1 + 2);
+            buf.put(Frame.MOVE).putLong(sequence);
+            buf.put((byte) change.mover().ordinal())
+                .putShort((short) change.move());
+            publish(new Frame(buf.array()), snapshot);
+        } else {
+            publish(snapshot, snapshot);
+        }
+        if (!_fanOutScheduled.getAndSet(true)) {
+            _executor.execute(this::fanOut);
+        }
+    }
+
+    /** Return a snapshot frame of BOARD with sequence number
+     *  SEQUENCE. */
+    private static Frame snapshot(Board board, long sequence) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 8 + BoardCodec.encodedSize(
+                                                 board.size()));
+        buf.put(Frame.SNAPSHOT).putLong(sequence);
+        BoardCodec.encode(board, buf);
+        return new Frame(buf.array());
+    }
+
+    /** Make FRAME, whose position is given by SNAPSHOT (or FRAME itself
+     *  if null), the next change. */
+    private void publish(Frame frame, Frame snapshot) {
+        int slot = (int) (_published & (RING_SIZE - 1));
+        _ring[slot] = frame;
+        _published += 1;
+        _latest = snapshot == null ? frame : snapshot;
+    }
+
+    /** Schedule delivery to each subscriber. */
+    private void fanOut() {
+        _fanOutScheduled.set(false);
+        for (Subscription subscription : _subscriptions) {
+            subscription.schedule();
+        }
+    }
+
+    /** The subscription of one subscriber, whose state is changed only by
+     *  its drain task (apart from its demand, cancellation, and any bad
+     *  request), which alone signals its subscriber after
+     *  onSubscribe. */
+    private final class Subscription implements Flow.Subscription {
+
+        /** A subscription for SUBSCRIBER. */
+        Subscription(Flow.Subscriber<? super Frame> subscriber) {
+            _subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                _badRequest = new IllegalArgumentException("request of " + n);
+                schedule();
+                return;
+            }
+            _demand.getAndUpdate((d) -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            _cancelled = true;
+            _subscriptions.remove(this);
+        }
+
+        /** Start delivery, once my subscriber's onSubscribe has
+         *  returned. */
+        void start() {
+            _executor.execute(this::drain);
+        }
+
+        /** Arrange for my pending frames to be delivered. */
+        void schedule() {
+            if (_wip.getAndIncrement() == 0) {
+                _executor.execute(this::drain);
+            }
+        }
+
+        /** Deliver pending frames, as demanded, until there are none or
+         *  no more demand, then repeat if more were scheduled
+         *  meanwhile. */
+        private void drain() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = _wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /** Deliver pending frames as demanded. */
+        private void deliver() {
+            while (!_cancelled) {
+                if (_badRequest != null) {
+                    fail(_badRequest);
+                    return;
+                }
+                long published = _published;
+                if (_next < 0 || published - _next > MAX_LAG) {
+                    if (_next >= 0) {
+                        _resyncs += 1;
+                        if (_resyncs > MAX_RESYNCS) {
+                            _dropped.incrementAndGet();
+                            fail(new IllegalStateException(
+                                     "spectator too slow"));
+                            return;
+                        }
+                    }
+                    _pending = _latest;
+                    _next = _pending.sequence() + 1;
+                }
+                if (_pending == null && _next >= published) {
+                    _resyncs = 0;
+                    if (_closed) {
+                        cancel();
+                        _subscriber.onComplete();
+                    }
+                    return;
+                }
+                if (_demand.get() == 0) {
+                    return;
+                }
+                Frame frame = _pending;
+                _pending = null;
+                if (frame == null) {
+                    frame = _ring[(int) (_next & (RING_SIZE - 1))];
+                    if (frame.sequence() != _next) {
+                        _next = -1;
+                        continue;
+                    }
+                    _next += 1;
+                }
+                _demand.decrementAndGet();
+                _subscriber.onNext(frame);
+            }
+        }
+
+        /** Cancel and report EXCP to my subscriber. */
+        private void fail(Throwable excp) {
+            if (!_cancelled) {
+                cancel();
+                _subscriber.onError(excp);
+            }
+        }
+
+        /** The subscriber. */
+        private final Flow.Subscriber<? super Frame> _subscriber;
+        /** Number of frames requested and not yet delivered. */
+        private final AtomicLong _demand = new AtomicLong();
+        /** Number of times delivery has been scheduled since the
+         *  drain task last checked.  It starts at 1 so that nothing is
+         *  delivered during onSubscribe, until start. */
+        private final AtomicInteger _wip = new AtomicInteger(1);
+        /** True iff cancelled. */
+        private volatile boolean _cancelled;
+        /** The error to report for a request of no frames, or null.  It
+         *  is reported by the drain task, so that it is never signalled
+         *  at the same time as a frame. */
+        private volatile IllegalArgumentException _badRequest;
+        /** Sequence number of the next change to deliver from the ring,
+         *  or -1 if a snapshot is needed. */
+        private long _next = -1;
+        /** Snapshot to deliver before the changes in the ring, or
+         *  null. */
+        private Frame _pending;
+        /** Number of consecutive skips to a snapshot. */
+        private int _resyncs;
+    }
+
+    /** The board whose changes I broadcast. */
+    private final Board _board;
+    /** Runs delivery tasks. */
+    private final Executor _executor;
+    /** The last RING_SIZE changes, indexed by sequence number modulo
+     *  RING_SIZE. */
+    private final Frame[] _ring = new Frame[RING_SIZE];
+    /** Snapshot of the current position. */
+    private volatile Frame _latest;
+    /** Number of changes published (the sequence number of the next).
+     *  Written after the change is stored in the ring, and before
+     *  _latest, so that _latest is never older than one change before
+     *  the last published. */
+    private volatile long _published;
+    /** True iff a fan-out task is waiting to run. */
+    private final AtomicBoolean _fanOutScheduled = new AtomicBoolean();
+    /** True iff I am closed. */
+    private volatile boolean _closed;
+    /** Current subscriptions. */
+    private final CopyOnWriteArrayList<Subscription> _subscriptions =
+        new CopyOnWriteArrayList<>();
+    /** Number of subscribers dropped. */
+    private final AtomicLong _dropped = new AtomicLong();
+
+}
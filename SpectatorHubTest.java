@@ -0,0 +1,281 @@
+package jump61;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of spectator broadcasting.
+ *  @author Will Harvey
+ */
+public class SpectatorHubTest {
+
+    /** A subscriber that replays the frames it receives onto a board,
+     *  requesting INITIAL frames at first. */
+    private static class Spectator
+        implements Flow.Subscriber<SpectatorHub.Frame> {
+
+        /** A spectator that initially requests INITIAL frames. */
+        Spectator(long initial) {
+            _initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(_initial);
+        }
+
+        @Override
+        public void onNext(SpectatorHub.Frame frame) {
+            frames.add(frame);
+            board = frame.applyTo(board);
+        }
+
+        @Override
+        public void onError(Throwable excp) {
+            error = excp;
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+
+        /** Number of frames requested at subscription. */
+        private final long _initial;
+        /** The subscription. */
+        Flow.Subscription subscription;
+        /** Frames received. */
+        ArrayList<SpectatorHub.Frame> frames = new ArrayList<>();
+        /** Position after the frames received. */
+        Board board;
+        /** Error reported, or null. */
+        Throwable error;
+        /** True iff completed. */
+        boolean complete;
+    }
+
+    /** A subscriber that may be signalled on any thread, and that
+     *  notes any signals that overlap, replaying the frames it receives
+     *  onto a board.  It requests one frame at a time, or all at once if
+     *  EAGER, and counts down DONE when completed or failed. */
+    private static class ThreadedSpectator
+        implements Flow.Subscriber<SpectatorHub.Frame> {
+
+        /** A spectator as described, counting down DONE. */
+        ThreadedSpectator(boolean eager, CountDownLatch done) {
+            _eager = eager;
+            _done = done;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            enter();
+            this.subscription = subscription;
+            subscription.request(_eager ? Long.MAX_VALUE : 1);
+            leave();
+        }
+
+        @Override
+        public void onNext(SpectatorHub.Frame frame) {
+            enter();
+            if (frame.sequence() <= last) {
+                disordered = true;
+            }
+            last = frame.sequence();
+            board = frame.applyTo(board);
+            if (!_eager) {
+                subscription.request(1);
+            }
+            leave();
+        }
+
+        @Override
+        public void onError(Throwable excp) {
+            enter();
+            error = excp;
+            leave();
+            _done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            enter();
+            complete = true;
+            leave();
+            _done.countDown();
+        }
+
+        /** Note the start of a signal. */
+        private void enter() {
+            if (_active.getAndIncrement() != 0) {
+                overlapped = true;
+            }
+        }
+
+        /** Note the end of a signal. */
+        private void leave() {
+            _active.decrementAndGet();
+        }
+
+        /** True iff I request all frames at once. */
+        private final boolean _eager;
+        /** Counted down when I am completed or failed. */
+        private final CountDownLatch _done;
+        /** Number of signals in progress. */
+        private final AtomicInteger _active = new AtomicInteger();
+        /** The subscription. */
+        volatile Flow.Subscription subscription;
+        /** Position after the frames received. */
+        Board board;
+        /** Sequence number of the last frame received. */
+        long last = -1;
+        /** Error reported, or null. */
+        Throwable error;
+        /** True iff completed. */
+        boolean complete;
+        /** True iff two signals overlapped. */
+        volatile boolean overlapped;
+        /** True iff frames arrived out of order. */
+        boolean disordered;
+    }
+
+    /** Make a random legal move on BOARD using RANDOM, starting a new
+     *  game if the current one is over. */
+    private static void randomMove(Board board, Random random) {
+        if (board.getWinner() != null) {
+            board.clear(board.size());
+            return;
+        }
+        Side player = board.whoseMove();
+        int n;
+        do {
+            n = random.nextInt(board.size() * board.size());
+        } while (!board.isLegal(player, n));
+        board.addSpot(player, n);
+    }
+
+    @Test
+    public void testReplay() {
+        Board board = new Board(5);
+        board.addSpot(RED, 6);
+        SpectatorHub hub = new SpectatorHub(board, Runnable::run);
+        Spectator a = new Spectator(Long.MAX_VALUE),
+            b = new Spectator(Long.MAX_VALUE);
+        hub.subscribe(a);
+        hub.subscribe(b);
+        assertEquals(2, hub.numSubscribers());
+        assertEquals(SpectatorHub.Frame.SNAPSHOT, a.frames.get(0).kind());
+        assertEquals(board.toString(), a.board.toString());
+        Random random = new Random(46);
+        for (int k = 0; k < 100; k += 1) {
+            randomMove(board, random);
+            assertEquals(board.toString(), a.board.toString());
+        }
+        board.clear(4);
+        board.addSpot(RED, 0);
+        assertEquals(board.toString(), b.board.toString());
+        assertEquals(a.frames.size(), b.frames.size());
+        int moves;
+        moves = 0;
+        for (int k = 0; k < a.frames.size(); k += 1) {
+            assertTrue(a.frames.get(k) == b.frames.get(k));
+            assertEquals(k, a.frames.get(k).sequence());
+            if (a.frames.get(k).kind() == SpectatorHub.Frame.MOVE) {
+                moves += 1;
+                assertEquals(1 + 8 + 1 + 2, a.frames.get(k).length());
+            }
+        }
+        assertTrue(moves >= 95);
+        b.subscription.cancel();
+        hub.close();
+        assertTrue(a.complete);
+        assertFalse(b.complete);
+        assertEquals(0, hub.numSubscribers());
+    }
+
+    @Test
+    public void testManyThreads() throws Exception {
+        final int spectators = 2000, moves = 300, bad = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Board board = new Board(6);
+            SpectatorHub hub = new SpectatorHub(board, executor);
+            CountDownLatch done = new CountDownLatch(spectators);
+            ThreadedSpectator[] all = new ThreadedSpectator[spectators];
+            for (int k = 0; k < spectators; k += 1) {
+                all[k] = new ThreadedSpectator(k % 2 == 0, done);
+                hub.subscribe(all[k]);
+            }
+            Random random = new Random(46);
+            for (int k = 0; k < moves; k += 1) {
+                randomMove(board, random);
+                if (k == moves / 2) {
+                    for (int j = 0; j < spectators; j += bad) {
+                        all[j].subscription.request(0);
+                    }
+                }
+            }
+            hub.close();
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            for (int k = 0; k < spectators; k += 1) {
+                assertFalse(all[k].overlapped);
+                assertFalse(all[k].disordered);
+                if (k % bad == 0) {
+                    assertTrue(all[k].error
+                               instanceof IllegalArgumentException);
+                    assertFalse(all[k].complete);
+                } else {
+                    assertNull(all[k].error);
+                    assertTrue(all[k].complete);
+                    assertEquals(board.toString(), all[k].board.toString());
+                }
+            }
+            assertEquals(0, hub.numSubscribers());
+            assertEquals(0, hub.numDropped());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSlowSubscribers() {
+        Board board = new Board(6);
+        SpectatorHub hub = new SpectatorHub(board, Runnable::run);
+        Spectator lagging = new Spectator(1), stalled = new Spectator(1);
+        hub.subscribe(lagging);
+        hub.subscribe(stalled);
+        Random random = new Random(46);
+        for (int k = 0; k <= SpectatorHub.MAX_LAG; k += 1) {
+            randomMove(board, random);
+        }
+        lagging.subscription.request(1);
+        assertEquals(2, lagging.frames.size());
+        assertEquals(SpectatorHub.Frame.SNAPSHOT,
+                     lagging.frames.get(1).kind());
+        assertEquals(board.toString(), lagging.board.toString());
+        lagging.subscription.request(Long.MAX_VALUE);
+        for (int k = 0;
+             k <= (SpectatorHub.MAX_RESYNCS + 1) * SpectatorHub.MAX_LAG;
+             k += 1) {
+            randomMove(board, random);
+            assertEquals(board.toString(), lagging.board.toString());
+        }
+        assertNull(lagging.error);
+        assertTrue(stalled.error instanceof IllegalStateException);
+        assertEquals(1, stalled.frames.size());
+        assertEquals(1, hub.numDropped());
+        assertEquals(1, hub.numSubscribers());
+    }
+
+}
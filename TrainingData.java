@@ -0,0 +1,178 @@
+package jump61;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/** A file of positions labeled with the outcomes of the games in which
+ *  they occurred, for tuning Evaluations.  Each position is recorded as
+ *  its hash (Board.positionHash()), the winner of its game, and its
+ *  features (see Evaluation); no position is recorded twice.
+ *
+ *  The file is a header (the magic number MAGIC, the format VERSION, the
+ *  number of features, the capacity, and the number of positions, ints,
+ *  padded to HEADER_SIZE bytes) followed by one column per field, each
+ *  with room for capacity entries: the hashes (longs), the winners
+ *  (bytes, 1 for Red and 0 for Blue), and for each feature, its values
+ *  (shorts).  The file is memory-mapped, so that a pass over one field of
+ *  all positions is a sequential scan of memory.  A file may be used by
+ *  one program at a time.
+ *  @author Will Harvey
+ */
+class TrainingData implements Closeable {
+
+    /** Magic number identifying training-data files. */
+    static final int MAGIC = 0x4a363154;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Size of the file header. */
+    static final int HEADER_SIZE = 32;
+    /** Default capacity of a new file (about 40 MB). */
+    static final int DEFAULT_CAPACITY = 1 << 21;
+
+    /** Training data kept in FILE, which is created with room for
+     *  CAPACITY positions if it does not exist. */
+    TrainingData(Path file, int capacity) throws IOException {
+        _channel = FileChannel.open(file, CREATE, READ, WRITE);
+        if (_channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION)
+                .putInt(Evaluation.NUM_FEATURES).putInt(capacity).clear();
+            _channel.write(header, 0);
+            _channel.write(ByteBuffer.allocate(1),
+                           fileSize(capacity) - 1);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        _channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            close();
+            throw new IOException("not a training-data file: " + file);
+        }
+        if (header.getInt() != VERSION
+            || header.getInt() != Evaluation.NUM_FEATURES) {
+            close();
+            throw new IOException("unsupported training-data version: "
+                                  + file);
+        }
+        _capacity = header.getInt();
+        _size = header.getInt();
+        long size = fileSize(_capacity);
+        if (_capacity <= 0 || _size < 0 || _size > _capacity
+            || size > Integer.MAX_VALUE || _channel.size() < size) {
+            close();
+            throw new IOException("damaged training-data file: " + file);
+        }
+        _map = _channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        _seen = new long[Integer.highestOneBit(_capacity) * 4];
+        for (int i = 0; i < _size; i += 1) {
+            remember(hash(i));
+        }
+    }
+
+    /** Return the number of positions I can hold. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Return the number of positions I hold. */
+    synchronized int size() {
+        return _size;
+    }
+
+    /** Record a position whose hash is HASH and whose features are
+     *  FEATURES (indexed as for Evaluation), from a game won by WINNER,
+     *  and return true, unless I already hold the position or am full,
+     *  in which case return false. */
+    synchronized boolean add(long hash, int[] features, Side winner) {
+        if (_size == _capacity || !remember(hash)) {
+            return false;
+        }
+        _map.putLong(HEADER_SIZE + 8 * _size, hash);
+        _map.put(winnerColumn() + _size,
+                 (byte) (winner == Side.RED ? 1 : 0));
+        for (int f = 0; f < Evaluation.NUM_FEATURES; f += 1) {
+            _map.putShort(featureColumn(f) + 2 * _size,
+                          (short) features[f]);
+        }
+        _size += 1;
+        _map.putInt(16, _size);
+        return true;
+    }
+
+    /** Return the hash of position #I. */
+    long hash(int i) {
+        return _map.getLong(HEADER_SIZE + 8 * i);
+    }
+
+    /** Return 1 if position #I is from a game won by Red, and 0 if Blue
+     *  won. */
+    int winner(int i) {
+        return _map.get(winnerColumn() + i);
+    }
+
+    /** Return the value of feature F of position #I. */
+    int feature(int f, int i) {
+        return _map.getShort(featureColumn(f) + 2 * i);
+    }
+
+    /** Add HASH to the hashes of the positions I hold, returning false
+     *  if it is already there. */
+    private boolean remember(long hash) {
+        long key = hash == 0 ? 1 : hash;
+        int mask = _seen.length - 1;
+        int p;
+        for (p = (int) key & mask; _seen[p] != 0; p = (p + 1) & mask) {
+            if (_seen[p] == key) {
+                return false;
+            }
+        }
+        _seen[p] = key;
+        return true;
+    }
+
+    /** Return the file position of the winner column. */
+    private int winnerColumn() {
+        return HEADER_SIZE + 8 * _capacity;
+    }
+
+    /** Return the file position of the column of feature F. */
+    private int featureColumn(int f) {
+        return HEADER_SIZE + 9 * _capacity + 2 * f * _capacity;
+    }
+
+    /** Return the size of a file with room for CAPACITY positions. */
+    private static long fileSize(long capacity) {
+        return HEADER_SIZE + capacity * (9 + 2 * Evaluation.NUM_FEATURES);
+    }
+
+    /** Write my positions to the file and close it. */
+    @Override
+    public void close() throws IOException {
+        if (!_channel.isOpen()) {
+            return;
+        }
+        if (_map != null) {
+            _map.force();
+        }
+        _channel.close();
+    }
+
+    /** The data file. */
+    private final FileChannel _channel;
+    /** The mapped contents of _channel. */
+    private MappedByteBuffer _map;
+    /** Number of positions I can hold. */
+    private int _capacity;
+    /** Number of positions I hold. */
+    private int _size;
+    /** Open hash table of the hashes of my positions (with 0 replaced by
+     *  1), with 0 marking empty entries. */
+    private long[] _seen;
+
+}
@@ -0,0 +1,95 @@
+package jump61;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static jump61.Evaluation.*;
+import static jump61.Side.*;
+import static org.junit.Assert.*;
+
+/** Unit tests of training data, self-play, and tuning.
+ *  @author Will Harvey
+ */
+public class TrainingDataTest {
+
+    @Test
+    public void testAddReopen() throws IOException {
+        Path file = Files.createTempFile("jump61", ".train");
+        Files.delete(file);
+        try {
+            int[] features = { 1, -2, 3, -4, 5, -6 };
+            try (TrainingData data = new TrainingData(file, 2)) {
+                assertTrue(data.add(77, features, RED));
+                assertFalse(data.add(77, new int[NUM_FEATURES], BLUE));
+                assertEquals(1, data.size());
+            }
+            try (TrainingData data = new TrainingData(file, 100)) {
+                assertEquals(2, data.capacity());
+                assertEquals(1, data.size());
+                assertEquals(77, data.hash(0));
+                assertEquals(1, data.winner(0));
+                for (int f = 0; f < NUM_FEATURES; f += 1) {
+                    assertEquals(features[f], data.feature(f, 0));
+                }
+                assertFalse(data.add(77, features, RED));
+                assertTrue(data.add(0, features, BLUE));
+                assertEquals(0, data.winner(1));
+                assertFalse(data.add(78, features, RED));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testSelfPlay() throws IOException {
+        Path file = Files.createTempFile("jump61", ".train");
+        Files.delete(file);
+        try (TrainingData data = new TrainingData(file, 1 << 12)) {
+            SelfPlay games = new SelfPlay(2, data, null);
+            long added = games.run(0, 5);
+            assertTrue(added > 0);
+            assertEquals(added, data.size());
+            assertEquals(0, games.run(0, 5));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testTune() throws IOException {
+        Path file = Files.createTempFile("jump61", ".train");
+        Files.delete(file);
+        int[] truth = { 0, 0, 300, 0, 0, 500 };
+        Random random = new Random(44);
+        try (TrainingData data = new TrainingData(file, 20000)) {
+            int[] features = new int[NUM_FEATURES];
+            for (int i = 0; i < data.capacity(); i += 1) {
+                double z;
+                z = 0;
+                for (int f = 0; f < NUM_FEATURES; f += 1) {
+                    features[f] = random.nextInt(7) - 3;
+                    z += (double) truth[f] * features[f] / SCALE;
+                }
+                boolean redWins = random.nextDouble() < 1 / (1 + Math.exp(-z));
+                data.add(i, features, redWins ? RED : BLUE);
+            }
+            Evaluation start = new Evaluation(new int[NUM_FEATURES]);
+            Evaluation tuned = new Tuner(2, null).tune(data, start);
+            int[] weights = tuned.weights();
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                assertEquals(truth[f], weights[f], 50);
+            }
+            assertTrue(Tuner.loss(data, tuned) < Tuner.loss(data, start));
+            assertEquals(weights[2], new Tuner(1, null).tune(data, start)
+                         .weights()[2]);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
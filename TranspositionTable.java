@@ -0,0 +1,69 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** An in-memory table of the results of searches of positions, used by
+ *  an AI to avoid searching a position reached again by a different
+ *  sequence of moves, and to try the best move found by an earlier,
+ *  shallower search first.
+ *
+ *  The table has a power-of-two number of slots.  A position whose
+ *  Board.positionHash() is KEY has its entry, if any, in slot
+ *  KEY & (slots - 1), which holds KEY ^ DATA and DATA, where DATA is an
+ *  entry packed as for AnalysisCache.  Each store replaces the slot's
+ *  previous entry.  Any number of threads may probe and store at once
+ *  without locking: a slot half written by one thread while another
+ *  reads it fails to match its key, and reads as empty.
+ *  @author Will Harvey
+ */
+class TranspositionTable {
+
+    /** Size of one slot in bytes. */
+    static final int SLOT_SIZE = 16;
+
+    /** A table occupying at most MEGABYTES MB (at least one slot). */
+    TranspositionTable(int megabytes) {
+        long slots = Math.max(1, ((long) megabytes << 20) / SLOT_SIZE);
+        _mask = Long.highestOneBit(Math.min(slots, 1 << 28)) - 1;
+        _table = new long[2 * (int) (_mask + 1)];
+    }
+
+    /** Return the number of slots. */
+    int slots() {
+        return (int) (_mask + 1);
+    }
+
+    /** Return the entry for the position whose hash is KEY, or
+     *  AnalysisCache.NONE if there is none.  The fields of the entry are
+     *  extracted by AnalysisCache.depth, bound, score, and move. */
+    long probe(long key) {
+        int p = 2 * (int) (key & _mask);
+        long check = _table[p], data = _table[p + 1];
+        if (data == AnalysisCache.NONE || (check ^ data) != key) {
+            return AnalysisCache.NONE;
+        }
+        return data;
+    }
+
+    /** Record that a search of the position whose hash is KEY to DEPTH
+     *  (1 <= DEPTH <= 255) gave SCORE with the given BOUND (as for
+     *  AnalysisCache), and chose MOVE (a square number). */
+    void store(long key, int depth, int bound, int score, int move) {
+        long data = AnalysisCache.entry(depth, bound, score, move);
+        int p = 2 * (int) (key & _mask);
+        _table[p + 1] = data;
+        _table[p] = key ^ data;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        Arrays.fill(_table, 0);
+    }
+
+    /** Mask selecting the slot number from a key. */
+    private final long _mask;
+    /** Slot contents: the check and data of slot #K are at 2K and
+     *  2K+1. */
+    private final long[] _table;
+
+}
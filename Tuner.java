@@ -0,0 +1,257 @@
+package jump61;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static jump61.Evaluation.NUM_FEATURES;
+import static jump61.Evaluation.SCALE;
+
+/** Tunes the weights of an Evaluation to predict the outcomes of the
+ *  positions in TrainingData, in the manner of Texel tuning: the
+ *  probability that Red wins a position of value V is taken to be
+ *  1 / (1 + e^(-V / SCALE)), and the weights are those that minimize
+ *  the log loss of these predictions over the data (logistic
+ *  regression).  The loss is minimized by Newton's method, starting from
+ *  a given evaluation, halving steps that would increase it, and
+ *  stopping when even the smallest would.  Each step makes a pass over
+ *  the data, divided into batches of BATCH_SIZE positions whose
+ *  contributions to the loss, its gradient, and its Hessian are
+ *  computed in parallel and then summed in order, so the result does
+ *  not depend on the number of threads.
+ *  @author Will Harvey
+ */
+class Tuner {
+
+    /** Number of positions in each batch. */
+    static final int BATCH_SIZE = 1 << 16;
+    /** Largest number of Newton steps taken. */
+    static final int MAX_STEPS = 25;
+    /** Tuning stops when no weight changes by more than this (in units
+     *  of value) in a step. */
+    static final double TOLERANCE = 0.01;
+    /** Smallest fraction of a Newton step taken.  A step that would
+     *  increase the penalized loss is halved until it does not.  If even
+     *  this fraction of it would, tuning stops with the weights it has. */
+    static final double MIN_FRACTION = 1.0 / 64;
+    /** Weight of the penalty on the squares of the weights (in units of
+     *  odds), which keeps weights of features that barely vary from
+     *  growing without bound. */
+    static final double RIDGE = 1e-3;
+
+    /** A tuner that uses THREADS threads, and reports each step on
+     *  PROGRESS, if not null. */
+    Tuner(int threads, PrintStream progress) {
+        _threads = threads;
+        _progress = progress;
+    }
+
+    /** Return an evaluation tuned to DATA, which must not be empty,
+     *  starting from START. */
+    Evaluation tune(TrainingData data, Evaluation start) {
+        int[] weights0 = start.weights();
+        double[] theta = new double[NUM_FEATURES];
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            theta[f] = (double) weights0[f] / SCALE;
+        }
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        try {
+            double[] sums = pass(pool, data, theta);
+            for (int step = 0; step < MAX_STEPS; step += 1) {
+                if (_progress != null) {
+                    _progress.printf("step %d: loss %.5f, accuracy %.4f%n",
+                                     step, sums[0] / data.size(),
+                                     sums[1] / data.size());
+                }
+                double[] delta = newtonStep(sums, theta);
+                double[] next = new double[NUM_FEATURES];
+                double[] nextSums;
+                double fraction;
+                fraction = 1;
+                while (true) {
+                    for (int f = 0; f < NUM_FEATURES; f += 1) {
+                        next[f] = theta[f] - fraction * delta[f];
+                    }
+                    nextSums = pass(pool, data, next);
+                    if (objective(nextSums, next) <= objective(sums, theta)) {
+                        break;
+                    }
+                    fraction /= 2;
+                    if (fraction < MIN_FRACTION) {
+                        nextSums = null;
+                        break;
+                    }
+                }
+                if (nextSums == null) {
+                    if (_progress != null) {
+                        _progress.printf("step %d: every step raises the"
+                                         + " loss%n", step);
+                    }
+                    break;
+                }
+                double change;
+                change = 0;
+                for (int f = 0; f < NUM_FEATURES; f += 1) {
+                    change = Math.max(change,
+                                      Math.abs(next[f] - theta[f]) * SCALE);
+                }
+                theta = next;
+                sums = nextSums;
+                if (change < TOLERANCE) {
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        int[] weights = new int[NUM_FEATURES];
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            weights[f] = (int) Math.round(theta[f] * SCALE);
+        }
+        return new Evaluation(weights);
+    }
+
+    /** Return the mean log loss over DATA of the evaluation EVAL. */
+    static double loss(TrainingData data, Evaluation eval) {
+        int[] weights = eval.weights();
+        double[] theta = new double[NUM_FEATURES];
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            theta[f] = (double) weights[f] / SCALE;
+        }
+        return batch(data, theta, 0, data.size())[0] / data.size();
+    }
+
+    /** Return the sums over DATA computed by batch, using weights (in
+     *  units of odds) THETA, computing batches in parallel on POOL. */
+    private static double[] pass(ForkJoinPool pool, TrainingData data,
+                                 double[] theta) {
+        List<Callable<double[]>> tasks = new ArrayList<>();
+        for (int from = 0; from < data.size(); from += BATCH_SIZE) {
+            int lo = from, hi = Math.min(data.size(), from + BATCH_SIZE);
+            tasks.add(() -> batch(data, theta, lo, hi));
+        }
+        double[] sums = new double[2 + NUM_FEATURES * (NUM_FEATURES + 1)];
+        for (Future<double[]> result : pool.invokeAll(tasks)) {
+            double[] part;
+            try {
+                part = result.get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new IllegalStateException(excp);
+            }
+            for (int k = 0; k < sums.length; k += 1) {
+                sums[k] += part[k];
+            }
+        }
+        return sums;
+    }
+
+    /** Return, for positions #LO to #HI - 1 of DATA and weights THETA,
+     *  in order: the sum of the log losses, the number of outcomes
+     *  predicted correctly, the gradient of the loss with respect to
+     *  THETA (NUM_FEATURES entries), and its Hessian (NUM_FEATURES
+     *  squared entries, by rows). */
+    private static double[] batch(TrainingData data, double[] theta,
+                                  int lo, int hi) {
+        double[] sums = new double[2 + NUM_FEATURES * (NUM_FEATURES + 1)];
+        int gradient = 2, hessian = gradient + NUM_FEATURES;
+        double[] x = new double[NUM_FEATURES];
+        for (int i = lo; i < hi; i += 1) {
+            double z;
+            z = 0;
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                x[f] = data.feature(f, i);
+                z += theta[f] * x[f];
+            }
+            double p = 1 / (1 + Math.exp(-z));
+            int y = data.winner(i);
+            sums[0] += y == 1 ? -logSigmoid(z) : -logSigmoid(-z);
+            if ((z > 0) == (y == 1)) {
+                sums[1] += 1;
+            }
+            double w = p * (1 - p);
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                sums[gradient + f] += (p - y) * x[f];
+                for (int g = 0; g < NUM_FEATURES; g += 1) {
+                    sums[hessian + f * NUM_FEATURES + g] += w * x[f] * x[g];
+                }
+            }
+        }
+        return sums;
+    }
+
+    /** Return the penalized loss for weights THETA, whose sums computed
+     *  by pass are SUMS. */
+    private static double objective(double[] sums, double[] theta) {
+        double penalty;
+        penalty = 0;
+        for (double t : theta) {
+            penalty += RIDGE * t * t;
+        }
+        return sums[0] + penalty;
+    }
+
+    /** Return the Newton step (to be subtracted from THETA) for the
+     *  sums SUMS computed by pass at THETA, with the ridge penalty
+     *  added. */
+    private static double[] newtonStep(double[] sums, double[] theta) {
+        int gradient = 2, hessian = gradient + NUM_FEATURES;
+        double[][] a = new double[NUM_FEATURES][NUM_FEATURES + 1];
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            for (int g = 0; g < NUM_FEATURES; g += 1) {
+                a[f][g] = sums[hessian + f * NUM_FEATURES + g];
+            }
+            a[f][f] += 2 * RIDGE;
+            a[f][NUM_FEATURES] = sums[gradient + f] + 2 * RIDGE * theta[f];
+        }
+        return solve(a);
+    }
+
+    /** Return the solution of the linear system with augmented matrix A
+     *  (which is modified), by Gaussian elimination with partial
+     *  pivoting. */
+    private static double[] solve(double[][] a) {
+        int n = a.length;
+        for (int col = 0; col < n; col += 1) {
+            int pivot = col;
+            for (int r = col + 1; r < n; r += 1) {
+                if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) {
+                    pivot = r;
+                }
+            }
+            double[] t = a[col];
+            a[col] = a[pivot];
+            a[pivot] = t;
+            for (int r = col + 1; r < n; r += 1) {
+                double m = a[r][col] / a[col][col];
+                for (int c = col; c <= n; c += 1) {
+                    a[r][c] -= m * a[col][c];
+                }
+            }
+        }
+        double[] x = new double[n];
+        for (int r = n - 1; r >= 0; r -= 1) {
+            double s = a[r][n];
+            for (int c = r + 1; c < n; c += 1) {
+                s -= a[r][c] * x[c];
+            }
+            x[r] = s / a[r][r];
+        }
+        return x;
+    }
+
+    /** Return log(1 / (1 + e^-Z)), computed without overflow. */
+    private static double logSigmoid(double z) {
+        return z >= 0 ? -Math.log1p(Math.exp(-z))
+            : z - Math.log1p(Math.exp(z));
+    }
+
+    /** Number of threads computing batches. */
+    private final int _threads;
+    /** Destination of progress reports, or null. */
+    private final PrintStream _progress;
+
+}
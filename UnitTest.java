@@ -10,7 +10,25 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(jump61.BoardTest.class));
+        System.exit(textui.runClasses(jump61.BoardTest.class,
+                                      jump61.PerftTest.class,
+                                      jump61.GameRecordTest.class,
+                                      jump61.BoardCodecTest.class,
+                                      jump61.GameServerTest.class,
+                                      jump61.AITest.class,
+                                      jump61.GameSnapshotTest.class,
+                                      jump61.AnalysisCacheTest.class,
+                                      jump61.EngineProtocolTest.class,
+                                      jump61.KernelsTest.class,
+                                      jump61.BoardArenaTest.class,
+                                      jump61.ProofSolverTest.class,
+                                      jump61.EvaluationTest.class,
+                                      jump61.TrainingDataTest.class,
+                                      jump61.AnalysisServiceTest.class,
+                                      jump61.SpectatorHubTest.class,
+                                      jump61.BufferedReporterTest.class,
+                                      jump61.ClusterIndexTest.class,
+                                      jump61.SelfPlayCoordinatorTest.class));
     }
 
 }
@@ -3,10 +3,12 @@
 package jump61;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 
 /** Miscellaneous utilties.
  *  @author P. N. Hilfinger */
@@ -25,6 +27,73 @@ class Utils {
         return Long.parseLong(numeral);
     }
 
+    /** If S consists of two unsigned decimal numerals of at most nine
+     *  digits, separated by and possibly surrounded by blanks, set
+     *  MOVE[0] and MOVE[1] to their values and return true.  Otherwise,
+     *  return false.  Does not allocate. */
+    static boolean parseMove(String s, int[] move) {
+        int k = skipBlanks(s, 0);
+        for (int i = 0; i < 2; i += 1) {
+            int start = k;
+            int value;
+            value = 0;
+            while (k < s.length() && k - start < 10
+                   && '0' <= s.charAt(k) && s.charAt(k) <= '9') {
+                value = 10 * value + s.charAt(k) - '0';
+                k += 1;
+            }
+            int end = k;
+            k = skipBlanks(s, k);
+            if (end == start || end - start > 9
+                || (i == 0 && k == end)) {
+                return false;
+            }
+            move[i] = value;
+        }
+        return k == s.length();
+    }
+
+    /** Return the words of S: its maximal sequences of non-blank
+     *  characters.  Returns an array containing only "" if S is
+     *  blank. */
+    static String[] words(String s) {
+        int count;
+        count = 0;
+        for (int k = skipBlanks(s, 0); k < s.length();
+             k = skipBlanks(s, skipWord(s, k))) {
+            count += 1;
+        }
+        if (count == 0) {
+            return new String[] { "" };
+        }
+        String[] result = new String[count];
+        count = 0;
+        for (int k = skipBlanks(s, 0); k < s.length();
+             k = skipBlanks(s, skipWord(s, k))) {
+            result[count] = s.substring(k, skipWord(s, k));
+            count += 1;
+        }
+        return result;
+    }
+
+    /** Return the index of the first non-blank character of S at or
+     *  after K, or the length of S if there is none. */
+    private static int skipBlanks(String s, int k) {
+        while (k < s.length() && Character.isWhitespace(s.charAt(k))) {
+            k += 1;
+        }
+        return k;
+    }
+
+    /** Return the index of the first blank character of S at or after K,
+     *  or the length of S if there is none. */
+    private static int skipWord(String s, int k) {
+        while (k < s.length() && !Character.isWhitespace(s.charAt(k))) {
+            k += 1;
+        }
+        return k;
+    }
+
     /** Set the message level for this package to LEVEL.  The debug() routine
      *  (below) will print any message with a positive level that is <= LEVEL.
      *  Initially, the level is 0. */
@@ -67,7 +136,44 @@ class Utils {
         }
     }
 
+    /** Append VALUE to OUT as a variable-length unsigned integer: seven
+     *  bits per byte, least significant first, with the high bit set on
+     *  every byte but the last. */
+    static void putVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /** Append VALUE to OUT as a variable-length signed integer, so that
+     *  values of small magnitude take few bytes. */
+    static void putSignedVarint(ByteArrayOutputStream out, long value) {
+        putVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    /** Return the next variable-length unsigned integer (as written by
+     *  putVarint) from IN. */
+    static long getVarint(ByteBuffer in) {
+        long value;
+        value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
 
+    /** Return the next variable-length signed integer (as written by
+     *  putSignedVarint) from IN. */
+    static long getSignedVarint(ByteBuffer in) {
+        long value = getVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
 
     /** The current package-wide message level. */
     private static int _messageLevel = 0;
@@ -0,0 +1,118 @@
+package jump61;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.*;
+
+/** Kernels that use the Vector API to process as many squares at once as
+ *  the processor's preferred vector size allows.  Requires the
+ *  incubating module jdk.incubator.vector (see Kernels).
+ *  @author Will Harvey
+ */
+class VectorKernels extends Kernels {
+
+    /** Shape of the vectors used. */
+    private static final VectorSpecies<Byte> BYTES =
+        ByteVector.SPECIES_PREFERRED;
+    /** Integer vectors of the same size as BYTES. */
+    private static final VectorSpecies<Integer> INTS =
+        VectorSpecies.of(int.class, BYTES.vectorShape());
+    /** Number of squares processed at once. */
+    private static final int LANES = BYTES.length();
+
+    /** Kernels using vectors of LANES bytes. */
+    VectorKernels() {
+        assert CHUNK % LANES == 0;
+    }
+
+    @Override
+    String name() {
+        return "vector" + LANES * 8;
+    }
+
+    @Override
+    int sum(byte[] a, int base, int n) {
+        IntVector sums = IntVector.zero(INTS);
+        for (int k = 0; k < n; k += LANES) {
+            ByteVector v = ByteVector.fromArray(BYTES, a, base + k,
+                                                BYTES.indexInRange(k, n));
+            sums = sums.add(v.reinterpretAsInts());
+        }
+        return sums.and(0xff)
+            .add(sums.lanewise(LSHR, 8).and(0xff))
+            .add(sums.lanewise(LSHR, 16).and(0xff))
+            .add(sums.lanewise(LSHR, 24))
+            .reduceLanes(ADD);
+    }
+
+    @Override
+    int count(byte[] a, int base, int n, int value) {
+        int count;
+        count = 0;
+        for (int k = 0; k < n; k += LANES) {
+            count += ByteVector.fromArray(BYTES, a, base + k)
+                .compare(EQ, (byte) value, BYTES.indexInRange(k, n))
+                .trueCount();
+        }
+        return count;
+    }
+
+    @Override
+    int countEqual(byte[] a, int base, byte[] b, int from, int to) {
+        int count;
+        count = 0;
+        for (int k = from / LANES * LANES; k < to; k += LANES) {
+            VectorMask<Byte> range = BYTES.indexInRange(k, to)
+                .andNot(BYTES.indexInRange(k, from));
+            count += ByteVector.fromArray(BYTES, a, base + k)
+                .compare(EQ, ByteVector.fromArray(BYTES, b, k), range)
+                .trueCount();
+        }
+        return count;
+    }
+
+    @Override
+    int markOverfull(byte[] spots, byte[] limits, byte[] over, int offset,
+                     int n) {
+        int count;
+        count = 0;
+        for (int k = 0; k < paddedLength(n); k += LANES) {
+            VectorMask<Byte> overfull = ByteVector.fromArray(BYTES, spots, k)
+                .compare(GT, ByteVector.fromArray(BYTES, limits, k));
+            ByteVector.zero(BYTES).blend((byte) 1, overfull)
+                .intoArray(over, offset + k);
+            count += overfull.trueCount();
+        }
+        return count;
+    }
+
+    @Override
+    void spread(byte[] spots, byte[] owners, byte[] over, int offset,
+                byte[] limits, byte[] hasLeft, byte[] hasRight, int size,
+                int player) {
+        int n = size * size;
+        for (int k = 0; k < n; k += LANES) {
+            int p = offset + k;
+            ByteVector exploding = ByteVector.fromArray(BYTES, over, p);
+            ByteVector received = ByteVector.fromArray(BYTES, over, p - 1)
+                .mul(ByteVector.fromArray(BYTES, hasLeft, k))
+                .add(ByteVector.fromArray(BYTES, over, p + 1)
+                     .mul(ByteVector.fromArray(BYTES, hasRight, k)))
+                .add(ByteVector.fromArray(BYTES, over, p - size))
+                .add(ByteVector.fromArray(BYTES, over, p + size));
+            ByteVector.fromArray(BYTES, spots, k)
+                .sub(exploding.mul(ByteVector.fromArray(BYTES, limits, k)))
+                .add(received)
+                .intoArray(spots, k);
+            VectorMask<Byte> changed = received.compare(NE, (byte) 0)
+                .or(exploding.compare(NE, (byte) 0));
+            ByteVector.fromArray(BYTES, owners, k)
+                .blend((byte) player, changed)
+                .intoArray(owners, k);
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package jump61;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of the AI: move generation, static evaluation, and
+ *  full searches at fixed depths on the corpus positions.
+ *  @author Will Harvey
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AIBench {
+
+    /** Board size. */
+    @Param({ "4", "6", "8", "10" })
+    int size;
+
+    /** Middlegame position from the corpus. */
+    private Board _midgame;
+    /** The player searching _midgame.  It is not attached to a Game;
+     *  only the methods that take an explicit Board are used. */
+    private AI _ai;
+
+    /** Build the position and player for the current size. */
+    @Setup
+    public void setUp() {
+        _midgame = Positions.midgame(size);
+        _ai = new AI(null, _midgame.whoseMove(), 0);
+    }
+
+    /** Generate all legal moves. */
+    @Benchmark
+    public ArrayList<Integer> movesList() {
+        return _ai.movesList(_midgame, _midgame.whoseMove());
+    }
+
+    /** Statically evaluate the position. */
+    @Benchmark
+    public int staticEval() {
+        return _ai.staticEval(_midgame, AI.RW);
+    }
+
+    /** Search depths, kept in a separate state so that only search()
+     *  is run at each depth. */
+    @State(Scope.Thread)
+    public static class Depth {
+        /** Search depth. */
+        @Param({ "1", "2", "3" })
+        int depth;
+    }
+
+    /** Search for a move to the depth given by D. */
+    @Benchmark
+    public int search(Depth d) {
+        return _ai.searchForMove(_midgame, d.depth);
+    }
+
+}
@@ -0,0 +1,110 @@
+package jump61;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of the Board operations on the engine's hot path:
+ *  adding a spot on quiet and cascading positions, worst-case jump
+ *  chains, undo, and copying.
+ *  @author Will Harvey
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBench {
+
+    /** Board size. */
+    @Param({ "4", "6", "8", "10" })
+    int size;
+
+    /** Middlegame position from the corpus. */
+    private Board _midgame;
+    /** Middlegame position with a full square for the side to move. */
+    private Board _cascade;
+    /** Worst-case jump chain. */
+    private Board _chain;
+    /** Quiet move on _midgame. */
+    private int _quietMove;
+    /** Jumping move on _cascade. */
+    private int _cascadeMove;
+    /** Board modified by the benchmarks. */
+    private final Board _work = new Board(2);
+
+    /** Build the positions for the current size. */
+    @Setup
+    public void setUp() {
+        _midgame = Positions.midgame(size);
+        _quietMove = Positions.quietMove(_midgame);
+        _cascade = new Board(_midgame);
+        _cascadeMove = Positions.cascadeMove(_cascade);
+        _cascade = new Board(_cascade);
+        _chain = Positions.chain(size);
+    }
+
+    /* Each mutating benchmark first resets _work from its position with
+     * Board.copy, which clears the undo history.  The cost of that reset
+     * alone is measured by reset(); subtract it to get the cost of the
+     * operation itself. */
+
+    /** Reset the work board without doing anything else. */
+    @Benchmark
+    public Board reset() {
+        _work.copy(_midgame);
+        return _work;
+    }
+
+    /** Add a spot to a square that does not jump. */
+    @Benchmark
+    public Board addSpotQuiet() {
+        _work.copy(_midgame);
+        _work.addSpot(_work.whoseMove(), _quietMove);
+        return _work;
+    }
+
+    /** Add a spot to a full square on a middlegame position. */
+    @Benchmark
+    public Board addSpotCascade() {
+        _work.copy(_cascade);
+        _work.addSpot(_work.whoseMove(), _cascadeMove);
+        return _work;
+    }
+
+    /** Add a spot that sweeps the entire board. */
+    @Benchmark
+    public Board jumpChain() {
+        _work.copy(_chain);
+        _work.addSpot(Side.RED, 0);
+        return _work;
+    }
+
+    /** Make a quiet move and undo it.  Subtract addSpotQuiet to get the
+     *  cost of undo. */
+    @Benchmark
+    public Board addSpotUndo() {
+        _work.copy(_midgame);
+        _work.addSpot(_work.whoseMove(), _quietMove);
+        _work.undo();
+        return _work;
+    }
+
+    /** Copy a middlegame position. */
+    @Benchmark
+    public Board copy() {
+        return new Board(_midgame);
+    }
+
+}
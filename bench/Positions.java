@@ -0,0 +1,101 @@
+package jump61;
+
+import java.util.Random;
+
+import static jump61.Side.*;
+
+/** A fixed corpus of benchmark positions for each board size.  Every
+ *  position is generated from a constant seed, so that all runs (and all
+ *  versions of the engine) measure exactly the same boards.
+ *  @author Will Harvey
+ */
+class Positions {
+
+    /** Board sizes covered by the corpus. */
+    static final int[] SIZES = { 4, 6, 8, 10 };
+
+    /** Seed from which all random positions are generated. */
+    private static final long SEED = 61;
+
+    /** Return a middlegame position on an N x N board reached by random
+     *  play, in which the side to move has at least one quiet move. */
+    static Board midgame(int N) {
+        Random random = new Random(SEED + N);
+        Board board = new Board(N);
+        int plies = N * N;
+        for (int k = 0; k < plies && board.getWinner() == null; k += 1) {
+            Side player = board.whoseMove();
+            int move = randomMove(board, player, random);
+            Board trial = new Board(board);
+            trial.addSpot(player, move);
+            if (trial.getWinner() != null || quietMove(trial) < 0) {
+                break;
+            }
+            board.addSpot(player, move);
+        }
+        return new Board(board);
+    }
+
+    /** Return a legal move on B that does not cause any square to jump,
+     *  or -1 if there is none. */
+    static int quietMove(Board b) {
+        Side player = b.whoseMove();
+        for (int n = 0; n < b.size() * b.size(); n += 1) {
+            if (b.isLegal(player, n)
+                && b.get(n).getSpots() < b.neighbors(n)) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    /** Return a legal move on B that causes at least one jump, filling
+     *  one of the mover's squares first if necessary.  Only squares an
+     *  even number of spots short of full are filled, so that the side
+     *  to move does not change. */
+    static int cascadeMove(Board b) {
+        Side player = b.whoseMove();
+        for (int n = 0; n < b.size() * b.size(); n += 1) {
+            if (b.isLegal(player, n)
+                && b.get(n).getSpots() == b.neighbors(n)) {
+                return n;
+            }
+        }
+        for (int n = 0; n < b.size() * b.size(); n += 1) {
+            int missing = b.neighbors(n) - b.get(n).getSpots();
+            if (b.isLegal(player, n) && missing > 0 && missing % 2 == 0) {
+                b.set(b.row(n), b.col(n), b.neighbors(n), player);
+                return n;
+            }
+        }
+        throw new IllegalStateException("no cascading move available");
+    }
+
+    /** Return the worst case for jumping on an N x N board: every square
+     *  but the last is a full red square, and the last is a blue square
+     *  with one spot, so that a red move on square 0 sweeps the whole
+     *  board.  Red is to move. */
+    static Board chain(int N) {
+        Board board = new Board(N);
+        for (int n = 0; n < N * N - 1; n += 1) {
+            board.set(board.row(n), board.col(n), board.neighbors(n), RED);
+        }
+        board.set(N, N, 1, BLUE);
+        if (board.whoseMove() != RED) {
+            board.set(1, 2, board.neighbors(1) - 1, RED);
+        }
+        return new Board(board);
+    }
+
+    /** Return a random legal move for PLAYER on B, using RANDOM. */
+    private static int randomMove(Board b, Side player, Random random) {
+        int N2 = b.size() * b.size();
+        while (true) {
+            int n = random.nextInt(N2);
+            if (b.isLegal(player, n)) {
+                return n;
+            }
+        }
+    }
+
+}